@@ -0,0 +1,89 @@
+-- ══════════════════════════════════════════════════════════════
+-- NexusAI - Message search benchmark
+-- Compares the old LOWER(content) LIKE scan with the V6 indexes on a
+-- synthetic dataset. Run against a disposable database migrated to V6:
+--
+--   psql -v messages=3000000 -f docker/benchmarks/message_search.sql
+--
+-- Everything is created inside a transaction that is rolled back.
+-- ══════════════════════════════════════════════════════════════
+
+\set ON_ERROR_STOP on
+\if :{?messages}
+\else
+  \set messages 3000000
+\endif
+
+BEGIN;
+
+-- 1 000 users with 1 companion and 20 conversations each
+INSERT INTO users (id, username, email, password_hash)
+SELECT gen_random_uuid(), 'bench_' || g, 'bench_' || g || '@example.test', 'x'
+FROM generate_series(1, 1000) g;
+
+INSERT INTO companions (id, user_id, name)
+SELECT gen_random_uuid(), u.id, 'Bench companion'
+FROM users u WHERE u.username LIKE 'bench\_%';
+
+INSERT INTO conversations (id, user_id, companion_id, title)
+SELECT gen_random_uuid(), c.user_id, c.id, 'Bench ' || g
+FROM companions c CROSS JOIN generate_series(1, 20) g
+WHERE c.name = 'Bench companion';
+
+-- Messages drawn from an English/French vocabulary, spread over the conversations
+CREATE TEMP TABLE bench_words(word) AS
+SELECT unnest(string_to_array(
+    'hiking mountain coffee weekend travel music concert birthday dinner recipe garden ' ||
+    'randonnée montagne café voyage musique anniversaire dîner recette jardin livre ' ||
+    'work meeting family weather movie dream cooking running vacances travail famille', ' '));
+
+CREATE TEMP TABLE bench_conversations AS
+SELECT id, row_number() OVER () AS n FROM conversations WHERE title LIKE 'Bench %';
+
+INSERT INTO messages (conversation_id, role, content, created_at)
+SELECT bc.id,
+       CASE WHEN g % 2 = 0 THEN 'user' ELSE 'assistant' END,
+       (SELECT string_agg(word, ' ') FROM (
+            SELECT word FROM bench_words ORDER BY random() LIMIT 12 + (g % 20)) w),
+       now() - (g || ' seconds')::interval
+FROM generate_series(1, :messages) g
+JOIN bench_conversations bc ON bc.n = 1 + (g % (SELECT count(*) FROM bench_conversations));
+
+ANALYZE messages;
+ANALYZE conversations;
+
+SELECT c.id AS bench_conversation, c.user_id AS bench_user
+FROM conversations c WHERE c.title = 'Bench 1' LIMIT 1 \gset
+
+\echo '== Before: LOWER(content) LIKE within one conversation'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM messages m
+WHERE m.conversation_id = :'bench_conversation'
+  AND LOWER(m.content) LIKE LOWER('%randonnée%')
+ORDER BY m.created_at DESC LIMIT 20;
+
+\echo '== After: ILIKE on the trigram index within one conversation'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM messages m
+WHERE m.conversation_id = :'bench_conversation'
+  AND m.content ILIKE '%randonnée%'
+ORDER BY m.created_at DESC LIMIT 20;
+
+\echo '== Before: cross-conversation LIKE (no equivalent API existed)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT m.id FROM messages m JOIN conversations c ON c.id = m.conversation_id
+WHERE c.user_id = :'bench_user' AND LOWER(m.content) LIKE '%hiking%'
+ORDER BY m.created_at DESC LIMIT 20;
+
+\echo '== After: ranked search across the user''s conversations, first page'
+EXPLAIN (ANALYZE, BUFFERS)
+WITH q AS (SELECT websearch_to_tsquery('english', 'hiking mountains') ||
+                  websearch_to_tsquery('french', 'hiking mountains') AS query)
+SELECT p.id, ts_headline('english', p.content, q.query, 'MaxFragments=2') AS snippet
+FROM (SELECT h.* FROM (
+        SELECT m.id, m.content, CAST(ts_rank_cd(m.search_vector, q.query) AS float8) AS rank
+        FROM messages m JOIN conversations c ON c.id = m.conversation_id CROSS JOIN q
+        WHERE c.user_id = :'bench_user' AND m.search_vector @@ q.query) h
+      ORDER BY h.rank DESC, h.id DESC LIMIT 21) p CROSS JOIN q;
+
+ROLLBACK;
@@ -1,5 +1,7 @@
 package com.nexusai.ai.config;
 
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -12,9 +14,12 @@ public class AIConfig {
     
     /**
      * Bean WebClient.Builder pour les clients HTTP réactifs.
+     * Observé, pour que les appels aux fournisseurs apparaissent dans les traces
+     * et propagent leur contexte ({@code traceparent}).
      */
     @Bean
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(ObjectProvider<ObservationRegistry> observationRegistry) {
+        return WebClient.builder()
+                .observationRegistry(observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
     }
 }
@@ -0,0 +1,19 @@
+package com.nexusai.ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Token usage as reported by a provider. Either side may be unknown.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenUsage {
+
+    private Integer promptTokens;
+    private Integer completionTokens;
+}
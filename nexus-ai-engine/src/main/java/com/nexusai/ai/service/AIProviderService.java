@@ -22,6 +22,14 @@ public interface AIProviderService {
      */
     Flux<String> chatStream(ChatRequest request);
 
+    /**
+     * Generates a streaming chat completion, accounting its tokens in {@code meter}.
+     * Providers that report usage in their stream override this to pass it on.
+     */
+    default Flux<String> chatStream(ChatRequest request, TokenMeter meter) {
+        return chatStream(request).doOnNext(meter::count);
+    }
+
     /**
      * Returns the provider name.
      */
@@ -52,6 +60,15 @@ public interface AIProviderService {
      * Streams a response using the specified model.
      */
     default Flux<String> streamResponse(String systemPrompt, String context, String modelProvider, String modelName) {
+        return streamResponse(systemPrompt, context, modelProvider, modelName, new TokenMeter());
+    }
+
+    /**
+     * Streams a response using the specified model, accounting its tokens, prompt
+     * included, in {@code meter}.
+     */
+    default Flux<String> streamResponse(String systemPrompt, String context, String modelProvider, String modelName,
+                                        TokenMeter meter) {
         List<ChatRequest.Message> messages = List.of(
                 ChatRequest.Message.builder().role(MessageRole.SYSTEM).content(systemPrompt).build(),
                 ChatRequest.Message.builder().role(MessageRole.USER).content(context).build()
@@ -60,7 +77,8 @@ public interface AIProviderService {
                 .model(modelName)
                 .messages(messages)
                 .build();
-        return chatStream(request);
+        messages.forEach(message -> meter.countPrompt(message.getContent()));
+        return chatStream(request, meter);
     }
 
     /**
@@ -71,7 +89,6 @@ public interface AIProviderService {
         if (text == null || text.isEmpty()) {
             return 0;
         }
-        // Rough estimate: ~4 characters per token on average
-        return (int) Math.ceil(text.length() / 4.0);
+        return TokenMeter.estimate(text.length());
     }
 }
@@ -4,7 +4,9 @@ import com.nexusai.ai.dto.ChatRequest;
 import com.nexusai.ai.dto.ChatResponse;
 import com.nexusai.ai.dto.OllamaChatRequest;
 import com.nexusai.ai.dto.OllamaChatResponse;
+import com.nexusai.ai.dto.TokenUsage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
@@ -24,8 +26,18 @@ public class OllamaService implements AIProviderService {
     @Value("${nexusai.ai.ollama.model:llama3}")
     private String defaultModel;
 
-    public OllamaService(@Value("${nexusai.ai.ollama.base-url:http://localhost:11434}") String baseUrl) {
-        this.webClient = WebClient.builder()
+    public OllamaService(String baseUrl) {
+        this(baseUrl, WebClient.builder());
+    }
+
+    /**
+     * Builds on the shared, observation-aware builder, so each call is a child
+     * of the current trace and carries its context.
+     */
+    @Autowired
+    public OllamaService(@Value("${nexusai.ai.ollama.base-url:http://localhost:11434}") String baseUrl,
+                         WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.clone()
                 .baseUrl(baseUrl)
                 .build();
     }
@@ -47,12 +59,20 @@ public class OllamaService implements AIProviderService {
                 .content(response != null && response.getMessage() != null
                         ? response.getMessage().getContent() : "")
                 .model(defaultModel)
-                .tokensUsed(response != null ? response.getEvalCount() : 0)
+                .tokensUsed(response != null && response.getEvalCount() != null ? response.getEvalCount() : 0)
                 .build();
     }
 
     @Override
     public Flux<String> chatStream(ChatRequest request) {
+        return chatStream(request, new TokenMeter());
+    }
+
+    /**
+     * The final event ({@code done}) carries the exact counts of the generation.
+     */
+    @Override
+    public Flux<String> chatStream(ChatRequest request, TokenMeter meter) {
         OllamaChatRequest ollamaRequest = buildOllamaRequest(request);
         ollamaRequest.setStream(true);
 
@@ -62,9 +82,15 @@ public class OllamaService implements AIProviderService {
                 .bodyValue(ollamaRequest)
                 .retrieve()
                 .bodyToFlux(OllamaChatResponse.class)
+                .doOnNext(response -> {
+                    if (Boolean.TRUE.equals(response.getDone())) {
+                        meter.report(new TokenUsage(response.getPromptEvalCount(), response.getEvalCount()));
+                    }
+                })
                 .map(response -> response.getMessage() != null
                         ? response.getMessage().getContent() : "")
-                .filter(content -> content != null && !content.isEmpty());
+                .filter(content -> content != null && !content.isEmpty())
+                .doOnNext(meter::count);
     }
 
     @Override
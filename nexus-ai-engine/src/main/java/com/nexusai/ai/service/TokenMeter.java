@@ -0,0 +1,84 @@
+package com.nexusai.ai.service;
+
+import com.nexusai.ai.dto.TokenUsage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token accounting for one streamed generation.
+ *
+ * Chunks are counted as they pass, so the total is known when the stream ends
+ * without scanning the full response again. The prompt is counted once, when the
+ * request is built. Providers that send their own usage in the stream report it
+ * here, and the reported numbers win over the estimates.
+ */
+public final class TokenMeter {
+
+    private final AtomicLong characters = new AtomicLong();
+    private final AtomicLong promptCharacters = new AtomicLong();
+    private volatile Integer promptTokens;
+    private volatile Integer completionTokens;
+
+    /**
+     * Rough estimate used when the provider reports nothing: ~4 characters per token.
+     */
+    public static int estimate(long characters) {
+        return (int) ((characters + 3) / 4);
+    }
+
+    public void count(String chunk) {
+        if (chunk != null) {
+            characters.addAndGet(chunk.length());
+        }
+    }
+
+    public void countPrompt(String text) {
+        if (text != null) {
+            promptCharacters.addAndGet(text.length());
+        }
+    }
+
+    /**
+     * Records provider-reported usage. Fields left {@code null} keep their
+     * previous value, for providers that split usage across several events.
+     */
+    public void report(TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null) {
+            promptTokens = usage.getPromptTokens();
+        }
+        if (usage.getCompletionTokens() != null) {
+            completionTokens = usage.getCompletionTokens();
+        }
+    }
+
+    /**
+     * Tokens of the generated text: as reported by the provider, else estimated.
+     */
+    public int completionTokens() {
+        Integer reported = completionTokens;
+        return reported != null ? reported : estimate(characters.get());
+    }
+
+    /**
+     * Tokens of the prompt, or {@code null} when the provider did not report them.
+     */
+    public Integer promptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * Tokens to charge for the generation: prompt and completion, each as
+     * reported by the provider, else estimated.
+     */
+    public int billableTokens() {
+        Integer prompt = promptTokens;
+        return completionTokens() + (prompt != null ? prompt : estimate(promptCharacters.get()));
+    }
+
+    public boolean isReported() {
+        return completionTokens != null;
+    }
+}
@@ -105,6 +105,7 @@ class OllamaServiceTest {
 
             assertThat(response).isNotNull();
             assertThat(response.getContent()).isEmpty();
+            assertThat(response.getTokensUsed()).isZero();
         }
 
         @Test
@@ -178,6 +179,43 @@ class OllamaServiceTest {
                     .thenConsumeWhile(s -> true)
                     .verifyComplete();
         }
+
+        @Test
+        @DisplayName("Should report the token counts of the final event")
+        void shouldReportUsageOfFinalEvent() {
+            String chunk1 = """
+                {"message":{"content":"Hello"},"done":false}
+                """;
+            String chunk2 = """
+                {"message":{"content":" World"},"done":false}
+                """;
+            String chunk3 = """
+                {"message":{"content":""},"done":true,"prompt_eval_count":26,"eval_count":4}
+                """;
+
+            mockWebServer.enqueue(new MockResponse()
+                    .setBody(chunk1 + chunk2 + chunk3)
+                    .addHeader("Content-Type", "application/x-ndjson"));
+
+            ChatRequest request = ChatRequest.builder()
+                    .model("llama3")
+                    .messages(List.of(
+                            ChatRequest.Message.builder()
+                                    .role(MessageRole.USER)
+                                    .content("Hello!")
+                                    .build()
+                    ))
+                    .build();
+            TokenMeter meter = new TokenMeter();
+
+            StepVerifier.create(ollamaService.chatStream(request, meter))
+                    .expectNext("Hello", " World")
+                    .verifyComplete();
+
+            assertThat(meter.isReported()).isTrue();
+            assertThat(meter.completionTokens()).isEqualTo(4);
+            assertThat(meter.promptTokens()).isEqualTo(26);
+        }
     }
 
     @Nested
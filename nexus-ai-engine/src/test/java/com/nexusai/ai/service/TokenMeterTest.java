@@ -0,0 +1,55 @@
+package com.nexusai.ai.service;
+
+import com.nexusai.ai.dto.TokenUsage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("TokenMeter Tests")
+class TokenMeterTest {
+
+    @Test
+    @DisplayName("Should estimate from the counted chunks like the full text")
+    void shouldEstimateFromChunks() {
+        TokenMeter meter = new TokenMeter();
+        meter.count("Hello");
+        meter.count(" there, ");
+        meter.count("world");
+
+        assertThat(meter.isReported()).isFalse();
+        // Same as estimating the 18 characters of the whole text
+        assertThat(meter.completionTokens()).isEqualTo(5);
+        assertThat(meter.promptTokens()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should prefer reported usage and merge partial reports")
+    void shouldPreferReportedUsage() {
+        TokenMeter meter = new TokenMeter();
+        meter.count("Hello there, world");
+
+        meter.report(new TokenUsage(120, null));
+        assertThat(meter.isReported()).isFalse();
+        assertThat(meter.completionTokens()).isEqualTo(5);
+
+        meter.report(new TokenUsage(null, 9));
+        assertThat(meter.completionTokens()).isEqualTo(9);
+        assertThat(meter.promptTokens()).isEqualTo(120);
+    }
+
+    @Test
+    @DisplayName("Should bill the prompt with the completion, reported or estimated")
+    void shouldBillPromptAndCompletion() {
+        TokenMeter meter = new TokenMeter();
+        meter.countPrompt("You are Mia.");
+        meter.countPrompt("User: hello");
+        meter.count("Hello there, world");
+
+        // 23 prompt characters and 18 completion characters
+        assertThat(meter.billableTokens()).isEqualTo(6 + 5);
+
+        meter.report(new TokenUsage(30, 4));
+        assertThat(meter.billableTokens()).isEqualTo(34);
+    }
+}
@@ -2,21 +2,34 @@ package com.nexusai.api.controller;
 
 import com.nexusai.auth.security.UserPrincipal;
 import com.nexusai.conversation.dto.*;
+import com.nexusai.conversation.export.ConversationExporter;
+import com.nexusai.conversation.export.ExportFormat;
+import com.nexusai.conversation.idempotency.IdempotentSubmissions;
 import com.nexusai.conversation.service.ConversationService;
 import com.nexusai.conversation.service.MessageService;
+import com.nexusai.conversation.stream.ResumableStreams;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import reactor.core.publisher.Flux;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -29,6 +42,9 @@ public class ConversationController {
 
     private final ConversationService conversationService;
     private final MessageService messageService;
+    private final ResumableStreams resumableStreams;
+    private final ConversationExporter conversationExporter;
+    private final IdempotentSubmissions idempotentSubmissions;
 
     @PostMapping
     @Operation(summary = "Create a new conversation")
@@ -41,12 +57,18 @@ public class ConversationController {
     }
 
     @GetMapping
-    @Operation(summary = "Get user's conversations")
+    @Operation(summary = "Get user's conversations",
+            description = "Returns an ETag; polling clients sending If-None-Match get 304 when nothing changed")
     public ResponseEntity<Page<ConversationDTO>> getConversations(
             @AuthenticationPrincipal UserPrincipal principal,
-            Pageable pageable) {
+            Pageable pageable,
+            WebRequest webRequest) {
         Page<ConversationDTO> conversations = conversationService.getUserConversations(
                 principal.getUserId(), pageable);
+        String eTag = listingETag(conversations);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         return ResponseEntity.ok(conversations);
     }
 
@@ -89,10 +111,31 @@ public class ConversationController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/{conversationId}/export")
+    @Operation(summary = "Export a conversation",
+            description = "Streams the whole history, archived messages included, oldest first; "
+                    + "optionally limited to messages created in [from, to)")
+    public ResponseEntity<StreamingResponseBody> exportConversation(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @PathVariable UUID conversationId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        ConversationExporter.ExportRequest export = conversationExporter.prepare(
+                conversationId, principal.getUserId(), ExportFormat.of(format), from, to);
+        // Compressed on the fly by the server (server.compression) when the client accepts gzip
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(export.format().getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(export.fileName()).build().toString())
+                .body(out -> conversationExporter.export(export, out));
+    }
+
     // Message endpoints
 
     @GetMapping("/{conversationId}/messages")
-    @Operation(summary = "Get messages in a conversation")
+    @Operation(summary = "Get messages in a conversation", deprecated = true,
+            description = "Offset pagination gets slower with every page; use /messages/history instead")
     public ResponseEntity<Page<MessageDTO>> getMessages(
             @AuthenticationPrincipal UserPrincipal principal,
             @PathVariable UUID conversationId,
@@ -102,14 +145,30 @@ public class ConversationController {
         return ResponseEntity.ok(messages);
     }
 
+    @GetMapping("/{conversationId}/messages/history")
+    @Operation(summary = "Get messages older than a cursor (keyset pagination)")
+    public ResponseEntity<MessageSliceDTO> getMessageHistory(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @PathVariable UUID conversationId,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "50") int limit) {
+        MessageSliceDTO messages = conversationService.getMessagesBefore(
+                conversationId, principal.getUserId(), before, limit);
+        return ResponseEntity.ok(messages);
+    }
+
     @PostMapping("/{conversationId}/messages")
-    @Operation(summary = "Send a message")
+    @Operation(summary = "Send a message",
+            description = "Retries carrying the same Idempotency-Key header (or clientMessageId) "
+                    + "return the originally saved message")
     public ResponseEntity<MessageDTO> sendMessage(
             @AuthenticationPrincipal UserPrincipal principal,
             @PathVariable UUID conversationId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody SendMessageRequest request) {
-        MessageDTO message = messageService.sendMessage(
-                conversationId, principal.getUserId(), request);
+        MessageDTO message = idempotentSubmissions.send(conversationId, principal.getUserId(),
+                IdempotentSubmissions.keyOf(idempotencyKey, request),
+                () -> messageService.sendMessage(conversationId, principal.getUserId(), request));
         return ResponseEntity.status(HttpStatus.CREATED).body(message);
     }
 
@@ -124,11 +183,20 @@ public class ConversationController {
     }
 
     @GetMapping(value = "/{conversationId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    @Operation(summary = "Stream AI response (SSE)")
-    public Flux<StreamChunk> streamResponse(
+    @Operation(summary = "Stream AI response (SSE)",
+            description = "Retries carrying the same Idempotency-Key header get the original generation "
+                    + "instead of a new one")
+    public Flux<ServerSentEvent<String>> streamResponse(
             @AuthenticationPrincipal UserPrincipal principal,
-            @PathVariable UUID conversationId) {
-        return messageService.streamResponse(conversationId, principal.getUserId());
+            @PathVariable UUID conversationId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            return resumableStreams.resume(principal.getUserId(), conversationId, lastEventId);
+        }
+        return idempotentSubmissions.stream(conversationId, principal.getUserId(),
+                IdempotentSubmissions.keyOf(idempotencyKey, null),
+                () -> messageService.streamResponse(conversationId, principal.getUserId()));
     }
 
     @PutMapping("/{conversationId}/messages/{messageId}")
@@ -164,4 +232,13 @@ public class ConversationController {
                 conversationId, principal.getUserId(), query, pageable);
         return ResponseEntity.ok(messages);
     }
+
+    /**
+     * Fingerprint of everything a listing renders, so any change to a row, its
+     * companion or the page boundaries yields a new tag.
+     */
+    private static String listingETag(Page<ConversationDTO> page) {
+        String state = page.getNumber() + ":" + page.getSize() + ":" + page.getTotalElements() + ":" + page.getContent();
+        return "W/\"" + DigestUtils.md5DigestAsHex(state.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
 }
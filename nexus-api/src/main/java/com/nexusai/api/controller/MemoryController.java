@@ -0,0 +1,58 @@
+package com.nexusai.api.controller;
+
+import com.nexusai.auth.security.UserPrincipal;
+import com.nexusai.conversation.dto.MemoryDTO;
+import com.nexusai.conversation.dto.RememberRequest;
+import com.nexusai.conversation.service.CompanionMemoryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/companions/{companionId}/memories")
+@RequiredArgsConstructor
+@Tag(name = "Memories", description = "Long-term memories of a companion about the user")
+public class MemoryController {
+
+    private final CompanionMemoryService companionMemoryService;
+
+    @PostMapping
+    @Operation(summary = "Store a long-term memory")
+    public ResponseEntity<MemoryDTO> remember(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @PathVariable UUID companionId,
+            @Valid @RequestBody RememberRequest request) {
+        MemoryDTO memory = companionMemoryService.remember(principal.getUserId(), companionId, request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(memory);
+    }
+
+    @GetMapping
+    @Operation(summary = "Recall the memories most relevant to a text")
+    public ResponseEntity<List<MemoryDTO>> recall(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @PathVariable UUID companionId,
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "5") int limit) {
+        List<MemoryDTO> memories = companionMemoryService.recall(
+                principal.getUserId(), companionId, query, Math.min(Math.max(limit, 1), 50));
+        return ResponseEntity.ok(memories);
+    }
+
+    @DeleteMapping("/{memoryId}")
+    @Operation(summary = "Forget a memory")
+    public ResponseEntity<Void> forget(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @PathVariable UUID companionId,
+            @PathVariable UUID memoryId) {
+        companionMemoryService.forget(principal.getUserId(), companionId, memoryId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.nexusai.api.controller;
+
+import com.nexusai.auth.security.UserPrincipal;
+import com.nexusai.conversation.dto.MessageSearchResultDTO;
+import com.nexusai.conversation.search.MessageSearchService;
+import com.nexusai.conversation.search.lucene.LuceneMessageIndexer;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/search")
+@RequiredArgsConstructor
+@Tag(name = "Search", description = "Search across the user's conversations")
+public class SearchController {
+
+    private final MessageSearchService messageSearchService;
+    private final ObjectProvider<LuceneMessageIndexer> luceneMessageIndexer;
+
+    @GetMapping("/messages")
+    @Operation(summary = "Ranked full-text search over all of the user's messages")
+    public ResponseEntity<MessageSearchResultDTO> searchMessages(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int limit) {
+        MessageSearchResultDTO result = messageSearchService.search(
+                principal.getUserId(), query, after, limit);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/index/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild the embedded message search index from the database")
+    public ResponseEntity<Void> rebuildIndex() {
+        LuceneMessageIndexer indexer = luceneMessageIndexer.getIfAvailable();
+        if (indexer == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return indexer.rebuild()
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+}
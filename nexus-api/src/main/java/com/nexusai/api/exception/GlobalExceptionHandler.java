@@ -96,6 +96,7 @@ public class GlobalExceptionHandler {
             case "AUTH_FAILED", "INVALID_TOKEN", "TOKEN_REVOKED" -> HttpStatus.UNAUTHORIZED;
             case "ACCOUNT_SUSPENDED", "ACCOUNT_DELETED" -> HttpStatus.FORBIDDEN;
             case "LIMIT_REACHED" -> HttpStatus.TOO_MANY_REQUESTS;
+            case "REQUEST_IN_PROGRESS", "IDEMPOTENCY_KEY_REUSED" -> HttpStatus.CONFLICT;
             default -> HttpStatus.BAD_REQUEST;
         };
     }
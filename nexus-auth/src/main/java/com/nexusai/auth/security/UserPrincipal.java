@@ -3,15 +3,22 @@ package com.nexusai.auth.security;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.security.Principal;
 import java.util.UUID;
 
 /**
- * Represents the authenticated user principal.
+ * Represents the authenticated user principal. Its name is the user id, which
+ * is what {@code Authentication.getName()} returns.
  */
 @Data
 @AllArgsConstructor
-public class UserPrincipal {
+public class UserPrincipal implements Principal {
     private UUID userId;
     private String email;
     private String role;
+
+    @Override
+    public String getName() {
+        return userId.toString();
+    }
 }
@@ -0,0 +1,9 @@
+package com.nexusai.companion.event;
+
+import java.util.UUID;
+
+/**
+ * Published after a companion's persona or status has been modified.
+ * Listeners holding cached copies of the companion must drop them.
+ */
+public record CompanionChangedEvent(UUID companionId) {}
@@ -5,6 +5,7 @@ import com.nexusai.commons.exception.ResourceNotFoundException;
 import com.nexusai.companion.dto.CompanionCreateRequest;
 import com.nexusai.companion.dto.CompanionResponse;
 import com.nexusai.companion.dto.CompanionUpdateRequest;
+import com.nexusai.companion.event.CompanionChangedEvent;
 import com.nexusai.core.entity.Companion;
 import com.nexusai.core.entity.User;
 import com.nexusai.core.enums.CompanionStatus;
@@ -12,6 +13,7 @@ import com.nexusai.core.repository.CompanionRepository;
 import com.nexusai.core.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -28,6 +30,7 @@ public class CompanionService {
 
     private final CompanionRepository companionRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public CompanionResponse createCompanion(UUID userId, CompanionCreateRequest request) {
@@ -89,6 +92,7 @@ public class CompanionService {
         if (request.getIsPublic() != null) companion.setIsPublic(request.getIsPublic());
 
         companion = companionRepository.save(companion);
+        eventPublisher.publishEvent(new CompanionChangedEvent(companionId));
         log.info("Companion updated: {}", companionId);
 
         return mapToResponse(companion);
@@ -99,6 +103,7 @@ public class CompanionService {
         Companion companion = findCompanionByIdAndUser(companionId, userId);
         companion.setStatus(CompanionStatus.DELETED);
         companionRepository.save(companion);
+        eventPublisher.publishEvent(new CompanionChangedEvent(companionId));
         log.info("Companion deleted: {}", companionId);
     }
 
@@ -0,0 +1,285 @@
+package com.nexusai.conversation.archive;
+
+import com.nexusai.commons.exception.BusinessException;
+import com.nexusai.conversation.event.ConversationDeletedEvent;
+import com.nexusai.conversation.event.MessagesArchivedEvent;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.entity.MessageArchiveSegment;
+import com.nexusai.core.repository.MessageArchiveSegmentRepository;
+import com.nexusai.core.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Cold tier of conversation history.
+ *
+ * Old messages are moved, oldest first, into zstd-compressed
+ * {@link MessageSegment}s in object storage; a {@link MessageArchiveSegment}
+ * row is left behind as the tombstone of each range. Archived messages are
+ * always older than the messages still in {@code messages}, so a history read
+ * is the hot rows followed by the segments, newest range first. Archived
+ * messages are read-only, and are not in any search backend: conversation
+ * search falls through to {@link #search} the same way history does.
+ */
+@Component
+@Slf4j
+public class MessageArchive {
+
+    static final String KEY_PREFIX = "message-archive/";
+
+    private final MessageRepository messageRepository;
+    private final MessageArchiveSegmentRepository segmentRepository;
+    private final SegmentStore store;
+    private final SegmentCache cache;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int segmentSize;
+    private final int compressionLevel;
+
+    public MessageArchive(MessageRepository messageRepository,
+                          MessageArchiveSegmentRepository segmentRepository,
+                          SegmentStore store,
+                          SegmentCache cache,
+                          TransactionTemplate transactionTemplate,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${nexusai.conversation.archive.segment-size:5000}") int segmentSize,
+                          @Value("${nexusai.conversation.archive.compression-level:9}") int compressionLevel) {
+        this.messageRepository = messageRepository;
+        this.segmentRepository = segmentRepository;
+        this.store = store;
+        this.cache = cache;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.segmentSize = segmentSize;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Segments of a conversation, newest range first; empty if nothing was archived.
+     */
+    public List<MessageArchiveSegment> segments(UUID conversationId) {
+        return segmentRepository.findByConversationIdOrderByLastCreatedAtDescCreatedAtDesc(conversationId);
+    }
+
+    public static long count(List<MessageArchiveSegment> segments) {
+        return segments.stream().mapToLong(MessageArchiveSegment::getMessageCount).sum();
+    }
+
+    /**
+     * Archived messages newest first, after skipping the {@code skip} newest.
+     * Only the segments overlapping the requested range are fetched.
+     */
+    public List<Message> read(List<MessageArchiveSegment> segments, long skip, int limit) {
+        List<Message> messages = new ArrayList<>(Math.max(0, limit));
+        long toSkip = skip;
+        for (MessageArchiveSegment segment : segments) {
+            if (messages.size() >= limit) {
+                break;
+            }
+            int size = segment.getMessageCount();
+            if (toSkip >= size) {
+                toSkip -= size;
+                continue;
+            }
+            // Rows are stored oldest first
+            int to = size - (int) toSkip;
+            int from = Math.max(0, to - (limit - messages.size()));
+            messages.addAll(decode(segment, from, to).reversed());
+            toSkip = 0;
+        }
+        return messages;
+    }
+
+    /**
+     * Archived messages strictly older than the {@code (createdAt, id)} cursor,
+     * newest first, in the order of {@code MessageRepository#findBefore}.
+     */
+    public List<Message> readBefore(List<MessageArchiveSegment> segments, LocalDateTime createdAt, UUID id, int limit) {
+        List<Message> messages = new ArrayList<>(Math.max(0, limit));
+        for (MessageArchiveSegment segment : segments) {
+            if (messages.size() >= limit) {
+                break;
+            }
+            if (createdAt != null && segment.getFirstCreatedAt().isAfter(createdAt)) {
+                continue;
+            }
+            for (Message message : decode(segment, 0, segment.getMessageCount()).reversed()) {
+                if (messages.size() >= limit) {
+                    break;
+                }
+                if (createdAt == null || isBefore(message, createdAt, id)) {
+                    messages.add(message);
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Archived messages whose content contains {@code query}, ignoring case,
+     * newest first and at most {@code limit}. Every segment is decoded, so this
+     * is a scan of the conversation's cold history (served from the local cache
+     * once read).
+     */
+    public List<Message> search(List<MessageArchiveSegment> segments, String query, int limit) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<Message> matches = new ArrayList<>();
+        for (MessageArchiveSegment segment : segments) {
+            for (Message message : decode(segment, 0, segment.getMessageCount()).reversed()) {
+                if (matches.size() >= limit) {
+                    return matches;
+                }
+                if (message.getContent() != null && message.getContent().toLowerCase(Locale.ROOT).contains(needle)) {
+                    matches.add(message);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Visits the archived messages created in {@code [from, to)}, oldest
+     * first, decoding one segment at a time.
+     */
+    public void forEachBetween(List<MessageArchiveSegment> segments, LocalDateTime from, LocalDateTime to,
+                               Consumer<Message> action) {
+        for (MessageArchiveSegment segment : segments.reversed()) {
+            if (segment.getLastCreatedAt().isBefore(from) || !segment.getFirstCreatedAt().isBefore(to)) {
+                continue;
+            }
+            for (Message message : decode(segment, 0, segment.getMessageCount())) {
+                if (!message.getCreatedAt().isBefore(from) && message.getCreatedAt().isBefore(to)) {
+                    action.accept(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the messages of a conversation created before {@code before} to
+     * the archive, one segment per transaction. Stops short of the oldest
+     * message with attachments or reactions, whose rows would otherwise be
+     * cascaded away. Returns without archiving if another node is archiving
+     * the same conversation.
+     *
+     * @return the number of messages archived
+     */
+    public int archive(UUID conversationId, LocalDateTime before) {
+        LocalDateTime pinned = messageRepository.findOldestPinnedAt(conversationId);
+        LocalDateTime cutoff = pinned != null && pinned.isBefore(before) ? pinned : before;
+        int archived = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> archiveSegment(conversationId, cutoff));
+            if (moved == null || moved <= 0) {
+                break;
+            }
+            archived += moved;
+            if (moved < segmentSize) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            log.info("Archived {} messages of conversation {}", archived, conversationId);
+        }
+        return archived;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationDeleted(ConversationDeletedEvent event) {
+        // The tombstones went with the conversation (ON DELETE CASCADE)
+        try {
+            store.deleteAll(prefix(event.conversationId()));
+        } catch (IOException e) {
+            log.warn("Failed to delete archived segments of conversation {}", event.conversationId(), e);
+        }
+    }
+
+    /**
+     * @return messages moved, 0 when none is left, -1 when the lock is taken
+     */
+    private int archiveSegment(UUID conversationId, LocalDateTime cutoff) {
+        if (!segmentRepository.tryLockForArchival(conversationId)) {
+            return -1;
+        }
+        List<Message> batch = messageRepository.findOldestBefore(conversationId, cutoff, segmentSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        byte[] segment = MessageSegment.encode(batch, compressionLevel);
+        String key = prefix(conversationId) + UUID.randomUUID() + ".seg";
+        try {
+            store.put(key, segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            segmentRepository.save(MessageArchiveSegment.builder()
+                    .conversationId(conversationId)
+                    .objectKey(key)
+                    .firstCreatedAt(batch.get(0).getCreatedAt())
+                    .lastCreatedAt(batch.get(batch.size() - 1).getCreatedAt())
+                    .messageCount(batch.size())
+                    .compressedBytes((long) segment.length)
+                    .build());
+            List<UUID> ids = batch.stream().map(Message::getId).toList();
+            messageRepository.deleteArchived(conversationId,
+                    batch.get(0).getCreatedAt(), batch.get(batch.size() - 1).getCreatedAt(), ids);
+            segmentRepository.flush();
+            eventPublisher.publishEvent(new MessagesArchivedEvent(conversationId, ids));
+        } catch (RuntimeException e) {
+            // A commit failure past this point still leaves an orphan object, which only costs storage
+            deleteQuietly(key);
+            throw e;
+        }
+        return batch.size();
+    }
+
+    private List<Message> decode(MessageArchiveSegment segment, int from, int to) {
+        try {
+            return MessageSegment.decode(cache.get(segment.getObjectKey()), segment.getConversationId(), from, to);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to read archived segment {}", segment.getObjectKey(), e);
+            cache.evict(segment.getObjectKey());
+            throw new BusinessException("ARCHIVE_UNAVAILABLE", "Archived messages are temporarily unavailable");
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            store.deleteAll(key);
+        } catch (IOException e) {
+            log.warn("Failed to delete orphaned segment {}", key, e);
+        }
+    }
+
+    /**
+     * {@code (createdAt, id) < (cursorCreatedAt, cursorId)}, with ids compared
+     * as unsigned bytes like Postgres does.
+     */
+    private static boolean isBefore(Message message, LocalDateTime createdAt, UUID id) {
+        int byTime = message.getCreatedAt().compareTo(createdAt);
+        if (byTime != 0) {
+            return byTime < 0;
+        }
+        UUID other = message.getId();
+        int byHigh = Long.compareUnsigned(other.getMostSignificantBits(), id.getMostSignificantBits());
+        return byHigh != 0 ? byHigh < 0 : Long.compareUnsigned(other.getLeastSignificantBits(), id.getLeastSignificantBits()) < 0;
+    }
+
+    private static String prefix(UUID conversationId) {
+        return KEY_PREFIX + conversationId + "/";
+    }
+}
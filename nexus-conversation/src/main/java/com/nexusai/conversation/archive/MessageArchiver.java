@@ -0,0 +1,66 @@
+package com.nexusai.conversation.archive;
+
+import com.nexusai.core.repository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Periodically moves messages older than {@code min-age} out of archived
+ * conversations and conversations idle for {@code idle-after}. Safe to run on
+ * every node: conversations are locked for the duration of each segment.
+ */
+@Component
+@Slf4j
+public class MessageArchiver {
+
+    private final ConversationRepository conversationRepository;
+    private final MessageArchive messageArchive;
+    private final boolean enabled;
+    private final Duration minAge;
+    private final Duration idleAfter;
+    private final int conversationsPerRun;
+
+    public MessageArchiver(ConversationRepository conversationRepository,
+                           MessageArchive messageArchive,
+                           @Value("${nexusai.conversation.archive.enabled:false}") boolean enabled,
+                           @Value("${nexusai.conversation.archive.min-age:P90D}") Duration minAge,
+                           @Value("${nexusai.conversation.archive.idle-after:P30D}") Duration idleAfter,
+                           @Value("${nexusai.conversation.archive.conversations-per-run:100}") int conversationsPerRun) {
+        this.conversationRepository = conversationRepository;
+        this.messageArchive = messageArchive;
+        this.enabled = enabled;
+        this.minAge = minAge;
+        this.idleAfter = idleAfter;
+        this.conversationsPerRun = conversationsPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${nexusai.conversation.archive.interval:PT1H}",
+            initialDelayString = "${nexusai.conversation.archive.interval:PT1H}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime before = now.minus(minAge);
+        List<UUID> conversations = conversationRepository.findArchivable(now.minus(idleAfter), before, conversationsPerRun);
+        int archived = 0;
+        for (UUID conversationId : conversations) {
+            try {
+                archived += messageArchive.archive(conversationId, before);
+            } catch (Exception e) {
+                // Nothing was deleted for the failed segment; the next run retries it
+                log.warn("Failed to archive messages of conversation {}", conversationId, e);
+            }
+        }
+        if (archived > 0) {
+            log.info("Archived {} messages from {} conversations", archived, conversations.size());
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.nexusai.conversation.archive;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.enums.MessageRole;
+import com.nexusai.core.enums.MessageType;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Codec of an archive segment: the messages of one conversation range, oldest
+ * first, stored column by column and zstd-compressed as a whole.
+ *
+ * Layout before compression:
+ * <pre>
+ *   int magic, short version, int count
+ *   created_at, updated_at     long[count]   epoch micros, UTC
+ *   id                         long[count] most significant, long[count] least significant
+ *   role, type                 dictionary of names, then byte[count] codes
+ *   tokens_used                int[count]    Integer.MIN_VALUE for null
+ *   is_edited                  byte[count]   0 false, 1 true, 2 null
+ *   parent_message_id          byte[count] presence, then (msb, lsb) for each present one
+ *   content, media_url,
+ *   media_type, metadata       int[count] UTF-8 lengths (-1 for null), then the bytes
+ * </pre>
+ * Keeping a column's values together lets zstd find the repetition in roles,
+ * timestamps and JSON keys, and lets a reader skip the text of rows outside the
+ * range it wants.
+ */
+final class MessageSegment {
+
+    private static final int MAGIC = 0x4E585347; // "NXSG"
+    private static final short VERSION = 1;
+    private static final int NULL_TOKENS = Integer.MIN_VALUE;
+
+    private MessageSegment() {
+    }
+
+    /**
+     * @param messages oldest first
+     */
+    static byte[] encode(List<Message> messages, int level) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new ZstdOutputStream(bytes, level))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(messages.size());
+            for (Message message : messages) {
+                out.writeLong(toMicros(message.getCreatedAt()));
+            }
+            for (Message message : messages) {
+                out.writeLong(toMicros(message.getUpdatedAt() != null ? message.getUpdatedAt() : message.getCreatedAt()));
+            }
+            for (Message message : messages) {
+                out.writeLong(message.getId().getMostSignificantBits());
+            }
+            for (Message message : messages) {
+                out.writeLong(message.getId().getLeastSignificantBits());
+            }
+            writeDictionary(out, messages.stream().map(message -> message.getRole().name()).toList());
+            writeDictionary(out, messages.stream().map(message -> message.getType().name()).toList());
+            for (Message message : messages) {
+                out.writeInt(message.getTokensUsed() != null ? message.getTokensUsed() : NULL_TOKENS);
+            }
+            for (Message message : messages) {
+                out.writeByte(message.getIsEdited() == null ? 2 : message.getIsEdited() ? 1 : 0);
+            }
+            for (Message message : messages) {
+                out.writeBoolean(message.getParentMessageId() != null);
+            }
+            for (Message message : messages) {
+                if (message.getParentMessageId() != null) {
+                    out.writeLong(message.getParentMessageId().getMostSignificantBits());
+                    out.writeLong(message.getParentMessageId().getLeastSignificantBits());
+                }
+            }
+            writeStrings(out, messages.stream().map(Message::getContent).toList());
+            writeStrings(out, messages.stream().map(Message::getMediaUrl).toList());
+            writeStrings(out, messages.stream().map(Message::getMediaType).toList());
+            writeStrings(out, messages.stream().map(Message::getMetadata).toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Message> decode(byte[] segment, UUID conversationId) {
+        return decode(segment, conversationId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodes rows {@code from} (inclusive) to {@code to} (exclusive), oldest first.
+     */
+    static List<Message> decode(byte[] segment, UUID conversationId, int from, int to) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new ZstdInputStream(new ByteArrayInputStream(segment))))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IllegalStateException("Not a message segment");
+            }
+            int count = in.readInt();
+            int start = Math.max(0, Math.min(from, count));
+            int end = Math.max(start, Math.min(to, count));
+            int rows = end - start;
+
+            long[] createdAt = readLongs(in, count, start, end);
+            long[] updatedAt = readLongs(in, count, start, end);
+            long[] idMsb = readLongs(in, count, start, end);
+            long[] idLsb = readLongs(in, count, start, end);
+            String[] roles = readDictionary(in, count, start, end);
+            String[] types = readDictionary(in, count, start, end);
+
+            int[] tokens = new int[rows];
+            in.skipNBytes((long) start * Integer.BYTES);
+            for (int i = 0; i < rows; i++) {
+                tokens[i] = in.readInt();
+            }
+            in.skipNBytes((long) (count - end) * Integer.BYTES);
+
+            byte[] edited = new byte[rows];
+            in.skipNBytes(start);
+            in.readFully(edited);
+            in.skipNBytes(count - end);
+
+            boolean[] hasParent = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                hasParent[i] = in.readBoolean();
+            }
+            UUID[] parents = new UUID[rows];
+            for (int i = 0; i < count; i++) {
+                if (hasParent[i]) {
+                    long msb = in.readLong();
+                    long lsb = in.readLong();
+                    if (i >= start && i < end) {
+                        parents[i - start] = new UUID(msb, lsb);
+                    }
+                }
+            }
+
+            String[] content = readStrings(in, count, start, end);
+            String[] mediaUrl = readStrings(in, count, start, end);
+            String[] mediaType = readStrings(in, count, start, end);
+            String[] metadata = readStrings(in, count, start, end);
+
+            List<Message> messages = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                Message message = Message.builder()
+                        .conversationId(conversationId)
+                        .role(MessageRole.valueOf(roles[i]))
+                        .type(MessageType.valueOf(types[i]))
+                        .content(content[i])
+                        .tokensUsed(tokens[i] == NULL_TOKENS ? null : tokens[i])
+                        .mediaUrl(mediaUrl[i])
+                        .mediaType(mediaType[i])
+                        .metadata(metadata[i])
+                        .isEdited(edited[i] == 2 ? null : edited[i] == 1)
+                        .parentMessageId(parents[i])
+                        .build();
+                message.setId(new UUID(idMsb[i], idLsb[i]));
+                message.setCreatedAt(fromMicros(createdAt[i]));
+                message.setUpdatedAt(fromMicros(updatedAt[i]));
+                messages.add(message);
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt message segment", e);
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, List<String> values) throws IOException {
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        for (String value : values) {
+            codes.putIfAbsent(value, codes.size());
+        }
+        out.writeByte(codes.size());
+        for (String name : codes.keySet()) {
+            out.writeUTF(name);
+        }
+        for (String value : values) {
+            out.writeByte(codes.get(value));
+        }
+    }
+
+    private static String[] readDictionary(DataInputStream in, int count, int start, int end) throws IOException {
+        String[] names = new String[in.readUnsignedByte()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        String[] values = new String[end - start];
+        in.skipNBytes(start);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = names[in.readUnsignedByte()];
+        }
+        in.skipNBytes(count - end);
+        return values;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(values.size());
+        for (String value : values) {
+            byte[] utf8 = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+            encoded.add(utf8);
+            out.writeInt(utf8 != null ? utf8.length : -1);
+        }
+        for (byte[] utf8 : encoded) {
+            if (utf8 != null) {
+                out.write(utf8);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in, int count, int start, int end) throws IOException {
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = in.readInt();
+        }
+        String[] values = new String[end - start];
+        for (int i = 0; i < count; i++) {
+            int length = lengths[i];
+            if (i < start || i >= end) {
+                in.skipNBytes(Math.max(0, length));
+            } else if (length >= 0) {
+                byte[] utf8 = new byte[length];
+                in.readFully(utf8);
+                values[i - start] = new String(utf8, StandardCharsets.UTF_8);
+            }
+        }
+        return values;
+    }
+
+    private static long[] readLongs(DataInputStream in, int count, int start, int end) throws IOException {
+        long[] values = new long[end - start];
+        in.skipNBytes((long) start * Long.BYTES);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        in.skipNBytes((long) (count - end) * Long.BYTES);
+        return values;
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, time.toInstant(ZoneOffset.UTC));
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofInstant(Instant.EPOCH.plus(micros, ChronoUnit.MICROS), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,102 @@
+package com.nexusai.conversation.archive;
+
+import io.minio.BucketExistsArgs;
+import io.minio.GetObjectArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Segments in the MinIO bucket shared with nexus-media.
+ */
+@Component
+public class MinioSegmentStore implements SegmentStore {
+
+    private static final String CONTENT_TYPE = "application/vnd.nexusai.message-segment+zstd";
+
+    private final MinioClient minioClient;
+    private final String bucket;
+    private volatile boolean bucketChecked;
+
+    public MinioSegmentStore(MinioClient minioClient,
+                             @Value("${nexusai.storage.minio.bucket:nexusai}") String bucket) {
+        this.minioClient = minioClient;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void put(String key, byte[] segment) throws IOException {
+        try {
+            ensureBucketExists();
+            minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(key)
+                    .stream(new ByteArrayInputStream(segment), segment.length, -1)
+                    .contentType(CONTENT_TYPE)
+                    .build());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to store segment " + key, e);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        try (InputStream in = minioClient.getObject(GetObjectArgs.builder().bucket(bucket).object(key).build())) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to read segment " + key, e);
+        }
+    }
+
+    @Override
+    public void deleteAll(String prefix) throws IOException {
+        try {
+            List<DeleteObject> objects = new ArrayList<>();
+            for (Result<Item> item : minioClient.listObjects(ListObjectsArgs.builder()
+                    .bucket(bucket).prefix(prefix).recursive(true).build())) {
+                objects.add(new DeleteObject(item.get().objectName()));
+            }
+            if (objects.isEmpty()) {
+                return;
+            }
+            // Lazy: nothing is deleted until the results are consumed
+            for (Result<DeleteError> error : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(bucket).objects(objects).build())) {
+                DeleteError failure = error.get();
+                throw new IOException("Failed to delete segment " + failure.objectName() + ": " + failure.message());
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to delete segments under " + prefix, e);
+        }
+    }
+
+    private void ensureBucketExists() throws Exception {
+        if (bucketChecked) {
+            return;
+        }
+        if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
+            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+        }
+        bucketChecked = true;
+    }
+}
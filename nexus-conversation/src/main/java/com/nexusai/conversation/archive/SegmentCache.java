@@ -0,0 +1,114 @@
+package com.nexusai.conversation.archive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+/**
+ * Local disk copies of recently read segments, evicted least recently used
+ * once they exceed {@code max-bytes}. The cache starts empty on every boot:
+ * files left by a previous process are deleted rather than trusted.
+ */
+@Component
+@Slf4j
+public class SegmentCache {
+
+    private final Path directory;
+    private final SegmentStore store;
+    private final Cache<String, Path> files;
+
+    public SegmentCache(SegmentStore store,
+                        @Value("${nexusai.conversation.archive.cache.path:./data/archive-cache}") Path directory,
+                        @Value("${nexusai.conversation.archive.cache.max-bytes:536870912}") long maxBytes) {
+        this.store = store;
+        this.directory = directory;
+        this.files = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxBytes / 1024))
+                .weigher((String key, Path file) -> weightOf(file))
+                .removalListener((String key, Path file, RemovalCause cause) -> delete(file))
+                .executor(Runnable::run)
+                .build();
+        clear();
+    }
+
+    /**
+     * A segment's bytes, downloading it on a miss.
+     */
+    public byte[] get(String key) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Path file;
+            try {
+                file = files.get(key, this::download);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            try {
+                return Files.readAllBytes(file);
+            } catch (NoSuchFileException e) {
+                // Evicted between lookup and read
+                files.asMap().remove(key, file);
+                if (attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public void evict(String key) {
+        files.invalidate(key);
+    }
+
+    private Path download(String key) {
+        try {
+            byte[] segment = store.get(key);
+            Path file = directory.resolve(key.replace('/', '_'));
+            Path temp = directory.resolve(file.getFileName() + ".tmp");
+            Files.write(temp, segment);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void clear() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> stale = Files.list(directory)) {
+                stale.forEach(SegmentCache::delete);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare archive cache " + directory, e);
+        }
+    }
+
+    private static int weightOf(Path file) {
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(1, Files.size(file) / 1024));
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete cached segment {}", file, e);
+        }
+    }
+}
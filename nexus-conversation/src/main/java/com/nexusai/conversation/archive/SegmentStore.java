@@ -0,0 +1,18 @@
+package com.nexusai.conversation.archive;
+
+import java.io.IOException;
+
+/**
+ * Object storage holding archive segments.
+ */
+public interface SegmentStore {
+
+    void put(String key, byte[] segment) throws IOException;
+
+    byte[] get(String key) throws IOException;
+
+    /**
+     * Deletes every object whose key starts with {@code prefix}.
+     */
+    void deleteAll(String prefix) throws IOException;
+}
@@ -0,0 +1,17 @@
+package com.nexusai.conversation.cache;
+
+import com.nexusai.core.entity.Companion;
+
+import java.util.UUID;
+
+/**
+ * Immutable view of the companion persona used to prompt the model.
+ */
+public record CompanionSnapshot(UUID id, String name, String avatarUrl, String systemPrompt,
+                                String modelProvider, String modelName) {
+
+    public static CompanionSnapshot from(UUID id, Companion companion) {
+        return new CompanionSnapshot(id, companion.getName(), companion.getAvatarUrl(),
+                companion.getSystemPrompt(), companion.getModelProvider(), companion.getModelName());
+    }
+}
@@ -0,0 +1,22 @@
+package com.nexusai.conversation.cache;
+
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.enums.ConversationStatus;
+
+import java.util.UUID;
+
+/**
+ * Immutable view of the conversation fields the chat path needs. Counters and
+ * activity timestamps are deliberately left out: they change on every turn.
+ */
+public record ConversationSnapshot(UUID id, UUID userId, UUID companionId, ConversationStatus status) {
+
+    public static ConversationSnapshot from(UUID id, Conversation conversation) {
+        return new ConversationSnapshot(id, conversation.getUserId(), conversation.getCompanionId(),
+                conversation.getStatus());
+    }
+
+    public boolean isOwnedBy(UUID userId) {
+        return this.userId != null && this.userId.equals(userId);
+    }
+}
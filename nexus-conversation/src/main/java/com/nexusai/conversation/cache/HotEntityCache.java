@@ -0,0 +1,120 @@
+package com.nexusai.conversation.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.core.entity.Companion;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local cache of conversation and companion snapshots for the chat path.
+ *
+ * Every turn needs the conversation's owner and companion and the companion's
+ * prompt and model, none of which change between turns. Entries are dropped by
+ * {@link HotEntityInvalidator} when a conversation or companion is modified on
+ * any node; the TTL only bounds staleness should an invalidation be lost.
+ * Loads run inside the cache so that an invalidation arriving mid-load is
+ * applied after it rather than overwritten by it. Missing rows are never cached.
+ */
+@Component
+@Slf4j
+public class HotEntityCache {
+
+    private final ConversationRepository conversationRepository;
+    private final CompanionRepository companionRepository;
+    private final Cache<UUID, ConversationSnapshot> conversations;
+    private final Cache<UUID, CompanionSnapshot> companions;
+    /** Bumped by every companion invalidation, to detect one racing a bulk load. */
+    private final AtomicLong companionInvalidations = new AtomicLong();
+
+    public HotEntityCache(ConversationRepository conversationRepository,
+                          CompanionRepository companionRepository,
+                          @Value("${nexusai.conversation.hot-cache.max-size:50000}") long maxSize,
+                          @Value("${nexusai.conversation.hot-cache.ttl:PT10M}") Duration ttl) {
+        this.conversationRepository = conversationRepository;
+        this.companionRepository = companionRepository;
+        this.conversations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .build();
+        this.companions = Caffeine.newBuilder()
+                .maximumSize(maxSize / 10 + 1)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Returns the conversation if it exists and belongs to the user.
+     *
+     * @throws ResourceNotFoundException if it does not exist or belongs to someone else
+     */
+    public ConversationSnapshot conversation(UUID conversationId, UUID userId) {
+        ConversationSnapshot snapshot = conversations.get(conversationId, id ->
+                conversationRepository.findByIdAndUserId(id, userId)
+                        .map(conversation -> ConversationSnapshot.from(id, conversation))
+                        .orElseThrow(() -> new ResourceNotFoundException("Conversation", id.toString())));
+        if (!snapshot.isOwnedBy(userId)) {
+            throw new ResourceNotFoundException("Conversation", conversationId.toString());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @throws ResourceNotFoundException if the companion does not exist
+     */
+    public CompanionSnapshot companion(UUID companionId) {
+        return companions.get(companionId, id ->
+                companionRepository.findById(id)
+                        .map(companion -> CompanionSnapshot.from(id, companion))
+                        .orElseThrow(() -> new ResourceNotFoundException("Companion", id.toString())));
+    }
+
+    /**
+     * Resolves several companions at once, loading every miss in a single query.
+     * Companions that no longer exist are absent from the result.
+     */
+    public Map<UUID, CompanionSnapshot> companions(Collection<UUID> companionIds) {
+        Map<UUID, CompanionSnapshot> found = new HashMap<>(companions.getAllPresent(companionIds));
+        Set<UUID> missing = new HashSet<>(companionIds);
+        missing.removeAll(found.keySet());
+        missing.remove(null);
+        if (!missing.isEmpty()) {
+            long generation = companionInvalidations.get();
+            Map<UUID, CompanionSnapshot> loaded = new HashMap<>();
+            for (Companion companion : companionRepository.findAllById(missing)) {
+                loaded.put(companion.getId(), CompanionSnapshot.from(companion.getId(), companion));
+            }
+            companions.putAll(loaded);
+            if (companionInvalidations.get() != generation) {
+                // An invalidation ran during the query and may predate the rows read
+                companions.invalidateAll(loaded.keySet());
+            }
+            found.putAll(loaded);
+        }
+        return found;
+    }
+
+    public void invalidateConversation(UUID conversationId) {
+        conversations.invalidate(conversationId);
+    }
+
+    public void invalidateCompanion(UUID companionId) {
+        companionInvalidations.incrementAndGet();
+        companions.invalidate(companionId);
+    }
+}
@@ -0,0 +1,76 @@
+package com.nexusai.conversation.cache;
+
+import com.nexusai.companion.event.CompanionChangedEvent;
+import com.nexusai.conversation.event.ConversationChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Keeps {@link HotEntityCache} coherent across nodes.
+ *
+ * Change events are handled once the publishing transaction has committed: the
+ * local entry is dropped and the change is broadcast on a Redis channel so the
+ * other nodes drop theirs. Messages are {@code <type>:<id>:<origin node>}; a node
+ * ignores its own broadcasts.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HotEntityInvalidator implements MessageListener {
+
+    public static final String CHANNEL = "nexusai:cache:invalidate";
+
+    private static final String CONVERSATION = "conversation";
+    private static final String COMPANION = "companion";
+
+    private final HotEntityCache hotEntityCache;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationChanged(ConversationChangedEvent event) {
+        hotEntityCache.invalidateConversation(event.conversationId());
+        broadcast(CONVERSATION, event.conversationId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCompanionChanged(CompanionChangedEvent event) {
+        hotEntityCache.invalidateCompanion(event.companionId());
+        broadcast(COMPANION, event.companionId());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":");
+        if (parts.length != 3 || nodeId.equals(parts[2])) {
+            return;
+        }
+        try {
+            UUID id = UUID.fromString(parts[1]);
+            switch (parts[0]) {
+                case CONVERSATION -> hotEntityCache.invalidateConversation(id);
+                case COMPANION -> hotEntityCache.invalidateCompanion(id);
+                default -> log.debug("Ignoring invalidation for unknown type {}", parts[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Malformed cache invalidation message: {}", new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void broadcast(String type, UUID id) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, type + ":" + id + ":" + nodeId);
+        } catch (Exception e) {
+            // Other nodes fall back to the cache TTL
+            log.warn("Failed to broadcast {} {} invalidation", type, id, e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.nexusai.conversation.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler for blocking persistence (JPA/JDBC) called from reactive code.
+ *
+ * Reactive pipelines must never run repository calls on an event-loop thread:
+ * one slow query stalls every stream sharing that loop. Blocking work is moved
+ * here with {@code subscribeOn}/{@code publishOn}. Every task gets its own
+ * virtual thread (virtual threads are never pooled), so waiting on the
+ * database is cheap; a semaphore lets at most {@code max-concurrency} of them
+ * run at once — there is no point in more callers than pooled connections —
+ * and at most {@code queue-capacity} wait for a permit. Beyond that the task
+ * fails fast with a {@link RejectedExecutionException} instead of piling up.
+ */
+@Configuration
+public class PersistenceSchedulerConfig {
+
+    public static final String THREAD_PREFIX = "persistence-";
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler persistenceScheduler(
+            @Value("${nexusai.conversation.persistence.max-concurrency:${spring.datasource.hikari.maximum-pool-size:20}}") int maxConcurrency,
+            @Value("${nexusai.conversation.persistence.queue-capacity:1000}") int queueCapacity) {
+        return boundedVirtual(maxConcurrency, queueCapacity);
+    }
+
+    /**
+     * A scheduler running at most {@code maxConcurrency} tasks at once, each on a fresh virtual thread.
+     */
+    public static Scheduler boundedVirtual(int maxConcurrency, int queueCapacity) {
+        // The named form of Executors.newVirtualThreadPerTaskExecutor()
+        ExecutorService virtualThreads = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(THREAD_PREFIX, 0).factory());
+        return Schedulers.fromExecutorService(
+                new BoundedExecutor(virtualThreads, maxConcurrency, queueCapacity), "persistence");
+    }
+
+    /**
+     * Admits at most {@code maxConcurrency + queueCapacity} tasks and runs at
+     * most {@code maxConcurrency} of them; the others park their virtual thread
+     * on the semaphore.
+     */
+    static final class BoundedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final AtomicInteger admitted = new AtomicInteger();
+        private final int maxAdmitted;
+
+        BoundedExecutor(ExecutorService delegate, int maxConcurrency, int queueCapacity) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+            this.maxAdmitted = maxConcurrency + queueCapacity;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (admitted.incrementAndGet() > maxAdmitted) {
+                admitted.decrementAndGet();
+                throw new RejectedExecutionException("Persistence scheduler saturated: "
+                        + maxAdmitted + " tasks running or waiting");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        // Cancelled while waiting for a permit
+                        admitted.decrementAndGet();
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                        admitted.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                admitted.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
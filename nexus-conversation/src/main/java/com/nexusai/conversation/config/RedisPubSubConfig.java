@@ -0,0 +1,27 @@
+package com.nexusai.conversation.config;
+
+import com.nexusai.conversation.cache.HotEntityInvalidator;
+import com.nexusai.conversation.context.ContextInvalidations;
+import com.nexusai.conversation.memory.MemoryRemovals;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisPubSubConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       HotEntityInvalidator hotEntityInvalidator,
+                                                                       MemoryRemovals memoryRemovals,
+                                                                       ContextInvalidations contextInvalidations) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(hotEntityInvalidator, new ChannelTopic(HotEntityInvalidator.CHANNEL));
+        container.addMessageListener(memoryRemovals, new ChannelTopic(MemoryRemovals.CHANNEL));
+        container.addMessageListener(contextInvalidations, new ChannelTopic(ContextInvalidations.CHANNEL));
+        return container;
+    }
+}
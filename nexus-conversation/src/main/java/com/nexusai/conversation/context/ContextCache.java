@@ -0,0 +1,275 @@
+package com.nexusai.conversation.context;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Redis side of the conversation context.
+ *
+ * All reads needed to build a prompt (summary, memory hash and, when the local
+ * memo is cold, the rendered context) go out in a single pipelined round trip.
+ * The rendered context is stored gzip-compressed together with the version it
+ * was rendered for, and is only rewritten when that version changes. The
+ * version is a digest of the rendered inputs' content, so an edit that keeps
+ * the last message id still produces a new version and a reload of identical
+ * history does not.
+ *
+ * Memories used to be one string key per memory
+ * ({@code conversation:context:<id>:memory:<key>}); they now live in one hash
+ * per conversation. Legacy keys are folded into the hashes on startup, and a
+ * point read still falls back to (and migrates) a legacy key it finds.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContextCache {
+
+    public static final String CONTEXT_KEY_PREFIX = "conversation:context:";
+    private static final Duration CONTEXT_TTL = Duration.ofHours(24);
+    private static final Duration MEMORY_TTL = Duration.ofDays(30);
+    private static final String LEGACY_MEMORY_PATTERN = CONTEXT_KEY_PREFIX + "*:memory:*";
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * Fetches everything needed to render a conversation's context in one round trip.
+     *
+     * @param includeRendered whether to also fetch the cached rendered context
+     */
+    public ContextSnapshot read(UUID conversationId, boolean includeRendered) {
+        byte[] summaryKey = key(ContextSummarizer.SUMMARY_KEY_PREFIX + conversationId);
+        byte[] memoryKey = key(memoryKey(conversationId));
+        byte[] contextKey = key(contextKey(conversationId));
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(summaryKey);
+            connection.hashCommands().hGetAll(memoryKey);
+            if (includeRendered) {
+                connection.stringCommands().get(contextKey);
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+
+        String summary = results.get(0) instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : null;
+        Map<String, String> memories = toMemories(results.get(1));
+        RenderedContext rendered = null;
+        if (includeRendered && results.size() > 2 && results.get(2) instanceof byte[] bytes) {
+            try {
+                rendered = decode(bytes);
+            } catch (UncheckedIOException e) {
+                log.warn("Discarding unreadable cached context for conversation {}", conversationId);
+            }
+        }
+        return new ContextSnapshot(summary, memories, rendered);
+    }
+
+    /**
+     * Stores the rendered context for a version. Callers only invoke this when the version changed.
+     */
+    public void write(UUID conversationId, RenderedContext rendered) {
+        byte[] contextKey = key(contextKey(conversationId));
+        byte[] value = encode(rendered);
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(contextKey, value, Expiration.from(CONTEXT_TTL), RedisStringCommands.SetOption.upsert()));
+    }
+
+    public void evictRendered(UUID conversationId) {
+        redisTemplate.delete(contextKey(conversationId));
+    }
+
+    public void writeMemory(UUID conversationId, String key, String value) {
+        String memoryKey = memoryKey(conversationId);
+        redisTemplate.opsForHash().put(memoryKey, key, value);
+        redisTemplate.expire(memoryKey, MEMORY_TTL);
+    }
+
+    /**
+     * Reads one memory from the conversation's hash, falling back to the
+     * pre-hash per-key layout. A legacy value found that way is moved into the hash.
+     */
+    public String readMemory(UUID conversationId, String key) {
+        Object value = redisTemplate.opsForHash().get(memoryKey(conversationId), key);
+        if (value != null) {
+            return value.toString();
+        }
+        String legacyKey = legacyMemoryKey(conversationId, key);
+        String legacy = redisTemplate.opsForValue().get(legacyKey);
+        if (legacy != null) {
+            migrateMemory(conversationId, key, legacyKey, legacy);
+        }
+        return legacy;
+    }
+
+    /**
+     * Folds memories still stored under per-key legacy keys into their
+     * conversation's hash. Idempotent and safe to run on several nodes at once:
+     * a field already present in the hash is newer and wins.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public int migrateLegacyMemories() {
+        int migrated = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(LEGACY_MEMORY_PATTERN).count(500).build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String legacyKey = keys.next();
+                int separator = legacyKey.indexOf(":memory:", CONTEXT_KEY_PREFIX.length());
+                UUID conversationId;
+                try {
+                    conversationId = UUID.fromString(legacyKey.substring(CONTEXT_KEY_PREFIX.length(), separator));
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    log.warn("Skipping unrecognised legacy memory key {}", legacyKey);
+                    continue;
+                }
+                String value = redisTemplate.opsForValue().get(legacyKey);
+                if (value != null) {
+                    migrateMemory(conversationId, legacyKey.substring(separator + ":memory:".length()), legacyKey, value);
+                    migrated++;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Legacy memory migration interrupted after {} keys; point reads still fall back", migrated, e);
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} legacy memory keys into per-conversation hashes", migrated);
+        }
+        return migrated;
+    }
+
+    public static String contextKey(UUID conversationId) {
+        return CONTEXT_KEY_PREFIX + conversationId;
+    }
+
+    public static String memoryKey(UUID conversationId) {
+        return CONTEXT_KEY_PREFIX + conversationId + ":memory";
+    }
+
+    static String legacyMemoryKey(UUID conversationId, String key) {
+        return CONTEXT_KEY_PREFIX + conversationId + ":memory:" + key;
+    }
+
+    /**
+     * Version of a rendered context: a digest of everything it is rendered from,
+     * so any content change produces a new version and identical inputs the same one.
+     */
+    public static String version(List<ContextTurn> turns, String summary, Map<String, String> memories,
+                                 List<UUID> recalledMemoryIds) {
+        MessageDigest digest = sha256();
+        for (ContextTurn turn : turns) {
+            update(digest, turn.role().name());
+            update(digest, turn.content());
+        }
+        update(digest, summary != null ? summary : "");
+        memories.forEach((key, value) -> {
+            update(digest, key);
+            update(digest, value);
+        });
+        recalledMemoryIds.forEach(id -> update(digest, id.toString()));
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    private void migrateMemory(UUID conversationId, String key, String legacyKey, String value) {
+        String memoryKey = memoryKey(conversationId);
+        redisTemplate.opsForHash().putIfAbsent(memoryKey, key, value);
+        redisTemplate.expire(memoryKey, MEMORY_TTL);
+        redisTemplate.delete(legacyKey);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Length-prefixed so that field boundaries cannot shift between inputs.
+     */
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    static byte[] encode(RenderedContext rendered) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(rendered.text().length() / 3 + 64);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeUTF(rendered.version());
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(rendered.text().getBytes(StandardCharsets.UTF_8));
+            gzip.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    static RenderedContext decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            String version = in.readUTF();
+            try (GZIPInputStream gzip = new GZIPInputStream(in)) {
+                return new RenderedContext(version, new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] key(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> toMemories(Object result) {
+        if (!(result instanceof Map<?, ?> raw) || raw.isEmpty()) {
+            return Map.of();
+        }
+        // Sorted so the rendered order and the version digest are stable
+        Map<String, String> memories = new TreeMap<>();
+        raw.forEach((field, value) -> memories.put(
+                new String((byte[]) field, StandardCharsets.UTF_8),
+                new String((byte[]) value, StandardCharsets.UTF_8)));
+        return new LinkedHashMap<>(memories);
+    }
+
+    /**
+     * Result of the pipelined read.
+     */
+    public record ContextSnapshot(String summary, Map<String, String> memories, RenderedContext rendered) {}
+
+    /**
+     * A rendered context and the version it was rendered for.
+     */
+    public record RenderedContext(String version, String text) {}
+}
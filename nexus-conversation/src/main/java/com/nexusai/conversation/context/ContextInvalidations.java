@@ -0,0 +1,73 @@
+package com.nexusai.conversation.context;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Drops a conversation's context window and prebuild on every other node when
+ * its messages change.
+ *
+ * The writing node updates its own window in place; the change is broadcast
+ * on a Redis channel as {@code <conversationId>:<origin node>} once the
+ * current transaction (if any) commits, and a node ignores its own
+ * broadcasts. A node that misses one rebuilds the window when it reaches
+ * {@link ContextStore}'s {@code max-age}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContextInvalidations implements MessageListener {
+
+    public static final String CHANNEL = "nexusai:context:invalidate";
+
+    private final ContextStore contextStore;
+    private final SpeculativeContexts speculativeContexts;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public void changed(UUID conversationId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcast(conversationId);
+                }
+            });
+            return;
+        }
+        broadcast(conversationId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split(":");
+        if (parts.length != 2 || nodeId.equals(parts[1])) {
+            return;
+        }
+        try {
+            UUID conversationId = UUID.fromString(parts[0]);
+            contextStore.invalidate(conversationId);
+            speculativeContexts.invalidate(conversationId);
+        } catch (IllegalArgumentException e) {
+            log.warn("Malformed context invalidation message: {}", body);
+        }
+    }
+
+    private void broadcast(UUID conversationId) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, conversationId + ":" + nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast context invalidation for conversation {}", conversationId, e);
+        }
+    }
+}
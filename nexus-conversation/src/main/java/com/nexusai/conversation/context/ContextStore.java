@@ -0,0 +1,141 @@
+package com.nexusai.conversation.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bounded in-memory store of per-conversation {@link ContextWindow}s.
+ *
+ * The store is weighed by the approximate heap size of each window and evicts
+ * least-recently-used conversations once the byte budget is exceeded. A miss is
+ * rebuilt from {@link MessageRepository} with a single bounded query, so a
+ * conversation only hits the database again after it has been evicted.
+ *
+ * Windows are kept coherent across nodes by {@link ContextInvalidations}. As a
+ * backstop for a missed broadcast, a window is also rebuilt once it is
+ * {@code max-age} old, however busy it is.
+ */
+@Component
+@Slf4j
+public class ContextStore {
+
+    private final MessageRepository messageRepository;
+    private final int windowSize;
+    private final Ticker ticker;
+    private final Cache<UUID, ContextWindow> windows;
+
+    @Autowired
+    public ContextStore(
+            MessageRepository messageRepository,
+            @Value("${nexusai.conversation.context.window-size:20}") int windowSize,
+            @Value("${nexusai.conversation.context.max-bytes:67108864}") long maxBytes,
+            @Value("${nexusai.conversation.context.idle-ttl:PT2H}") Duration idleTtl,
+            @Value("${nexusai.conversation.context.max-age:PT10M}") Duration maxAge) {
+        this(messageRepository, windowSize, maxBytes, idleTtl, maxAge, Ticker.systemTicker());
+    }
+
+    ContextStore(MessageRepository messageRepository, int windowSize, long maxBytes, Duration idleTtl,
+                 Duration maxAge, Ticker ticker) {
+        this.messageRepository = messageRepository;
+        this.windowSize = windowSize;
+        this.ticker = ticker;
+        this.windows = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((UUID id, ContextWindow window) -> (int) Math.min(Integer.MAX_VALUE, window.sizeInBytes()))
+                .expireAfter(new IdleOrAged(idleTtl.toNanos(), maxAge.toNanos()))
+                .ticker(ticker)
+                // Run eviction inline so the byte budget is enforced before the caller returns
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Returns the window for a conversation, loading the most recent messages on a miss.
+     */
+    public ContextWindow getOrLoad(UUID conversationId) {
+        return windows.get(conversationId, this::load);
+    }
+
+    /**
+     * Returns the resident window, or {@code null} without loading it.
+     */
+    public ContextWindow getIfPresent(UUID conversationId) {
+        return windows.getIfPresent(conversationId);
+    }
+
+    /**
+     * Appends a persisted message to the conversation's window if it is resident.
+     * Absent windows are left alone: the next read rebuilds them from the database,
+     * which already contains the message.
+     *
+     * @return the turn pushed out of the ring buffer, or {@code null}
+     */
+    public ContextTurn append(Message message) {
+        ContextTurn turn = ContextTurn.from(message);
+        ContextTurn[] evicted = new ContextTurn[1];
+        // computeIfPresent makes Caffeine re-weigh the entry after the mutation
+        windows.asMap().computeIfPresent(message.getConversationId(), (id, window) -> {
+            evicted[0] = window.append(turn);
+            return window;
+        });
+        return evicted[0];
+    }
+
+    public void invalidate(UUID conversationId) {
+        windows.invalidate(conversationId);
+    }
+
+    public long estimatedSize() {
+        return windows.estimatedSize();
+    }
+
+    private ContextWindow load(UUID conversationId) {
+        List<Message> recent = new ArrayList<>(messageRepository.findRecentMessages(conversationId, windowSize));
+        // findRecentMessages returns newest first
+        Collections.reverse(recent);
+        log.debug("Rebuilt context window for conversation {} from {} messages", conversationId, recent.size());
+        ContextWindow window = ContextWindow.of(windowSize, recent.stream().map(ContextTurn::from).toList());
+        window.loadedAt(ticker.read());
+        return window;
+    }
+
+    /**
+     * Expires a window after {@code idle} without reads or appends, or {@code maxAge}
+     * after it was loaded, whichever comes first.
+     */
+    private record IdleOrAged(long idle, long maxAge) implements Expiry<UUID, ContextWindow> {
+
+        @Override
+        public long expireAfterCreate(UUID id, ContextWindow window, long now) {
+            return remaining(window, now);
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID id, ContextWindow window, long now, long currentDuration) {
+            return remaining(window, now);
+        }
+
+        @Override
+        public long expireAfterRead(UUID id, ContextWindow window, long now, long currentDuration) {
+            return remaining(window, now);
+        }
+
+        private long remaining(ContextWindow window, long now) {
+            return Math.max(0, Math.min(idle, maxAge - (now - window.loadedAt())));
+        }
+    }
+}
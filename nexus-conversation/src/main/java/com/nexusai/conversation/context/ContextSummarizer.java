@@ -0,0 +1,491 @@
+package com.nexusai.conversation.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nexusai.ai.service.AIProviderService;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Rolling summarization of turns pushed out of a {@link ContextWindow}.
+ *
+ * Evicted turns are buffered per conversation. Once the buffer crosses the token
+ * threshold, the previous summary and the buffered turns are folded into a new
+ * summary by a cheap model on a dedicated executor, off the request path. Runs are
+ * debounced per conversation: at most one in flight, and no more than one per
+ * {@code debounce} interval; a trigger inside the interval, or work left over by
+ * a run, is picked up by a deferred run once it ends. The result is written to Redis and to
+ * {@code Conversation.contextSummary}, which is the durable copy, together
+ * with {@code contextSummaryThrough}, the creation time of the newest turn it
+ * covers.
+ *
+ * The buffer itself only lives in memory, so turns evicted on a node that
+ * restarts, or that left the window while no node held it, would never be
+ * summarized. Whenever a window is loaded, the history between that watermark
+ * and the window's oldest turn is therefore read back from the database and
+ * buffered ahead of any evicted turns. The buffer is also capped to keep the
+ * prompt bounded; turns it drops on overflow are read back the same way, oldest
+ * first, and summarized in runs of their own before the buffer is.
+ */
+@Component
+@Slf4j
+public class ContextSummarizer {
+
+    public static final String SUMMARY_KEY_PREFIX = "conversation:summary:";
+    public static final Duration SUMMARY_TTL = Duration.ofHours(24);
+
+    /** Most messages read back when catching up on history missed by the buffer. */
+    static final int CATCH_UP_LIMIT = 200;
+
+    private static final LocalDateTime NEVER = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String SUMMARY_SYSTEM_PROMPT =
+            "You maintain a running summary of a conversation between a user and their AI companion. " +
+            "Merge the previous summary with the new exchanges. Keep names, facts about the user, " +
+            "preferences, promises and open topics. Drop small talk. Answer with the summary only, " +
+            "in the language of the conversation, in at most %d words.";
+
+    private final AIProviderService aiProviderService;
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Executor executor;
+    private final BiConsumer<Duration, Runnable> deferrer;
+    private final Clock clock;
+
+    private final Cache<UUID, PendingTurns> pending = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofHours(2))
+            .maximumSize(100_000)
+            .build();
+
+    @Value("${nexusai.conversation.summary.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${nexusai.conversation.summary.trigger-tokens:1500}")
+    private int triggerTokens = 1500;
+
+    @Value("${nexusai.conversation.summary.max-words:250}")
+    private int maxWords = 250;
+
+    @Value("${nexusai.conversation.summary.debounce:PT30S}")
+    private Duration debounce = Duration.ofSeconds(30);
+
+    @Value("${nexusai.conversation.summary.model-provider:ollama}")
+    private String modelProvider = "ollama";
+
+    @Value("${nexusai.conversation.summary.model:llama3}")
+    private String modelName = "llama3";
+
+    @Autowired
+    public ContextSummarizer(AIProviderService aiProviderService,
+                             ConversationRepository conversationRepository,
+                             MessageRepository messageRepository,
+                             RedisTemplate<String, String> redisTemplate,
+                             @Value("${nexusai.conversation.summary.threads:2}") int threads,
+                             @Value("${nexusai.conversation.summary.queue-capacity:1000}") int queueCapacity) {
+        this(aiProviderService, conversationRepository, messageRepository, redisTemplate,
+                newExecutor(threads, queueCapacity),
+                (delay, task) -> CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(task),
+                Clock.systemUTC());
+    }
+
+    ContextSummarizer(AIProviderService aiProviderService,
+                      ConversationRepository conversationRepository,
+                      MessageRepository messageRepository,
+                      RedisTemplate<String, String> redisTemplate,
+                      Executor executor,
+                      BiConsumer<Duration, Runnable> deferrer,
+                      Clock clock) {
+        this.aiProviderService = aiProviderService;
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.redisTemplate = redisTemplate;
+        this.executor = executor;
+        this.deferrer = deferrer;
+        this.clock = clock;
+    }
+
+    /**
+     * Buffers a turn evicted from the conversation's window and schedules a
+     * summarization run once enough tokens have accumulated.
+     */
+    public void onEvicted(UUID conversationId, ContextTurn turn) {
+        if (!enabled) {
+            return;
+        }
+        PendingTurns buffer = pending.get(conversationId, id -> new PendingTurns());
+        if (buffer.add(turn, maxTokens()) >= triggerTokens) {
+            trySchedule(conversationId, buffer);
+        }
+    }
+
+    /**
+     * Catches up on history that left the window unsummarized, in the
+     * background. Called when a window is loaded; a window that is not full
+     * holds the whole history and needs nothing.
+     */
+    public void onWindowLoaded(UUID conversationId, ContextWindow window) {
+        if (!enabled || window.size() < window.capacity()) {
+            return;
+        }
+        LocalDateTime oldest = window.turns().get(0).createdAt();
+        if (oldest == null) {
+            return;
+        }
+        PendingTurns buffer = pending.get(conversationId, id -> new PendingTurns());
+        if (!buffer.tryStartCatchUp(oldest)) {
+            return;
+        }
+        try {
+            executor.execute(() -> catchUp(conversationId, buffer, oldest));
+        } catch (RejectedExecutionException e) {
+            buffer.finishCatchUp();
+            log.warn("Summarization queue full, skipping catch-up of conversation {}", conversationId);
+        }
+    }
+
+    void catchUp(UUID conversationId, PendingTurns buffer, LocalDateTime before) {
+        try {
+            LocalDateTime through = conversationRepository.findContextSummaryThrough(conversationId).orElse(null);
+            LocalDateTime after = latest(latest(through, buffer.covered()), NEVER);
+            if (!after.isBefore(before)) {
+                return;
+            }
+            List<Message> missed = messageRepository.findBetween(conversationId, after, before, CATCH_UP_LIMIT);
+            if (missed.isEmpty()) {
+                return;
+            }
+            // findBetween returns newest first; like add, keep the prompt bounded by dropping the oldest
+            List<ContextTurn> turns = new ArrayList<>();
+            int budget = maxTokens() - buffer.tokens();
+            for (Message message : missed) {
+                ContextTurn turn = ContextTurn.from(message);
+                budget -= turn.tokens();
+                if (budget < 0 && !turns.isEmpty()) {
+                    break;
+                }
+                turns.add(0, turn);
+            }
+            buffer.restore(turns);
+            log.debug("Buffered {} unsummarized turns of conversation {}", turns.size(), conversationId);
+            if (buffer.tokens() >= triggerTokens) {
+                trySchedule(conversationId, buffer);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to catch up on the summary of conversation {}", conversationId, e);
+        } finally {
+            buffer.finishCatchUp();
+        }
+    }
+
+    private void trySchedule(UUID conversationId, PendingTurns buffer) {
+        start(conversationId, buffer, debounce.toMillis());
+    }
+
+    private void start(UUID conversationId, PendingTurns buffer, long debounceMillis) {
+        long now = clock.millis();
+        if (!buffer.tryStart(now, debounceMillis)) {
+            long delay = buffer.defer(now, debounceMillis);
+            if (delay > 0) {
+                // Run once the interval ends rather than waiting for another eviction
+                deferrer.accept(Duration.ofMillis(delay), () -> {
+                    buffer.undefer();
+                    start(conversationId, buffer, 0);
+                });
+            }
+            return;
+        }
+        try {
+            executor.execute(() -> summarize(conversationId, buffer));
+        } catch (RejectedExecutionException e) {
+            buffer.finish(false);
+            log.warn("Summarization queue full, deferring conversation {}", conversationId);
+        }
+    }
+
+    void summarize(UUID conversationId, PendingTurns buffer) {
+        List<ContextTurn> batch = List.of();
+        boolean fromHistory = false;
+        boolean succeeded = false;
+        try {
+            if (buffer.truncated()) {
+                batch = dropped(conversationId, buffer);
+                fromHistory = !batch.isEmpty();
+            }
+            if (!fromHistory) {
+                batch = buffer.drain();
+            }
+            if (batch.isEmpty()) {
+                succeeded = true;
+                return;
+            }
+            String previous = redisTemplate.opsForValue().get(SUMMARY_KEY_PREFIX + conversationId);
+            if (previous == null) {
+                previous = conversationRepository.findById(conversationId)
+                        .map(Conversation::getContextSummary)
+                        .orElse(null);
+            }
+
+            String summary = aiProviderService.generateResponse(
+                    SUMMARY_SYSTEM_PROMPT.formatted(maxWords),
+                    buildPrompt(previous, batch),
+                    modelProvider,
+                    modelName);
+            if (summary == null || summary.isBlank()) {
+                if (!fromHistory) {
+                    buffer.restore(batch);
+                }
+                return;
+            }
+
+            summary = summary.trim();
+            redisTemplate.opsForValue().set(SUMMARY_KEY_PREFIX + conversationId, summary, SUMMARY_TTL);
+            conversationRepository.updateContextSummary(conversationId, summary,
+                    batch.get(batch.size() - 1).createdAt());
+            succeeded = true;
+            log.debug("Summarized {} evicted turns for conversation {}", batch.size(), conversationId);
+        } catch (Exception e) {
+            if (!fromHistory) {
+                buffer.restore(batch);
+            }
+            log.error("Failed to summarize conversation {}", conversationId, e);
+        } finally {
+            buffer.finish(succeeded);
+        }
+        if (succeeded && (buffer.truncated() || buffer.tokens() >= triggerTokens)) {
+            trySchedule(conversationId, buffer);
+        }
+    }
+
+    /**
+     * The oldest turns between the summary watermark and the buffer, which it
+     * dropped on overflow, up to one prompt's worth. Clears the overflow mark
+     * once none are left.
+     */
+    private List<ContextTurn> dropped(UUID conversationId, PendingTurns buffer) {
+        ContextTurn head = buffer.head();
+        if (head == null || head.createdAt() == null) {
+            buffer.clearTruncated(head);
+            return List.of();
+        }
+        LocalDateTime after = latest(conversationRepository.findContextSummaryThrough(conversationId).orElse(null),
+                NEVER);
+        List<Message> missed = messageRepository.findOldestBetween(conversationId, after, head.createdAt(),
+                CATCH_UP_LIMIT);
+        List<ContextTurn> turns = new ArrayList<>();
+        int budget = maxTokens();
+        for (Message message : missed) {
+            ContextTurn turn = ContextTurn.from(message);
+            budget -= turn.tokens();
+            if (budget < 0 && !turns.isEmpty()) {
+                break;
+            }
+            turns.add(turn);
+        }
+        if (turns.isEmpty()) {
+            buffer.clearTruncated(head);
+        }
+        return turns;
+    }
+
+    private int maxTokens() {
+        return triggerTokens * 4;
+    }
+
+    /**
+     * Drops any buffered turns, e.g. when the conversation is deleted.
+     */
+    public void discard(UUID conversationId) {
+        pending.invalidate(conversationId);
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+
+    private String buildPrompt(String previous, List<ContextTurn> batch) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("[Previous summary]\n")
+                .append(previous != null ? previous : "(none)")
+                .append("\n\n[New exchanges]\n");
+        for (ContextTurn turn : batch) {
+            prompt.append(turn.render()).append("\n");
+        }
+        return prompt.toString();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor instanceof ExecutorService service) {
+            service.shutdown();
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "context-summarizer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Evicted turns awaiting summarization for one conversation.
+     */
+    static final class PendingTurns {
+
+        private final Deque<ContextTurn> turns = new ArrayDeque<>();
+        private int tokens;
+        private boolean running;
+        private boolean deferred;
+        private boolean catchingUp;
+        /** Whether turns were dropped from the head since the overflow was last caught up. */
+        private boolean truncated;
+        private long lastStartedAt = Long.MIN_VALUE / 2;
+        /** Newest creation time among the turns ever buffered here. */
+        private LocalDateTime covered;
+
+        /**
+         * Adds a turn, dropping the oldest ones beyond {@code maxTokens} so the prompt stays bounded.
+         *
+         * @return buffered token count after the addition
+         */
+        synchronized int add(ContextTurn turn, int maxTokens) {
+            turns.addLast(turn);
+            tokens += turn.tokens();
+            covered = latest(covered, turn.createdAt());
+            while (tokens > maxTokens && turns.size() > 1) {
+                tokens -= turns.removeFirst().tokens();
+                truncated = true;
+            }
+            return tokens;
+        }
+
+        synchronized boolean tryStart(long now, long debounceMillis) {
+            if (running || now - lastStartedAt < debounceMillis) {
+                return false;
+            }
+            running = true;
+            lastStartedAt = now;
+            return true;
+        }
+
+        /**
+         * Claims the deferred run of a trigger rejected by {@link #tryStart}.
+         *
+         * @return milliseconds until the debounce interval ends, or -1 if a run
+         *         is in flight (it checks for more work itself) or already deferred
+         */
+        synchronized long defer(long now, long debounceMillis) {
+            if (running || deferred) {
+                return -1;
+            }
+            deferred = true;
+            return Math.max(1, lastStartedAt + debounceMillis - now);
+        }
+
+        synchronized void undefer() {
+            deferred = false;
+        }
+
+        synchronized ContextTurn head() {
+            return turns.peekFirst();
+        }
+
+        synchronized boolean truncated() {
+            return truncated;
+        }
+
+        /**
+         * Clears the overflow mark, unless more turns were dropped since {@code head} was read.
+         */
+        synchronized void clearTruncated(ContextTurn head) {
+            if (turns.peekFirst() == head) {
+                truncated = false;
+            }
+        }
+
+        synchronized List<ContextTurn> drain() {
+            List<ContextTurn> batch = new ArrayList<>(turns);
+            turns.clear();
+            tokens = 0;
+            return batch;
+        }
+
+        /**
+         * Puts turns older than every buffered one back at the head of the buffer.
+         */
+        synchronized void restore(List<ContextTurn> batch) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                turns.addFirst(batch.get(i));
+                tokens += batch.get(i).tokens();
+                covered = latest(covered, batch.get(i).createdAt());
+            }
+        }
+
+        /**
+         * Claims the catch-up of the history older than {@code before}, unless
+         * one is running or this buffer already reaches that far.
+         */
+        synchronized boolean tryStartCatchUp(LocalDateTime before) {
+            if (catchingUp || (covered != null && !covered.isBefore(before))) {
+                return false;
+            }
+            catchingUp = true;
+            return true;
+        }
+
+        synchronized void finishCatchUp() {
+            catchingUp = false;
+        }
+
+        synchronized LocalDateTime covered() {
+            return covered;
+        }
+
+        synchronized void finish(boolean succeeded) {
+            running = false;
+            if (!succeeded) {
+                // Let the next eviction retry without waiting for the debounce interval
+                lastStartedAt = Long.MIN_VALUE / 2;
+            }
+        }
+
+        synchronized int tokens() {
+            return tokens;
+        }
+    }
+}
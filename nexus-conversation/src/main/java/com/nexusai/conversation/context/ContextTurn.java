@@ -0,0 +1,57 @@
+package com.nexusai.conversation.context;
+
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.enums.MessageRole;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of a single message held in a {@link ContextWindow}.
+ * Token count and retained size are computed once, when the turn is created.
+ */
+public record ContextTurn(
+        UUID messageId,
+        MessageRole role,
+        String content,
+        int tokens,
+        LocalDateTime createdAt
+) {
+
+    /** Approximate fixed cost of the record, its UUID and timestamp on the heap. */
+    private static final int TURN_OVERHEAD_BYTES = 96;
+
+    public static ContextTurn from(Message message) {
+        String content = message.getContent() != null ? message.getContent() : "";
+        return new ContextTurn(
+                message.getId(),
+                message.getRole(),
+                content,
+                estimateTokens(rolePrefix(message.getRole()) + content),
+                message.getCreatedAt()
+        );
+    }
+
+    /**
+     * Renders the turn the way it appears in the prompt.
+     */
+    public String render() {
+        return rolePrefix(role) + content;
+    }
+
+    /**
+     * Approximate heap footprint, used to weigh windows in the {@link ContextStore}.
+     */
+    public long sizeInBytes() {
+        return TURN_OVERHEAD_BYTES + 2L * content.length();
+    }
+
+    static String rolePrefix(MessageRole role) {
+        return role == MessageRole.USER ? "User: " : "Assistant: ";
+    }
+
+    static int estimateTokens(String text) {
+        // Rough estimation: ~4 characters per token
+        return (int) Math.ceil(text.length() / 4.0);
+    }
+}
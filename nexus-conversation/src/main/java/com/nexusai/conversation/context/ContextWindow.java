@@ -0,0 +1,136 @@
+package com.nexusai.conversation.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fixed-capacity ring buffer of the most recent turns of one conversation.
+ *
+ * Appending is O(1): when the buffer is full the oldest turn is overwritten and
+ * returned to the caller. Running token and byte totals are maintained on every
+ * mutation so callers never have to rescan the history. The last rendered context
+ * is memoized with its version so an unchanged window is not rendered twice.
+ */
+public class ContextWindow {
+
+    private static final int WINDOW_OVERHEAD_BYTES = 64;
+
+    private final ContextTurn[] turns;
+    private int head;
+    private int size;
+    private long totalTokens;
+    private long sizeInBytes = WINDOW_OVERHEAD_BYTES;
+    private volatile ContextCache.RenderedContext rendered;
+    private volatile long loadedAt;
+
+    public ContextWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Context window capacity must be positive");
+        }
+        this.turns = new ContextTurn[capacity];
+    }
+
+    /**
+     * Builds a window from turns given in chronological order (oldest first).
+     */
+    public static ContextWindow of(int capacity, List<ContextTurn> chronologicalTurns) {
+        ContextWindow window = new ContextWindow(capacity);
+        chronologicalTurns.forEach(window::append);
+        return window;
+    }
+
+    /**
+     * Appends a turn, ignoring it if it is already present.
+     *
+     * @return the evicted oldest turn when the buffer was full, otherwise {@code null}
+     */
+    public synchronized ContextTurn append(ContextTurn turn) {
+        if (turn.messageId() != null && indexOf(turn.messageId()) >= 0) {
+            return null;
+        }
+
+        ContextTurn evicted = null;
+        int tail = (head + size) % turns.length;
+        if (size == turns.length) {
+            evicted = turns[head];
+            subtract(evicted);
+            head = (head + 1) % turns.length;
+        } else {
+            size++;
+        }
+        turns[tail] = turn;
+        add(turn);
+        return evicted;
+    }
+
+    /**
+     * Returns a snapshot of the turns in chronological order.
+     */
+    public synchronized List<ContextTurn> turns() {
+        List<ContextTurn> snapshot = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            snapshot.add(turns[(head + i) % turns.length]);
+        }
+        return snapshot;
+    }
+
+    public synchronized UUID lastMessageId() {
+        return size == 0 ? null : turns[(head + size - 1) % turns.length].messageId();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return turns.length;
+    }
+
+    public synchronized long totalTokens() {
+        return totalTokens;
+    }
+
+    public synchronized long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public ContextCache.RenderedContext rendered() {
+        return rendered;
+    }
+
+    public void remember(ContextCache.RenderedContext rendered) {
+        this.rendered = rendered;
+    }
+
+    /**
+     * When the window was rebuilt from the database, on {@link ContextStore}'s ticker.
+     */
+    long loadedAt() {
+        return loadedAt;
+    }
+
+    void loadedAt(long loadedAt) {
+        this.loadedAt = loadedAt;
+    }
+
+    private int indexOf(UUID messageId) {
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % turns.length;
+            if (messageId.equals(turns[slot].messageId())) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void add(ContextTurn turn) {
+        totalTokens += turn.tokens();
+        sizeInBytes += turn.sizeInBytes();
+    }
+
+    private void subtract(ContextTurn turn) {
+        totalTokens -= turn.tokens();
+        sizeInBytes -= turn.sizeInBytes();
+    }
+}
@@ -0,0 +1,194 @@
+package com.nexusai.conversation.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nexusai.conversation.context.ContextCache.ContextSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context inputs fetched ahead of a send, while the user is typing.
+ *
+ * A prebuild warms the conversation's window and memory index and parks the
+ * Redis snapshot (summary and memories) here for {@code ttl}. The next build
+ * takes it instead of going to Redis, leaving only the rendering, which
+ * depends on the message being sent, on the critical path. The summary may be
+ * up to {@code ttl} stale; anything that changes the context otherwise
+ * invalidates the entry.
+ *
+ * Prebuilds run on their own small pool, never on the persistence scheduler
+ * that sends depend on, and are dropped when it is saturated: they are only a
+ * hint.
+ *
+ * Metrics: {@code nexusai.context.speculative} counts builds that found a
+ * prebuild ({@code outcome=hit}), builds that did not ({@code miss}),
+ * prebuilds that expired unused ({@code wasted}) and prebuilds dropped by a
+ * saturated pool ({@code dropped}). {@code nexusai.context.build} times every
+ * build, tagged {@code prebuilt=true|false}: the gap between the two is what
+ * speculation saves. {@code nexusai.context.speculative.prebuild} records how
+ * long the prebuilds consumed by a hit took.
+ */
+@Component
+@Slf4j
+public class SpeculativeContexts {
+
+    private final Cache<UUID, Prebuilt> prebuilt;
+    /** Prebuilds in flight, by conversation. */
+    private final Map<UUID, Claim> running = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter wasted;
+    private final Counter dropped;
+    private final Timer prebuildTime;
+    private final Timer warmBuilds;
+    private final Timer coldBuilds;
+    private final ThreadPoolExecutor executor;
+
+    public SpeculativeContexts(MeterRegistry meterRegistry,
+                               @Value("${nexusai.conversation.context.speculation.ttl:PT5S}") Duration ttl,
+                               @Value("${nexusai.conversation.context.speculation.max-size:10000}") long maxSize,
+                               @Value("${nexusai.conversation.context.speculation.concurrency:4}") int concurrency,
+                               @Value("${nexusai.conversation.context.speculation.queue-capacity:100}") int queueCapacity) {
+        this.hits = meterRegistry.counter("nexusai.context.speculative", "outcome", "hit");
+        this.misses = meterRegistry.counter("nexusai.context.speculative", "outcome", "miss");
+        this.wasted = meterRegistry.counter("nexusai.context.speculative", "outcome", "wasted");
+        this.dropped = meterRegistry.counter("nexusai.context.speculative", "outcome", "dropped");
+        this.prebuildTime = Timer.builder("nexusai.context.speculative.prebuild")
+                .description("Duration of the prebuilds consumed by a build")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.warmBuilds = buildTimer(meterRegistry, true);
+        this.coldBuilds = buildTimer(meterRegistry, false);
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "context-prebuild");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.prebuilt = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .removalListener((UUID id, Prebuilt entry, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        wasted.increment();
+                    }
+                })
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Runs a prebuild on the prebuild pool; failures are only logged.
+     *
+     * @return {@code false} if the pool is saturated and the prebuild was dropped
+     */
+    public boolean submit(UUID conversationId, Runnable prebuild) {
+        try {
+            executor.execute(() -> {
+                try {
+                    prebuild.run();
+                } catch (Exception e) {
+                    log.debug("Context prebuild failed for conversation {}: {}", conversationId, e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Starts a prebuild unless one is fresh or already running, so that a
+     * burst of typing signals only fetches once. A successful claim must be
+     * ended with {@link #release}, after {@link #put} if the prebuild succeeded.
+     */
+    public boolean claim(UUID conversationId) {
+        return prebuilt.getIfPresent(conversationId) == null && running.putIfAbsent(conversationId, new Claim()) == null;
+    }
+
+    /**
+     * Parks the snapshot of a claimed prebuild, unless the conversation was
+     * invalidated since the claim: the snapshot may predate the change.
+     */
+    public void put(UUID conversationId, ContextSnapshot snapshot, long prebuildNanos) {
+        // Under the claim's lock, so an invalidation lands entirely before or after
+        running.compute(conversationId, (id, claim) -> {
+            if (claim == null || !claim.invalidated) {
+                prebuilt.put(id, new Prebuilt(snapshot, prebuildNanos));
+            }
+            return claim;
+        });
+    }
+
+    public void release(UUID conversationId) {
+        running.remove(conversationId);
+    }
+
+    /**
+     * Consumes the prebuild of a conversation.
+     *
+     * @return its snapshot, or {@code null} if there is none
+     */
+    public ContextSnapshot take(UUID conversationId) {
+        Prebuilt entry = prebuilt.asMap().remove(conversationId);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        prebuildTime.record(entry.prebuildNanos(), TimeUnit.NANOSECONDS);
+        return entry.snapshot();
+    }
+
+    /**
+     * Records the duration of a context build, with or without a prebuild.
+     */
+    public void recordBuild(boolean prebuilt, long nanos) {
+        (prebuilt ? warmBuilds : coldBuilds).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void invalidate(UUID conversationId) {
+        running.computeIfPresent(conversationId, (id, claim) -> {
+            claim.invalidated = true;
+            return claim;
+        });
+        prebuilt.invalidate(conversationId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Timer buildTimer(MeterRegistry meterRegistry, boolean prebuilt) {
+        return Timer.builder("nexusai.context.build")
+                .description("Context build time on the send path")
+                .tag("prebuilt", Boolean.toString(prebuilt))
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    private record Prebuilt(ContextSnapshot snapshot, long prebuildNanos) {}
+
+    private static final class Claim {
+        /** Guarded by the {@code running} map entry. */
+        private boolean invalidated;
+    }
+}
@@ -1,10 +1,14 @@
 package com.nexusai.conversation.controller;
 
+import com.nexusai.commons.exception.ValidationException;
 import com.nexusai.conversation.dto.SendMessageRequest;
+import com.nexusai.conversation.idempotency.IdempotentSubmissions;
 import com.nexusai.conversation.service.MessageService;
+import com.nexusai.conversation.stream.ResumableStreams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
@@ -21,27 +25,51 @@ import java.util.UUID;
 public class MessageStreamController {
 
     private final MessageService messageService;
+    private final ResumableStreams resumableStreams;
+    private final IdempotentSubmissions idempotentSubmissions;
 
     /**
      * Stream un message avec réponse IA progressive (SSE).
+     *
+     * Chaque événement porte un id ; après une coupure, le client renvoie la
+     * requête avec l'en-tête {@code Last-Event-ID} et reçoit uniquement la suite
+     * de la génération en cours, sans nouvel appel au modèle. Une nouvelle
+     * tentative portant le même {@code Idempotency-Key} (ou {@code clientMessageId})
+     * est rattachée au flux d'origine depuis son début.
+     *
+     * Les fragments sont des événements sans nom ({@code EventSource.onmessage}) ;
+     * la fin du flux est signalée par un événement {@code done}, ou {@code error}
+     * portant le message d'échec.
      * 
      * @param conversationId ID de la conversation
-     * @param request Requête contenant le message
+     * @param request Requête contenant le message (ignorée lors d'une reprise)
+     * @param lastEventId Id du dernier événement reçu, pour reprendre un flux
+     * @param idempotencyKey Clé de déduplication des nouvelles tentatives
      * @param authentication Authentification de l'utilisateur
-     * @return Flux de chunks de texte
+     * @return Flux d'événements SSE
      */
     @PostMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> streamMessage(
+    public Flux<ServerSentEvent<String>> streamMessage(
             @PathVariable UUID conversationId,
-            @RequestBody SendMessageRequest request,
+            @RequestBody(required = false) SendMessageRequest request,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication) {
         
         UUID userId = UUID.fromString(authentication.getName());
+
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            log.info("Resuming message stream {} for conversation: {}", lastEventId, conversationId);
+            return resumableStreams.resume(userId, conversationId, lastEventId);
+        }
+        if (request == null) {
+            throw new ValidationException("request", "Message body is required");
+        }
         
         log.info("Starting message stream for conversation: {} by user: {}", conversationId, userId);
         
-        return messageService.streamMessage(conversationId, userId, request)
-                .map(chunk -> "data: " + chunk + "\n\n")
+        return idempotentSubmissions.stream(conversationId, userId, IdempotentSubmissions.keyOf(idempotencyKey, request),
+                        () -> messageService.streamMessage(conversationId, userId, request))
                 .doOnComplete(() -> log.info("Stream completed for conversation: {}", conversationId))
                 .doOnError(e -> log.error("Stream error for conversation: {}", conversationId, e));
     }
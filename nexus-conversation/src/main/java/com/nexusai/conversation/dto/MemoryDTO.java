@@ -0,0 +1,28 @@
+package com.nexusai.conversation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemoryDTO {
+
+    private UUID id;
+    private UUID companionId;
+    private String memoryType;
+    private String content;
+    private BigDecimal importance;
+    private Integer accessCount;
+    private LocalDateTime createdAt;
+
+    /** Blended retrieval score, only set on recall. */
+    private Double score;
+}
@@ -0,0 +1,53 @@
+package com.nexusai.conversation.dto;
+
+import com.nexusai.commons.exception.ValidationException;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a conversation's history: the {@code (createdAt, id)} of the last
+ * message returned. Serialized as an opaque URL-safe token so clients cannot
+ * depend on its layout.
+ */
+public record MessageCursor(LocalDateTime createdAt, UUID id) {
+
+    private static final int ENCODED_BYTES = Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+
+    public String encode() {
+        Instant instant = createdAt.toInstant(ZoneOffset.UTC);
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_BYTES)
+                .putLong(instant.getEpochSecond())
+                .putInt(instant.getNano())
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @throws ValidationException if the token was not produced by {@link #encode()}
+     */
+    public static MessageCursor decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("before", "Invalid cursor");
+        }
+        if (bytes.length != ENCODED_BYTES) {
+            throw new ValidationException("before", "Invalid cursor");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        if (nanos < 0 || nanos > 999_999_999) {
+            throw new ValidationException("before", "Invalid cursor");
+        }
+        LocalDateTime createdAt = LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        return new MessageCursor(createdAt, new UUID(buffer.getLong(), buffer.getLong()));
+    }
+}
@@ -0,0 +1,26 @@
+package com.nexusai.conversation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A message matching a search. {@code snippet} is HTML-escaped, with matched terms
+ * wrapped in {@code <mark>} elements.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchHitDTO {
+    private UUID messageId;
+    private UUID conversationId;
+    private String role;
+    private String snippet;
+    private double rank;
+    private LocalDateTime createdAt;
+}
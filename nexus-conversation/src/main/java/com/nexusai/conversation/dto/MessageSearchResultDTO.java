@@ -0,0 +1,22 @@
+package com.nexusai.conversation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of search hits, best match first. Pass {@code nextCursor} as
+ * {@code after} to fetch the next page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchResultDTO {
+    private List<MessageSearchHitDTO> hits;
+    private String nextCursor;
+    private boolean hasNext;
+}
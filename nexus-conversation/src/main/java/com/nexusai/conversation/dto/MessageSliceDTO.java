@@ -0,0 +1,22 @@
+package com.nexusai.conversation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of message history, newest first. Pass {@code nextCursor} as
+ * {@code before} to fetch the following (older) page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSliceDTO {
+    private List<MessageDTO> content;
+    private String nextCursor;
+    private boolean hasNext;
+}
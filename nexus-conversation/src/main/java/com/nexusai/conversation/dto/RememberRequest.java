@@ -0,0 +1,31 @@
+package com.nexusai.conversation.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RememberRequest {
+
+    @NotBlank(message = "Memory type is required")
+    @Size(max = 50, message = "Memory type must not exceed 50 characters")
+    private String memoryType;
+
+    @NotBlank(message = "Memory content is required")
+    @Size(max = 2000, message = "Memory must not exceed 2000 characters")
+    private String content;
+
+    @DecimalMin(value = "0.0", message = "Importance must be between 0 and 1")
+    @DecimalMax(value = "1.0", message = "Importance must be between 0 and 1")
+    private BigDecimal importance;
+}
@@ -23,4 +23,12 @@ public class SendMessageRequest {
     private String type;
     private UUID parentMessageId;
     private List<UUID> attachmentIds;
+
+    /**
+     * Client-generated id of the message, reused on retries so that they are
+     * not saved and answered twice. The {@code Idempotency-Key} header takes
+     * precedence when both are sent.
+     */
+    @Size(max = 128, message = "Client message id must not exceed 128 characters")
+    private String clientMessageId;
 }
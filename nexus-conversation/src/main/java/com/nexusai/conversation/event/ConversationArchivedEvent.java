@@ -0,0 +1,8 @@
+package com.nexusai.conversation.event;
+
+import java.util.UUID;
+
+/**
+ * Published after a conversation has been archived by its owner.
+ */
+public record ConversationArchivedEvent(UUID conversationId, UUID userId) {}
@@ -0,0 +1,9 @@
+package com.nexusai.conversation.event;
+
+import java.util.UUID;
+
+/**
+ * Published after a conversation has been archived, deleted or otherwise modified
+ * in a way that invalidates cached copies of it.
+ */
+public record ConversationChangedEvent(UUID conversationId) {}
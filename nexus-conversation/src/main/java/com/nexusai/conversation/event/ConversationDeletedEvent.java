@@ -0,0 +1,9 @@
+package com.nexusai.conversation.event;
+
+import java.util.UUID;
+
+/**
+ * Published after a soft-deleted conversation has been reaped from the
+ * database, for cleaning up data kept outside of it.
+ */
+public record ConversationDeletedEvent(UUID conversationId) {}
@@ -0,0 +1,9 @@
+package com.nexusai.conversation.event;
+
+import java.util.UUID;
+
+/**
+ * Published when a user deletes a conversation, before it is reaped, for
+ * hiding it at once from copies kept outside of the conversations table.
+ */
+public record ConversationSoftDeletedEvent(UUID conversationId, UUID userId) {}
@@ -0,0 +1,10 @@
+package com.nexusai.conversation.event;
+
+import com.nexusai.core.entity.Message;
+
+import java.util.UUID;
+
+/**
+ * Published after a user or assistant message has been persisted.
+ */
+public record MessageCreatedEvent(Message message, UUID userId) {}
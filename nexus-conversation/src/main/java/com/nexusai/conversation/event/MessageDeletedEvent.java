@@ -0,0 +1,8 @@
+package com.nexusai.conversation.event;
+
+import java.util.UUID;
+
+/**
+ * Published after a message has been deleted.
+ */
+public record MessageDeletedEvent(UUID messageId, UUID conversationId, UUID userId) {}
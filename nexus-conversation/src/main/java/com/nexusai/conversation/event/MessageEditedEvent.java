@@ -0,0 +1,10 @@
+package com.nexusai.conversation.event;
+
+import com.nexusai.core.entity.Message;
+
+import java.util.UUID;
+
+/**
+ * Published after a message's content has been changed by its author.
+ */
+public record MessageEditedEvent(Message message, UUID userId) {}
@@ -0,0 +1,10 @@
+package com.nexusai.conversation.event;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Published when messages have been moved out of the {@code messages} table
+ * into the archive.
+ */
+public record MessagesArchivedEvent(UUID conversationId, List<UUID> messageIds) {}
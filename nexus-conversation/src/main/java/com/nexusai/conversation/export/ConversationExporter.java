@@ -0,0 +1,221 @@
+package com.nexusai.conversation.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.archive.MessageArchive;
+import com.nexusai.conversation.dto.MessageDTO;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.entity.MessageArchiveSegment;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole history of a conversation, oldest first, straight to an
+ * output stream. Archived messages are decoded one segment at a time and the
+ * rows still in the database are read through a server-side cursor, so
+ * memory stays flat whatever the length of the conversation.
+ */
+@Component
+@Slf4j
+public class ConversationExporter {
+
+    /** Open bounds of the optional {@code [from, to)} range */
+    static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+    static final LocalDateTime END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final DateTimeFormatter MARKDOWN_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final MessageArchive messageArchive;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public ConversationExporter(ConversationRepository conversationRepository,
+                                MessageRepository messageRepository,
+                                MessageArchive messageArchive,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.messageArchive = messageArchive;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Checks access and the range before anything is written, so that errors
+     * still get a proper status code.
+     *
+     * @param from inclusive lower bound of {@code createdAt}, or {@code null}
+     * @param to   exclusive upper bound of {@code createdAt}, or {@code null}
+     * @throws ResourceNotFoundException if the conversation does not belong to the user
+     */
+    public ExportRequest prepare(UUID conversationId, UUID userId, ExportFormat format,
+                                 LocalDateTime from, LocalDateTime to) {
+        Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
+        LocalDateTime lower = from != null ? from : BEGINNING;
+        LocalDateTime upper = to != null ? to : END;
+        if (!lower.isBefore(upper)) {
+            throw new ValidationException("from", "'from' must be before 'to'");
+        }
+        return new ExportRequest(conversationId, conversation.getTitle(), format, lower, upper);
+    }
+
+    /**
+     * Streams the messages of a prepared export. The output is flushed, not closed.
+     *
+     * @return the number of messages written
+     */
+    public long export(ExportRequest request, OutputStream out) throws IOException {
+        try (MessageWriter writer = request.format() == ExportFormat.NDJSON
+                ? new NdjsonWriter(out) : new MarkdownWriter(out, request.title())) {
+            long[] written = {0};
+            Consumer<Message> sink = message -> {
+                writer.write(message);
+                written[0]++;
+            };
+
+            // Every archived message is older than every hot one
+            List<MessageArchiveSegment> segments = messageArchive.segments(request.conversationId());
+            messageArchive.forEachBetween(segments, request.from(), request.to(), sink);
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Message> messages = messageRepository.streamForExport(
+                        request.conversationId(), request.from(), request.to())) {
+                    messages.forEach(message -> {
+                        sink.accept(message);
+                        entityManager.detach(message);
+                    });
+                }
+            });
+            log.info("Exported {} messages of conversation {} as {}", written[0], request.conversationId(),
+                    request.format());
+            return written[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public record ExportRequest(UUID conversationId, String title, ExportFormat format,
+                                LocalDateTime from, LocalDateTime to) {
+
+        public String fileName() {
+            return "conversation-" + conversationId + "." + format.getExtension();
+        }
+    }
+
+    private interface MessageWriter extends AutoCloseable {
+
+        /**
+         * @throws UncheckedIOException if the client went away
+         */
+        void write(Message message);
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private final class NdjsonWriter implements MessageWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(Message message) {
+            try {
+                generator.writeObject(toDTO(message));
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class MarkdownWriter implements MessageWriter {
+
+        private final Writer writer;
+
+        MarkdownWriter(OutputStream out, String title) throws IOException {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write("# " + (title != null && !title.isBlank() ? title : "Conversation") + "\n\n");
+        }
+
+        @Override
+        public void write(Message message) {
+            try {
+                writer.write("**" + speaker(message) + "** · " + MARKDOWN_TIME.format(message.getCreatedAt())
+                        + (Boolean.TRUE.equals(message.getIsEdited()) ? " (edited)" : "") + "\n\n");
+                writer.write(message.getContent());
+                if (message.getMediaUrl() != null) {
+                    writer.write("\n\n[" + (message.getMediaType() != null ? message.getMediaType() : "media")
+                            + "](" + message.getMediaUrl() + ")");
+                }
+                writer.write("\n\n---\n\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Flushes the encoder without closing the response
+            writer.flush();
+        }
+
+        private static String speaker(Message message) {
+            String role = message.getRole().name().toLowerCase(Locale.ROOT);
+            return Character.toUpperCase(role.charAt(0)) + role.substring(1);
+        }
+    }
+
+    private static MessageDTO toDTO(Message message) {
+        return MessageDTO.builder()
+                .id(message.getId())
+                .conversationId(message.getConversationId())
+                .role(message.getRole().name())
+                .type(message.getType().name())
+                .content(message.getContent())
+                .tokensUsed(message.getTokensUsed())
+                .mediaUrl(message.getMediaUrl())
+                .mediaType(message.getMediaType())
+                .isEdited(message.getIsEdited())
+                .createdAt(message.getCreatedAt())
+                .build();
+    }
+}
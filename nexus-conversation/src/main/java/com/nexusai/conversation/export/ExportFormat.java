@@ -0,0 +1,31 @@
+package com.nexusai.conversation.export;
+
+import com.nexusai.commons.exception.ValidationException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+/**
+ * Formats of a conversation export.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+
+    /** One JSON message per line */
+    NDJSON("application/x-ndjson", "ndjson"),
+    /** A readable transcript */
+    MARKDOWN("text/markdown", "md");
+
+    private final String contentType;
+    private final String extension;
+
+    public static ExportFormat of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("format", "Unsupported export format: " + name);
+        }
+    }
+}
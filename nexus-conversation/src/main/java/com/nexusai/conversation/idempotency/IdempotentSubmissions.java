@@ -0,0 +1,239 @@
+package com.nexusai.conversation.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexusai.commons.exception.BusinessException;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.dto.MessageDTO;
+import com.nexusai.conversation.dto.SendMessageRequest;
+import com.nexusai.conversation.dto.StreamChunk;
+import com.nexusai.conversation.stream.ResumableStreams;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates message submissions retried by clients.
+ *
+ * A submission carrying an idempotency key ({@code Idempotency-Key} header or
+ * {@code clientMessageId}) claims the key in Redis before anything is saved.
+ * Retries with the same key within {@code window} get the outcome of the
+ * first attempt instead of a second message and a second paid generation:
+ * the saved {@link MessageDTO}, or the original SSE stream replayed from its
+ * first event through {@link ResumableStreams}. A generation that completes
+ * records its payloads under the key, so retries keep getting the same answer
+ * for the whole window, long after the stream itself stopped being resumable.
+ * A generation that fails, or ends with an error {@link StreamChunk}, releases
+ * the key instead so that a retry generates again.
+ * Keys are scoped to the user and the conversation. Submissions without a key
+ * are not deduplicated.
+ */
+@Component
+@Slf4j
+public class IdempotentSubmissions {
+
+    static final String KEY_PREFIX = "nexusai:idem:";
+    static final String PENDING = "pending";
+    static final String MESSAGE = "message:";
+    static final String STREAM = "stream:";
+    static final String COMPLETED = "completed:";
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ResumableStreams resumableStreams;
+    private final Duration window;
+    private final Duration pendingTtl;
+
+    public IdempotentSubmissions(RedisTemplate<String, String> redisTemplate,
+                                 ObjectMapper objectMapper,
+                                 ResumableStreams resumableStreams,
+                                 @Value("${nexusai.conversation.idempotency.window:PT24H}") Duration window,
+                                 @Value("${nexusai.conversation.idempotency.pending-ttl:PT1M}") Duration pendingTtl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.resumableStreams = resumableStreams;
+        this.window = window;
+        this.pendingTtl = pendingTtl;
+    }
+
+    /**
+     * The idempotency key of a submission, the header winning over the body.
+     *
+     * @return the key, or {@code null} if the client sent none
+     * @throws ValidationException if the key is too long
+     */
+    public static String keyOf(String header, SendMessageRequest request) {
+        String key = header != null && !header.isBlank() ? header.trim()
+                : request != null && request.getClientMessageId() != null && !request.getClientMessageId().isBlank()
+                ? request.getClientMessageId().trim() : null;
+        if (key != null && key.length() > MAX_KEY_LENGTH) {
+            throw new ValidationException("Idempotency-Key", "Idempotency key must not exceed 128 characters");
+        }
+        return key;
+    }
+
+    /**
+     * Saves a message once per key.
+     *
+     * @param send saves the message; not called for a replay
+     * @throws BusinessException {@code REQUEST_IN_PROGRESS} while the first attempt is still running
+     */
+    public MessageDTO send(UUID conversationId, UUID userId, String key, Supplier<MessageDTO> send) {
+        if (key == null) {
+            return send.get();
+        }
+        String redisKey = redisKey(conversationId, userId, key);
+        if (!claim(redisKey, PENDING, pendingTtl)) {
+            return replayMessage(redisKey, key);
+        }
+        MessageDTO message;
+        try {
+            message = send.get();
+        } catch (RuntimeException e) {
+            // Nothing was saved, so a retry may try again
+            redisTemplate.delete(redisKey);
+            throw e;
+        }
+        try {
+            redisTemplate.opsForValue().set(redisKey, MESSAGE + objectMapper.writeValueAsString(message), window);
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The claim expires with pending-ttl; until then retries are told to wait
+            log.warn("Failed to record the outcome of idempotent submission {}", key, e);
+        }
+        return message;
+    }
+
+    /**
+     * Opens a generation once per key; retries re-attach to it from its first
+     * event, wherever it runs, or get its recorded payloads once it is over.
+     *
+     * @param generation saves the user message and streams the answer; not called for a replay
+     */
+    public Flux<ServerSentEvent<String>> stream(UUID conversationId, UUID userId, String key,
+                                                Supplier<Flux<?>> generation) {
+        if (key == null) {
+            return resumableStreams.open(userId, conversationId, generation.get());
+        }
+        String redisKey = redisKey(conversationId, userId, key);
+        String streamId = resumableStreams.newStreamId();
+        if (!claim(redisKey, STREAM + streamId, window)) {
+            String original = stored(redisKey, key);
+            if (original.startsWith(COMPLETED)) {
+                return replayStream(original, key);
+            }
+            if (!original.startsWith(STREAM)) {
+                throw new BusinessException("IDEMPOTENCY_KEY_REUSED",
+                        "Idempotency key was already used for a non-streaming submission");
+            }
+            log.info("Re-attaching retried submission {} to stream {}", key, original.substring(STREAM.length()));
+            return resumableStreams.resume(userId, conversationId, original.substring(STREAM.length()) + ":0")
+                    // The stream may have finished and expired since the key was read
+                    .onErrorResume(ResourceNotFoundException.class, e -> Mono.fromCallable(() -> stored(redisKey, key))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMapMany(outcome -> outcome.startsWith(COMPLETED)
+                                    ? replayStream(outcome, key)
+                                    : Flux.error(e)));
+        }
+        List<Object> outcome = new ArrayList<>();
+        Flux<?> payloads = generation.get()
+                .doOnNext(outcome::add)
+                .doOnComplete(() -> Mono.fromRunnable(() -> {
+                            if (endedWithError(outcome)) {
+                                // The provider error was turned into a last chunk: release like a failure
+                                redisTemplate.delete(redisKey);
+                            } else {
+                                recordStream(redisKey, key, streamId, outcome);
+                            }
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .subscribe())
+                // A failed generation may be retried with the same key
+                .doOnError(error -> Mono.fromRunnable(() -> redisTemplate.delete(redisKey))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .subscribe());
+        return resumableStreams.open(userId, conversationId, streamId, payloads);
+    }
+
+    private void recordStream(String redisKey, String key, String streamId, List<Object> payloads) {
+        try {
+            String outcome = objectMapper.writeValueAsString(new StreamOutcome(streamId, payloads));
+            redisTemplate.opsForValue().set(redisKey, COMPLETED + outcome, window);
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Retries still re-attach to the stream for as long as it is resumable
+            log.warn("Failed to record the outcome of idempotent stream {}", key, e);
+        }
+    }
+
+    private static boolean endedWithError(List<Object> payloads) {
+        return !payloads.isEmpty()
+                && payloads.get(payloads.size() - 1) instanceof StreamChunk chunk
+                && "error".equals(chunk.getType());
+    }
+
+    private Flux<ServerSentEvent<String>> replayStream(String stored, String key) {
+        StreamOutcome outcome;
+        try {
+            outcome = objectMapper.readValue(stored.substring(COMPLETED.length()), StreamOutcome.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outcome of idempotent submission " + key, e);
+        }
+        log.info("Replaying recorded stream {} of idempotent submission {}", outcome.streamId(), key);
+        return resumableStreams.replay(outcome.streamId(), outcome.payloads());
+    }
+
+    private MessageDTO replayMessage(String redisKey, String key) {
+        String original = stored(redisKey, key);
+        if (original.equals(PENDING)) {
+            throw new BusinessException("REQUEST_IN_PROGRESS",
+                    "A submission with this idempotency key is still being processed");
+        }
+        if (!original.startsWith(MESSAGE)) {
+            throw new BusinessException("IDEMPOTENCY_KEY_REUSED",
+                    "Idempotency key was already used for a streaming submission");
+        }
+        try {
+            log.info("Replaying idempotent submission {}", key);
+            return objectMapper.readValue(original.substring(MESSAGE.length()), MessageDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outcome of idempotent submission " + key, e);
+        }
+    }
+
+    private boolean claim(String redisKey, String value, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey, value, ttl));
+    }
+
+    private String stored(String redisKey, String key) {
+        String value = redisTemplate.opsForValue().get(redisKey);
+        if (value == null) {
+            // Expired or released between the claim and the read: the client may simply retry
+            throw new BusinessException("REQUEST_IN_PROGRESS",
+                    "A submission with idempotency key " + key + " is still being processed");
+        }
+        return value;
+    }
+
+    private static String redisKey(UUID conversationId, UUID userId, String key) {
+        return KEY_PREFIX + userId + ":" + conversationId + ":" + key;
+    }
+
+    /**
+     * The payloads of a completed generation, as recorded under its key.
+     */
+    record StreamOutcome(String streamId, List<Object> payloads) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.nexusai.conversation.mailbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the generations of a conversation one at a time, in arrival order,
+ * while different conversations run fully in parallel.
+ *
+ * Each conversation with work in flight has a mailbox: the tail of a chain of
+ * completion signals that the next generation subscribes after. Nothing
+ * blocks while waiting and no thread is held per conversation; a mailbox is
+ * dropped as soon as its last generation terminates, so idle conversations
+ * cost nothing. Serialization is per node.
+ *
+ * A generation holds its conversation's slot for at most the configured
+ * timeout: past it the generation is cancelled, fails with a
+ * {@link TimeoutException} and the next one starts, so a stuck provider
+ * stream cannot wedge the conversation.
+ *
+ * Metrics: {@code nexusai.conversation.mailbox.depth} (generations waiting
+ * behind another), {@code nexusai.conversation.mailbox.active} (conversations
+ * with a generation in flight), {@code nexusai.conversation.mailbox.wait} and
+ * {@code nexusai.conversation.mailbox.timeouts}.
+ */
+@Component
+public class ConversationMailboxes {
+
+    private final Map<UUID, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter timeouts;
+    private final Duration timeout;
+
+    public ConversationMailboxes(MeterRegistry meterRegistry,
+                                 @Value("${nexusai.conversation.mailbox.timeout:PT2M}") Duration timeout) {
+        this.timeout = timeout;
+        meterRegistry.gauge("nexusai.conversation.mailbox.depth", waiting);
+        meterRegistry.gauge("nexusai.conversation.mailbox.active", mailboxes, Map::size);
+        this.waitTimer = Timer.builder("nexusai.conversation.mailbox.wait")
+                .description("Time a generation waited for the previous one of its conversation")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("nexusai.conversation.mailbox.timeouts")
+                .description("Generations cancelled for holding their conversation past the timeout")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a generation behind those already queued for the conversation.
+     * Nothing is queued until the returned flux is subscribed: the generation
+     * takes its place in line on subscription, is started when its turn comes,
+     * and the next one starts when it terminates, is cancelled or times out.
+     */
+    public <T> Flux<T> enqueue(UUID conversationId, Flux<T> generation) {
+        return Flux.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> previous = join(conversationId, done);
+            long queuedAt = System.nanoTime();
+            waiting.incrementAndGet();
+            return previous
+                    .doFinally(signal -> {
+                        waiting.decrementAndGet();
+                        waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                    })
+                    .thenMany(Flux.defer(() -> bounded(conversationId, generation)))
+                    .doFinally(signal -> {
+                        done.tryEmitEmpty();
+                        release(conversationId);
+                    });
+        });
+    }
+
+    /**
+     * Generations queued or running for a conversation.
+     */
+    public int depth(UUID conversationId) {
+        Mailbox mailbox = mailboxes.get(conversationId);
+        return mailbox != null ? mailbox.size : 0;
+    }
+
+    private Mono<Void> join(UUID conversationId, Sinks.Empty<Void> done) {
+        AtomicReference<Mono<Void>> previous = new AtomicReference<>();
+        mailboxes.compute(conversationId, (id, mailbox) -> {
+            Mailbox box = mailbox != null ? mailbox : new Mailbox();
+            previous.set(box.tail);
+            // The next generation waits for this one and, should this one be
+            // cancelled while waiting, for everything before it
+            box.tail = box.tail.then(done.asMono()).cache();
+            box.size++;
+            return box;
+        });
+        return previous.get();
+    }
+
+    /**
+     * Cuts the generation off once it has held the slot for the timeout.
+     */
+    private <T> Flux<T> bounded(UUID conversationId, Flux<T> generation) {
+        AtomicBoolean expired = new AtomicBoolean();
+        return generation
+                .takeUntilOther(Mono.delay(timeout).doOnNext(tick -> expired.set(true)))
+                .concatWith(Mono.defer(() -> {
+                    if (!expired.get()) {
+                        return Mono.empty();
+                    }
+                    timeouts.increment();
+                    return Mono.error(new TimeoutException(
+                            "Generation for conversation " + conversationId + " exceeded " + timeout));
+                }));
+    }
+
+    private void release(UUID conversationId) {
+        mailboxes.computeIfPresent(conversationId, (id, mailbox) -> --mailbox.size == 0 ? null : mailbox);
+    }
+
+    /**
+     * Mutated only inside {@code compute} of its conversation's entry.
+     */
+    private static final class Mailbox {
+
+        private Mono<Void> tail = Mono.empty();
+        private int size;
+    }
+}
@@ -0,0 +1,99 @@
+package com.nexusai.conversation.memory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Embedding without a model: words and word pairs are hashed onto the vector
+ * dimensions (the "hashing trick") with a random sign, weighted by log term
+ * frequency. Texts sharing vocabulary land close together; synonyms do not.
+ * Deterministic and local, so it is the default until a model-backed embedder
+ * is configured.
+ */
+@Component
+@ConditionalOnProperty(name = "nexusai.conversation.memory.embedder", havingValue = "hashing", matchIfMissing = true)
+public class HashingMemoryEmbedder implements MemoryEmbedder {
+
+    private final int dimensions;
+
+    public HashingMemoryEmbedder(@Value("${nexusai.conversation.memory.dimensions:1536}") int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public String name() {
+        return "hashing-v1/" + dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        List<String> words = words(text);
+        for (int i = 0; i < words.size(); i++) {
+            add(vector, words.get(i), 1f);
+            if (i > 0) {
+                add(vector, words.get(i - 1) + ' ' + words.get(i), 0.5f);
+            }
+        }
+        for (int i = 0; i < dimensions; i++) {
+            if (vector[i] != 0) {
+                vector[i] = Math.signum(vector[i]) * (float) Math.log1p(Math.abs(vector[i]));
+            }
+        }
+        return normalize(vector);
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        int hash = mix(feature.hashCode());
+        vector[Math.floorMod(hash, dimensions)] += (hash & 0x8000_0000) == 0 ? weight : -weight;
+    }
+
+    private static List<String> words(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 1) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Spreads {@link String#hashCode()}, whose low bits cluster for short words.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,420 @@
+package com.nexusai.conversation.memory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over nodes numbered 0..size-1.
+ *
+ * The graph only stores links; vectors stay wherever {@link Vectors} reads them
+ * from, and similarity is "higher is closer". Neighbours are chosen with the
+ * diversity heuristic of the HNSW paper, so clusters stay connected to each
+ * other. Inserts are incremental. Not thread-safe: callers run inserts
+ * exclusively, searches may run concurrently with each other.
+ */
+final class HnswGraph {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+
+    /**
+     * Similarity of every node to one fixed target.
+     */
+    @FunctionalInterface
+    interface Scorer {
+        float score(int node);
+    }
+
+    interface Vectors {
+
+        Scorer toNode(int node);
+
+        float similarity(int a, int b);
+    }
+
+    private final int m;
+    private final int maxLinks0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    /** links[node][layer] = {count, neighbour...}. */
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    HnswGraph(int m, int efConstruction, long seed) {
+        this.m = m;
+        this.maxLinks0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.links = new int[1024][][];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Links the next node (numbered {@link #size()}) into the graph.
+     */
+    void insert(Vectors vectors) {
+        int node = size;
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        if (node == links.length) {
+            links = Arrays.copyOf(links, links.length * 2);
+        }
+        links[node] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            links[node][layer] = new int[(layer == 0 ? maxLinks0 : m) + 1];
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            size++;
+            return;
+        }
+
+        Scorer scorer = vectors.toNode(node);
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedy(scorer, current, layer);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            NodeQueue found = searchLayer(scorer, current, efConstruction, layer);
+            int[] nearest = found.drainDescending();
+            int[] selected = selectNeighbours(nearest, scorer, layer == 0 ? maxLinks0 : m, vectors);
+            int[] own = links[node][layer];
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+            for (int neighbour : selected) {
+                link(neighbour, node, layer, vectors);
+            }
+            current = nearest[0];
+        }
+        // The node is searchable only once all its links are in place
+        size++;
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * The {@code k} accepted nodes closest to the scorer's target, closest first.
+     *
+     * @param ef size of the dynamic candidate list; larger is slower and more accurate
+     */
+    int[] search(Scorer scorer, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return new int[0];
+        }
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedy(scorer, current, layer);
+        }
+        int[] nearest = searchLayer(scorer, current, Math.max(ef, k), 0).drainDescending();
+        int[] result = new int[Math.min(k, nearest.length)];
+        int count = 0;
+        for (int node : nearest) {
+            if (count == result.length) {
+                break;
+            }
+            if (accept.test(node)) {
+                result[count++] = node;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(m);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            out.writeByte(links[node].length);
+            for (int[] layer : links[node]) {
+                out.writeShort(layer[0]);
+                for (int i = 1; i <= layer[0]; i++) {
+                    out.writeInt(layer[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a graph written by {@link #write}, or returns {@code null} if it was
+     * built with other parameters.
+     */
+    static HnswGraph read(DataInputStream in, int m, int efConstruction, long seed) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != m) {
+            return null;
+        }
+        HnswGraph graph = new HnswGraph(m, efConstruction, seed);
+        int size = in.readInt();
+        graph.entryPoint = in.readInt();
+        graph.maxLevel = in.readInt();
+        graph.links = new int[Math.max(1024, Integer.highestOneBit(Math.max(1, size)) * 2)][][];
+        for (int node = 0; node < size; node++) {
+            int levels = in.readUnsignedByte();
+            graph.links[node] = new int[levels][];
+            for (int layer = 0; layer < levels; layer++) {
+                int[] own = new int[(layer == 0 ? graph.maxLinks0 : m) + 1];
+                own[0] = in.readUnsignedShort();
+                for (int i = 1; i <= own[0]; i++) {
+                    own[i] = in.readInt();
+                }
+                graph.links[node][layer] = own;
+            }
+        }
+        graph.size = size;
+        return graph;
+    }
+
+    private int greedy(Scorer scorer, int start, int layer) {
+        int current = start;
+        float best = scorer.score(current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                float score = scorer.score(candidate);
+                if (score > best) {
+                    best = score;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private NodeQueue searchLayer(Scorer scorer, int entry, int ef, int layer) {
+        Visited seen = visited.get();
+        seen.reset(links.length);
+        NodeQueue candidates = new NodeQueue(ef * 2, true);
+        NodeQueue results = new NodeQueue(ef + 1, false);
+
+        float entryScore = scorer.score(entry);
+        seen.add(entry);
+        candidates.push(entry, entryScore);
+        results.push(entry, entryScore);
+
+        while (candidates.size() > 0) {
+            float score = candidates.topScore();
+            if (results.size() >= ef && score < results.topScore()) {
+                break;
+            }
+            int node = candidates.pop();
+            int[] neighbours = links[node][layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (!seen.add(neighbour)) {
+                    continue;
+                }
+                float neighbourScore = scorer.score(neighbour);
+                if (results.size() < ef || neighbourScore > results.topScore()) {
+                    candidates.push(neighbour, neighbourScore);
+                    results.push(neighbour, neighbourScore);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Keeps a candidate only if it is closer to the base than to every neighbour
+     * already kept, then tops up with the closest skipped ones.
+     *
+     * @param nearest candidates, closest to the base first
+     */
+    private int[] selectNeighbours(int[] nearest, Scorer toBase, int max, Vectors vectors) {
+        if (nearest.length <= max) {
+            return nearest;
+        }
+        int[] selected = new int[max];
+        int count = 0;
+        int[] skipped = new int[nearest.length];
+        int skippedCount = 0;
+        for (int candidate : nearest) {
+            if (count == max) {
+                break;
+            }
+            float toBaseScore = toBase.score(candidate);
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                if (vectors.similarity(candidate, selected[i]) > toBaseScore) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate;
+            } else {
+                skipped[skippedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < skippedCount && count < max; i++) {
+            selected[count++] = skipped[i];
+        }
+        return count == max ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private void link(int from, int to, int layer, Vectors vectors) {
+        int[] own = links[from][layer];
+        int capacity = own.length - 1;
+        if (own[0] < capacity) {
+            own[++own[0]] = to;
+            return;
+        }
+        // Full: re-select among the current neighbours and the new node
+        Scorer toFrom = vectors.toNode(from);
+        NodeQueue ranked = new NodeQueue(capacity + 1, true);
+        for (int i = 1; i <= own[0]; i++) {
+            ranked.push(own[i], toFrom.score(own[i]));
+        }
+        ranked.push(to, toFrom.score(to));
+        int[] kept = selectNeighbours(ranked.drainDescending(), toFrom, capacity, vectors);
+        own[0] = kept.length;
+        System.arraycopy(kept, 0, own, 1, kept.length);
+    }
+
+    /**
+     * Binary heap of (node, score), max- or min-ordered on score.
+     */
+    private static final class NodeQueue {
+
+        private int[] nodes;
+        private float[] scores;
+        private final boolean max;
+        private int size;
+
+        NodeQueue(int capacity, boolean max) {
+            this.nodes = new int[Math.max(2, capacity)];
+            this.scores = new float[nodes.length];
+            this.max = max;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!before(scores[child], lastScore)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        /**
+         * Empties the queue, returning its nodes closest (highest score) first.
+         */
+        int[] drainDescending() {
+            int[] drained = new int[size];
+            if (max) {
+                for (int i = 0; i < drained.length; i++) {
+                    drained[i] = pop();
+                }
+            } else {
+                for (int i = drained.length - 1; i >= 0; i--) {
+                    drained[i] = pop();
+                }
+            }
+            return drained;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    /**
+     * Visited marks reused across searches on one thread: a node is visited when
+     * its stamp equals the current epoch, so resetting is O(1).
+     */
+    private static final class Visited {
+
+        private int[] stamps = new int[1024];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (stamps.length < capacity) {
+                stamps = new int[capacity];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * @return {@code true} if the node was not visited yet
+         */
+        boolean add(int node) {
+            if (stamps[node] == epoch) {
+                return false;
+            }
+            stamps[node] = epoch;
+            return true;
+        }
+    }
+}
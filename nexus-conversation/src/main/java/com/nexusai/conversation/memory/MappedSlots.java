@@ -0,0 +1,98 @@
+package com.nexusai.conversation.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size records in a memory-mapped file, addressed by slot number.
+ *
+ * The file is mapped in segments of whole slots, so it can grow past the 2 GB
+ * limit of a single mapping and growing never remaps what is already mapped.
+ * Data lives in the page cache, not on the Java heap; {@link #force()} flushes
+ * it to disk. Not thread-safe: callers serialize writes and growth.
+ */
+final class MappedSlots implements Closeable {
+
+    private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int slotBytes;
+    private final int slotsPerSegment;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<FloatBuffer> floatViews = new ArrayList<>();
+
+    MappedSlots(Path file, int slotBytes) throws IOException {
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.slotBytes = slotBytes;
+        this.slotsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / slotBytes);
+        long slots = channel.size() / slotBytes;
+        while ((long) segments.size() * slotsPerSegment < slots) {
+            mapNextSegment();
+        }
+    }
+
+    /**
+     * Slots that fit in the mapped segments.
+     */
+    int capacity() {
+        return segments.size() * slotsPerSegment;
+    }
+
+    /**
+     * Maps segments until {@code slot} is addressable.
+     */
+    void ensureCapacity(int slot) throws IOException {
+        while (slot >= capacity()) {
+            mapNextSegment();
+        }
+    }
+
+    /**
+     * The segment holding a slot, little-endian; read it at {@link #offset(int)}.
+     */
+    MappedByteBuffer segment(int slot) {
+        return segments.get(slot / slotsPerSegment);
+    }
+
+    int offset(int slot) {
+        return (slot % slotsPerSegment) * slotBytes;
+    }
+
+    /**
+     * Bulk-copies the first {@code into.length} floats of a slot onto the heap,
+     * where loops over them vectorize; per-element reads of a mapped buffer do not.
+     */
+    void readFloats(int slot, float[] into) {
+        floatViews.get(slot / slotsPerSegment).get(offset(slot) / Float.BYTES, into, 0, into.length);
+    }
+
+    void force() {
+        segments.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        segments.clear();
+        floatViews.clear();
+        channel.close();
+    }
+
+    private void mapNextSegment() throws IOException {
+        long position = (long) segments.size() * slotsPerSegment * slotBytes;
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                (long) slotsPerSegment * slotBytes);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segments.add(segment);
+        floatViews.add(segment.asFloatBuffer());
+    }
+}
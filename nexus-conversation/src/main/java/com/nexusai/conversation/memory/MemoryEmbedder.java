@@ -0,0 +1,19 @@
+package com.nexusai.conversation.memory;
+
+/**
+ * Turns memory texts and queries into vectors for the {@link MemoryIndex}.
+ */
+public interface MemoryEmbedder {
+
+    int dimensions();
+
+    /**
+     * Identifies the vector space; shards built under another name are rebuilt.
+     */
+    String name();
+
+    /**
+     * @return an L2-normalized vector of {@link #dimensions()} floats
+     */
+    float[] embed(String text);
+}
@@ -0,0 +1,231 @@
+package com.nexusai.conversation.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process vector index of long-term companion memories, one {@link MemoryShard}
+ * per (user, companion) pair under {@code path/<userId>/<companionId>}.
+ *
+ * Retrieval takes the {@code k * oversample} nearest memories from the HNSW graph
+ * and re-ranks them by a blend of similarity, importance and recency:
+ * <pre>
+ *   score = w_sim * similarity + w_imp * importance + w_rec * 0.5^(age / half-life)
+ * </pre>
+ * where age is measured from the last retrieval, or creation. At most
+ * {@code max-open-shards} shards are kept open; the least recently used one is
+ * checkpointed and closed. Open shards are checkpointed on a fixed interval.
+ */
+@Component
+@Slf4j
+public class MemoryIndex {
+
+    private final Path path;
+    private final MemoryEmbedder embedder;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int oversample;
+    private final double similarityWeight;
+    private final double importanceWeight;
+    private final double recencyWeight;
+    private final double halfLifeMillis;
+
+    private final Cache<ShardKey, MemoryShard> shards;
+    private final ScheduledExecutorService maintenance;
+
+    public MemoryIndex(MemoryEmbedder embedder,
+                       @Value("${nexusai.conversation.memory.path:./data/memory-index}") Path path,
+                       @Value("${nexusai.conversation.memory.hnsw.m:16}") int m,
+                       @Value("${nexusai.conversation.memory.hnsw.ef-construction:100}") int efConstruction,
+                       @Value("${nexusai.conversation.memory.hnsw.ef-search:64}") int efSearch,
+                       @Value("${nexusai.conversation.memory.ranking.oversample:4}") int oversample,
+                       @Value("${nexusai.conversation.memory.ranking.similarity-weight:0.7}") double similarityWeight,
+                       @Value("${nexusai.conversation.memory.ranking.importance-weight:0.2}") double importanceWeight,
+                       @Value("${nexusai.conversation.memory.ranking.recency-weight:0.1}") double recencyWeight,
+                       @Value("${nexusai.conversation.memory.ranking.recency-half-life:P30D}") Duration recencyHalfLife,
+                       @Value("${nexusai.conversation.memory.max-open-shards:256}") int maxOpenShards,
+                       @Value("${nexusai.conversation.memory.checkpoint-interval:PT30S}") Duration checkpointInterval) {
+        this.path = path;
+        this.embedder = embedder;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.oversample = oversample;
+        this.similarityWeight = similarityWeight;
+        this.importanceWeight = importanceWeight;
+        this.recencyWeight = recencyWeight;
+        this.halfLifeMillis = recencyHalfLife.toMillis();
+        this.shards = Caffeine.newBuilder()
+                .maximumSize(maxOpenShards)
+                .removalListener((ShardKey key, MemoryShard shard, RemovalCause cause) -> close(shard))
+                // Close evicted shards inline, before the same directory can be reopened
+                .executor(Runnable::run)
+                .build();
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "memory-index-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = checkpointInterval.toMillis();
+        maintenance.scheduleWithFixedDelay(this::checkpoint, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether the pair has an index on disk; a missing one needs a rebuild.
+     */
+    public boolean exists(UUID userId, UUID companionId) {
+        ShardKey key = new ShardKey(userId, companionId);
+        return shards.getIfPresent(key) != null || Files.isDirectory(directory(key));
+    }
+
+    /**
+     * Memories in the pair's index, deleted ones excluded.
+     */
+    public int size(UUID userId, UUID companionId) {
+        return withShard(userId, companionId, MemoryShard::size);
+    }
+
+    public Set<UUID> ids(UUID userId, UUID companionId) {
+        return withShard(userId, companionId, MemoryShard::ids);
+    }
+
+    public boolean contains(UUID userId, UUID companionId, UUID memoryId) {
+        return withShard(userId, companionId, shard -> shard.contains(memoryId));
+    }
+
+    public void add(UUID userId, UUID companionId, UUID memoryId, String content, double importance, long createdAt) {
+        float[] vector = embedder.embed(content);
+        withShard(userId, companionId, shard -> {
+            shard.add(memoryId, vector, content, (float) importance, createdAt);
+            return null;
+        });
+    }
+
+    public void delete(UUID userId, UUID companionId, UUID memoryId) {
+        withShard(userId, companionId, shard -> {
+            shard.delete(memoryId);
+            return null;
+        });
+    }
+
+    /**
+     * The {@code k} best memories for a query text, best first, marked as accessed.
+     */
+    public List<RecalledMemory> search(UUID userId, UUID companionId, String query, int k) {
+        float[] vector = embedder.embed(query);
+        long now = System.currentTimeMillis();
+        return withShard(userId, companionId, shard -> {
+            List<RankedCandidate> ranked = new ArrayList<>();
+            for (MemoryShard.Candidate candidate : shard.search(vector, k * oversample, Math.max(efSearch, k * oversample))) {
+                ranked.add(new RankedCandidate(candidate, score(candidate, now)));
+            }
+            ranked.sort(Comparator.comparingDouble(RankedCandidate::score).reversed());
+
+            List<RecalledMemory> recalled = new ArrayList<>(Math.min(k, ranked.size()));
+            for (RankedCandidate hit : ranked.subList(0, Math.min(k, ranked.size()))) {
+                MemoryShard.Candidate candidate = hit.candidate();
+                shard.touch(candidate.slot(), now);
+                recalled.add(new RecalledMemory(candidate.id(), shard.content(candidate.slot()),
+                        candidate.similarity(), hit.score()));
+            }
+            return recalled;
+        });
+    }
+
+    /**
+     * Exact top-k by similarity alone, for measuring the recall of the graph.
+     */
+    List<RecalledMemory> exactSearch(UUID userId, UUID companionId, String query, int k) {
+        float[] vector = embedder.embed(query);
+        return withShard(userId, companionId, shard -> shard.bruteForce(vector, k).stream()
+                .map(candidate -> new RecalledMemory(candidate.id(), null, candidate.similarity(), candidate.similarity()))
+                .toList());
+    }
+
+    public void checkpoint() {
+        shards.asMap().values().forEach(MemoryShard::checkpoint);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        maintenance.shutdownNow();
+        shards.invalidateAll();
+        shards.cleanUp();
+    }
+
+    private double score(MemoryShard.Candidate candidate, long now) {
+        double importance = Math.max(0, Math.min(1, candidate.importance()));
+        long age = Math.max(0, now - Math.max(candidate.createdAt(), candidate.accessedAt()));
+        double recency = Math.pow(0.5, age / halfLifeMillis);
+        return similarityWeight * candidate.similarity() + importanceWeight * importance + recencyWeight * recency;
+    }
+
+    /**
+     * Runs against an open shard, reopening it if it was evicted and closed meanwhile.
+     */
+    private <T> T withShard(UUID userId, UUID companionId, ShardCall<T> call) {
+        ShardKey key = new ShardKey(userId, companionId);
+        for (int attempt = 0; ; attempt++) {
+            MemoryShard shard = shards.get(key, this::open);
+            try {
+                return call.apply(shard);
+            } catch (IllegalStateException e) {
+                if (!shard.isClosed() || attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private MemoryShard open(ShardKey key) {
+        try {
+            return MemoryShard.open(directory(key), embedder.name(), embedder.dimensions(), m, efConstruction);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open memory shard " + key, e);
+        }
+    }
+
+    private Path directory(ShardKey key) {
+        return path.resolve(key.userId().toString()).resolve(key.companionId().toString());
+    }
+
+    private static void close(MemoryShard shard) {
+        if (shard == null) {
+            return;
+        }
+        try {
+            shard.close();
+        } catch (IOException e) {
+            log.warn("Failed to close memory shard", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        T apply(MemoryShard shard);
+    }
+
+    private record ShardKey(UUID userId, UUID companionId) {}
+
+    private record RankedCandidate(MemoryShard.Candidate candidate, double score) {}
+}
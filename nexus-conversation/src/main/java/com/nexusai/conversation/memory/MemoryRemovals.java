@@ -0,0 +1,61 @@
+package com.nexusai.conversation.memory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Removes forgotten memories from the {@link MemoryIndex} of every node.
+ *
+ * The removal is applied locally and broadcast on a Redis channel as
+ * {@code <userId>:<companionId>:<memoryId>:<origin node>}; a node ignores its
+ * own broadcasts. A node that misses one still never recalls the memory: the
+ * recalled ids are checked against the table and the index is reconciled when
+ * its size disagrees with it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MemoryRemovals implements MessageListener {
+
+    public static final String CHANNEL = "nexusai:memory:remove";
+
+    private final MemoryIndex memoryIndex;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public void remove(UUID userId, UUID companionId, UUID memoryId) {
+        removeLocally(userId, companionId, memoryId);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, userId + ":" + companionId + ":" + memoryId + ":" + nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast removal of memory {}", memoryId, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split(":");
+        if (parts.length != 4 || nodeId.equals(parts[3])) {
+            return;
+        }
+        try {
+            removeLocally(UUID.fromString(parts[0]), UUID.fromString(parts[1]), UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException e) {
+            log.warn("Malformed memory removal message: {}", body);
+        }
+    }
+
+    private void removeLocally(UUID userId, UUID companionId, UUID memoryId) {
+        if (memoryIndex.exists(userId, companionId)) {
+            memoryIndex.delete(userId, companionId, memoryId);
+        }
+    }
+}
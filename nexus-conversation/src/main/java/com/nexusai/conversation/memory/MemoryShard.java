@@ -0,0 +1,450 @@
+package com.nexusai.conversation.memory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * The memories of one user with one companion: an HNSW graph over vectors kept
+ * off-heap in memory-mapped files.
+ *
+ * Layout of the shard directory:
+ * <pre>
+ *   vectors.f32   one L2-normalized float vector per slot
+ *   meta.bin      one fixed-size record per slot (id, timestamps, importance, content pointer)
+ *   content.txt   memory texts, appended
+ *   graph.bin     snapshot of the graph links, written on checkpoint
+ *   SIGNATURE     embedder and dimensions the vectors were built with
+ * </pre>
+ * A slot is committed once its id is written, last. On open, slots committed
+ * after the last graph snapshot are re-inserted, so a crash only costs the
+ * re-linking of recent memories. Deleted memories keep their slot and links but
+ * are never returned.
+ */
+@Slf4j
+final class MemoryShard implements Closeable {
+
+    private static final String VECTORS = "vectors.f32";
+    private static final String META = "meta.bin";
+    private static final String CONTENT = "content.txt";
+    private static final String GRAPH = "graph.bin";
+    private static final String SIGNATURE = "SIGNATURE";
+
+    private static final int META_BYTES = 56;
+    private static final int ID_MSB = 0;
+    private static final int ID_LSB = 8;
+    private static final int CREATED_AT = 16;
+    private static final int ACCESSED_AT = 24;
+    private static final int CONTENT_OFFSET = 32;
+    private static final int IMPORTANCE = 40;
+    private static final int CONTENT_LENGTH = 44;
+    private static final int FLAGS = 48;
+    private static final int DELETED = 1;
+
+    private final Path directory;
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final MappedSlots vectors;
+    private final MappedSlots meta;
+    private final FileChannel content;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HnswGraph.Vectors graphVectors = new GraphVectors();
+    private final ThreadLocal<Scratch> scratch;
+
+    private HnswGraph graph;
+    private int count;
+    private volatile boolean dirty;
+    private volatile boolean closed;
+
+    private MemoryShard(Path directory, int dimensions, int m, int efConstruction) throws IOException {
+        this.directory = directory;
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.vectors = new MappedSlots(directory.resolve(VECTORS), dimensions * Float.BYTES);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(new float[dimensions], new float[dimensions]));
+        this.meta = new MappedSlots(directory.resolve(META), META_BYTES);
+        this.content = FileChannel.open(directory.resolve(CONTENT),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Opens a shard, creating it if needed. A shard built with another signature
+     * is wiped and comes back empty.
+     */
+    static MemoryShard open(Path directory, String signature, int dimensions, int m, int efConstruction)
+            throws IOException {
+        Path signatureFile = directory.resolve(SIGNATURE);
+        if (Files.exists(signatureFile) && !Files.readString(signatureFile).equals(signature)) {
+            log.info("Memory shard {} was built with another embedder, discarding it", directory);
+            for (String file : List.of(VECTORS, META, CONTENT, GRAPH, SIGNATURE)) {
+                Files.deleteIfExists(directory.resolve(file));
+            }
+        }
+        Files.createDirectories(directory);
+        Files.writeString(signatureFile, signature);
+
+        MemoryShard shard = new MemoryShard(directory, dimensions, m, efConstruction);
+        shard.load();
+        return shard;
+    }
+
+    /**
+     * Live memories, deleted ones excluded.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Set<UUID> ids() {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(slots.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains(UUID id) {
+        lock.readLock().lock();
+        try {
+            return slots.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a memory; adding an id twice is a no-op.
+     *
+     * @param vector L2-normalized, {@code dimensions} long
+     */
+    void add(UUID id, float[] vector, String text, float importance, long createdAt) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            if (slots.containsKey(id)) {
+                return;
+            }
+            int slot = count;
+            vectors.ensureCapacity(slot);
+            meta.ensureCapacity(slot);
+
+            MappedByteBuffer vectorSegment = vectors.segment(slot);
+            int vectorOffset = vectors.offset(slot);
+            for (int i = 0; i < dimensions; i++) {
+                vectorSegment.putFloat(vectorOffset + i * Float.BYTES, vector[i]);
+            }
+
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            long contentOffset = content.size();
+            content.write(ByteBuffer.wrap(bytes), contentOffset);
+
+            MappedByteBuffer record = meta.segment(slot);
+            int base = meta.offset(slot);
+            record.putLong(base + CREATED_AT, createdAt);
+            record.putLong(base + ACCESSED_AT, createdAt);
+            record.putLong(base + CONTENT_OFFSET, contentOffset);
+            record.putFloat(base + IMPORTANCE, importance);
+            record.putInt(base + CONTENT_LENGTH, bytes.length);
+            record.putInt(base + FLAGS, 0);
+            record.putLong(base + ID_LSB, id.getLeastSignificantBits());
+            record.putLong(base + ID_MSB, id.getMostSignificantBits());
+
+            count++;
+            slots.put(id, slot);
+            graph.insert(graphVectors);
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(UUID id) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            Integer slot = slots.remove(id);
+            if (slot != null) {
+                MappedByteBuffer record = meta.segment(slot);
+                int base = meta.offset(slot);
+                record.putInt(base + FLAGS, record.getInt(base + FLAGS) | DELETED);
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate nearest memories to a query, closest first.
+     *
+     * @param query L2-normalized, {@code dimensions} long
+     */
+    List<Candidate> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            HnswGraph.Scorer scorer = slot -> dot(query, slot);
+            int[] nearest = graph.search(scorer, k, ef, this::isLive);
+            List<Candidate> candidates = new ArrayList<>(nearest.length);
+            for (int slot : nearest) {
+                MappedByteBuffer record = meta.segment(slot);
+                int base = meta.offset(slot);
+                candidates.add(new Candidate(slot,
+                        new UUID(record.getLong(base + ID_MSB), record.getLong(base + ID_LSB)),
+                        scorer.score(slot),
+                        record.getFloat(base + IMPORTANCE),
+                        record.getLong(base + CREATED_AT),
+                        record.getLong(base + ACCESSED_AT)));
+            }
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact nearest memories, by scanning every vector. For tests and tuning only.
+     */
+    List<Candidate> bruteForce(float[] query, int k) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            float[] similarities = new float[count];
+            for (int slot = 0; slot < count; slot++) {
+                similarities[slot] = dot(query, slot);
+            }
+            return IntStream.range(0, count)
+                    .filter(this::isLive)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble((Integer slot) -> similarities[slot]).reversed())
+                    .limit(k)
+                    .map(slot -> new Candidate(slot, idAt(slot), similarities[slot], 0, 0, 0))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    String content(int slot) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            MappedByteBuffer record = meta.segment(slot);
+            int base = meta.offset(slot);
+            ByteBuffer bytes = ByteBuffer.allocate(record.getInt(base + CONTENT_LENGTH));
+            long position = record.getLong(base + CONTENT_OFFSET);
+            while (bytes.hasRemaining()) {
+                if (content.read(bytes, position + bytes.position()) < 0) {
+                    break;
+                }
+            }
+            return new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records a retrieval for the recency part of the ranking. Racing updates of
+     * the same slot both write a recent time, so no write lock is taken.
+     */
+    void touch(int slot, long accessedAt) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            meta.segment(slot).putLong(meta.offset(slot) + ACCESSED_AT, accessedAt);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the mapped files and snapshots the graph if it changed.
+     */
+    void checkpoint() {
+        lock.readLock().lock();
+        try {
+            if (closed || !dirty) {
+                return;
+            }
+            vectors.force();
+            meta.force();
+            content.force(false);
+            Path temp = directory.resolve(GRAPH + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                graph.write(out);
+            }
+            Files.move(temp, directory.resolve(GRAPH), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Inserts take the write lock, so nothing changed since the snapshot started
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("Failed to checkpoint memory shard {}", directory, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        checkpoint();
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            vectors.close();
+            meta.close();
+            content.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    private void load() throws IOException {
+        // Committed slots are contiguous from 0
+        int capacity = meta.capacity();
+        while (count < capacity && idAt(count) != null) {
+            UUID id = idAt(count);
+            if ((meta.segment(count).getInt(meta.offset(count) + FLAGS) & DELETED) == 0) {
+                slots.put(id, count);
+            }
+            count++;
+        }
+
+        graph = readGraph();
+        if (graph == null || graph.size() > count) {
+            graph = new HnswGraph(m, efConstruction, directory.hashCode());
+        }
+        int linked = graph.size();
+        while (graph.size() < count) {
+            graph.insert(graphVectors);
+        }
+        dirty = linked < count;
+        if (count > 0) {
+            log.debug("Opened memory shard {} with {} memories ({} re-linked)", directory, count, count - linked);
+        }
+    }
+
+    private HnswGraph readGraph() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(GRAPH))))) {
+            return HnswGraph.read(in, m, efConstruction, directory.hashCode());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private UUID idAt(int slot) {
+        MappedByteBuffer record = meta.segment(slot);
+        int base = meta.offset(slot);
+        long msb = record.getLong(base + ID_MSB);
+        long lsb = record.getLong(base + ID_LSB);
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+
+    private boolean isLive(int slot) {
+        return (meta.segment(slot).getInt(meta.offset(slot) + FLAGS) & DELETED) == 0;
+    }
+
+    private float dot(float[] query, int slot) {
+        float[] vector = scratch.get().first();
+        vectors.readFloats(slot, vector);
+        return dot(query, vector);
+    }
+
+    private float dot(int a, int b) {
+        Scratch buffers = scratch.get();
+        vectors.readFloats(a, buffers.first());
+        vectors.readFloats(b, buffers.second());
+        return dot(buffers.first(), buffers.second());
+    }
+
+    private static float dot(float[] a, float[] b) {
+        // Independent accumulators let the CPU overlap the multiply-adds
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < a.length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Memory shard " + directory + " is closed");
+        }
+    }
+
+    /**
+     * A search hit before ranking.
+     */
+    record Candidate(int slot, UUID id, float similarity, float importance, long createdAt, long accessedAt) {}
+
+    /**
+     * Per-thread heap copies of vectors being compared.
+     */
+    private record Scratch(float[] first, float[] second) {}
+
+    private final class GraphVectors implements HnswGraph.Vectors {
+
+        @Override
+        public HnswGraph.Scorer toNode(int node) {
+            float[] target = new float[dimensions];
+            vectors.readFloats(node, target);
+            return other -> dot(target, other);
+        }
+
+        @Override
+        public float similarity(int a, int b) {
+            return dot(a, b);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.nexusai.conversation.memory;
+
+import java.util.UUID;
+
+/**
+ * A memory returned by {@link MemoryIndex#search}, with its raw similarity to
+ * the query and its blended ranking score.
+ */
+public record RecalledMemory(UUID id, String content, float similarity, double score) {}
@@ -0,0 +1,78 @@
+package com.nexusai.conversation.outbox;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexusai.conversation.event.ConversationArchivedEvent;
+import com.nexusai.conversation.event.MessageCreatedEvent;
+import com.nexusai.conversation.event.MessageEditedEvent;
+import com.nexusai.core.entity.Message;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Writes conversation domain events to the {@code conversation_outbox} table
+ * (see V9), from which {@link OutboxRelay} publishes them to Kafka.
+ *
+ * The listeners run synchronously in the publisher's thread, so the row is
+ * inserted in the transaction that changed the conversation: it commits and
+ * rolls back with it, and a failed insert fails that transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "nexusai.conversation.outbox.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ConversationOutbox {
+
+    public static final String MESSAGE_CREATED = "MessageCreated";
+    public static final String MESSAGE_EDITED = "MessageEdited";
+    public static final String CONVERSATION_ARCHIVED = "ConversationArchived";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @EventListener
+    public void onMessageCreated(MessageCreatedEvent event) {
+        append(messagePayload(MESSAGE_CREATED, event.message(), event.userId()));
+    }
+
+    @EventListener
+    public void onMessageEdited(MessageEditedEvent event) {
+        append(messagePayload(MESSAGE_EDITED, event.message(), event.userId()));
+    }
+
+    @EventListener
+    public void onConversationArchived(ConversationArchivedEvent event) {
+        append(new OutboxPayload(UUID.randomUUID(), CONVERSATION_ARCHIVED, event.conversationId(), event.userId(),
+                null, null, null, null, Instant.now()));
+    }
+
+    private void append(OutboxPayload payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + payload.type() + " event", e);
+        }
+        jdbcTemplate.update("INSERT INTO conversation_outbox (aggregate_id, event_type, payload) VALUES (?, ?, ?::jsonb)",
+                payload.conversationId(), payload.type(), json);
+    }
+
+    private static OutboxPayload messagePayload(String type, Message message, UUID userId) {
+        return new OutboxPayload(UUID.randomUUID(), type, message.getConversationId(), userId, message.getId(),
+                message.getRole().name(), message.getContent(), message.getTokensUsed(), Instant.now());
+    }
+
+    /**
+     * The published event. {@code eventId} lets consumers drop the duplicates
+     * that at-least-once delivery may produce.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record OutboxPayload(UUID eventId, String type, UUID conversationId, UUID userId, UUID messageId,
+                         String role, String content, Integer tokensUsed, Instant occurredAt) {}
+}
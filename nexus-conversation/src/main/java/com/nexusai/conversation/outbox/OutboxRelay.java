@@ -0,0 +1,226 @@
+package com.nexusai.conversation.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the rows of {@code conversation_outbox} to Kafka and compacts the
+ * published ones.
+ *
+ * Rows are sent in id order, keyed by conversation, so the events of one
+ * conversation land on one partition in the order they were written. A run
+ * holds a session-scoped advisory lock: only one node relays at a time, as two
+ * relays working on different batches could reorder the events of a
+ * conversation. No transaction stays open while Kafka acknowledges a batch:
+ * the rows are read, sent, then marked published by a separate statement.
+ * Only the prefix of a batch acknowledged by Kafka is marked published; the
+ * rest is sent again by the next run, so delivery is at-least-once and
+ * consumers dedupe on the payload's {@code eventId}.
+ */
+@Component
+@ConditionalOnProperty(name = "nexusai.conversation.outbox.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class OutboxRelay {
+
+    static final String EVENT_TYPE_HEADER = "event-type";
+    static final String LOCK_KEY = "hashtext('conversation_outbox_relay')";
+
+    private static final RowMapper<OutboxRow> ROW_MAPPER = (rs, rowNum) -> new OutboxRow(
+            rs.getLong("id"),
+            rs.getObject("aggregate_id", UUID.class),
+            rs.getString("event_type"),
+            rs.getString("payload"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final String topic;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration sendTimeout;
+    private final Duration retention;
+    private final Counter published;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate,
+                       KafkaTemplate<String, String> kafkaTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${nexusai.conversation.outbox.topic:conversation-events}") String topic,
+                       @Value("${nexusai.conversation.outbox.batch-size:500}") int batchSize,
+                       @Value("${nexusai.conversation.outbox.max-batches-per-run:20}") int maxBatchesPerRun,
+                       @Value("${nexusai.conversation.outbox.send-timeout:PT10S}") Duration sendTimeout,
+                       @Value("${nexusai.conversation.outbox.retention:PT1H}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.sendTimeout = sendTimeout;
+        this.retention = retention;
+        this.published = Counter.builder("nexusai.conversation.outbox.published")
+                .description("Outbox events acknowledged by Kafka")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Drains pending rows while holding the relay lock.
+     *
+     * @return the number of rows published, 0 when another node holds the relay
+     */
+    @Scheduled(fixedDelayString = "${nexusai.conversation.outbox.relay-interval:PT1S}")
+    public int relay() {
+        try {
+            Integer relayed = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+                if (!advisoryLock(connection, "pg_try_advisory_lock")) {
+                    return 0;
+                }
+                try {
+                    // A full batch means a backlog: keep draining it, within bounds
+                    int total = 0;
+                    for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                        int count = relayBatch();
+                        total += count;
+                        if (count < batchSize) {
+                            break;
+                        }
+                    }
+                    return total;
+                } finally {
+                    advisoryLock(connection, "pg_advisory_unlock");
+                }
+            });
+            return relayed != null ? relayed : 0;
+        } catch (Exception e) {
+            // Rows stay pending and are retried on the next run
+            log.warn("Outbox relay failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Sends the oldest pending rows and marks the acknowledged ones published.
+     * The caller holds the relay lock.
+     *
+     * @return the number of rows published
+     */
+    int relayBatch() {
+        List<OutboxRow> rows = jdbcTemplate.query(
+                "SELECT id, aggregate_id, event_type, payload FROM conversation_outbox " +
+                "WHERE published_at IS NULL ORDER BY id LIMIT ?", ROW_MAPPER, batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<Long> delivered = send(rows);
+        markPublished(delivered);
+        published.increment(delivered.size());
+        return delivered.size();
+    }
+
+    /**
+     * Deletes rows published longer than {@code retention} ago, in chunks of {@code batch-size}.
+     *
+     * @return the number of rows deleted
+     */
+    @Scheduled(fixedDelayString = "${nexusai.conversation.outbox.compaction-interval:PT10M}",
+            initialDelayString = "${nexusai.conversation.outbox.compaction-interval:PT10M}")
+    public int compact() {
+        // The cutoff is taken from the database clock, which also stamps published_at
+        long retentionSeconds = retention.toSeconds();
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(
+                    "DELETE FROM conversation_outbox WHERE id IN (" +
+                    "SELECT id FROM conversation_outbox " +
+                    "WHERE published_at < CURRENT_TIMESTAMP - ? * INTERVAL '1 second' ORDER BY published_at LIMIT ?)",
+                    retentionSeconds, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        if (total > 0) {
+            log.debug("Compacted {} published outbox rows", total);
+        }
+        return total;
+    }
+
+    /**
+     * Sends the whole batch at once, then waits for the acknowledgements in order.
+     *
+     * @return the ids of the rows acknowledged before the first failure
+     */
+    private List<Long> send(List<OutboxRow> rows) {
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(rows.size());
+        for (OutboxRow row : rows) {
+            ProducerRecord<String, String> record = new ProducerRecord<>(topic, row.aggregateId().toString(), row.payload());
+            record.headers().add(EVENT_TYPE_HEADER, row.eventType().getBytes(StandardCharsets.UTF_8));
+            sends.add(kafkaTemplate.send(record));
+        }
+
+        List<Long> delivered = new ArrayList<>(rows.size());
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(rows.get(i).id());
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Outbox event {} not acknowledged, {} of {} published: {}",
+                        rows.get(i).id(), delivered.size(), rows.size(), e.getMessage());
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return delivered;
+    }
+
+    private void markPublished(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE conversation_outbox SET published_at = CURRENT_TIMESTAMP WHERE id = ANY(?)");
+            Array array = connection.createArrayOf("bigint", ids.toArray());
+            statement.setArray(1, array);
+            return statement;
+        });
+    }
+
+    /**
+     * Takes or releases the relay lock. Session-scoped, so it has to be
+     * released on the connection that took it.
+     */
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT " + function + "(" + LOCK_KEY + ")")) {
+            return result.next() && result.getBoolean(1);
+        }
+    }
+
+    record OutboxRow(long id, UUID aggregateId, String eventType, String payload) {}
+}
@@ -0,0 +1,152 @@
+package com.nexusai.conversation.partition;
+
+import com.nexusai.conversation.archive.MessageArchive;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps the monthly partitions of {@code messages} (see V8) ahead of time
+ * and, when {@code retention-months} is set, detaches the ones past it.
+ *
+ * Inserting into a month without a partition fails, so partitions are created
+ * {@code months-ahead} in advance, on boot and then periodically.
+ *
+ * Retention never hides history: the messages of an expired month are first
+ * moved to the {@link MessageArchive}, which history reads fall through to,
+ * and only a partition left empty is detached. A month still holding rows
+ * (archival disabled, or messages pinned by attachments or reactions) is kept
+ * and reported. Detached partitions are renamed
+ * {@code messages_YYYY_MM_detached} and left in place to be dropped by an
+ * operator. Safe to run on every node.
+ */
+@Component
+@Slf4j
+public class MessagePartitionMaintainer {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageArchive messageArchive;
+    private final boolean archiveEnabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public MessagePartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                      MessageArchive messageArchive,
+                                      @Value("${nexusai.conversation.archive.enabled:false}") boolean archiveEnabled,
+                                      @Value("${nexusai.conversation.partitions.months-ahead:3}") int monthsAhead,
+                                      @Value("${nexusai.conversation.partitions.retention-months:0}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageArchive = messageArchive;
+        this.archiveEnabled = archiveEnabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        run();
+    }
+
+    @Scheduled(fixedDelayString = "${nexusai.conversation.partitions.interval:PT6H}",
+            initialDelayString = "${nexusai.conversation.partitions.interval:PT6H}")
+    public void run() {
+        try {
+            createAhead();
+            if (retentionMonths > 0) {
+                detachExpired();
+            }
+        } catch (Exception e) {
+            // Partitions are created months ahead, so the next run has time to retry
+            log.error("Failed to maintain message partitions", e);
+        }
+    }
+
+    /**
+     * @return the number of partitions created
+     */
+    public int createAhead() {
+        Integer created = jdbcTemplate.queryForObject("SELECT ensure_message_partitions(?)", Integer.class, monthsAhead);
+        if (created != null && created > 0) {
+            log.info("Created {} message partitions", created);
+        }
+        return created == null ? 0 : created;
+    }
+
+    /**
+     * Archives, then detaches, the partitions of months entirely older than
+     * the retention. {@code DETACH ... CONCURRENTLY} cannot run in a
+     * transaction, so each statement is issued on its own auto-committed
+     * connection.
+     *
+     * @return the names of the detached partitions
+     */
+    public List<String> detachExpired() {
+        String oldestKept = "messages_" + YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths).format(PARTITION_SUFFIX);
+        List<String> detached = new ArrayList<>();
+        for (String partition : partitions()) {
+            if (partition.compareTo(oldestKept) >= 0) {
+                break;
+            }
+            if (archiveEnabled) {
+                archive(partition);
+            }
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + partition + ")", Boolean.class))) {
+                log.warn("Keeping expired message partition {}: it still holds messages that are not archived", partition);
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION " + partition + " CONCURRENTLY");
+            jdbcTemplate.execute("ALTER TABLE " + partition + " RENAME TO " + partition + "_detached");
+            log.info("Detached message partition {}", partition);
+            detached.add(partition);
+        }
+        return detached;
+    }
+
+    /**
+     * Moves every conversation's messages of the partition's month to the archive.
+     */
+    private void archive(String partition) {
+        YearMonth month = YearMonth.parse(partition.substring("messages_".length()), PARTITION_SUFFIX);
+        // A day past the bound absorbs session time zone offsets; archiving a
+        // little of the next month early only moves it to the cold tier sooner
+        LocalDateTime before = month.plusMonths(1).atDay(2).atStartOfDay();
+        List<UUID> conversations = jdbcTemplate.queryForList(
+                "SELECT DISTINCT conversation_id FROM " + partition, UUID.class);
+        for (UUID conversationId : conversations) {
+            try {
+                messageArchive.archive(conversationId, before);
+            } catch (Exception e) {
+                // The partition stays attached until a later run archives it
+                log.warn("Failed to archive messages of conversation {} from {}", conversationId, partition, e);
+            }
+        }
+    }
+
+    /**
+     * Names of the attached monthly partitions, oldest first.
+     */
+    List<String> partitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'messages'::regclass
+                  AND c.relname ~ '^messages_[0-9]{4}_[0-9]{2}$'
+                ORDER BY c.relname
+                """, String.class);
+    }
+}
@@ -0,0 +1,272 @@
+package com.nexusai.conversation.reaper;
+
+import com.nexusai.conversation.event.ConversationDeletedEvent;
+import com.nexusai.conversation.service.ContextService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes soft-deleted conversations in the background.
+ *
+ * Messages go first, newest first, in batches of {@code batch-size} walked
+ * with a keyset cursor over (created_at, id), so each batch is an index range
+ * scan that never revisits the dead tuples of the previous ones. Attachments
+ * and reactions follow their message (V8 trigger). Then the context rows and
+ * the conversation row itself go, and finally its Redis context and archived
+ * segments.
+ *
+ * The reaper only uses a share of the database: after each batch it pauses so
+ * that it is busy {@code duty-cycle} of the time, and it waits while more than
+ * {@code max-active-queries} queries are running. A transaction-scoped advisory
+ * lock per conversation keeps two nodes off the same conversation.
+ */
+@Component
+@Slf4j
+public class ConversationReaper {
+
+    private static final int MAX_BUSY_CHECKS = 12;
+
+    private static final String FIRST_BATCH = """
+            WITH batch AS (
+                SELECT id, created_at FROM messages WHERE conversation_id = ?
+                ORDER BY created_at DESC, id DESC LIMIT ?
+            ), deleted AS (
+                DELETE FROM messages m USING batch b
+                WHERE m.id = b.id AND m.created_at = b.created_at
+                RETURNING m.created_at, m.id
+            )
+            SELECT created_at, id, count(*) OVER () AS deleted FROM deleted ORDER BY created_at, id LIMIT 1
+            """;
+
+    private static final String NEXT_BATCH = """
+            WITH batch AS (
+                SELECT id, created_at FROM messages WHERE conversation_id = ?
+                  AND (created_at < ? OR (created_at = ? AND id < ?))
+                ORDER BY created_at DESC, id DESC LIMIT ?
+            ), deleted AS (
+                DELETE FROM messages m USING batch b
+                WHERE m.id = b.id AND m.created_at = b.created_at
+                RETURNING m.created_at, m.id
+            )
+            SELECT created_at, id, count(*) OVER () AS deleted FROM deleted ORDER BY created_at, id LIMIT 1
+            """;
+
+    private static final RowMapper<Cursor> CURSOR_MAPPER = (rs, rowNum) -> new Cursor(
+            rs.getTimestamp("created_at").toLocalDateTime(),
+            rs.getObject("id", UUID.class),
+            rs.getInt("deleted"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final ContextService contextService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int conversationsPerRun;
+    private final double dutyCycle;
+    private final int maxActiveQueries;
+    private final Duration busyBackoff;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final Counter deletedMessages;
+    private final Counter deletedConversations;
+    private final Counter throttled;
+    private final Timer batchTimer;
+
+    public ConversationReaper(JdbcTemplate jdbcTemplate,
+                              TransactionOperations transactionOperations,
+                              ContextService contextService,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry,
+                              @Value("${nexusai.conversation.reaper.interval:PT30S}") Duration interval,
+                              @Value("${nexusai.conversation.reaper.batch-size:1000}") int batchSize,
+                              @Value("${nexusai.conversation.reaper.conversations-per-run:10}") int conversationsPerRun,
+                              @Value("${nexusai.conversation.reaper.duty-cycle:0.5}") double dutyCycle,
+                              @Value("${nexusai.conversation.reaper.max-active-queries:20}") int maxActiveQueries,
+                              @Value("${nexusai.conversation.reaper.busy-backoff:PT5S}") Duration busyBackoff) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.contextService = contextService;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.conversationsPerRun = conversationsPerRun;
+        this.dutyCycle = Math.min(1.0, Math.max(0.01, dutyCycle));
+        this.maxActiveQueries = maxActiveQueries;
+        this.busyBackoff = busyBackoff;
+
+        Gauge.builder("nexusai.conversation.reaper.pending", pending, AtomicLong::get)
+                .description("Soft-deleted conversations not reaped yet")
+                .register(meterRegistry);
+        this.deletedMessages = Counter.builder("nexusai.conversation.reaper.deleted")
+                .tag("kind", "messages")
+                .register(meterRegistry);
+        this.deletedConversations = Counter.builder("nexusai.conversation.reaper.deleted")
+                .tag("kind", "conversations")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("nexusai.conversation.reaper.throttled")
+                .description("Batches postponed because the database was busy")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("nexusai.conversation.reaper.batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        // Its own thread: the pauses would otherwise hold up the shared @Scheduled one
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversation-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long delay = interval.toMillis();
+        executor.scheduleWithFixedDelay(this::run, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reaps up to {@code conversations-per-run} conversations, longest deleted first.
+     */
+    public void run() {
+        try {
+            Long backlog = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM conversations WHERE status = 'DELETED'", Long.class);
+            pending.set(backlog != null ? backlog : 0);
+            if (pending.get() == 0) {
+                return;
+            }
+            List<UUID> deleted = jdbcTemplate.queryForList(
+                    "SELECT id FROM conversations WHERE status = 'DELETED' ORDER BY updated_at LIMIT ?",
+                    UUID.class, conversationsPerRun);
+            for (UUID conversationId : deleted) {
+                if (reap(conversationId)) {
+                    pending.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Whatever was deleted stays deleted; the next run resumes from there
+            log.error("Conversation reaper run failed", e);
+        }
+    }
+
+    /**
+     * Deletes one soft-deleted conversation and everything it holds.
+     *
+     * @return whether the conversation is gone; {@code false} when another node
+     *         holds it or the database stayed busy, to be resumed by a later run
+     */
+    public boolean reap(UUID conversationId) throws InterruptedException {
+        Cursor cursor = null;
+        long messages = 0;
+        while (true) {
+            if (!awaitCapacity()) {
+                log.info("Database busy, postponing conversation {} after {} messages", conversationId, messages);
+                return false;
+            }
+            long start = System.nanoTime();
+            Cursor after = cursor;
+            Batch batch = transactionOperations.execute(status -> {
+                if (!tryLock(conversationId)) {
+                    return null;
+                }
+                List<Cursor> last = after == null
+                        ? jdbcTemplate.query(FIRST_BATCH, CURSOR_MAPPER, conversationId, batchSize)
+                        : jdbcTemplate.query(NEXT_BATCH, CURSOR_MAPPER, conversationId,
+                                Timestamp.valueOf(after.createdAt()), Timestamp.valueOf(after.createdAt()),
+                                after.id(), batchSize);
+                if (!last.isEmpty()) {
+                    return new Batch(last.get(0), false);
+                }
+                jdbcTemplate.update("DELETE FROM conversation_context WHERE conversation_id = ?", conversationId);
+                // Remaining children (archive tombstones, messages written meanwhile) cascade
+                jdbcTemplate.update("DELETE FROM conversations WHERE id = ? AND status = 'DELETED'", conversationId);
+                return new Batch(null, true);
+            });
+            long elapsed = System.nanoTime() - start;
+            batchTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+            if (batch == null) {
+                log.debug("Conversation {} is being reaped by another node", conversationId);
+                return false;
+            }
+            if (batch.done()) {
+                break;
+            }
+            cursor = batch.cursor();
+            messages += cursor.deleted();
+            deletedMessages.increment(cursor.deleted());
+            pause(elapsed);
+        }
+
+        contextService.clearContext(conversationId);
+        eventPublisher.publishEvent(new ConversationDeletedEvent(conversationId));
+        deletedConversations.increment();
+        log.info("Reaped conversation {} and its {} messages", conversationId, messages);
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean tryLock(UUID conversationId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(hashtext('conversation_reaper'), hashtext(?::text))",
+                Boolean.class, conversationId));
+    }
+
+    /**
+     * Waits while the database runs more than {@code max-active-queries} queries.
+     *
+     * @return whether there is room for a batch
+     */
+    private boolean awaitCapacity() throws InterruptedException {
+        for (int check = 0; check < MAX_BUSY_CHECKS; check++) {
+            Integer active = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_stat_activity WHERE state = 'active' AND datname = current_database()",
+                    Integer.class);
+            if (active == null || active <= maxActiveQueries) {
+                return true;
+            }
+            throttled.increment();
+            Thread.sleep(busyBackoff.toMillis());
+        }
+        return false;
+    }
+
+    /**
+     * Idles long enough after a batch to stay within the duty cycle.
+     */
+    private void pause(long batchNanos) throws InterruptedException {
+        long pauseNanos = (long) (batchNanos * (1 - dutyCycle) / dutyCycle);
+        if (pauseNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        }
+    }
+
+    /**
+     * The oldest message of a deleted batch and the batch size.
+     */
+    record Cursor(LocalDateTime createdAt, UUID id, int deleted) {}
+
+    private record Batch(Cursor cursor, boolean done) {}
+}
@@ -0,0 +1,19 @@
+package com.nexusai.conversation.search;
+
+import com.nexusai.core.entity.Message;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.UUID;
+
+/**
+ * Search within a single conversation. Selected with
+ * {@code nexusai.conversation.search.backend} ({@code sql} or {@code lucene}).
+ * Callers have already verified that the user owns the conversation.
+ * Backends only cover the messages still in the database; archived messages
+ * are searched by {@code ConversationService} through {@code MessageArchive}.
+ */
+public interface MessageSearchBackend {
+
+    Page<Message> searchInConversation(UUID userId, UUID conversationId, String query, Pageable pageable);
+}
@@ -0,0 +1,125 @@
+package com.nexusai.conversation.search;
+
+import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.dto.MessageSearchHitDTO;
+import com.nexusai.conversation.dto.MessageSearchResultDTO;
+import com.nexusai.core.repository.MessageRepository;
+import com.nexusai.core.repository.MessageSearchRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ranked full-text search over all of a user's conversations.
+ *
+ * Matching and ranking happen in Postgres on the generated search_vector column
+ * (English and French stems). Pages are keyed on {@code (rank, id)} so deep pages
+ * cost the same as the first one.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageSearchService {
+
+    static final int MAX_QUERY_LENGTH = 200;
+    static final int MAX_LIMIT = 50;
+
+    private static final char MARK_START = '\u0002';
+    private static final char MARK_END = '\u0003';
+    private static final String HEADLINE_OPTIONS = "StartSel=" + MARK_START + ", StopSel=" + MARK_END +
+            ", MaxFragments=2, MaxWords=24, MinWords=8, FragmentDelimiter=\" … \"";
+
+    private final MessageRepository messageRepository;
+
+    @Transactional(readOnly = true)
+    public MessageSearchResultDTO search(UUID userId, String query, String after, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("query", "Search query cannot be empty");
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new ValidationException("query", "Search query is too long");
+        }
+
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        SearchCursor cursor = after != null && !after.isBlank() ? SearchCursor.decode(after) : null;
+        List<MessageSearchRow> rows = messageRepository.searchForUser(userId, query.trim(),
+                cursor != null ? cursor.rank() : null,
+                cursor != null ? cursor.id() : null,
+                HEADLINE_OPTIONS, size + 1);
+
+        boolean hasNext = rows.size() > size;
+        List<MessageSearchRow> page = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            MessageSearchRow last = page.get(page.size() - 1);
+            nextCursor = new SearchCursor(last.getRank(), last.getId()).encode();
+        }
+
+        return MessageSearchResultDTO.builder()
+                .hits(page.stream().map(this::mapToHit).toList())
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    private MessageSearchHitDTO mapToHit(MessageSearchRow row) {
+        return MessageSearchHitDTO.builder()
+                .messageId(row.getId())
+                .conversationId(row.getConversationId())
+                .role(row.getRole())
+                .snippet(highlight(row.getSnippet()))
+                .rank(row.getRank())
+                .createdAt(row.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Escapes the headline, then turns the sentinel characters emitted by
+     * ts_headline into mark elements, so message content can never inject markup.
+     */
+    static String highlight(String headline) {
+        if (headline == null) {
+            return null;
+        }
+        return HtmlUtils.htmlEscape(headline)
+                .replace(String.valueOf(MARK_START), "<mark>")
+                .replace(String.valueOf(MARK_END), "</mark>");
+    }
+
+    /**
+     * Opaque position after the last hit of a page.
+     */
+    record SearchCursor(double rank, UUID id) {
+
+        private static final int ENCODED_BYTES = Double.BYTES + 2 * Long.BYTES;
+
+        String encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(ENCODED_BYTES)
+                    .putDouble(rank)
+                    .putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        }
+
+        static SearchCursor decode(String token) {
+            byte[] bytes;
+            try {
+                bytes = Base64.getUrlDecoder().decode(token);
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("after", "Invalid cursor");
+            }
+            if (bytes.length != ENCODED_BYTES) {
+                throw new ValidationException("after", "Invalid cursor");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new SearchCursor(buffer.getDouble(), new UUID(buffer.getLong(), buffer.getLong()));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.nexusai.conversation.search;
+
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Default backend: substring match served by the trigram index on messages.content.
+ */
+@Component
+@ConditionalOnProperty(name = "nexusai.conversation.search.backend", havingValue = "sql", matchIfMissing = true)
+@RequiredArgsConstructor
+public class SqlMessageSearchBackend implements MessageSearchBackend {
+
+    private final MessageRepository messageRepository;
+
+    @Override
+    public Page<Message> searchInConversation(UUID userId, UUID conversationId, String query, Pageable pageable) {
+        return messageRepository.searchInConversation(conversationId, query, pageable);
+    }
+}
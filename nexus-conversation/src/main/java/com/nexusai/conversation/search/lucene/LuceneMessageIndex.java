@@ -0,0 +1,444 @@
+package com.nexusai.conversation.search.lucene;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.fr.FrenchAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.MMapDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Embedded Lucene index of message content, partitioned by user.
+ *
+ * A user's messages always land in the same partition ({@code hash(userId) mod
+ * partitions}), each partition being its own memory-mapped directory with one
+ * writer, so a search only opens the segments of one partition and indexing
+ * load is spread across writers. Content is indexed twice, with the English and
+ * the French analyzer. Readers are refreshed from the writers on a short interval
+ * (near-real-time) and the writers are committed on a longer one; anything lost
+ * between commits on a crash is restored by a rebuild.
+ *
+ * A {@link Rebuild} fills a fresh generation of partitions next to the live
+ * one, which keeps serving searches, and swaps it in once complete. Changes
+ * made meanwhile go to both. The {@code CURRENT} file names the live
+ * generation, so a restart reopens the last complete one.
+ *
+ * The index is local to the node and only fed by the changes made on it, so
+ * it is only consistent on a single-node deployment; clusters use the SQL
+ * backend, the default.
+ */
+@Component
+@ConditionalOnProperty(name = "nexusai.conversation.search.backend", havingValue = "lucene")
+@Slf4j
+public class LuceneMessageIndex {
+
+    static final String FIELD_ID = "id";
+    static final String FIELD_CONVERSATION = "conversation_id";
+    static final String FIELD_USER = "user_id";
+    static final String FIELD_CREATED_AT = "created_at";
+    static final String FIELD_CONTENT_EN = "content_en";
+    static final String FIELD_CONTENT_FR = "content_fr";
+
+    static final String CURRENT = "CURRENT";
+    static final String GENERATION_PREFIX = "gen-";
+
+    private final Analyzer analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(), Map.of(
+            FIELD_CONTENT_EN, new EnglishAnalyzer(),
+            FIELD_CONTENT_FR, new FrenchAnalyzer()));
+
+    private final Path path;
+    private final int partitionCount;
+    private final ScheduledExecutorService maintenance;
+    private volatile Generation current;
+    private volatile Generation building;
+
+    public LuceneMessageIndex(@Value("${nexusai.conversation.search.lucene.path:./data/search-index}") Path path,
+                              @Value("${nexusai.conversation.search.lucene.partitions:16}") int partitionCount,
+                              @Value("${nexusai.conversation.search.lucene.refresh-interval:PT1S}") Duration refreshInterval,
+                              @Value("${nexusai.conversation.search.lucene.commit-interval:PT30S}") Duration commitInterval)
+            throws IOException {
+        this.path = path;
+        this.partitionCount = partitionCount;
+        Files.createDirectories(path);
+        Path currentFile = path.resolve(CURRENT);
+        // Indexes written before generations existed live in the root
+        Path live = Files.exists(currentFile) ? path.resolve(Files.readString(currentFile).trim()) : path;
+        this.current = Generation.open(live, partitionCount, analyzer, IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        deleteStaleGenerations();
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lucene-index-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::refresh,
+                refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::commit,
+                commitInterval.toMillis(), commitInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Opened message search index at {} with {} partitions", live, partitionCount);
+    }
+
+    /**
+     * Adds or replaces the document for a message.
+     */
+    public void index(UUID userId, UUID messageId, UUID conversationId, String content, LocalDateTime createdAt) {
+        Document document = document(messageId, conversationId, userId, content, createdAt);
+        Term id = new Term(FIELD_ID, messageId.toString());
+        apply(generation -> generation.partition(userId).writer.updateDocument(id, document));
+    }
+
+    private static Document document(UUID messageId, UUID conversationId, UUID userId, String content,
+                                     LocalDateTime createdAt) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, messageId.toString(), Field.Store.YES));
+        document.add(new StringField(FIELD_CONVERSATION, conversationId.toString(), Field.Store.NO));
+        document.add(new StringField(FIELD_USER, userId.toString(), Field.Store.NO));
+        if (createdAt != null) {
+            document.add(new LongPoint(FIELD_CREATED_AT, createdAt.toInstant(ZoneOffset.UTC).toEpochMilli()));
+        }
+        String text = content != null ? content : "";
+        document.add(new TextField(FIELD_CONTENT_EN, text, Field.Store.NO));
+        document.add(new TextField(FIELD_CONTENT_FR, text, Field.Store.NO));
+        return document;
+    }
+
+    public void delete(UUID userId, UUID messageId) {
+        Term id = new Term(FIELD_ID, messageId.toString());
+        apply(generation -> generation.partition(userId).writer.deleteDocuments(id));
+    }
+
+    /**
+     * Removes messages whose owner is not known, from every partition.
+     */
+    public void deleteAll(Collection<UUID> messageIds) {
+        Term[] terms = messageIds.stream().map(id -> new Term(FIELD_ID, id.toString())).toArray(Term[]::new);
+        apply(generation -> {
+            for (Partition partition : generation.partitions) {
+                partition.writer.deleteDocuments(terms);
+            }
+        });
+    }
+
+    /**
+     * Removes every document of a conversation. Without its owner the
+     * conversation may be in any partition, so all of them are searched.
+     */
+    public void deleteConversation(UUID userId, UUID conversationId) {
+        Term term = new Term(FIELD_CONVERSATION, conversationId.toString());
+        apply(generation -> {
+            if (userId != null) {
+                generation.partition(userId).writer.deleteDocuments(term);
+                return;
+            }
+            for (Partition partition : generation.partitions) {
+                partition.writer.deleteDocuments(term);
+            }
+        });
+    }
+
+    /**
+     * Finds a user's messages in one conversation, best match first.
+     */
+    public SearchPage search(UUID userId, UUID conversationId, String queryText, int offset, int limit) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer,
+                Map.of(FIELD_CONTENT_EN, 1.0f, FIELD_CONTENT_FR, 1.0f));
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = new BooleanQuery.Builder()
+                .add(parser.parse(queryText), BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(FIELD_USER, userId.toString())), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(FIELD_CONVERSATION, conversationId.toString())), BooleanClause.Occur.FILTER)
+                .build();
+
+        while (true) {
+            Generation generation = current;
+            try {
+                return search(generation.partition(userId).searcherManager, query, offset, limit);
+            } catch (AlreadyClosedException e) {
+                if (generation == current) {
+                    throw e;
+                }
+                // Swapped out by a rebuild while searching: retry on the new generation
+            }
+        }
+    }
+
+    /**
+     * Starts filling a fresh generation of the index. Only one rebuild may run
+     * at a time.
+     */
+    public Rebuild rebuild() throws IOException {
+        Path directory = path.resolve(GENERATION_PREFIX + System.currentTimeMillis());
+        Generation next = Generation.open(directory, partitionCount, analyzer, IndexWriterConfig.OpenMode.CREATE);
+        building = next;
+        return new Rebuild(next);
+    }
+
+    private SearchPage search(SearcherManager manager, Query query, int offset, int limit) {
+        IndexSearcher searcher = null;
+        try {
+            searcher = manager.acquire();
+            TopDocs top = searcher.search(query, Math.max(1, offset + limit));
+            List<UUID> ids = new ArrayList<>(limit);
+            ScoreDoc[] hits = top.scoreDocs;
+            for (int i = offset; i < hits.length; i++) {
+                String id = searcher.storedFields().document(hits[i].doc, Set.of(FIELD_ID)).get(FIELD_ID);
+                ids.add(UUID.fromString(id));
+            }
+            return new SearchPage(ids, searcher.count(query));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            release(manager, searcher);
+        }
+    }
+
+    /**
+     * Makes recent changes visible to searches.
+     */
+    public void refresh() {
+        for (Partition partition : current.partitions) {
+            try {
+                partition.searcherManager.maybeRefreshBlocking();
+            } catch (AlreadyClosedException e) {
+                // Swapped out by a rebuild; the new generation is refreshed already
+                return;
+            } catch (IOException e) {
+                log.warn("Failed to refresh search partition {}", partition.path, e);
+            }
+        }
+    }
+
+    public void commit() {
+        for (Partition partition : current.partitions) {
+            try {
+                if (partition.writer.hasUncommittedChanges()) {
+                    partition.writer.commit();
+                }
+            } catch (AlreadyClosedException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Failed to commit search partition {}", partition.path, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        maintenance.shutdownNow();
+        commit();
+        current.close();
+        Generation next = building;
+        if (next != null) {
+            next.close();
+        }
+    }
+
+    /**
+     * Applies a change to the live generation and to the one being rebuilt.
+     */
+    private void apply(WriterChange change) {
+        Generation next = building;
+        Generation live = current;
+        try {
+            if (next != null) {
+                change.apply(next);
+            }
+            if (live != next) {
+                change.apply(live);
+            }
+        } catch (AlreadyClosedException e) {
+            // Swapped out meanwhile, after the change reached its successor
+            log.debug("Search index generation closed while applying a change");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteStaleGenerations() throws IOException {
+        try (Stream<Path> entries = Files.list(path)) {
+            for (Path entry : entries.toList()) {
+                if (entry.getFileName().toString().startsWith(GENERATION_PREFIX) && !entry.equals(current.path)) {
+                    deleteRecursively(entry);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete search index generation {}", directory, e);
+        }
+    }
+
+    private static void release(SearcherManager manager, IndexSearcher searcher) {
+        if (searcher == null) {
+            return;
+        }
+        try {
+            manager.release(searcher);
+        } catch (IOException e) {
+            log.warn("Failed to release index searcher", e);
+        }
+    }
+
+    /**
+     * Message ids of one page of hits and the total number of matches.
+     */
+    public record SearchPage(List<UUID> messageIds, long total) {}
+
+    /**
+     * A generation of the index being filled, not visible to searches until
+     * {@link #commit()}. Closing it without committing discards it.
+     */
+    public final class Rebuild implements AutoCloseable {
+
+        private final Generation generation;
+        private boolean committed;
+
+        private Rebuild(Generation generation) {
+            this.generation = generation;
+        }
+
+        public void index(UUID userId, UUID messageId, UUID conversationId, String content, LocalDateTime createdAt) {
+            Document document = document(messageId, conversationId, userId, content, createdAt);
+            try {
+                generation.partition(userId).writer.updateDocument(new Term(FIELD_ID, messageId.toString()), document);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Makes this generation the live one and discards the previous one.
+         */
+        public void commit() throws IOException {
+            for (Partition partition : generation.partitions) {
+                partition.writer.commit();
+                partition.searcherManager.maybeRefreshBlocking();
+            }
+            Path pointer = path.resolve(CURRENT + ".tmp");
+            Files.writeString(pointer, generation.path.getFileName().toString());
+            Files.move(pointer, path.resolve(CURRENT),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            Generation previous = current;
+            current = generation;
+            building = null;
+            committed = true;
+            previous.close();
+            previous.delete(path);
+        }
+
+        @Override
+        public void close() {
+            if (!committed) {
+                building = null;
+                generation.close();
+                deleteRecursively(generation.path);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface WriterChange {
+        void apply(Generation generation) throws IOException;
+    }
+
+    private record Generation(Path path, Partition[] partitions) {
+
+        static Generation open(Path path, int partitionCount, Analyzer analyzer, IndexWriterConfig.OpenMode mode)
+                throws IOException {
+            Partition[] partitions = new Partition[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = Partition.open(path.resolve("p-" + i), analyzer, mode);
+            }
+            return new Generation(path, partitions);
+        }
+
+        Partition partition(UUID userId) {
+            return partitions[Math.floorMod(userId.hashCode(), partitions.length)];
+        }
+
+        void close() {
+            for (Partition partition : partitions) {
+                try {
+                    partition.searcherManager.close();
+                    partition.writer.close();
+                    partition.directory.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close search partition {}", partition.path, e);
+                }
+            }
+        }
+
+        /**
+         * Deletes the files of a closed generation; the partitions only when
+         * it is the index root, written before generations existed.
+         */
+        void delete(Path root) {
+            if (!path.equals(root)) {
+                deleteRecursively(path);
+                return;
+            }
+            for (Partition partition : partitions) {
+                deleteRecursively(partition.path);
+            }
+        }
+    }
+
+    private record Partition(Path path, MMapDirectory directory, IndexWriter writer, SearcherManager searcherManager) {
+
+        static Partition open(Path path, Analyzer analyzer, IndexWriterConfig.OpenMode mode) throws IOException {
+            Files.createDirectories(path);
+            MMapDirectory directory = new MMapDirectory(path);
+            IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer).setOpenMode(mode));
+            return new Partition(path, directory, writer, new SearcherManager(writer, null));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.nexusai.conversation.search.lucene;
+
+import com.nexusai.conversation.event.ConversationDeletedEvent;
+import com.nexusai.conversation.event.ConversationSoftDeletedEvent;
+import com.nexusai.conversation.event.MessageCreatedEvent;
+import com.nexusai.conversation.event.MessageDeletedEvent;
+import com.nexusai.conversation.event.MessageEditedEvent;
+import com.nexusai.conversation.event.MessagesArchivedEvent;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.repository.IndexableMessage;
+import com.nexusai.core.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the Lucene index in step with the messages table.
+ *
+ * Message events are applied after commit on a single indexing thread so the
+ * request path never waits on the index; the queue is bounded and a change that
+ * does not fit is dropped with a warning (a rebuild repairs it). {@link #rebuild()}
+ * re-reads every message in keyset order into a fresh generation of the index,
+ * on its own thread, while the current one keeps serving searches.
+ *
+ * Only the events of this node reach the index: see {@link LuceneMessageIndex}
+ * for why this backend is meant for single-node deployments.
+ */
+@Component
+@ConditionalOnProperty(name = "nexusai.conversation.search.backend", havingValue = "lucene")
+@Slf4j
+public class LuceneMessageIndexer {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final LuceneMessageIndex index;
+    private final MessageRepository messageRepository;
+    private final int rebuildBatchSize;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public LuceneMessageIndexer(LuceneMessageIndex index,
+                                MessageRepository messageRepository,
+                                @Value("${nexusai.conversation.search.lucene.queue-capacity:10000}") int queueCapacity,
+                                @Value("${nexusai.conversation.search.lucene.rebuild-batch-size:1000}") int rebuildBatchSize) {
+        this.index = index;
+        this.messageRepository = messageRepository;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "lucene-indexer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lucene-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        Message message = event.message();
+        submit(message.getId(), () -> index.index(event.userId(), message.getId(), message.getConversationId(),
+                message.getContent(), message.getCreatedAt()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageEdited(MessageEditedEvent event) {
+        Message message = event.message();
+        submit(message.getId(), () -> index.index(event.userId(), message.getId(), message.getConversationId(),
+                message.getContent(), message.getCreatedAt()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageDeleted(MessageDeletedEvent event) {
+        submit(event.messageId(), () -> index.delete(event.userId(), event.messageId()));
+    }
+
+    /**
+     * Hides a soft-deleted conversation from searches at once, rather than
+     * when the reaper gets to it.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationSoftDeleted(ConversationSoftDeletedEvent event) {
+        submit(event.conversationId(), () -> index.deleteConversation(event.userId(), event.conversationId()));
+    }
+
+    /**
+     * Drops whatever a rebuild run between the soft delete and the reaping may
+     * have indexed again.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationDeleted(ConversationDeletedEvent event) {
+        submit(event.conversationId(), () -> index.deleteConversation(null, event.conversationId()));
+    }
+
+    /**
+     * Archived messages are out of search, like the rest of the archive.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessagesArchived(MessagesArchivedEvent event) {
+        submit(event.conversationId(), () -> index.deleteAll(event.messageIds()));
+    }
+
+    /**
+     * Rebuilds the whole index from the database in the background.
+     *
+     * @return {@code false} if a rebuild is already running
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                long indexed = reindexAll();
+                log.info("Rebuilt message search index with {} messages", indexed);
+            } catch (Exception e) {
+                log.error("Message search index rebuild failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    long reindexAll() throws IOException {
+        try (LuceneMessageIndex.Rebuild rebuild = index.rebuild()) {
+            long indexed = 0;
+            UUID afterId = FIRST_ID;
+            List<IndexableMessage> batch;
+            do {
+                batch = messageRepository.findIndexableAfter(afterId, rebuildBatchSize);
+                for (IndexableMessage message : batch) {
+                    rebuild.index(message.userId(), message.id(), message.conversationId(),
+                            message.content(), message.createdAt());
+                }
+                indexed += batch.size();
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).id();
+                }
+            } while (batch.size() == rebuildBatchSize);
+            rebuild.commit();
+            return indexed;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        rebuildExecutor.shutdownNow();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void submit(UUID id, Runnable change) {
+        try {
+            executor.execute(() -> {
+                try {
+                    change.run();
+                } catch (Exception e) {
+                    log.warn("Failed to apply search index change for {}", id, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Search indexing queue full, dropping change for {}", id);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.nexusai.conversation.search.lucene;
+
+import com.nexusai.conversation.search.MessageSearchBackend;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Serves conversation search from the embedded index, ranked by relevance.
+ *
+ * The index only returns ids; the page is hydrated with one primary-key lookup
+ * and keeps the index order. Hits whose row has since been deleted are skipped.
+ */
+@Component
+@ConditionalOnProperty(name = "nexusai.conversation.search.backend", havingValue = "lucene")
+@RequiredArgsConstructor
+public class LuceneMessageSearchBackend implements MessageSearchBackend {
+
+    private final LuceneMessageIndex index;
+    private final MessageRepository messageRepository;
+
+    @Override
+    public Page<Message> searchInConversation(UUID userId, UUID conversationId, String query, Pageable pageable) {
+        LuceneMessageIndex.SearchPage hits = index.search(userId, conversationId, query,
+                (int) pageable.getOffset(), pageable.getPageSize());
+        if (hits.messageIds().isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, hits.total());
+        }
+
+        Map<UUID, Message> byId = messageRepository.findAllById(hits.messageIds()).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+        List<Message> content = hits.messageIds().stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, hits.total());
+    }
+}
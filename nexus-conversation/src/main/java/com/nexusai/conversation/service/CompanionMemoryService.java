@@ -0,0 +1,283 @@
+package com.nexusai.conversation.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.conversation.dto.MemoryDTO;
+import com.nexusai.conversation.dto.RememberRequest;
+import com.nexusai.conversation.memory.MemoryIndex;
+import com.nexusai.conversation.memory.MemoryRemovals;
+import com.nexusai.conversation.memory.RecalledMemory;
+import com.nexusai.core.entity.UserCompanionMemory;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.UserCompanionMemoryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-term memories of a companion about its user.
+ *
+ * Rows in {@code user_companion_memory} are the source of truth; the
+ * {@link MemoryIndex} serves retrieval. The first use of a (user, companion)
+ * pair in a process compares the index with the table and, when their sizes
+ * differ, reconciles it: missing rows are indexed and entries whose row is
+ * gone are dropped, so a lost or stale index repairs itself. The check is
+ * repeated {@code verify-ttl} after it was made, which is how a memory added
+ * on another node reaches this one's index. Forgetting is
+ * broadcast to the other nodes ({@link MemoryRemovals}), and recalled ids are
+ * checked against the table before they reach a prompt, so a memory removed
+ * elsewhere, or by a cascade, is never recalled. Retrievals bump
+ * {@code access_count}/{@code last_accessed_at} write-behind, in one UPDATE per
+ * distinct count on a fixed delay.
+ */
+@Service
+@Slf4j
+public class CompanionMemoryService {
+
+    private final UserCompanionMemoryRepository memoryRepository;
+    private final CompanionRepository companionRepository;
+    private final MemoryIndex memoryIndex;
+    private final MemoryRemovals memoryRemovals;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildBatchSize;
+
+    /** Pairs recently checked against the table in this process, and whether they have any memory. */
+    private final Cache<PairKey, Boolean> verified;
+    private final Map<UUID, AtomicInteger> pendingAccesses = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CompanionMemoryService(UserCompanionMemoryRepository memoryRepository,
+                                  CompanionRepository companionRepository,
+                                  MemoryIndex memoryIndex,
+                                  MemoryRemovals memoryRemovals,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${nexusai.conversation.memory.rebuild-batch-size:1000}") int rebuildBatchSize,
+                                  @Value("${nexusai.conversation.memory.verify-ttl:PT1M}") Duration verifyTtl) {
+        this(memoryRepository, companionRepository, memoryIndex, memoryRemovals, transactionTemplate,
+                rebuildBatchSize, verifyTtl, Ticker.systemTicker());
+    }
+
+    CompanionMemoryService(UserCompanionMemoryRepository memoryRepository, CompanionRepository companionRepository,
+                           MemoryIndex memoryIndex, MemoryRemovals memoryRemovals,
+                           TransactionTemplate transactionTemplate, int rebuildBatchSize, Duration verifyTtl,
+                           Ticker ticker) {
+        this.memoryRepository = memoryRepository;
+        this.companionRepository = companionRepository;
+        this.memoryIndex = memoryIndex;
+        this.memoryRemovals = memoryRemovals;
+        this.transactionTemplate = transactionTemplate;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(verifyTtl)
+                .ticker(ticker)
+                .build();
+    }
+
+    public MemoryDTO remember(UUID userId, UUID companionId, RememberRequest request) {
+        requireOwnCompanion(userId, companionId);
+        ensureIndexed(userId, companionId);
+
+        UserCompanionMemory memory = memoryRepository.save(UserCompanionMemory.builder()
+                .userId(userId)
+                .companionId(companionId)
+                .memoryType(request.getMemoryType())
+                .content(request.getContent())
+                .importance(request.getImportance() != null ? request.getImportance() : BigDecimal.ONE)
+                .build());
+        index(memory);
+        verified.put(new PairKey(userId, companionId), true);
+        return mapToDTO(memory);
+    }
+
+    public List<MemoryDTO> recall(UUID userId, UUID companionId, String query, int limit) {
+        requireOwnCompanion(userId, companionId);
+        List<MemoryDTO> memories = new ArrayList<>();
+        for (RecalledMemory recalled : retrieve(userId, companionId, query, limit)) {
+            memories.add(MemoryDTO.builder()
+                    .id(recalled.id())
+                    .companionId(companionId)
+                    .content(recalled.content())
+                    .score(recalled.score())
+                    .build());
+        }
+        return memories;
+    }
+
+    /**
+     * Best memories for a query, for prompt building: no ownership check, the
+     * caller already resolved the pair from an owned conversation.
+     */
+    public List<RecalledMemory> retrieve(UUID userId, UUID companionId, String query, int limit) {
+        if (query == null || query.isBlank() || !ensureIndexed(userId, companionId)) {
+            return List.of();
+        }
+        List<RecalledMemory> recalled = live(userId, companionId,
+                memoryIndex.search(userId, companionId, query, limit));
+        recalled.forEach(memory -> pendingAccesses
+                .computeIfAbsent(memory.id(), id -> new AtomicInteger())
+                .incrementAndGet());
+        return recalled;
+    }
+
+    /**
+     * Loads the memories of a user with a companion into the index ahead of a
+     * recall, e.g. while the user is typing.
+     */
+    public void warm(UUID userId, UUID companionId) {
+        ensureIndexed(userId, companionId);
+    }
+
+    public void forget(UUID userId, UUID companionId, UUID memoryId) {
+        UserCompanionMemory memory = memoryRepository.findById(memoryId)
+                .filter(found -> found.getUserId().equals(userId) && found.getCompanionId().equals(companionId))
+                .orElseThrow(() -> new ResourceNotFoundException("Memory", memoryId));
+        memoryRepository.delete(memory);
+        memoryRemovals.remove(userId, companionId, memoryId);
+        pendingAccesses.remove(memoryId);
+    }
+
+    /**
+     * Writes pending access counts, one UPDATE per distinct count.
+     */
+    @Scheduled(fixedDelayString = "${nexusai.conversation.memory.access-flush-interval:PT10S}",
+            initialDelayString = "${nexusai.conversation.memory.access-flush-interval:PT10S}")
+    public void flushAccesses() {
+        Map<Integer, List<UUID>> byCount = new HashMap<>();
+        for (UUID id : List.copyOf(pendingAccesses.keySet())) {
+            AtomicInteger count = pendingAccesses.remove(id);
+            if (count != null) {
+                byCount.computeIfAbsent(count.get(), times -> new ArrayList<>()).add(id);
+            }
+        }
+        if (byCount.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    byCount.forEach((times, ids) -> memoryRepository.recordAccess(ids, times, now)));
+        } catch (Exception e) {
+            // Access counts only feed ranking; dropping one batch is acceptable
+            log.warn("Failed to record access for {} memories", byCount.values().stream().mapToInt(List::size).sum(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flushAccesses();
+    }
+
+    /**
+     * Reconciles the pair's index with the table, once per process.
+     *
+     * @return whether the pair has any memory
+     */
+    private boolean ensureIndexed(UUID userId, UUID companionId) {
+        return verified.get(new PairKey(userId, companionId), key -> {
+            long rows = memoryRepository.countByUserIdAndCompanionId(userId, companionId);
+            boolean exists = memoryIndex.exists(userId, companionId);
+            if (exists && memoryIndex.size(userId, companionId) == rows) {
+                return rows > 0;
+            }
+            if (rows == 0 && !exists) {
+                return false;
+            }
+            Set<UUID> stale = new HashSet<>(exists ? memoryIndex.ids(userId, companionId) : Set.of());
+            int indexed = 0;
+            Pageable page = PageRequest.of(0, rebuildBatchSize);
+            Slice<UserCompanionMemory> slice;
+            do {
+                slice = memoryRepository.findByUserIdAndCompanionIdOrderByCreatedAtAsc(userId, companionId, page);
+                for (UserCompanionMemory memory : slice) {
+                    if (!stale.remove(memory.getId())) {
+                        index(memory);
+                        indexed++;
+                    }
+                }
+                page = slice.nextPageable();
+            } while (slice.hasNext());
+            stale.forEach(memoryId -> memoryIndex.delete(userId, companionId, memoryId));
+            log.info("Reconciled memories of user {} with companion {}: {} indexed, {} dropped",
+                    userId, companionId, indexed, stale.size());
+            return rows > 0;
+        });
+    }
+
+    /**
+     * Drops recalled memories whose row is gone, from the result and the index.
+     */
+    private List<RecalledMemory> live(UUID userId, UUID companionId, List<RecalledMemory> recalled) {
+        if (recalled.isEmpty()) {
+            return recalled;
+        }
+        Set<UUID> existing = new HashSet<>(memoryRepository.findExistingIds(
+                recalled.stream().map(RecalledMemory::id).toList()));
+        if (existing.size() == recalled.size()) {
+            return recalled;
+        }
+        // Reconcile the whole pair on its next use
+        verified.invalidate(new PairKey(userId, companionId));
+        List<RecalledMemory> live = new ArrayList<>(existing.size());
+        for (RecalledMemory memory : recalled) {
+            if (existing.contains(memory.id())) {
+                live.add(memory);
+            } else {
+                memoryIndex.delete(userId, companionId, memory.id());
+            }
+        }
+        return live;
+    }
+
+    private void index(UserCompanionMemory memory) {
+        long createdAt = memory.getCreatedAt() != null
+                ? memory.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+        double importance = memory.getImportance() != null ? memory.getImportance().doubleValue() : 1.0;
+        memoryIndex.add(memory.getUserId(), memory.getCompanionId(), memory.getId(),
+                memory.getContent(), importance, createdAt);
+    }
+
+    private void requireOwnCompanion(UUID userId, UUID companionId) {
+        companionRepository.findById(companionId)
+                .filter(companion -> userId.equals(companion.getUserId()))
+                .orElseThrow(() -> new ResourceNotFoundException("Companion", companionId));
+    }
+
+    private MemoryDTO mapToDTO(UserCompanionMemory memory) {
+        return MemoryDTO.builder()
+                .id(memory.getId())
+                .companionId(memory.getCompanionId())
+                .memoryType(memory.getMemoryType())
+                .content(memory.getContent())
+                .importance(memory.getImportance())
+                .accessCount(memory.getAccessCount())
+                .createdAt(memory.getCreatedAt())
+                .build();
+    }
+
+    private record PairKey(UUID userId, UUID companionId) {}
+}
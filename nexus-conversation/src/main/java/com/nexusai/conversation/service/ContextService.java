@@ -1,6 +1,20 @@
 package com.nexusai.conversation.service;
 
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.conversation.context.ContextCache;
+import com.nexusai.conversation.context.ContextCache.ContextSnapshot;
+import com.nexusai.conversation.context.ContextCache.RenderedContext;
+import com.nexusai.conversation.context.ContextInvalidations;
+import com.nexusai.conversation.context.ContextStore;
+import com.nexusai.conversation.context.ContextSummarizer;
+import com.nexusai.conversation.context.ContextTurn;
+import com.nexusai.conversation.context.ContextWindow;
+import com.nexusai.conversation.context.SpeculativeContexts;
+import com.nexusai.conversation.memory.RecalledMemory;
+import com.nexusai.core.entity.Conversation;
 import com.nexusai.core.entity.Message;
+import com.nexusai.core.enums.MessageRole;
+import com.nexusai.core.repository.ConversationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -8,9 +22,8 @@ import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -18,28 +31,162 @@ import java.util.stream.Collectors;
 public class ContextService {
 
     private final RedisTemplate<String, String> redisTemplate;
+    private final ContextStore contextStore;
+    private final ContextSummarizer contextSummarizer;
+    private final ContextCache contextCache;
+    private final ConversationRepository conversationRepository;
+    private final CompanionMemoryService companionMemoryService;
+    private final SpeculativeContexts speculativeContexts;
+    private final ContextInvalidations contextInvalidations;
 
-    private static final String CONTEXT_KEY_PREFIX = "conversation:context:";
-    private static final String SUMMARY_KEY_PREFIX = "conversation:summary:";
-    private static final Duration CONTEXT_TTL = Duration.ofHours(24);
+    private static final String SUMMARY_KEY_PREFIX = ContextSummarizer.SUMMARY_KEY_PREFIX;
+    private static final Duration CONTEXT_TTL = ContextSummarizer.SUMMARY_TTL;
     private static final int MAX_CONTEXT_TOKENS = 4000;
+    private static final int RECALLED_MEMORIES = 5;
+    private static final int MAX_MEMORY_TOKENS = 400;
 
-    private final ConcurrentHashMap<UUID, StringBuilder> activeContexts = new ConcurrentHashMap<>();
+    /**
+     * Renders the prompt context for a conversation from its in-memory window.
+     *
+     * Summary and memories come from a single pipelined Redis read. The rendered
+     * result is versioned by a digest of the window's turns, the summary and the
+     * memories: an unchanged version is served from the window's memo (or, on a
+     * cold window, from the compressed Redis copy) and nothing is written back.
+     *
+     * Long-term companion memories relevant to the latest user message are
+     * recalled from the memory index and take up to {@code MAX_MEMORY_TOKENS}
+     * of the budget; the recalled ids are part of the version.
+     *
+     * A snapshot fetched by {@link #prebuildContext} while the user was typing
+     * replaces the Redis read.
+     */
+    public String buildContext(ConversationSnapshot conversation) {
+        long start = System.nanoTime();
+        ContextSnapshot prebuilt = speculativeContexts.take(conversation.id());
+        try {
+            return buildContext(conversation, prebuilt);
+        } finally {
+            speculativeContexts.recordBuild(prebuilt != null, System.nanoTime() - start);
+        }
+    }
+
+    private String buildContext(ConversationSnapshot conversation, ContextSnapshot prebuilt) {
+        UUID conversationId = conversation.id();
+        ContextWindow window = contextStore.getIfPresent(conversationId);
+        boolean coldWindow = window == null;
+        if (coldWindow) {
+            window = contextStore.getOrLoad(conversationId);
+            contextSummarizer.onWindowLoaded(conversationId, window);
+        }
+
+        RenderedContext memo = window.rendered();
+        ContextSnapshot snapshot = prebuilt != null ? prebuilt : contextCache.read(conversationId, memo == null);
+
+        String summary = snapshot.summary();
+        if (summary == null && coldWindow) {
+            summary = restoreSummary(conversationId);
+        }
+
+        List<ContextTurn> turns = window.turns();
+        List<RecalledMemory> recalled = recall(conversation, turns);
+
+        String version = ContextCache.version(turns, summary, snapshot.memories(),
+                recalled.stream().map(RecalledMemory::id).toList());
+        if (memo != null && memo.version().equals(version)) {
+            return memo.text();
+        }
+        if (snapshot.rendered() != null && snapshot.rendered().version().equals(version)) {
+            window.remember(snapshot.rendered());
+            return snapshot.rendered().text();
+        }
+
+        RenderedContext rendered = new RenderedContext(version,
+                render(turns, summary, snapshot.memories(), recalled));
+        window.remember(rendered);
+        contextCache.write(conversationId, rendered);
+        return rendered.text();
+    }
+
+    /**
+     * Speculative half of {@link #buildContext}, run on a typing signal: loads
+     * the window and the memory index and fetches the Redis snapshot, so that
+     * the send only has to recall and render. Does nothing if a prebuild is
+     * still fresh or running.
+     */
+    public void prebuildContext(ConversationSnapshot conversation) {
+        UUID conversationId = conversation.id();
+        if (!speculativeContexts.claim(conversationId)) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            ContextWindow window = contextStore.getIfPresent(conversationId);
+            boolean coldWindow = window == null;
+            if (coldWindow) {
+                window = contextStore.getOrLoad(conversationId);
+                contextSummarizer.onWindowLoaded(conversationId, window);
+            }
+            ContextSnapshot snapshot = contextCache.read(conversationId, window.rendered() == null);
+            if (snapshot.summary() == null && coldWindow) {
+                snapshot = new ContextSnapshot(restoreSummary(conversationId), snapshot.memories(), snapshot.rendered());
+            }
+            companionMemoryService.warm(conversation.userId(), conversation.companionId());
+            speculativeContexts.put(conversationId, snapshot, System.nanoTime() - start);
+        } finally {
+            speculativeContexts.release(conversationId);
+        }
+    }
 
-    public String buildContext(UUID conversationId, List<Message> messages) {
+    private String render(List<ContextTurn> turns, String summary, Map<String, String> memories,
+                          List<RecalledMemory> recalled) {
         StringBuilder context = new StringBuilder();
+        int budget = MAX_CONTEXT_TOKENS;
 
-        // Check for cached summary
-        String cachedSummary = getCachedSummary(conversationId);
-        if (cachedSummary != null) {
-            context.append("[Previous context summary]\n").append(cachedSummary).append("\n\n");
+        if (summary != null) {
+            context.append("[Previous context summary]\n").append(summary).append("\n\n");
+            budget -= estimateTokens(summary);
+        }
+
+        if (!memories.isEmpty()) {
+            int start = context.length();
+            context.append("[Remembered facts]\n");
+            memories.forEach((key, value) -> context.append("- ").append(key).append(": ").append(value).append("\n"));
+            context.append("\n");
+            budget -= estimateTokens(context.substring(start));
+        }
+
+        if (!recalled.isEmpty()) {
+            int start = context.length();
+            int memoryBudget = MAX_MEMORY_TOKENS;
+            context.append("[Long-term memories]\n");
+            for (RecalledMemory memory : recalled) {
+                int tokens = estimateTokens(memory.content()) + 1;
+                if (tokens > memoryBudget) {
+                    break;
+                }
+                memoryBudget -= tokens;
+                context.append("- ").append(memory.content()).append("\n");
+            }
+            context.append("\n");
+            budget -= estimateTokens(context.substring(start));
+        }
+
+        // Add recent messages, newest first, until the token budget is spent
+        int first = turns.size();
+        while (first > 0 && budget - turns.get(first - 1).tokens() >= 0) {
+            budget -= turns.get(--first).tokens();
+        }
+        if (first == turns.size() && !turns.isEmpty()) {
+            // The latest turn alone exceeds the budget, keep it and truncate below
+            first--;
         }
 
-        // Add recent messages
         context.append("[Recent conversation]\n");
-        for (Message message : messages) {
-            String rolePrefix = message.isUserMessage() ? "User: " : "Assistant: ";
-            context.append(rolePrefix).append(message.getContent()).append("\n");
+        if (first > 0) {
+            context.append("...[truncated]\n");
+        }
+        for (ContextTurn turn : turns.subList(first, turns.size())) {
+            context.append(turn.render()).append("\n");
         }
 
         // Trim if too long
@@ -47,24 +194,59 @@ public class ContextService {
         if (estimateTokens(finalContext) > MAX_CONTEXT_TOKENS) {
             finalContext = truncateContext(finalContext);
         }
+        return finalContext;
+    }
 
-        // Cache the context
-        cacheContext(conversationId, finalContext);
+    /**
+     * Memories relevant to the latest user message, best first.
+     */
+    private List<RecalledMemory> recall(ConversationSnapshot conversation, List<ContextTurn> turns) {
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            if (turns.get(i).role() == MessageRole.USER) {
+                try {
+                    return companionMemoryService.retrieve(conversation.userId(), conversation.companionId(),
+                            turns.get(i).content(), RECALLED_MEMORIES);
+                } catch (Exception e) {
+                    // The reply is still useful without long-term memories
+                    log.warn("Memory recall failed for conversation {}", conversation.id(), e);
+                    return List.of();
+                }
+            }
+        }
+        return List.of();
+    }
 
-        return finalContext;
+    /**
+     * Records a persisted message in the conversation's context window.
+     */
+    public void updateContext(Message message) {
+        ContextTurn evicted = contextStore.append(message);
+        if (evicted != null) {
+            contextSummarizer.onEvicted(message.getConversationId(), evicted);
+        }
+        contextInvalidations.changed(message.getConversationId());
     }
 
-    public void updateContext(UUID conversationId, String role, String content) {
-        activeContexts.computeIfAbsent(conversationId, k -> new StringBuilder())
-                .append(role).append(": ").append(content).append("\n");
+    /**
+     * Drops the in-memory window, here and on the other nodes, so the next build
+     * reloads it, e.g. after an edit or delete.
+     */
+    public void evictContext(UUID conversationId) {
+        contextStore.invalidate(conversationId);
+        speculativeContexts.invalidate(conversationId);
+        contextCache.evictRendered(conversationId);
+        contextInvalidations.changed(conversationId);
     }
 
     public void clearContext(UUID conversationId) {
-        activeContexts.remove(conversationId);
-        String contextKey = CONTEXT_KEY_PREFIX + conversationId;
-        String summaryKey = SUMMARY_KEY_PREFIX + conversationId;
-        redisTemplate.delete(contextKey);
-        redisTemplate.delete(summaryKey);
+        contextStore.invalidate(conversationId);
+        speculativeContexts.invalidate(conversationId);
+        contextSummarizer.discard(conversationId);
+        contextInvalidations.changed(conversationId);
+        redisTemplate.delete(List.of(
+                ContextCache.contextKey(conversationId),
+                ContextCache.memoryKey(conversationId),
+                SUMMARY_KEY_PREFIX + conversationId));
         log.info("Cleared context for conversation {}", conversationId);
     }
 
@@ -80,18 +262,27 @@ public class ContextService {
     }
 
     public void setMemory(UUID conversationId, String key, String value) {
-        String memoryKey = CONTEXT_KEY_PREFIX + conversationId + ":memory:" + key;
-        redisTemplate.opsForValue().set(memoryKey, value, Duration.ofDays(30));
+        // Memories live in one hash so buildContext can fetch them with the summary
+        contextCache.writeMemory(conversationId, key, value);
+        speculativeContexts.invalidate(conversationId);
     }
 
     public String getMemory(UUID conversationId, String key) {
-        String memoryKey = CONTEXT_KEY_PREFIX + conversationId + ":memory:" + key;
-        return redisTemplate.opsForValue().get(memoryKey);
+        return contextCache.readMemory(conversationId, key);
     }
 
-    private void cacheContext(UUID conversationId, String context) {
-        String contextKey = CONTEXT_KEY_PREFIX + conversationId;
-        redisTemplate.opsForValue().set(contextKey, context, CONTEXT_TTL);
+    /**
+     * Re-warms Redis from the durable summary on {@code Conversation} after the
+     * cached copy expired. Only called when the window itself was cold.
+     */
+    private String restoreSummary(UUID conversationId) {
+        String summary = conversationRepository.findById(conversationId)
+                .map(Conversation::getContextSummary)
+                .orElse(null);
+        if (summary != null) {
+            summarizeAndCache(conversationId, summary);
+        }
+        return summary;
     }
 
     private String truncateContext(String context) {
@@ -2,10 +2,18 @@ package com.nexusai.conversation.service;
 
 import com.nexusai.commons.exception.ResourceNotFoundException;
 import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.archive.MessageArchive;
+import com.nexusai.conversation.cache.CompanionSnapshot;
+import com.nexusai.conversation.cache.HotEntityCache;
 import com.nexusai.conversation.dto.*;
+import com.nexusai.conversation.event.ConversationArchivedEvent;
+import com.nexusai.conversation.event.ConversationChangedEvent;
+import com.nexusai.conversation.event.ConversationSoftDeletedEvent;
+import com.nexusai.conversation.search.MessageSearchBackend;
 import com.nexusai.core.entity.Companion;
 import com.nexusai.core.entity.Conversation;
 import com.nexusai.core.entity.Message;
+import com.nexusai.core.entity.MessageArchiveSegment;
 import com.nexusai.core.enums.ConversationStatus;
 import com.nexusai.core.enums.MessageRole;
 import com.nexusai.core.enums.MessageType;
@@ -14,14 +22,18 @@ import com.nexusai.core.repository.ConversationRepository;
 import com.nexusai.core.repository.MessageRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -33,7 +45,13 @@ public class ConversationService {
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final CompanionRepository companionRepository;
-    private final ContextService contextService;
+    private final MessageSearchBackend messageSearchBackend;
+    private final HotEntityCache hotEntityCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MessageArchive messageArchive;
+
+    private static final int MAX_HISTORY_LIMIT = 100;
+    private static final int MAX_ARCHIVED_SEARCH_HITS = 1000;
 
     @Transactional
     public ConversationDTO createConversation(UUID userId, CreateConversationRequest request) {
@@ -54,17 +72,20 @@ public class ConversationService {
         log.info("Created conversation {} for user {} with companion {}",
                 conversation.getId(), userId, companion.getId());
 
-        return mapToDTO(conversation, companion);
+        return mapToDTO(conversation, CompanionSnapshot.from(companion.getId(), companion));
     }
 
+    /**
+     * Lists active conversations. Companions of the whole page are resolved in one
+     * batch (and usually from the hot-entity cache), not one lookup per row.
+     */
     @Transactional(readOnly = true)
     public Page<ConversationDTO> getUserConversations(UUID userId, Pageable pageable) {
-        return conversationRepository
-                .findByUserIdAndStatusOrderByLastActivityAtDesc(userId, ConversationStatus.ACTIVE, pageable)
-                .map(conv -> {
-                    Companion companion = companionRepository.findById(conv.getCompanionId()).orElse(null);
-                    return mapToDTO(conv, companion);
-                });
+        Page<Conversation> page = conversationRepository
+                .findByUserIdAndStatusOrderByLastActivityAtDesc(userId, ConversationStatus.ACTIVE, pageable);
+        Map<UUID, CompanionSnapshot> companions = hotEntityCache.companions(
+                page.getContent().stream().map(Conversation::getCompanionId).collect(Collectors.toSet()));
+        return page.map(conv -> mapToDTO(conv, companions.get(conv.getCompanionId())));
     }
 
     @Transactional(readOnly = true)
@@ -72,8 +93,7 @@ public class ConversationService {
         Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
 
-        Companion companion = companionRepository.findById(conversation.getCompanionId()).orElse(null);
-        return mapToDTO(conversation, companion);
+        return mapToDTO(conversation, companionOf(conversation));
     }
 
     @Transactional(readOnly = true)
@@ -87,15 +107,72 @@ public class ConversationService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Offset-paginated history, newest first. Pages past the messages still in
+     * the database continue into the archived segments of the conversation.
+     * Kept for the deprecated {@code /messages} endpoint; new callers use
+     * {@link #getMessagesBefore}.
+     */
     @Transactional(readOnly = true)
     public Page<MessageDTO> getMessagesPaginated(UUID conversationId, UUID userId, Pageable pageable) {
         Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
 
-        return messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable)
+        Page<Message> hot = messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
+        List<MessageArchiveSegment> segments = messageArchive.segments(conversationId);
+        if (segments.isEmpty()) {
+            return hot.map(this::mapMessageToDTO);
+        }
+
+        // Every archived message is older than every hot one
+        List<Message> messages = new ArrayList<>(hot.getContent());
+        if (messages.size() < pageable.getPageSize()) {
+            long skip = Math.max(0, pageable.getOffset() - hot.getTotalElements());
+            messages.addAll(messageArchive.read(segments, skip, pageable.getPageSize() - messages.size()));
+        }
+        return new PageImpl<>(messages, pageable, hot.getTotalElements() + MessageArchive.count(segments))
                 .map(this::mapMessageToDTO);
     }
 
+    /**
+     * Keyset-paginated history, newest first. Unlike {@link #getMessagesPaginated}
+     * the cost does not grow with the depth of the page and no COUNT is issued.
+     *
+     * @param before opaque cursor from a previous slice, or {@code null} for the newest messages
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceDTO getMessagesBefore(UUID conversationId, UUID userId, String before, int limit) {
+        conversationRepository.findByIdAndUserId(conversationId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
+
+        int size = Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT));
+        // Fetch one extra row to know whether an older page exists
+        List<Message> messages;
+        if (before == null || before.isBlank()) {
+            messages = messageRepository.findLatest(conversationId, size + 1);
+        } else {
+            MessageCursor cursor = MessageCursor.decode(before);
+            messages = messageRepository.findBefore(conversationId, cursor.createdAt(), cursor.id(), size + 1);
+        }
+        if (messages.size() <= size) {
+            messages = withArchived(conversationId, messages, before, size + 1);
+        }
+
+        boolean hasNext = messages.size() > size;
+        List<Message> page = hasNext ? messages.subList(0, size) : messages;
+        String nextCursor = null;
+        if (hasNext) {
+            Message last = page.get(page.size() - 1);
+            nextCursor = new MessageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return MessageSliceDTO.builder()
+                .content(page.stream().map(this::mapMessageToDTO).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
     @Transactional
     public void archiveConversation(UUID conversationId, UUID userId) {
         Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
@@ -103,16 +180,25 @@ public class ConversationService {
 
         conversation.setStatus(ConversationStatus.ARCHIVED);
         conversationRepository.save(conversation);
+        eventPublisher.publishEvent(new ConversationChangedEvent(conversationId));
+        eventPublisher.publishEvent(new ConversationArchivedEvent(conversationId, userId));
         log.info("Archived conversation {} for user {}", conversationId, userId);
     }
 
+    /**
+     * Soft-deletes a conversation: it disappears at once, while its messages,
+     * context and archived segments are removed in the background by
+     * {@link com.nexusai.conversation.reaper.ConversationReaper}.
+     */
     @Transactional
     public void deleteConversation(UUID conversationId, UUID userId) {
         Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
 
-        conversationRepository.delete(conversation);
-        contextService.clearContext(conversationId);
+        conversation.setStatus(ConversationStatus.DELETED);
+        conversationRepository.save(conversation);
+        eventPublisher.publishEvent(new ConversationChangedEvent(conversationId));
+        eventPublisher.publishEvent(new ConversationSoftDeletedEvent(conversationId, userId));
         log.info("Deleted conversation {} for user {}", conversationId, userId);
     }
 
@@ -128,26 +214,67 @@ public class ConversationService {
         conversation.setTitle(newTitle.trim());
         conversation = conversationRepository.save(conversation);
 
-        Companion companion = companionRepository.findById(conversation.getCompanionId()).orElse(null);
-        return mapToDTO(conversation, companion);
+        return mapToDTO(conversation, companionOf(conversation));
     }
 
+    /**
+     * Search within a conversation. The search backend only knows the messages
+     * still in the database; once its hits run out, pages continue with the
+     * archived messages matching the query, newest first, like the history does.
+     */
     @Transactional(readOnly = true)
     public Page<MessageDTO> searchMessages(UUID conversationId, UUID userId, String query, Pageable pageable) {
         conversationRepository.findByIdAndUserId(conversationId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
 
-        return messageRepository.searchInConversation(conversationId, query, pageable)
+        Page<Message> hot = messageSearchBackend.searchInConversation(userId, conversationId, query, pageable);
+        List<MessageArchiveSegment> segments = messageArchive.segments(conversationId);
+        if (segments.isEmpty()) {
+            return hot.map(this::mapMessageToDTO);
+        }
+
+        List<Message> archived = messageArchive.search(segments, query, MAX_ARCHIVED_SEARCH_HITS);
+        List<Message> messages = new ArrayList<>(hot.getContent());
+        if (messages.size() < pageable.getPageSize()) {
+            int skip = (int) Math.min(archived.size(), Math.max(0, pageable.getOffset() - hot.getTotalElements()));
+            messages.addAll(archived.subList(skip, Math.min(archived.size(), skip + pageable.getPageSize() - messages.size())));
+        }
+        return new PageImpl<>(messages, pageable, hot.getTotalElements() + archived.size())
                 .map(this::mapMessageToDTO);
     }
 
-    private ConversationDTO mapToDTO(Conversation conversation, Companion companion) {
+    /**
+     * Tops up a short slice of hot messages from the archive, which only holds older ones.
+     */
+    private List<Message> withArchived(UUID conversationId, List<Message> hot, String before, int limit) {
+        List<MessageArchiveSegment> segments = messageArchive.segments(conversationId);
+        if (segments.isEmpty()) {
+            return hot;
+        }
+        List<Message> messages = new ArrayList<>(hot);
+        if (!hot.isEmpty()) {
+            Message oldest = hot.get(hot.size() - 1);
+            messages.addAll(messageArchive.readBefore(segments, oldest.getCreatedAt(), oldest.getId(), limit - hot.size()));
+        } else if (before == null || before.isBlank()) {
+            messages.addAll(messageArchive.readBefore(segments, null, null, limit));
+        } else {
+            MessageCursor cursor = MessageCursor.decode(before);
+            messages.addAll(messageArchive.readBefore(segments, cursor.createdAt(), cursor.id(), limit));
+        }
+        return messages;
+    }
+
+    private CompanionSnapshot companionOf(Conversation conversation) {
+        return hotEntityCache.companions(List.of(conversation.getCompanionId())).get(conversation.getCompanionId());
+    }
+
+    private ConversationDTO mapToDTO(Conversation conversation, CompanionSnapshot companion) {
         return ConversationDTO.builder()
                 .id(conversation.getId())
                 .userId(conversation.getUserId())
                 .companionId(conversation.getCompanionId())
-                .companionName(companion != null ? companion.getName() : null)
-                .companionAvatar(companion != null ? companion.getAvatarUrl() : null)
+                .companionName(companion != null ? companion.name() : null)
+                .companionAvatar(companion != null ? companion.avatarUrl() : null)
                 .title(conversation.getTitle())
                 .status(conversation.getStatus().name())
                 .messageCount(conversation.getMessageCount())
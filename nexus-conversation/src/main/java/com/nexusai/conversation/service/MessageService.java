@@ -1,33 +1,39 @@
 package com.nexusai.conversation.service;
 
 import com.nexusai.ai.service.AIProviderService;
+import com.nexusai.ai.service.TokenMeter;
 import com.nexusai.commons.exception.BusinessException;
 import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.conversation.cache.CompanionSnapshot;
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.conversation.cache.HotEntityCache;
 import com.nexusai.conversation.dto.MessageDTO;
 import com.nexusai.conversation.dto.SendMessageRequest;
 import com.nexusai.conversation.dto.StreamChunk;
-import com.nexusai.core.entity.Companion;
-import com.nexusai.core.entity.Conversation;
+import com.nexusai.conversation.event.MessageCreatedEvent;
+import com.nexusai.conversation.event.MessageDeletedEvent;
+import com.nexusai.conversation.event.MessageEditedEvent;
+import com.nexusai.conversation.mailbox.ConversationMailboxes;
+import com.nexusai.conversation.stats.ConversationCounters;
+import com.nexusai.conversation.tracing.PipelineTracing;
 import com.nexusai.core.entity.Message;
 import com.nexusai.core.enums.MessageRole;
 import com.nexusai.core.enums.MessageType;
-import com.nexusai.core.repository.CompanionRepository;
 import com.nexusai.core.repository.ConversationRepository;
 import com.nexusai.core.repository.MessageRepository;
+import com.nexusai.core.repository.UserRepository;
 import com.nexusai.moderation.service.ContentFilterService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
-import java.time.LocalDateTime;
-import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service for managing conversation messages with AI integration.
@@ -39,6 +45,19 @@ import java.util.concurrent.atomic.AtomicReference;
  * - Context management
  * - Token counting and tracking
  *
+ * Streamed replies are metered chunk by chunk and reconciled with the usage the
+ * provider reports at the end of its stream; the result is written once, to the
+ * message, the conversation counters and the user's token balance. The balance
+ * is charged for the prompt as well as for the reply.
+ *
+ * The reactive methods never block their caller's thread: repository work runs
+ * on the bounded {@code persistenceScheduler}, each save in its own transaction
+ * so that the outbox row of its event commits with it. Streamed generations of
+ * one conversation go through its mailbox, so they never overlap.
+ *
+ * Each streamed reply is traced by {@link PipelineTracing}, one child
+ * observation per stage, so a slow reply shows where its time went.
+ *
  * @author NexusAI Team
  * @since 1.0.0
  */
@@ -49,12 +68,17 @@ public class MessageService {
 
     private final MessageRepository messageRepository;
     private final ConversationRepository conversationRepository;
-    private final CompanionRepository companionRepository;
+    private final UserRepository userRepository;
+    private final HotEntityCache hotEntityCache;
     private final AIProviderService aiProviderService;
     private final ContentFilterService contentFilterService;
     private final ContextService contextService;
-
-    private static final int CONTEXT_MESSAGE_LIMIT = 20;
+    private final ConversationCounters conversationCounters;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionOperations transactionOperations;
+    private final Scheduler persistenceScheduler;
+    private final ConversationMailboxes conversationMailboxes;
+    private final PipelineTracing pipelineTracing;
 
     /**
      * Send a user message (without generating AI response).
@@ -68,8 +92,7 @@ public class MessageService {
     public MessageDTO sendMessage(UUID conversationId, UUID userId, SendMessageRequest request) {
         log.debug("Sending message from user {} to conversation {}", userId, conversationId);
 
-        Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
+        ConversationSnapshot conversation = hotEntityCache.conversation(conversationId, userId);
 
         // Content moderation check
         if (!contentFilterService.isContentSafe(request.getContent())) {
@@ -86,9 +109,11 @@ public class MessageService {
                 .build();
 
         userMessage = messageRepository.save(userMessage);
+        contextService.updateContext(userMessage);
+        eventPublisher.publishEvent(new MessageCreatedEvent(userMessage, userId));
 
         // Update conversation
-        conversationRepository.incrementMessageCount(conversationId, LocalDateTime.now());
+        conversationCounters.recordMessage(conversation, 0);
 
         log.info("User message saved for conversation {}", conversationId);
         return mapToDTO(userMessage);
@@ -105,23 +130,18 @@ public class MessageService {
     public MessageDTO generateResponse(UUID conversationId, UUID userId) {
         log.debug("Generating AI response for conversation {}", conversationId);
 
-        Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
+        ConversationSnapshot conversation = hotEntityCache.conversation(conversationId, userId);
+        CompanionSnapshot companion = hotEntityCache.companion(conversation.companionId());
 
-        Companion companion = companionRepository.findById(conversation.getCompanionId())
-                .orElseThrow(() -> new ResourceNotFoundException("Companion", conversation.getCompanionId().toString()));
-
-        // Get context messages
-        List<Message> contextMessages = messageRepository.findRecentMessages(conversationId, CONTEXT_MESSAGE_LIMIT);
-        String context = contextService.buildContext(conversationId, contextMessages);
+        String context = contextService.buildContext(conversation);
 
         // Generate AI response
         long startTime = System.currentTimeMillis();
         String response = aiProviderService.generateResponse(
-                companion.getSystemPrompt(),
+                companion.systemPrompt(),
                 context,
-                companion.getModelProvider(),
-                companion.getModelName()
+                companion.modelProvider(),
+                companion.modelName()
         );
         long generationTime = System.currentTimeMillis() - startTime;
 
@@ -137,11 +157,14 @@ public class MessageService {
                 .build();
 
         aiMessage = messageRepository.save(aiMessage);
+        contextService.updateContext(aiMessage);
+        eventPublisher.publishEvent(new MessageCreatedEvent(aiMessage, userId));
 
         // Update conversation stats
-        conversation.incrementMessages();
-        conversation.addTokens(tokensUsed);
-        conversationRepository.save(conversation);
+        conversationCounters.recordMessage(conversation, tokensUsed);
+        int promptTokens = aiProviderService.estimateTokens(companion.systemPrompt())
+                + aiProviderService.estimateTokens(context);
+        userRepository.chargeTokens(userId, promptTokens + tokensUsed);
 
         log.info("AI response generated for conversation {} in {}ms", conversationId, generationTime);
         return mapToDTO(aiMessage);
@@ -160,15 +183,21 @@ public class MessageService {
     public Flux<String> streamMessage(UUID conversationId, UUID userId, SendMessageRequest request) {
         log.info("Starting message stream for conversation: {} by user: {}", conversationId, userId);
 
-        return Mono.fromCallable(() -> {
+        // Queued as a whole: the context must include the previous answer
+        // Deferred so the turn takes its place in line only once subscribed
+        return pipelineTracing.trace("streamMessage", conversationId, trace -> Flux.defer(() ->
+                conversationMailboxes.enqueue(conversationId, Mono.fromCallable(() -> {
+                    trace.dequeued();
+
                     // Validate conversation ownership
-                    Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
-                            .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
+                    ConversationSnapshot conversation = hotEntityCache.conversation(conversationId, userId);
 
                     // Content moderation check
-                    if (!contentFilterService.isContentSafe(request.getContent())) {
-                        throw new BusinessException("CONTENT_BLOCKED", "Message contains inappropriate content");
-                    }
+                    trace.stage("moderation", () -> {
+                        if (!contentFilterService.isContentSafe(request.getContent())) {
+                            throw new BusinessException("CONTENT_BLOCKED", "Message contains inappropriate content");
+                        }
+                    });
 
                     // Save user message
                     Message userMessage = Message.builder()
@@ -179,45 +208,51 @@ public class MessageService {
                             .parentMessageId(request.getParentMessageId())
                             .build();
 
-                    messageRepository.save(userMessage);
-                    conversationRepository.incrementMessageCount(conversationId, LocalDateTime.now());
+                    trace.stage("persistence", () -> transactionOperations.executeWithoutResult(status -> {
+                        Message savedUserMessage = messageRepository.save(userMessage);
+                        contextService.updateContext(savedUserMessage);
+                        eventPublisher.publishEvent(new MessageCreatedEvent(savedUserMessage, userId));
+                        conversationCounters.recordMessage(conversation, 0);
+                    }));
 
                     // Get companion and context for AI response
-                    Companion companion = companionRepository.findById(conversation.getCompanionId())
-                            .orElseThrow(() -> new ResourceNotFoundException("Companion", conversation.getCompanionId().toString()));
+                    CompanionSnapshot companion = hotEntityCache.companion(conversation.companionId());
 
-                    List<Message> contextMessages = messageRepository.findRecentMessages(conversationId, CONTEXT_MESSAGE_LIMIT);
-                    String context = contextService.buildContext(conversationId, contextMessages);
+                    String context = trace.stage("context", () -> contextService.buildContext(conversation));
 
                     return new StreamContext(conversation, companion, context);
                 })
+                .subscribeOn(persistenceScheduler)
                 .flatMapMany(ctx -> {
                     // Stream AI response
-                    AtomicReference<StringBuilder> fullResponse = new AtomicReference<>(new StringBuilder());
+                    StringBuilder fullResponse = new StringBuilder();
+                    TokenMeter meter = new TokenMeter();
 
-                    return aiProviderService.streamResponse(
-                                    ctx.companion.getSystemPrompt(),
+                    return trace.provider(aiProviderService.streamResponse(
+                                    ctx.companion.systemPrompt(),
                                     ctx.context,
-                                    ctx.companion.getModelProvider(),
-                                    ctx.companion.getModelName()
-                            )
-                            .doOnNext(chunk -> fullResponse.get().append(chunk))
-                            .doOnComplete(() -> {
+                                    ctx.companion.modelProvider(),
+                                    ctx.companion.modelName(),
+                                    meter
+                            ))
+                            .doOnNext(fullResponse::append)
+                            .concatWith(Mono.<String>fromRunnable(() -> {
                                 // Save complete AI message after streaming completes
                                 try {
-                                    String completeResponse = fullResponse.get().toString();
-                                    int tokens = aiProviderService.estimateTokens(completeResponse);
+                                    int tokens = meter.completionTokens();
 
-                                    saveStreamedMessage(conversationId, completeResponse, tokens);
+                                    trace.stage("save", () ->
+                                            saveStreamedMessage(ctx.conversation, fullResponse.toString(), meter));
 
                                     log.info("Streaming completed for conversation {}, total tokens: {}",
                                             conversationId, tokens);
                                 } catch (Exception e) {
                                     log.error("Error saving streamed message for conversation {}", conversationId, e);
+                                    trace.error(e);
                                 }
-                            })
+                            }).subscribeOn(persistenceScheduler))
                             .doOnError(e -> log.error("Stream error for conversation: {}", conversationId, e));
-                });
+                }))));
     }
 
     /**
@@ -231,59 +266,54 @@ public class MessageService {
     public Flux<StreamChunk> streamResponse(UUID conversationId, UUID userId) {
         log.debug("Streaming response for conversation {}", conversationId);
 
-        return Mono.fromCallable(() -> {
-            Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
+        return pipelineTracing.trace("streamResponse", conversationId, trace -> Flux.defer(() ->
+                conversationMailboxes.enqueue(conversationId, Mono.fromCallable(() -> {
+            trace.dequeued();
+            ConversationSnapshot conversation = hotEntityCache.conversation(conversationId, userId);
+            CompanionSnapshot companion = hotEntityCache.companion(conversation.companionId());
 
-            Companion companion = companionRepository.findById(conversation.getCompanionId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Companion", conversation.getCompanionId().toString()));
-
-            List<Message> contextMessages = messageRepository.findRecentMessages(conversationId, CONTEXT_MESSAGE_LIMIT);
-            String context = contextService.buildContext(conversationId, contextMessages);
+            String context = trace.stage("context", () -> contextService.buildContext(conversation));
 
             return new StreamContext(conversation, companion, context);
-        }).flatMapMany(ctx -> {
+        }).subscribeOn(persistenceScheduler).flatMapMany(ctx -> {
             UUID messageId = UUID.randomUUID();
             StringBuilder fullResponse = new StringBuilder();
+            TokenMeter meter = new TokenMeter();
 
-            return aiProviderService.streamResponse(
-                    ctx.companion.getSystemPrompt(),
+            return trace.provider(aiProviderService.streamResponse(
+                    ctx.companion.systemPrompt(),
                     ctx.context,
-                    ctx.companion.getModelProvider(),
-                    ctx.companion.getModelName()
-            ).map(chunk -> {
+                    ctx.companion.modelProvider(),
+                    ctx.companion.modelName(),
+                    meter
+            )).map(chunk -> {
                 fullResponse.append(chunk);
                 // CORRECTED: StreamChunk.text takes 3 params: messageId, conversationId, content
                 return StreamChunk.text(messageId, conversationId, chunk);
             }).concatWith(Mono.defer(() -> {
                 // Save complete message
-                int tokens = aiProviderService.estimateTokens(fullResponse.toString());
-                saveStreamedMessage(conversationId, fullResponse.toString(), tokens);
+                int tokens = meter.completionTokens();
+                trace.stage("save", () -> saveStreamedMessage(ctx.conversation, fullResponse.toString(), meter));
                 return Mono.just(StreamChunk.complete(messageId, conversationId, tokens));
-            })).onErrorResume(e -> {
+            }).subscribeOn(persistenceScheduler)).onErrorResume(e -> {
                 log.error("Error streaming response for conversation {}", conversationId, e);
+                // Turned into an error chunk, so the trace is marked here
+                trace.error(e);
                 return Mono.just(StreamChunk.error(conversationId, e.getMessage()));
             });
-        });
+        }))));
     }
 
     /**
-     * Get messages for a conversation with pagination.
+     * Prepares the context of a conversation while its user is typing, so the
+     * coming send starts generating sooner. Blocking; best effort.
      *
      * @param conversationId Conversation ID
      * @param userId User ID
-     * @param pageable Pagination parameters
-     * @return Page of messages
      */
-    @Transactional(readOnly = true)
-    public Page<MessageDTO> getMessages(UUID conversationId, UUID userId, Pageable pageable) {
-        // Verify conversation ownership
-        conversationRepository.findByIdAndUserId(conversationId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId.toString()));
-
-        // CORRECTED: Use the correct method name
-        Page<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
-        return messages.map(this::mapToDTO);
+    public void anticipateMessage(UUID conversationId, UUID userId) {
+        ConversationSnapshot conversation = hotEntityCache.conversation(conversationId, userId);
+        contextService.prebuildContext(conversation);
     }
 
     /**
@@ -316,6 +346,8 @@ public class MessageService {
         message.setContent(newContent);
         message.setIsEdited(true);
         Message savedMessage = messageRepository.save(message);
+        contextService.evictContext(msgConversationId);
+        eventPublisher.publishEvent(new MessageEditedEvent(savedMessage, userId));
 
         log.info("Message {} edited by user {}", messageId, userId);
         return mapToDTO(savedMessage);
@@ -337,31 +369,33 @@ public class MessageService {
                 .orElseThrow(() -> new ResourceNotFoundException("Conversation", message.getConversationId().toString()));
 
         messageRepository.delete(message);
+        contextService.evictContext(message.getConversationId());
+        eventPublisher.publishEvent(new MessageDeletedEvent(messageId, message.getConversationId(), userId));
         log.info("Message {} deleted by user {}", messageId, userId);
     }
 
     // ========== PRIVATE HELPER METHODS ==========
 
     /**
-     * Save a streamed AI message after streaming completes.
+     * Save a streamed AI message after streaming completes. Called from within
+     * this class, so the transaction is started explicitly.
      */
-    @Transactional
-    protected void saveStreamedMessage(UUID conversationId, String content, int tokens) {
-        Message message = Message.builder()
-                .conversationId(conversationId)
-                .role(MessageRole.ASSISTANT)
-                .type(MessageType.TEXT)
-                .content(content)
-                .tokensUsed(tokens)
-                .build();
-        messageRepository.save(message);
-
-        Conversation conversation = conversationRepository.findById(conversationId).orElse(null);
-        if (conversation != null) {
-            conversation.incrementMessages();
-            conversation.addTokens(tokens);
-            conversationRepository.save(conversation);
-        }
+    protected void saveStreamedMessage(ConversationSnapshot conversation, String content, TokenMeter meter) {
+        int tokens = meter.completionTokens();
+        transactionOperations.executeWithoutResult(status -> {
+            Message message = Message.builder()
+                    .conversationId(conversation.id())
+                    .role(MessageRole.ASSISTANT)
+                    .type(MessageType.TEXT)
+                    .content(content)
+                    .tokensUsed(tokens)
+                    .build();
+            Message saved = messageRepository.save(message);
+            contextService.updateContext(saved);
+            eventPublisher.publishEvent(new MessageCreatedEvent(saved, conversation.userId()));
+            conversationCounters.recordMessage(conversation, tokens);
+            userRepository.chargeTokens(conversation.userId(), meter.billableTokens());
+        });
     }
 
     /**
@@ -397,5 +431,5 @@ public class MessageService {
     /**
      * Internal record for streaming context.
      */
-    private record StreamContext(Conversation conversation, Companion companion, String context) {}
+    private record StreamContext(ConversationSnapshot conversation, CompanionSnapshot companion, String context) {}
 }
@@ -0,0 +1,434 @@
+package com.nexusai.conversation.stats;
+
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind aggregation of conversation and companion counters.
+ *
+ * Each message adds its deltas to per-entity {@link LongAdder}s instead of
+ * updating the row, so concurrent turns on a hot conversation never contend on
+ * its row lock. Pending deltas are flushed on a fixed delay, one UPDATE per dirty
+ * row in a single transaction.
+ *
+ * Messages are only counted once their transaction commits.
+ *
+ * Crash safety: every delta is also added to a per-node Redis hash (the journal)
+ * in the same pipelined round trip, and a flush subtracts what it wrote. Each
+ * node keeps a lease alive while it runs; the journal of a node whose lease
+ * expired was never fully flushed, and any node claims it, atomically, merging
+ * it into its own journal and replaying it. Node ids are per process, so a
+ * rescheduled instance needs no stable host name. Replay is at-least-once: a
+ * crash between the database commit and the journal update counts that batch
+ * twice.
+ */
+@Component
+@Slf4j
+public class ConversationCounters {
+
+    public static final String JOURNAL_KEY_PREFIX = "conversation:counters:journal:";
+    public static final String LEASE_KEY_PREFIX = "conversation:counters:lease:";
+    public static final String JOURNALS_KEY = "conversation:counters:journals";
+
+    private static final String CONVERSATION = "c";
+    private static final String COMPANION = "p";
+
+    /**
+     * Subtracts flushed deltas from the journal and drops fields that reach zero.
+     */
+    private static final RedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 2 do " +
+            "  if redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1])) <= 0 then " +
+            "    redis.call('HDEL', KEYS[1], ARGV[i]) " +
+            "  end " +
+            "end " +
+            "return #ARGV / 2", Long.class);
+
+    /**
+     * Moves the journal of a node whose lease expired into the claimer's and
+     * returns its entries. Malformed entries are left out.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[2]) == 1 then return {} end " +
+            "local entries = redis.call('HGETALL', KEYS[1]) " +
+            "local claimed = {} " +
+            "for i = 1, #entries, 2 do " +
+            "  if string.match(entries[i + 1], '^%-?%d+$') then " +
+            "    redis.call('HINCRBY', KEYS[3], entries[i], entries[i + 1]) " +
+            "    claimed[#claimed + 1] = entries[i] " +
+            "    claimed[#claimed + 1] = entries[i + 1] " +
+            "  end " +
+            "end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('SREM', KEYS[4], ARGV[1]) " +
+            "return claimed", List.class);
+
+    private final ConversationRepository conversationRepository;
+    private final CompanionRepository companionRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration leaseTtl;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String journalKey = JOURNAL_KEY_PREFIX + nodeId;
+    private final String leaseKey = LEASE_KEY_PREFIX + nodeId;
+
+    private final Map<UUID, Delta> conversations = new ConcurrentHashMap<>();
+    private final Map<UUID, Delta> companions = new ConcurrentHashMap<>();
+
+    public ConversationCounters(ConversationRepository conversationRepository,
+                                CompanionRepository companionRepository,
+                                RedisTemplate<String, String> redisTemplate,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${nexusai.conversation.counters.lease-ttl:PT1M}") Duration leaseTtl) {
+        this.conversationRepository = conversationRepository;
+        this.companionRepository = companionRepository;
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.leaseTtl = leaseTtl;
+    }
+
+    /**
+     * Records one message and its tokens against the conversation and its
+     * companion, once the current transaction (if any) commits.
+     */
+    public void recordMessage(ConversationSnapshot conversation, long tokens) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(conversation, tokens);
+                }
+            });
+            return;
+        }
+        record(conversation, tokens);
+    }
+
+    private void record(ConversationSnapshot conversation, long tokens) {
+        long now = System.currentTimeMillis();
+        add(conversations, conversation.id(), 1, tokens, now);
+        if (conversation.companionId() != null) {
+            add(companions, conversation.companionId(), 1, tokens, now);
+        }
+        journal(conversation.id(), conversation.companionId(), tokens);
+    }
+
+    /**
+     * Writes pending deltas to the database and settles them in the journal.
+     */
+    @Scheduled(fixedDelayString = "${nexusai.conversation.counters.flush-interval:PT5S}",
+            initialDelayString = "${nexusai.conversation.counters.flush-interval:PT5S}")
+    public void flush() {
+        renewLease();
+        List<Drained> conversationBatch = drain(conversations);
+        List<Drained> companionBatch = drain(companions);
+        if (conversationBatch.isEmpty() && companionBatch.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Drained drained : conversationBatch) {
+                    conversationRepository.applyCounterDeltas(drained.id(), (int) drained.messages(),
+                            drained.tokens(), drained.lastActivityAt());
+                }
+                for (Drained drained : companionBatch) {
+                    companionRepository.applyUsageDeltas(drained.id(), drained.messages(), drained.tokens());
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to flush counters for {} conversations, retrying next cycle",
+                    conversationBatch.size(), e);
+            restore(conversations, conversationBatch);
+            restore(companions, companionBatch);
+            return;
+        }
+
+        settle(conversationBatch, companionBatch);
+        log.debug("Flushed counters for {} conversations and {} companions",
+                conversationBatch.size(), companionBatch.size());
+    }
+
+    /**
+     * Registers this node and replays the journals of nodes that stopped
+     * without flushing, then keeps looking for them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        renewLease();
+        reclaim();
+    }
+
+    /**
+     * Claims and replays the journals of nodes whose lease expired.
+     */
+    @Scheduled(fixedDelayString = "${nexusai.conversation.counters.lease-ttl:PT1M}",
+            initialDelayString = "${nexusai.conversation.counters.lease-ttl:PT1M}")
+    public void reclaim() {
+        Set<String> nodes;
+        try {
+            nodes = redisTemplate.opsForSet().members(JOURNALS_KEY);
+        } catch (Exception e) {
+            log.warn("Could not list counter journals", e);
+            return;
+        }
+        if (nodes == null) {
+            return;
+        }
+        boolean recovered = false;
+        for (String node : nodes) {
+            if (!node.equals(nodeId)) {
+                recovered |= claim(node);
+            }
+        }
+        if (recovered) {
+            flush();
+        }
+    }
+
+    private boolean claim(String node) {
+        List<?> entries;
+        try {
+            entries = redisTemplate.execute(CLAIM_SCRIPT,
+                    List.of(JOURNAL_KEY_PREFIX + node, LEASE_KEY_PREFIX + node, journalKey, JOURNALS_KEY), node);
+        } catch (Exception e) {
+            log.warn("Could not claim the counter journal of node {}", node, e);
+            return false;
+        }
+        if (entries == null || entries.isEmpty()) {
+            return false;
+        }
+
+        Map<String, Long> fields = new HashMap<>();
+        for (int i = 0; i + 1 < entries.size(); i += 2) {
+            try {
+                fields.put(entries.get(i).toString(), Long.parseLong(entries.get(i + 1).toString()));
+            } catch (NumberFormatException e) {
+                log.warn("Skipping malformed counter journal entry {}", entries.get(i));
+            }
+        }
+        List<Drained> conversationBatch = new ArrayList<>();
+        List<Drained> companionBatch = new ArrayList<>();
+        fields.forEach((field, messages) -> {
+            String[] parts = field.split(":");
+            if (parts.length != 3 || !"m".equals(parts[2])) {
+                return;
+            }
+            UUID id;
+            try {
+                id = UUID.fromString(parts[1]);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping malformed counter journal entry {}", field);
+                return;
+            }
+            long tokens = fields.getOrDefault(parts[0] + ":" + parts[1] + ":t", 0L);
+            Drained drained = new Drained(id, messages, tokens, null);
+            (CONVERSATION.equals(parts[0]) ? conversationBatch : companionBatch).add(drained);
+        });
+
+        // Re-enter the normal path: the deltas are already in this node's journal, so only memory is restored
+        restore(conversations, conversationBatch);
+        restore(companions, companionBatch);
+        log.info("Recovered unflushed counters for {} conversations from node {}", conversationBatch.size(), node);
+        return true;
+    }
+
+    private void renewLease() {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().set(bytes(leaseKey), bytes(nodeId),
+                        Expiration.from(leaseTtl), RedisStringCommands.SetOption.upsert());
+                connection.setCommands().sAdd(bytes(JOURNALS_KEY), bytes(nodeId));
+                return null;
+            });
+        } catch (Exception e) {
+            // Another node may claim the journal meanwhile, which only risks counting a batch twice
+            log.warn("Failed to renew counter journal lease {}", leaseKey, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+        try {
+            redisTemplate.delete(leaseKey);
+        } catch (Exception e) {
+            log.debug("Failed to release counter journal lease {}", leaseKey, e);
+        }
+    }
+
+    private void add(Map<UUID, Delta> deltas, UUID id, long messages, long tokens, long activityAt) {
+        while (true) {
+            Delta delta = deltas.computeIfAbsent(id, key -> new Delta());
+            if (delta.add(messages, tokens, activityAt)) {
+                return;
+            }
+            // Lost the race with the removal of an idle entry, retry on a fresh one
+        }
+    }
+
+    private List<Drained> drain(Map<UUID, Delta> deltas) {
+        List<Drained> batch = new ArrayList<>();
+        deltas.forEach((id, delta) -> {
+            Drained drained = delta.drain(id);
+            if (drained != null) {
+                batch.add(drained);
+            } else if (delta.retire()) {
+                deltas.remove(id, delta);
+            }
+        });
+        // Rows are updated in id order on every node, so concurrent flushes cannot deadlock on each other
+        batch.sort(Comparator.comparing(Drained::id));
+        return batch;
+    }
+
+    private void restore(Map<UUID, Delta> deltas, List<Drained> batch) {
+        for (Drained drained : batch) {
+            long activityAt = drained.lastActivityAt() != null
+                    ? drained.lastActivityAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : 0L;
+            add(deltas, drained.id(), drained.messages(), drained.tokens(), activityAt);
+        }
+    }
+
+    private void journal(UUID conversationId, UUID companionId, long tokens) {
+        byte[] key = bytes(journalKey);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hIncrBy(key, bytes(field(CONVERSATION, conversationId, "m")), 1);
+                connection.hashCommands().hIncrBy(key, bytes(field(CONVERSATION, conversationId, "t")), tokens);
+                if (companionId != null) {
+                    connection.hashCommands().hIncrBy(key, bytes(field(COMPANION, companionId, "m")), 1);
+                    connection.hashCommands().hIncrBy(key, bytes(field(COMPANION, companionId, "t")), tokens);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // The in-memory delta is still flushed; only crash recovery is lost for it
+            log.warn("Failed to journal counters for conversation {}", conversationId, e);
+        }
+    }
+
+    private void settle(List<Drained> conversationBatch, List<Drained> companionBatch) {
+        List<String> args = new ArrayList<>();
+        appendSettlement(args, CONVERSATION, conversationBatch);
+        appendSettlement(args, COMPANION, companionBatch);
+        try {
+            redisTemplate.execute(SETTLE_SCRIPT, List.of(journalKey), args.toArray());
+        } catch (Exception e) {
+            log.warn("Failed to settle counter journal {}, entries will be replayed on restart", journalKey, e);
+        }
+    }
+
+    private static void appendSettlement(List<String> args, String type, List<Drained> batch) {
+        for (Drained drained : batch) {
+            args.add(field(type, drained.id(), "m"));
+            args.add(Long.toString(drained.messages()));
+            args.add(field(type, drained.id(), "t"));
+            args.add(Long.toString(drained.tokens()));
+        }
+    }
+
+    private static String field(String type, UUID id, String counter) {
+        return type + ":" + id + ":" + counter;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pending deltas for one row.
+     *
+     * Writers register in {@code writers} before checking {@code retired}; the
+     * flusher sets {@code retired} before checking {@code writers}. Either the
+     * writer sees the retirement and retries on a fresh entry, or the flusher sees
+     * the writer and keeps the entry, so no delta is added to a removed entry.
+     */
+    static final class Delta {
+
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder tokens = new LongAdder();
+        private final LongAdder writers = new LongAdder();
+        private volatile long lastActivityAt;
+        private volatile boolean retired;
+
+        boolean add(long messageDelta, long tokenDelta, long activityAt) {
+            writers.increment();
+            try {
+                if (retired) {
+                    return false;
+                }
+                messages.add(messageDelta);
+                tokens.add(tokenDelta);
+                if (activityAt > lastActivityAt) {
+                    lastActivityAt = activityAt;
+                }
+                return true;
+            } finally {
+                writers.decrement();
+            }
+        }
+
+        Drained drain(UUID id) {
+            long drainedMessages = messages.sumThenReset();
+            long drainedTokens = tokens.sumThenReset();
+            if (drainedMessages == 0 && drainedTokens == 0) {
+                return null;
+            }
+            LocalDateTime activity = lastActivityAt > 0
+                    ? LocalDateTime.ofInstant(Instant.ofEpochMilli(lastActivityAt), ZoneId.systemDefault())
+                    : null;
+            return new Drained(id, drainedMessages, drainedTokens, activity);
+        }
+
+        /**
+         * Marks an entry that had nothing to drain for removal.
+         *
+         * @return whether the entry may be removed
+         */
+        boolean retire() {
+            retired = true;
+            if (writers.sum() != 0 || messages.sum() != 0 || tokens.sum() != 0) {
+                retired = false;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    record Drained(UUID id, long messages, long tokens, LocalDateTime lastActivityAt) {}
+}
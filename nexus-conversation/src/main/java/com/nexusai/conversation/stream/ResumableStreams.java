@@ -0,0 +1,311 @@
+package com.nexusai.conversation.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.commons.exception.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SSE streams that survive client reconnects.
+ *
+ * A generation is subscribed once, independently of the HTTP connection that
+ * started it, and every event gets the id {@code <streamId>:<seq>}. The last
+ * {@code replay-buffer} events are kept in memory and all of them are spilled,
+ * in small batches, to a Redis sorted set scored by seq that expires shortly
+ * after the stream. A client that reconnects with {@code Last-Event-ID} is
+ * attached to the running generation and only receives what it missed: from
+ * memory when it lands on the node running the generation, otherwise by
+ * following the spill. Either way the model is never called a second time.
+ * Spilling is fed through its own queue, so a slow or failing Redis never
+ * holds back the generation.
+ *
+ * Chunks are sent as unnamed events, so {@code EventSource.onmessage} keeps
+ * receiving them. The end of a stream is a {@code done} event, or an
+ * {@code error} event carrying the failure message.
+ *
+ * Spill keys include the owner and the conversation, so a stream can only be
+ * resumed by its user, through its conversation.
+ */
+@Component
+@Slf4j
+public class ResumableStreams {
+
+    static final String SPILL_KEY_PREFIX = "nexusai:sse:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final Duration retention;
+    private final Duration spillTtl;
+    private final int spillBatch;
+    private final Duration spillInterval;
+    private final Duration pollInterval;
+
+    private final Map<String, LiveStream> streams = new ConcurrentHashMap<>();
+
+    public ResumableStreams(RedisTemplate<String, String> redisTemplate,
+                            ObjectMapper objectMapper,
+                            @Value("${nexusai.conversation.stream.replay-buffer:512}") int bufferSize,
+                            @Value("${nexusai.conversation.stream.retention:PT2M}") Duration retention,
+                            @Value("${nexusai.conversation.stream.spill-ttl:PT5M}") Duration spillTtl,
+                            @Value("${nexusai.conversation.stream.spill-batch:32}") int spillBatch,
+                            @Value("${nexusai.conversation.stream.spill-interval:PT0.05S}") Duration spillInterval,
+                            @Value("${nexusai.conversation.stream.poll-interval:PT0.2S}") Duration pollInterval) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.retention = retention;
+        this.spillTtl = spillTtl;
+        this.spillBatch = spillBatch;
+        this.spillInterval = spillInterval;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Starts a generation and returns its events from the first one. Cancelling
+     * the returned flux (client gone) does not cancel the generation.
+     *
+     * @param payloads the generation; strings are sent as-is, anything else as JSON
+     */
+    public Flux<ServerSentEvent<String>> open(UUID userId, UUID conversationId, Flux<?> payloads) {
+        return open(userId, conversationId, newStreamId(), payloads);
+    }
+
+    /**
+     * Like {@link #open(UUID, UUID, Flux)}, under an id obtained from
+     * {@link #newStreamId()} so that it can be recorded before the generation
+     * starts. {@code resume(userId, conversationId, streamId + ":0")} replays it
+     * from the start.
+     */
+    public Flux<ServerSentEvent<String>> open(UUID userId, UUID conversationId, String streamId, Flux<?> payloads) {
+        LiveStream stream = new LiveStream(streamId, userId, conversationId);
+        streams.put(stream.id, stream);
+
+        stream.spills.asFlux()
+                .bufferTimeout(spillBatch, spillInterval)
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(
+                        batch -> spill(stream, batch),
+                        error -> log.warn("Stopped spilling stream {}: {}", stream.id, error.getMessage()));
+
+        payloads.map(payload -> stream.next(StreamEvent.CHUNK, serialize(payload)))
+                .concatWith(Mono.fromCallable(() -> stream.next(StreamEvent.DONE, "")))
+                .onErrorResume(error -> {
+                    log.warn("Stream {} failed: {}", stream.id, error.getMessage());
+                    return Mono.just(stream.next(StreamEvent.ERROR, String.valueOf(error.getMessage())));
+                })
+                .doFinally(signal -> stream.finish())
+                .subscribe(
+                        stream::emit,
+                        error -> log.error("Stream {} terminated abnormally", stream.id, error));
+
+        return toSse(stream.id, stream.replay(0));
+    }
+
+    /**
+     * Re-attaches to a stream after the event with the given id.
+     *
+     * @throws ValidationException if the id is malformed
+     * @throws ResourceNotFoundException if the stream is unknown, expired, not the
+     *         user's or not a stream of the conversation
+     */
+    public Flux<ServerSentEvent<String>> resume(UUID userId, UUID conversationId, String lastEventId) {
+        int separator = lastEventId.lastIndexOf(':');
+        String streamId;
+        long lastSeq;
+        try {
+            streamId = lastEventId.substring(0, separator);
+            lastSeq = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new ValidationException("Last-Event-ID", "Invalid event id");
+        }
+
+        LiveStream stream = streams.get(streamId);
+        if (stream != null && stream.userId.equals(userId) && stream.conversationId.equals(conversationId)) {
+            long oldest = stream.oldestBuffered();
+            if (lastSeq + 1 >= oldest) {
+                return toSse(streamId, stream.replay(lastSeq));
+            }
+            // The client is further behind than the buffer: fill the gap from the spill
+            long gapEnd = oldest - 1;
+            Flux<StreamEvent> gap = Mono.fromCallable(() -> readSpill(stream.spillKey, lastSeq))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMapIterable(events -> events)
+                    .filter(event -> event.seq() <= gapEnd);
+            return toSse(streamId, Flux.concat(gap, stream.replay(gapEnd)));
+        }
+        return toSse(streamId, follow(spillKey(userId, conversationId, streamId), streamId, lastSeq));
+    }
+
+    /**
+     * Replays a finished stream from its recorded payloads, with the ids and
+     * the terminal event it was originally sent with. Used once the stream
+     * itself is no longer resumable.
+     */
+    public Flux<ServerSentEvent<String>> replay(String streamId, List<?> payloads) {
+        AtomicLong seq = new AtomicLong();
+        Flux<StreamEvent> events = Flux.fromIterable(payloads)
+                .map(payload -> new StreamEvent(seq.incrementAndGet(), StreamEvent.CHUNK, serialize(payload)))
+                .concatWith(Mono.fromCallable(() -> new StreamEvent(seq.incrementAndGet(), StreamEvent.DONE, "")));
+        return toSse(streamId, events);
+    }
+
+    public String newStreamId() {
+        return UUID.randomUUID().toString();
+    }
+
+    int liveStreams() {
+        return streams.size();
+    }
+
+    /**
+     * Follows a stream running on another node through its Redis spill.
+     */
+    private Flux<StreamEvent> follow(String key, String streamId, long lastSeq) {
+        AtomicLong cursor = new AtomicLong(lastSeq);
+        Flux<StreamEvent> poll = Flux.interval(Duration.ZERO, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromCallable(() -> readSpill(key, cursor.get()))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMapIterable(events -> events)
+                .doOnNext(event -> cursor.set(event.seq()))
+                .takeUntil(StreamEvent::isTerminal)
+                .take(spillTtl);
+
+        return Mono.fromCallable(() -> Boolean.TRUE.equals(redisTemplate.hasKey(key)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(exists -> exists
+                        ? poll
+                        : Flux.error(new ResourceNotFoundException("Stream", streamId)));
+    }
+
+    private List<StreamEvent> readSpill(String key, long afterSeq) {
+        // Scored by seq, so events lost by a failed spill leave a gap instead of shifting the rest
+        Set<String> raw = redisTemplate.opsForZSet().rangeByScore(key, afterSeq + 1, Double.POSITIVE_INFINITY);
+        List<StreamEvent> events = new ArrayList<>(raw != null ? raw.size() : 0);
+        if (raw != null) {
+            for (String value : raw) {
+                try {
+                    events.add(objectMapper.readValue(value, StreamEvent.class));
+                } catch (JsonProcessingException e) {
+                    log.warn("Skipping malformed spilled event in {}", key);
+                }
+            }
+        }
+        return events;
+    }
+
+    private void spill(LiveStream stream, List<StreamEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        byte[] key = stream.spillKey.getBytes(StandardCharsets.UTF_8);
+        try {
+            Set<Tuple> values = new LinkedHashSet<>();
+            for (StreamEvent event : batch) {
+                values.add(new DefaultTuple(objectMapper.writeValueAsBytes(event), (double) event.seq()));
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.zSetCommands().zAdd(key, values);
+                connection.keyCommands().expire(key, spillTtl.toSeconds());
+                return null;
+            });
+        } catch (Exception e) {
+            // Resuming on this node still works from memory
+            log.warn("Failed to spill {} events of stream {}", batch.size(), stream.id, e);
+        }
+    }
+
+    private String serialize(Object payload) {
+        if (payload instanceof String text) {
+            return text;
+        }
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize stream payload", e);
+        }
+    }
+
+    private static Flux<ServerSentEvent<String>> toSse(String streamId, Flux<StreamEvent> events) {
+        return events.map(event -> {
+            ServerSentEvent.Builder<String> sse = ServerSentEvent.builder(event.data())
+                    .id(streamId + ":" + event.seq());
+            // Unnamed, chunks reach EventSource.onmessage
+            return (event.isTerminal() ? sse.event(event.event()) : sse).build();
+        });
+    }
+
+    static String spillKey(UUID userId, UUID conversationId, String streamId) {
+        return SPILL_KEY_PREFIX + userId + ":" + conversationId + ":" + streamId;
+    }
+
+    private final class LiveStream {
+
+        private final String id;
+        private final UUID userId;
+        private final UUID conversationId;
+        private final String spillKey;
+        private final Sinks.Many<StreamEvent> events = Sinks.many().replay().limit(bufferSize);
+        private final Sinks.Many<StreamEvent> spills = Sinks.many().unicast().onBackpressureBuffer();
+        private final AtomicLong seq = new AtomicLong();
+
+        private LiveStream(String id, UUID userId, UUID conversationId) {
+            this.id = id;
+            this.userId = userId;
+            this.conversationId = conversationId;
+            this.spillKey = spillKey(userId, conversationId, id);
+        }
+
+        StreamEvent next(String event, String data) {
+            return new StreamEvent(seq.incrementAndGet(), event, data);
+        }
+
+        void emit(StreamEvent event) {
+            events.tryEmitNext(event);
+            spills.tryEmitNext(event);
+        }
+
+        void finish() {
+            events.tryEmitComplete();
+            spills.tryEmitComplete();
+            Mono.delay(retention).subscribe(tick -> streams.remove(id, this));
+        }
+
+        long oldestBuffered() {
+            return Math.max(1, seq.get() - bufferSize + 1);
+        }
+
+        /**
+         * Buffered and live events after {@code afterSeq}, ending with the terminal event.
+         */
+        Flux<StreamEvent> replay(long afterSeq) {
+            return events.asFlux()
+                    .filter(event -> event.seq() > afterSeq)
+                    .takeUntil(StreamEvent::isTerminal);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.nexusai.conversation.stream;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * One event of a resumable stream. {@code seq} starts at 1 and has no gaps.
+ */
+public record StreamEvent(long seq, String event, String data) {
+
+    public static final String CHUNK = "chunk";
+    public static final String DONE = "done";
+    public static final String ERROR = "error";
+
+    @JsonIgnore
+    public boolean isTerminal() {
+        return DONE.equals(event) || ERROR.equals(event);
+    }
+}
@@ -0,0 +1,109 @@
+package com.nexusai.conversation.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The observations of one pass through the pipeline; see {@link PipelineTracing}.
+ */
+public final class PipelineTrace {
+
+    public static final String ROOT = "nexusai.conversation.pipeline";
+
+    /**
+     * {@code ObservationThreadLocalAccessor.KEY}, spelled out as the
+     * context-propagation library is not on the classpath.
+     */
+    static final String OBSERVATION_KEY = "micrometer.observation";
+
+    static final Observation.Event FIRST_TOKEN = Observation.Event.of("first-token", "First chunk from the provider");
+
+    private final ObservationRegistry observationRegistry;
+    private final Observation root;
+    private final Observation queue;
+    private final AtomicBoolean dequeued = new AtomicBoolean();
+
+    private PipelineTrace(ObservationRegistry observationRegistry, Observation root) {
+        this.observationRegistry = observationRegistry;
+        this.root = root;
+        this.queue = child("queue").start();
+    }
+
+    static PipelineTrace start(ObservationRegistry observationRegistry, String operation, UUID conversationId) {
+        Observation root = Observation.createNotStarted(ROOT, observationRegistry)
+                .contextualName(operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .highCardinalityKeyValue("conversation.id", conversationId.toString())
+                .start();
+        return new PipelineTrace(observationRegistry, root);
+    }
+
+    /**
+     * Ends the wait in the conversation's mailbox; the first stage calls it.
+     */
+    public void dequeued() {
+        if (dequeued.compareAndSet(false, true)) {
+            queue.stop();
+        }
+    }
+
+    /**
+     * Runs a blocking stage as a child observation, in scope on the calling thread.
+     */
+    public <T> T stage(String name, Supplier<T> stage) {
+        return child(name).observe(stage);
+    }
+
+    public void stage(String name, Runnable stage) {
+        child(name).observe(stage);
+    }
+
+    /**
+     * Observes the provider's stream: from subscription to its last chunk,
+     * with the arrival of the first one as an event (time to first token).
+     */
+    public <T> Flux<T> provider(Flux<T> chunks) {
+        return Flux.defer(() -> {
+            Observation observation = child("provider").start();
+            AtomicBoolean first = new AtomicBoolean();
+            return chunks
+                    .doOnNext(chunk -> {
+                        if (first.compareAndSet(false, true)) {
+                            observation.event(FIRST_TOKEN);
+                        }
+                    })
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(context -> context.put(OBSERVATION_KEY, observation));
+        });
+    }
+
+    Observation root() {
+        return root;
+    }
+
+    /**
+     * Marks the whole pass as failed; for errors the pipeline handles itself
+     * and so never reach {@link PipelineTracing}.
+     */
+    public void error(Throwable error) {
+        root.error(error);
+    }
+
+    void stop() {
+        // A pipeline cancelled or failed before its first stage never left the queue
+        dequeued();
+        root.stop();
+    }
+
+    private Observation child(String name) {
+        return Observation.createNotStarted(ROOT + "." + name, observationRegistry)
+                .contextualName(name)
+                .parentObservation(root);
+    }
+}
@@ -0,0 +1,49 @@
+package com.nexusai.conversation.tracing;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Observations of the conversation pipeline, one trace per streamed reply.
+ *
+ * The root observation ({@value PipelineTrace#ROOT}) covers the whole reply,
+ * with one child per stage: waiting in the conversation's mailbox, moderation,
+ * persistence of the user message, context building, the provider call (its
+ * first chunk recorded as a {@code first-token} event) and the final save.
+ * With the OpenTelemetry bridge on the classpath ({@code otel} Maven profile of
+ * nexus-web) every observation is a span, exported over OTLP; without it they
+ * still feed the {@code nexusai.conversation.pipeline.*} timers.
+ *
+ * The current observation travels in the Reactor context, under the key the
+ * WebClient instrumentation reads its parent from, so the provider's HTTP call
+ * joins the trace and carries its {@code traceparent} header.
+ */
+@Component
+public class PipelineTracing {
+
+    private final ObservationRegistry observationRegistry;
+
+    public PipelineTracing(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Runs a pipeline under a new root observation, started on subscription
+     * and stopped when the pipeline terminates or is cancelled.
+     *
+     * @param operation low-cardinality name of the entry point, e.g. {@code streamMessage}
+     */
+    public <T> Flux<T> trace(String operation, UUID conversationId, Function<PipelineTrace, Flux<T>> pipeline) {
+        return Flux.defer(() -> {
+            PipelineTrace trace = PipelineTrace.start(observationRegistry, operation, conversationId);
+            return pipeline.apply(trace)
+                    .doOnError(trace::error)
+                    .doFinally(signal -> trace.stop())
+                    .contextWrite(context -> context.put(PipelineTrace.OBSERVATION_KEY, trace.root()));
+        });
+    }
+}
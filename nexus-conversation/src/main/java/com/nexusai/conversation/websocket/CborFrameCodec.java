@@ -0,0 +1,132 @@
+package com.nexusai.conversation.websocket;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.nexusai.conversation.dto.StreamChunk;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The {@code nexus.v1.cbor} binary protocol.
+ *
+ * Control frames are CBOR maps with the same keys as their JSON form. Stream
+ * chunks are CBOR arrays keyed by a small per-connection stream id, so the two
+ * UUIDs are sent once per response instead of once per token:
+ * <pre>
+ *   [0, streamId, conversationId, messageId, content]  first text chunk of a response
+ *   [1, streamId, content]                             following text chunks
+ *   [2, streamId, tokensUsed]                          completion, the id is retired
+ *   [3, conversationId, error]                         stream error
+ * </pre>
+ * UUIDs are 16-byte CBOR byte strings. Frames are written straight into
+ * buffers from the session's (pooled) buffer factory. Client frames are CBOR
+ * maps with the keys of their JSON form.
+ */
+public class CborFrameCodec implements FrameCodec {
+
+    static final int OPEN = 0;
+    static final int DELTA = 1;
+    static final int COMPLETE = 2;
+    static final int ERROR = 3;
+
+    private static final int MAX_OPEN_STREAMS = 256;
+
+    private final CBORMapper mapper;
+    private final Map<UUID, Integer> streams = new HashMap<>();
+    private int nextStreamId;
+
+    public CborFrameCodec(CBORMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public WebSocketMessage encode(OutboundFrame frame, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(64);
+        try (OutputStream out = buffer.asOutputStream();
+             CBORGenerator generator = mapper.getFactory().createGenerator(out)) {
+            switch (frame) {
+                case OutboundFrame.Control control -> mapper.writeValue(generator, control.body());
+                case OutboundFrame.Chunk chunk -> writeChunk(generator, chunk.chunk());
+            }
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+        return new WebSocketMessage(WebSocketMessage.Type.BINARY, buffer);
+    }
+
+    @Override
+    public <T> T decode(WebSocketMessage message, Class<T> type) throws IOException {
+        try (InputStream in = message.getPayload().asInputStream()) {
+            return mapper.readValue(in, type);
+        }
+    }
+
+    private void writeChunk(CBORGenerator generator, StreamChunk chunk) throws IOException {
+        if (chunk.getMessageId() == null) {
+            generator.writeStartArray(null, 3);
+            generator.writeNumber(ERROR);
+            writeUuid(generator, chunk.getConversationId());
+            generator.writeString(chunk.getError());
+            generator.writeEndArray();
+            return;
+        }
+
+        Integer streamId = streams.get(chunk.getMessageId());
+        if (Boolean.TRUE.equals(chunk.getIsComplete())) {
+            streams.remove(chunk.getMessageId());
+            generator.writeStartArray(null, 3);
+            generator.writeNumber(COMPLETE);
+            generator.writeNumber(streamId != null ? streamId : -1);
+            generator.writeNumber(chunk.getTokensUsed() != null ? chunk.getTokensUsed() : 0);
+            generator.writeEndArray();
+            return;
+        }
+
+        if (streamId != null) {
+            generator.writeStartArray(null, 3);
+            generator.writeNumber(DELTA);
+            generator.writeNumber(streamId);
+            generator.writeString(chunk.getContent());
+            generator.writeEndArray();
+            return;
+        }
+
+        if (streams.size() >= MAX_OPEN_STREAMS) {
+            // Responses that never completed; forgotten ids are simply re-opened on their next chunk
+            streams.clear();
+        }
+        streamId = nextStreamId++ & 0xFFFF;
+        streams.put(chunk.getMessageId(), streamId);
+        generator.writeStartArray(null, 5);
+        generator.writeNumber(OPEN);
+        generator.writeNumber(streamId);
+        writeUuid(generator, chunk.getConversationId());
+        writeUuid(generator, chunk.getMessageId());
+        generator.writeString(chunk.getContent());
+        generator.writeEndArray();
+    }
+
+    private static void writeUuid(CBORGenerator generator, UUID uuid) throws IOException {
+        if (uuid == null) {
+            generator.writeNull();
+            return;
+        }
+        byte[] bytes = ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+        generator.writeBinary(bytes);
+    }
+}
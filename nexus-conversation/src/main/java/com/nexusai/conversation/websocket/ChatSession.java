@@ -0,0 +1,126 @@
+package com.nexusai.conversation.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One connected WebSocket client and its outbound queue.
+ *
+ * Every frame for the client, replies and fan-out alike, goes through
+ * {@link #offer(OutboundFrame)} into a bounded buffer drained by the socket at the
+ * client's pace. When the buffer is full the {@link SlowConsumerPolicy} decides
+ * whether the frame is dropped or the session is closed, so a slow client never
+ * makes producers block or buffer without bound.
+ */
+@Slf4j
+public class ChatSession {
+
+    private final WebSocketSession session;
+    private final SlowConsumerPolicy policy;
+    private final Sinks.Many<OutboundFrame> outbound;
+    private final Set<UUID> conversations = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile UUID userId;
+
+    public ChatSession(WebSocketSession session, int bufferSize, SlowConsumerPolicy policy) {
+        this.session = session;
+        this.policy = policy;
+        this.outbound = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(bufferSize));
+    }
+
+    public String id() {
+        return session.getId();
+    }
+
+    public UUID userId() {
+        return userId;
+    }
+
+    /**
+     * Binds the session to a user on its first request.
+     *
+     * @return {@code false} if the session already belongs to another user
+     */
+    boolean bindUser(UUID candidate) {
+        synchronized (this) {
+            if (userId == null) {
+                userId = candidate;
+            }
+        }
+        return userId.equals(candidate);
+    }
+
+    Set<UUID> conversations() {
+        return conversations;
+    }
+
+    /**
+     * Frames to write to the socket, in order.
+     */
+    public Flux<OutboundFrame> outbound() {
+        return outbound.asFlux();
+    }
+
+    /**
+     * Queues a frame without blocking.
+     *
+     * @return whether the frame was accepted
+     */
+    public boolean offer(OutboundFrame frame) {
+        if (closed.get()) {
+            return false;
+        }
+        Sinks.EmitResult result;
+        // Producers on different threads must not emit concurrently into the sink
+        synchronized (outbound) {
+            result = outbound.tryEmitNext(frame);
+        }
+        if (result.isSuccess()) {
+            return true;
+        }
+        // Before the socket subscribes a full buffer is reported as FAIL_ZERO_SUBSCRIBER
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW || result == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            onOverflow();
+        }
+        return false;
+    }
+
+    public long droppedFrames() {
+        return dropped.get();
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            synchronized (outbound) {
+                outbound.tryEmitComplete();
+            }
+        }
+    }
+
+    private void onOverflow() {
+        long count = dropped.incrementAndGet();
+        if (policy == SlowConsumerPolicy.CLOSE) {
+            log.warn("Closing slow WebSocket session {} after its outbound buffer filled", id());
+            close();
+            session.close(CloseStatus.SERVICE_OVERLOAD).subscribe();
+        } else if (Long.bitCount(count) == 1) {
+            // Log on powers of two to keep a persistently slow client from flooding the log
+            log.warn("Dropped {} frames for slow WebSocket session {}", count, id());
+        }
+    }
+}
@@ -1,21 +1,27 @@
 package com.nexusai.conversation.websocket;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.nexusai.conversation.cache.HotEntityCache;
+import com.nexusai.conversation.context.SpeculativeContexts;
 import com.nexusai.conversation.dto.SendMessageRequest;
 import com.nexusai.conversation.dto.StreamChunk;
 import com.nexusai.conversation.service.MessageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
 import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @RequiredArgsConstructor
@@ -23,35 +29,80 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ChatWebSocketHandler implements WebSocketHandler {
 
     private final MessageService messageService;
+    private final HotEntityCache hotEntityCache;
     private final ObjectMapper objectMapper;
+    private final SessionRegistry sessionRegistry;
+    private final ClusterFanout clusterFanout;
+    private final Scheduler persistenceScheduler;
+    private final SpeculativeContexts speculativeContexts;
 
-    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final CBORMapper cborMapper = new CBORMapper();
 
+    /**
+     * Offered subprotocols. Clients that do not ask for one get JSON.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(FrameCodec.CBOR_SUBPROTOCOL, FrameCodec.JSON_SUBPROTOCOL);
+    }
+
+    /**
+     * Serves a connection for the authenticated user of its handshake. The user
+     * id is the principal's name; a {@code userId} in a request is ignored.
+     */
     @Override
     public Mono<Void> handle(WebSocketSession session) {
-        String sessionId = session.getId();
-        sessions.put(sessionId, session);
-        log.info("WebSocket session connected: {}", sessionId);
+        return session.getHandshakeInfo().getPrincipal()
+                .map(principal -> Optional.of(UUID.fromString(principal.getName())))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(Optional.empty()))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(userId -> {
+                    if (userId.isEmpty()) {
+                        log.warn("Refusing unauthenticated WebSocket session {}", session.getId());
+                        return session.close(CloseStatus.POLICY_VIOLATION);
+                    }
+                    return serve(session, userId.get());
+                });
+    }
 
-        return session.receive()
-                .flatMap(message -> handleMessage(session, message))
-                .doOnError(error -> log.error("WebSocket error for session {}: {}", sessionId, error.getMessage()))
-                .doFinally(signal -> {
-                    sessions.remove(sessionId);
-                    log.info("WebSocket session disconnected: {}", sessionId);
-                })
+    private Mono<Void> serve(WebSocketSession session, UUID userId) {
+        ChatSession chatSession = sessionRegistry.register(session);
+        sessionRegistry.bindUser(chatSession, userId);
+        String subProtocol = session.getHandshakeInfo().getSubProtocol();
+        FrameCodec codec = FrameCodec.CBOR_SUBPROTOCOL.equals(subProtocol)
+                ? new CborFrameCodec(cborMapper)
+                : new JsonFrameCodec(objectMapper);
+        log.info("WebSocket session connected: {} ({})", chatSession.id(),
+                subProtocol != null ? subProtocol : FrameCodec.JSON_SUBPROTOCOL);
+
+        Mono<Void> input = session.receive()
+                .flatMap(message -> handleMessage(chatSession, codec, message))
+                .doOnError(error -> log.error("WebSocket error for session {}: {}", chatSession.id(), error.getMessage()))
                 .then();
+        Mono<Void> output = session.send(chatSession.outbound()
+                .map(frame -> codec.encode(frame, session.bufferFactory())));
+
+        // Whichever side finishes first (client gone, or session closed as a slow consumer) ends both
+        return Mono.zip(input, output)
+                .then()
+                .doFinally(signal -> {
+                    sessionRegistry.unregister(chatSession);
+                    log.info("WebSocket session disconnected: {}", chatSession.id());
+                });
     }
 
-    private Flux<Void> handleMessage(WebSocketSession session, WebSocketMessage message) {
+    private Mono<Void> handleMessage(ChatSession session, FrameCodec codec, WebSocketMessage message) {
         try {
-            String payload = message.getPayloadAsText();
-            WebSocketRequest request = objectMapper.readValue(payload, WebSocketRequest.class);
+            // Clients write in the negotiated subprotocol too
+            WebSocketRequest request = codec.decode(message, WebSocketRequest.class);
 
             return switch (request.type()) {
                 case "send_message" -> handleSendMessage(session, request);
                 case "stream_response" -> handleStreamResponse(session, request);
+                case "subscribe" -> handleSubscribe(session, request);
+                case "unsubscribe" -> handleUnsubscribe(session, request);
                 case "ping" -> handlePing(session);
+                case "typing" -> handleTyping(session, request);
                 default -> sendError(session, "Unknown message type: " + request.type());
             };
         } catch (Exception e) {
@@ -60,28 +111,43 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         }
     }
 
-    private Flux<Void> handleSendMessage(WebSocketSession session, WebSocketRequest request) {
+    private Mono<Void> handleSendMessage(ChatSession session, WebSocketRequest request) {
         try {
             UUID conversationId = UUID.fromString(request.conversationId());
-            UUID userId = UUID.fromString(request.userId());
+            UUID userId = session.userId();
 
             SendMessageRequest sendRequest = objectMapper.convertValue(request.data(), SendMessageRequest.class);
-            messageService.sendMessage(conversationId, userId, sendRequest);
-
-            return sendAck(session, "message_sent", conversationId.toString());
+            // A JDBC transaction: keep it off the event loop
+            return Mono.fromCallable(() -> messageService.sendMessage(conversationId, userId, sendRequest))
+                    .subscribeOn(persistenceScheduler)
+                    .flatMap(message -> {
+                        // The send succeeded, so the user owns the conversation
+                        sessionRegistry.subscribe(session, conversationId);
+                        return sendAck(session, "message_sent", conversationId.toString());
+                    })
+                    .onErrorResume(e -> {
+                        log.error("Error handling send message", e);
+                        return sendError(session, e.getMessage());
+                    });
         } catch (Exception e) {
             log.error("Error handling send message", e);
             return sendError(session, e.getMessage());
         }
     }
 
-    private Flux<Void> handleStreamResponse(WebSocketSession session, WebSocketRequest request) {
+    private Mono<Void> handleStreamResponse(ChatSession session, WebSocketRequest request) {
         try {
             UUID conversationId = UUID.fromString(request.conversationId());
-            UUID userId = UUID.fromString(request.userId());
+            UUID userId = session.userId();
 
+            // Ownership is checked before the first chunk; every session of the user
+            // watching the conversation receives the stream
             return messageService.streamResponse(conversationId, userId)
-                    .flatMap(chunk -> sendChunk(session, chunk))
+                    .doOnNext(chunk -> {
+                        sessionRegistry.subscribe(session, conversationId);
+                        broadcastToConversation(conversationId, chunk);
+                    })
+                    .then()
                     .onErrorResume(e -> {
                         log.error("Error streaming response", e);
                         return sendError(session, e.getMessage());
@@ -92,18 +158,60 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         }
     }
 
-    private Flux<Void> handlePing(WebSocketSession session) {
-        return sendMessage(session, Map.of("type", "pong", "timestamp", System.currentTimeMillis()));
+    /**
+     * Watches a conversation without sending to it, e.g. from a second device:
+     * the session receives every stream of the conversation, from any node.
+     */
+    private Mono<Void> handleSubscribe(ChatSession session, WebSocketRequest request) {
+        try {
+            UUID conversationId = UUID.fromString(request.conversationId());
+            UUID userId = session.userId();
+
+            // The ownership check may read the database: keep it off the event loop
+            return Mono.fromCallable(() -> hotEntityCache.conversation(conversationId, userId))
+                    .subscribeOn(persistenceScheduler)
+                    .flatMap(conversation -> {
+                        sessionRegistry.subscribe(session, conversationId);
+                        return sendAck(session, "subscribed", conversationId.toString());
+                    })
+                    .onErrorResume(e -> sendError(session, e.getMessage()));
+        } catch (Exception e) {
+            return sendError(session, "Invalid conversation id");
+        }
     }
 
-    private Flux<Void> sendChunk(WebSocketSession session, StreamChunk chunk) {
-        return sendMessage(session, Map.of(
-                "type", "stream_chunk",
-                "data", chunk
-        ));
+    private Mono<Void> handleUnsubscribe(ChatSession session, WebSocketRequest request) {
+        try {
+            UUID conversationId = UUID.fromString(request.conversationId());
+            sessionRegistry.unsubscribe(session, conversationId);
+            return sendAck(session, "unsubscribed", conversationId.toString());
+        } catch (Exception e) {
+            return sendError(session, "Invalid conversation id");
+        }
     }
 
-    private Flux<Void> sendAck(WebSocketSession session, String action, String data) {
+    /**
+     * Pre-builds the conversation's context while the user types, on the
+     * prebuild pool so it never competes with sends for the persistence
+     * scheduler. Not acknowledged: the signal is a hint, dropped when the pool
+     * is saturated, and failures are only logged.
+     */
+    private Mono<Void> handleTyping(ChatSession session, WebSocketRequest request) {
+        try {
+            UUID conversationId = UUID.fromString(request.conversationId());
+            UUID userId = session.userId();
+            speculativeContexts.submit(conversationId, () -> messageService.anticipateMessage(conversationId, userId));
+            return Mono.empty();
+        } catch (Exception e) {
+            return sendError(session, "Invalid conversation id");
+        }
+    }
+
+    private Mono<Void> handlePing(ChatSession session) {
+        return sendMessage(session, Map.of("type", "pong", "timestamp", System.currentTimeMillis()));
+    }
+
+    private Mono<Void> sendAck(ChatSession session, String action, String data) {
         return sendMessage(session, Map.of(
                 "type", "ack",
                 "action", action,
@@ -111,28 +219,25 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         ));
     }
 
-    private Flux<Void> sendError(WebSocketSession session, String error) {
+    private Mono<Void> sendError(ChatSession session, String error) {
         return sendMessage(session, Map.of(
                 "type", "error",
-                "message", error
+                "message", error != null ? error : "Unexpected error"
         ));
     }
 
-    private Flux<Void> sendMessage(WebSocketSession session, Object data) {
-        try {
-            String json = objectMapper.writeValueAsString(data);
-            return Flux.just(session.send(Mono.just(session.textMessage(json)))).flatMap(m -> m);
-        } catch (Exception e) {
-            log.error("Error sending WebSocket message", e);
-            return Flux.empty();
-        }
+    private Mono<Void> sendMessage(ChatSession session, Map<String, Object> data) {
+        session.offer(new OutboundFrame.Control(data));
+        return Mono.empty();
     }
 
+    /**
+     * Sends a chunk to the sessions subscribed to the conversation on any node.
+     */
     public void broadcastToConversation(UUID conversationId, StreamChunk chunk) {
-        sessions.values().forEach(session -> {
-            sendChunk(session, chunk).subscribe();
-        });
+        clusterFanout.publish(conversationId, chunk);
     }
 
-    private record WebSocketRequest(String type, String conversationId, String userId, Object data) {}
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record WebSocketRequest(String type, String conversationId, Object data) {}
 }
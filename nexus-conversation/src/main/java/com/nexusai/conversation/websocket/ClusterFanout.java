@@ -0,0 +1,227 @@
+package com.nexusai.conversation.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexusai.conversation.dto.StreamChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers conversation frames to subscribers on every node.
+ *
+ * A chunk is handed to local sessions immediately and queued for the other
+ * nodes; each receiving session encodes it in its own subprotocol.
+ * Conversations are hashed onto a fixed number of shard channels, so a node
+ * holds at most {@code shards} subscriptions whatever the number of
+ * conversations, and it subscribes to a shard only while one of its local
+ * sessions watches a conversation on it. Queued frames are coalesced: every
+ * flush publishes at most one message per shard carrying up to
+ * {@code max-batch} frames, instead of one publish per chunk.
+ *
+ * Cross-node latency is measured from the publishing node's clock to the
+ * receiving node's, so it includes any clock skew between them.
+ */
+@Component
+@Slf4j
+public class ClusterFanout implements SessionRegistry.SubscriptionListener {
+
+    public static final String CHANNEL_PREFIX = "nexusai:ws:shard:";
+
+    private final SessionRegistry sessionRegistry;
+    private final FanoutTransport transport;
+    private final ObjectMapper objectMapper;
+    private final int shards;
+    private final int maxBatch;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<Integer, Queue<Frame>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger[] shardSubscribers;
+    private final boolean[] subscribed;
+    private final ScheduledExecutorService flusher;
+
+    private final Counter framesPublished;
+    private final Counter batchesPublished;
+    private final Counter framesReceived;
+    private final Counter publishFailures;
+    private final Timer crossNodeLatency;
+
+    public ClusterFanout(SessionRegistry sessionRegistry,
+                         FanoutTransport transport,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${nexusai.conversation.websocket.fanout.shards:64}") int shards,
+                         @Value("${nexusai.conversation.websocket.fanout.max-batch:64}") int maxBatch,
+                         @Value("${nexusai.conversation.websocket.fanout.flush-interval:PT0.005S}") Duration flushInterval) {
+        this.sessionRegistry = sessionRegistry;
+        this.transport = transport;
+        this.objectMapper = objectMapper;
+        this.shards = shards;
+        this.maxBatch = maxBatch;
+        this.shardSubscribers = new AtomicInteger[shards];
+        for (int i = 0; i < shards; i++) {
+            shardSubscribers[i] = new AtomicInteger();
+        }
+        this.subscribed = new boolean[shards];
+
+        this.framesPublished = meterRegistry.counter("nexusai.websocket.fanout.frames.published");
+        this.batchesPublished = meterRegistry.counter("nexusai.websocket.fanout.batches.published");
+        this.framesReceived = meterRegistry.counter("nexusai.websocket.fanout.frames.received");
+        this.publishFailures = meterRegistry.counter("nexusai.websocket.fanout.publish.failures");
+        this.crossNodeLatency = Timer.builder("nexusai.websocket.fanout.latency")
+                .description("Time from publish on one node to delivery on another")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("nexusai.websocket.fanout.subscribed.shards", this, ClusterFanout::subscribedShards);
+
+        sessionRegistry.addSubscriptionListener(this);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-fanout-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a chunk to the conversation's subscribers on this and every other node.
+     */
+    public void publish(UUID conversationId, StreamChunk chunk) {
+        sessionRegistry.sendToConversation(conversationId, new OutboundFrame.Chunk(chunk));
+        pending.computeIfAbsent(shard(conversationId), key -> new ConcurrentLinkedQueue<>())
+                .add(new Frame(conversationId, chunk));
+        framesPublished.increment();
+    }
+
+    /**
+     * Publishes queued frames, at most {@code max-batch} per message.
+     */
+    public void flush() {
+        pending.forEach((shard, queue) -> {
+            while (!queue.isEmpty()) {
+                List<Frame> frames = new ArrayList<>(Math.min(maxBatch, queue.size()));
+                Frame frame;
+                while (frames.size() < maxBatch && (frame = queue.poll()) != null) {
+                    frames.add(frame);
+                }
+                if (frames.isEmpty()) {
+                    break;
+                }
+                send(shard, new Batch(nodeId, System.currentTimeMillis(), frames));
+            }
+        });
+    }
+
+    @Override
+    public void onFirstSubscriber(UUID conversationId) {
+        int shard = shard(conversationId);
+        shardSubscribers[shard].incrementAndGet();
+        reconcile(shard);
+    }
+
+    @Override
+    public void onLastSubscriberGone(UUID conversationId) {
+        int shard = shard(conversationId);
+        shardSubscribers[shard].decrementAndGet();
+        reconcile(shard);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    void onBatch(byte[] payload) {
+        Batch batch;
+        try {
+            batch = objectMapper.readValue(payload, Batch.class);
+        } catch (Exception e) {
+            log.warn("Dropping malformed fan-out batch", e);
+            return;
+        }
+        if (nodeId.equals(batch.origin())) {
+            return;
+        }
+        crossNodeLatency.record(Math.max(0, System.currentTimeMillis() - batch.sentAt()), TimeUnit.MILLISECONDS);
+        for (Frame frame : batch.frames()) {
+            sessionRegistry.sendToConversation(frame.conversationId(), new OutboundFrame.Chunk(frame.chunk()));
+        }
+        framesReceived.increment(batch.frames().size());
+    }
+
+    int subscribedShards() {
+        int count = 0;
+        synchronized (subscribed) {
+            for (boolean shard : subscribed) {
+                if (shard) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Brings the shard subscription in line with the current subscriber count.
+     * Idempotent, so racing first/last notifications converge.
+     */
+    private void reconcile(int shard) {
+        synchronized (subscribed) {
+            boolean wanted = shardSubscribers[shard].get() > 0;
+            if (wanted == subscribed[shard]) {
+                return;
+            }
+            try {
+                if (wanted) {
+                    transport.subscribe(channel(shard), this::onBatch);
+                } else {
+                    transport.unsubscribe(channel(shard));
+                }
+                subscribed[shard] = wanted;
+            } catch (Exception e) {
+                log.warn("Failed to {} fan-out shard {}", wanted ? "subscribe to" : "unsubscribe from", shard, e);
+            }
+        }
+    }
+
+    private void send(int shard, Batch batch) {
+        try {
+            transport.publish(channel(shard), objectMapper.writeValueAsBytes(batch));
+            batchesPublished.increment();
+        } catch (Exception e) {
+            // Local sessions already have the frames; remote ones miss this batch
+            publishFailures.increment();
+            log.warn("Failed to publish {} frames to fan-out shard {}", batch.frames().size(), shard, e);
+        }
+    }
+
+    private int shard(UUID conversationId) {
+        return Math.floorMod(conversationId.hashCode(), shards);
+    }
+
+    private static String channel(int shard) {
+        return CHANNEL_PREFIX + shard;
+    }
+
+    record Frame(UUID conversationId, StreamChunk chunk) {}
+
+    record Batch(String origin, long sentAt, List<Frame> frames) {}
+}
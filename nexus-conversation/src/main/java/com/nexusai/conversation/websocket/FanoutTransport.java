@@ -0,0 +1,19 @@
+package com.nexusai.conversation.websocket;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcast channel between the nodes of the cluster.
+ */
+public interface FanoutTransport {
+
+    void publish(String channel, byte[] payload);
+
+    /**
+     * Starts delivering the channel's messages to the handler, replacing any
+     * previous handler for the channel.
+     */
+    void subscribe(String channel, Consumer<byte[]> handler);
+
+    void unsubscribe(String channel);
+}
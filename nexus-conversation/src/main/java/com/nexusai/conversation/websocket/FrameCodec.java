@@ -0,0 +1,26 @@
+package com.nexusai.conversation.websocket;
+
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+import java.io.IOException;
+
+/**
+ * Wire encoding of one negotiated WebSocket subprotocol, both ways.
+ *
+ * A codec instance belongs to one session. {@link #encode} is only called
+ * from that session's outbound pipeline, so it may keep per-connection state;
+ * {@link #decode} is called from the inbound side and must not touch it.
+ */
+public interface FrameCodec {
+
+    String JSON_SUBPROTOCOL = "nexus.v1.json";
+    String CBOR_SUBPROTOCOL = "nexus.v1.cbor";
+
+    WebSocketMessage encode(OutboundFrame frame, DataBufferFactory bufferFactory);
+
+    /**
+     * Reads a client frame, a map with the same keys in either protocol.
+     */
+    <T> T decode(WebSocketMessage message, Class<T> type) throws IOException;
+}
@@ -0,0 +1,48 @@
+package com.nexusai.conversation.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * The default text protocol: {@code {"type":"stream_chunk","data":{...}}} per chunk.
+ */
+public class JsonFrameCodec implements FrameCodec {
+
+    private final ObjectMapper objectMapper;
+
+    public JsonFrameCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public WebSocketMessage encode(OutboundFrame frame, DataBufferFactory bufferFactory) {
+        Object body = switch (frame) {
+            case OutboundFrame.Control control -> control.body();
+            case OutboundFrame.Chunk chunk -> Map.of("type", "stream_chunk", "data", chunk.chunk());
+        };
+        DataBuffer buffer = bufferFactory.allocateBuffer(256);
+        try (OutputStream out = buffer.asOutputStream()) {
+            objectMapper.writeValue(out, body);
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+        return new WebSocketMessage(WebSocketMessage.Type.TEXT, buffer);
+    }
+
+    @Override
+    public <T> T decode(WebSocketMessage message, Class<T> type) throws IOException {
+        try (InputStream in = message.getPayload().asInputStream()) {
+            return objectMapper.readValue(in, type);
+        }
+    }
+}
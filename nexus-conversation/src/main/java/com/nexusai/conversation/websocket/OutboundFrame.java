@@ -0,0 +1,22 @@
+package com.nexusai.conversation.websocket;
+
+import com.nexusai.conversation.dto.StreamChunk;
+
+import java.util.Map;
+
+/**
+ * A frame queued for a session, encoded by the session's {@link FrameCodec} only
+ * when the socket is ready to write it.
+ */
+public sealed interface OutboundFrame {
+
+    /**
+     * Acks, errors and pongs: a small map rendered as-is.
+     */
+    record Control(Map<String, Object> body) implements OutboundFrame {}
+
+    /**
+     * One piece of a streamed response.
+     */
+    record Chunk(StreamChunk chunk) implements OutboundFrame {}
+}
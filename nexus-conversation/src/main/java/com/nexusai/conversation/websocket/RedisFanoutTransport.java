@@ -0,0 +1,52 @@
+package com.nexusai.conversation.websocket;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link FanoutTransport} over Redis pub/sub, sharing the node's listener container.
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisFanoutTransport implements FanoutTransport {
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<String, MessageListener> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String channel, byte[] payload) {
+        byte[] rawChannel = channel.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(rawChannel, payload));
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<byte[]> handler) {
+        MessageListener listener = (message, pattern) -> handler.accept(message.getBody());
+        MessageListener previous = listeners.put(channel, listener);
+        ChannelTopic topic = new ChannelTopic(channel);
+        if (previous != null) {
+            listenerContainer.removeMessageListener(previous, topic);
+        }
+        listenerContainer.addMessageListener(listener, topic);
+    }
+
+    @Override
+    public void unsubscribe(String channel) {
+        MessageListener listener = listeners.remove(channel);
+        if (listener != null) {
+            listenerContainer.removeMessageListener(listener, new ChannelTopic(channel));
+        }
+    }
+}
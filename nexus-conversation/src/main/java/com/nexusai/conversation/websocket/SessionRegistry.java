@@ -0,0 +1,182 @@
+package com.nexusai.conversation.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Connected sessions of this node, indexed by conversation and by user.
+ *
+ * Fan-out looks up the subscribers of one conversation instead of walking every
+ * session, and only sessions bound to the conversation's owner can subscribe.
+ * Index entries are removed when a session disconnects and a bucket is dropped
+ * as soon as its last session leaves, so idle conversations hold no memory.
+ */
+@Component
+@Slf4j
+public class SessionRegistry {
+
+    private final int bufferSize;
+    private final SlowConsumerPolicy policy;
+
+    private final Map<String, ChatSession> sessions = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<ChatSession>> byConversation = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<ChatSession>> byUser = new ConcurrentHashMap<>();
+    private final List<SubscriptionListener> listeners = new CopyOnWriteArrayList<>();
+
+    public SessionRegistry(@Value("${nexusai.conversation.websocket.outbound-buffer:256}") int bufferSize,
+                           @Value("${nexusai.conversation.websocket.slow-consumer-policy:CLOSE}") SlowConsumerPolicy policy) {
+        this.bufferSize = bufferSize;
+        this.policy = policy;
+    }
+
+    /**
+     * Registers a listener told when a conversation gains its first or loses its
+     * last local subscriber.
+     */
+    public void addSubscriptionListener(SubscriptionListener listener) {
+        listeners.add(listener);
+    }
+
+    public ChatSession register(WebSocketSession session) {
+        ChatSession chatSession = new ChatSession(session, bufferSize, policy);
+        sessions.put(chatSession.id(), chatSession);
+        return chatSession;
+    }
+
+    /**
+     * Binds the session to its user on first use.
+     *
+     * @return {@code false} if the session is already bound to a different user
+     */
+    public boolean bindUser(ChatSession session, UUID userId) {
+        if (!session.bindUser(userId)) {
+            return false;
+        }
+        if (!session.isClosed()) {
+            add(byUser, userId, session);
+        }
+        return true;
+    }
+
+    /**
+     * Subscribes a session to a conversation its user is known to own.
+     */
+    public void subscribe(ChatSession session, UUID conversationId) {
+        if (session.isClosed() || !session.conversations().add(conversationId)) {
+            return;
+        }
+        if (add(byConversation, conversationId, session)) {
+            listeners.forEach(listener -> listener.onFirstSubscriber(conversationId));
+        }
+    }
+
+    public void unsubscribe(ChatSession session, UUID conversationId) {
+        if (session.conversations().remove(conversationId)) {
+            removeSubscriber(conversationId, session);
+        }
+    }
+
+    public void unregister(ChatSession session) {
+        session.close();
+        sessions.remove(session.id());
+        for (UUID conversationId : session.conversations()) {
+            removeSubscriber(conversationId, session);
+        }
+        session.conversations().clear();
+        if (session.userId() != null) {
+            remove(byUser, session.userId(), session);
+        }
+    }
+
+    /**
+     * Queues a frame for every session subscribed to the conversation.
+     *
+     * @return the number of sessions that accepted it
+     */
+    public int sendToConversation(UUID conversationId, OutboundFrame frame) {
+        return send(byConversation.get(conversationId), frame);
+    }
+
+    public int sendToUser(UUID userId, OutboundFrame frame) {
+        return send(byUser.get(userId), frame);
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    public int subscriberCount(UUID conversationId) {
+        Set<ChatSession> subscribers = byConversation.get(conversationId);
+        return subscribers != null ? subscribers.size() : 0;
+    }
+
+    private static int send(Set<ChatSession> targets, OutboundFrame frame) {
+        if (targets == null) {
+            return 0;
+        }
+        int delivered = 0;
+        for (ChatSession target : targets) {
+            if (target.offer(frame)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    private void removeSubscriber(UUID conversationId, ChatSession session) {
+        if (remove(byConversation, conversationId, session)) {
+            listeners.forEach(listener -> listener.onLastSubscriberGone(conversationId));
+        }
+    }
+
+    /**
+     * @return whether a new bucket was created for the key
+     */
+    private static boolean add(Map<UUID, Set<ChatSession>> index, UUID key, ChatSession session) {
+        boolean[] created = new boolean[1];
+        // compute() serialises with remove() on the same key, so a bucket is never dropped under a new entry
+        index.compute(key, (k, bucket) -> {
+            Set<ChatSession> target = bucket;
+            if (target == null) {
+                target = ConcurrentHashMap.newKeySet();
+                created[0] = true;
+            }
+            target.add(session);
+            return target;
+        });
+        return created[0];
+    }
+
+    /**
+     * @return whether the bucket for the key was dropped
+     */
+    private static boolean remove(Map<UUID, Set<ChatSession>> index, UUID key, ChatSession session) {
+        boolean[] dropped = new boolean[1];
+        index.computeIfPresent(key, (k, bucket) -> {
+            bucket.remove(session);
+            dropped[0] = bucket.isEmpty();
+            return dropped[0] ? null : bucket;
+        });
+        return dropped[0];
+    }
+
+    /**
+     * Notified outside of any registry lock; calls for one conversation may race,
+     * so implementations should reconcile rather than trust the order.
+     */
+    public interface SubscriptionListener {
+
+        void onFirstSubscriber(UUID conversationId);
+
+        void onLastSubscriberGone(UUID conversationId);
+    }
+}
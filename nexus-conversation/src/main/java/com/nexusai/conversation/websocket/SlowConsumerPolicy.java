@@ -0,0 +1,13 @@
+package com.nexusai.conversation.websocket;
+
+/**
+ * What to do with a frame for a session whose outbound buffer is full.
+ */
+public enum SlowConsumerPolicy {
+
+    /** Discard the frame and keep the session open. */
+    DROP,
+
+    /** Close the session so the client reconnects and resynchronises. */
+    CLOSE
+}
@@ -0,0 +1,19 @@
+package com.nexusai.conversation;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+import reactor.blockhound.BlockHound;
+
+/**
+ * Installs BlockHound before any test of this module runs, so a blocking call
+ * made on a Reactor non-blocking thread (parallel schedulers, Netty event
+ * loops) fails the test that made it instead of stalling production streams.
+ * Registered through {@code META-INF/services}.
+ */
+public class BlockHoundInstaller implements TestExecutionListener {
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        BlockHound.install();
+    }
+}
@@ -0,0 +1,345 @@
+package com.nexusai.conversation.archive;
+
+import com.nexusai.commons.exception.BusinessException;
+import com.nexusai.conversation.event.MessagesArchivedEvent;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.entity.MessageArchiveSegment;
+import com.nexusai.core.enums.MessageRole;
+import com.nexusai.core.enums.MessageType;
+import com.nexusai.core.repository.MessageArchiveSegmentRepository;
+import com.nexusai.core.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageArchive Tests")
+@Slf4j
+class MessageArchiveTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 9, 0, 0, 123_456_000);
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MessageArchiveSegmentRepository segmentRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path cacheDirectory;
+
+    private final UUID conversationId = UUID.randomUUID();
+    private final InMemoryStore store = new InMemoryStore();
+    private MessageArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        archive = new MessageArchive(messageRepository, segmentRepository, store,
+                new SegmentCache(store, cacheDirectory, 1024 * 1024), new TransactionTemplate(transactionManager),
+                eventPublisher, 100, 3);
+    }
+
+    @Nested
+    @DisplayName("Segment codec")
+    class CodecTests {
+
+        @Test
+        @DisplayName("Should round-trip every column, nulls included")
+        void shouldRoundTrip() {
+            Message full = message(0, "Bonjour, ça va ?");
+            full.setTokensUsed(12);
+            full.setMediaUrl("https://cdn.example.com/a.png");
+            full.setMediaType("image/png");
+            full.setMetadata("{\"model\":\"llama3\"}");
+            full.setIsEdited(true);
+            full.setParentMessageId(UUID.randomUUID());
+            full.setUpdatedAt(START.plusHours(1));
+            Message sparse = message(1, "");
+            sparse.setRole(MessageRole.ASSISTANT);
+            sparse.setType(MessageType.AUDIO);
+            sparse.setIsEdited(null);
+
+            List<Message> decoded = MessageSegment.decode(MessageSegment.encode(List.of(full, sparse), 3), conversationId);
+
+            assertThat(decoded).usingRecursiveFieldByFieldElementComparator().containsExactly(full, sparse);
+        }
+
+        @Test
+        @DisplayName("Should decode only the requested rows")
+        void shouldDecodeRange() {
+            List<Message> messages = messages(50);
+
+            List<Message> decoded = MessageSegment.decode(MessageSegment.encode(messages, 3), conversationId, 10, 13);
+
+            assertThat(decoded).extracting(Message::getId)
+                    .containsExactly(messages.get(10).getId(), messages.get(11).getId(), messages.get(12).getId());
+            assertThat(decoded).extracting(Message::getContent)
+                    .containsExactly(messages.get(10).getContent(), messages.get(11).getContent(), messages.get(12).getContent());
+        }
+
+        @Test
+        @DisplayName("Should compress chat history several times over")
+        void shouldCompress() {
+            List<Message> messages = messages(5_000);
+            long raw = messages.stream()
+                    .mapToLong(message -> message.getContent().getBytes(StandardCharsets.UTF_8).length + 64)
+                    .sum();
+
+            byte[] segment = MessageSegment.encode(messages, 9);
+
+            log.info("{} messages: {} bytes of rows, {} bytes compressed ({}x)", messages.size(), raw,
+                    segment.length, raw / segment.length);
+            assertThat(segment.length).isLessThan((int) (raw / 3));
+        }
+    }
+
+    @Nested
+    @DisplayName("Archival")
+    class ArchivalTests {
+
+        @Test
+        @DisplayName("Should move old messages into segments and delete the rows")
+        void shouldArchiveInSegments() {
+            LocalDateTime before = START.plusDays(1);
+            List<Message> old = messages(150);
+            when(segmentRepository.tryLockForArchival(conversationId)).thenReturn(true);
+            when(messageRepository.findOldestBefore(conversationId, before, 100))
+                    .thenReturn(old.subList(0, 100))
+                    .thenReturn(old.subList(100, 150));
+
+            int archived = archive.archive(conversationId, before);
+
+            assertThat(archived).isEqualTo(150);
+            ArgumentCaptor<MessageArchiveSegment> segments = ArgumentCaptor.forClass(MessageArchiveSegment.class);
+            verify(segmentRepository, times(2)).save(segments.capture());
+            assertThat(segments.getAllValues()).extracting(MessageArchiveSegment::getMessageCount).containsExactly(100, 50);
+            assertThat(segments.getAllValues().get(0).getFirstCreatedAt()).isEqualTo(old.get(0).getCreatedAt());
+            assertThat(segments.getAllValues().get(0).getLastCreatedAt()).isEqualTo(old.get(99).getCreatedAt());
+            assertThat(store.objects).hasSize(2)
+                    .allSatisfy((key, bytes) -> assertThat(key).startsWith("message-archive/" + conversationId + "/"));
+            verify(messageRepository).deleteArchived(conversationId, old.get(0).getCreatedAt(), old.get(99).getCreatedAt(),
+                    old.subList(0, 100).stream().map(Message::getId).toList());
+            verify(messageRepository).deleteArchived(conversationId, old.get(100).getCreatedAt(), old.get(149).getCreatedAt(),
+                    old.subList(100, 150).stream().map(Message::getId).toList());
+            verify(eventPublisher).publishEvent(new MessagesArchivedEvent(conversationId,
+                    old.subList(100, 150).stream().map(Message::getId).toList()));
+        }
+
+        @Test
+        @DisplayName("Should stop before the oldest message with attachments or reactions")
+        void shouldStopAtPinnedMessage() {
+            LocalDateTime pinned = START.plusMinutes(30);
+            when(messageRepository.findOldestPinnedAt(conversationId)).thenReturn(pinned);
+            when(segmentRepository.tryLockForArchival(conversationId)).thenReturn(true);
+            when(messageRepository.findOldestBefore(conversationId, pinned, 100)).thenReturn(List.of());
+
+            assertThat(archive.archive(conversationId, START.plusDays(1))).isZero();
+        }
+
+        @Test
+        @DisplayName("Should skip a conversation another node is archiving")
+        void shouldSkipLockedConversation() {
+            when(segmentRepository.tryLockForArchival(conversationId)).thenReturn(false);
+
+            assertThat(archive.archive(conversationId, START.plusDays(1))).isZero();
+
+            verify(messageRepository, never()).findOldestBefore(any(), any(), anyInt());
+            assertThat(store.objects).isEmpty();
+        }
+
+        @Test
+        @DisplayName("Should remove the uploaded segment when the rows cannot be replaced")
+        void shouldRemoveOrphanOnFailure() {
+            when(segmentRepository.tryLockForArchival(conversationId)).thenReturn(true);
+            when(messageRepository.findOldestBefore(eq(conversationId), any(), anyInt())).thenReturn(messages(10));
+            when(segmentRepository.save(any())).thenThrow(new IllegalStateException("database down"));
+
+            assertThatThrownBy(() -> archive.archive(conversationId, START.plusDays(1)))
+                    .isInstanceOf(IllegalStateException.class);
+
+            assertThat(store.objects).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Reads")
+    class ReadTests {
+
+        private List<Message> history;
+        private List<MessageArchiveSegment> segments;
+
+        @BeforeEach
+        void archiveHistory() throws IOException {
+            // Three segments of 40, oldest first on disk, newest range first in the list
+            history = messages(120);
+            segments = new ArrayList<>();
+            for (int i = 2; i >= 0; i--) {
+                segments.add(segment(history.subList(i * 40, (i + 1) * 40)));
+            }
+        }
+
+        @Test
+        @DisplayName("Should page newest first across segment boundaries")
+        void shouldPageAcrossSegments() {
+            List<Message> page = archive.read(segments, 35, 10);
+
+            assertThat(page).extracting(Message::getId)
+                    .containsExactlyElementsOf(newestFirst(history).subList(35, 45).stream().map(Message::getId).toList());
+            assertThat(MessageArchive.count(segments)).isEqualTo(120);
+        }
+
+        @Test
+        @DisplayName("Should only fetch the segments a page touches")
+        void shouldFetchOnlyTouchedSegments() {
+            archive.read(segments, 0, 10);
+            archive.read(segments, 5, 10);
+
+            assertThat(store.reads).containsOnlyKeys(segments.get(0).getObjectKey());
+            // The second read came from the local cache
+            assertThat(store.reads.get(segments.get(0).getObjectKey())).hasValue(1);
+        }
+
+        @Test
+        @DisplayName("Should continue from a cursor")
+        void shouldReadBeforeCursor() {
+            Message cursor = history.get(50);
+
+            List<Message> page = archive.readBefore(segments, cursor.getCreatedAt(), cursor.getId(), 5);
+
+            assertThat(page).extracting(Message::getId).containsExactly(
+                    history.get(49).getId(), history.get(48).getId(), history.get(47).getId(),
+                    history.get(46).getId(), history.get(45).getId());
+        }
+
+        @Test
+        @DisplayName("Should search archived content newest first, ignoring case")
+        void shouldSearchArchived() {
+            List<Message> hits = archive.search(segments, "HIKING", 3);
+
+            assertThat(hits).extracting(Message::getId).containsExactly(
+                    history.get(117).getId(), history.get(113).getId(), history.get(109).getId());
+        }
+
+        @Test
+        @DisplayName("Should visit a range oldest first, skipping segments outside it")
+        void shouldVisitRange() {
+            List<Message> visited = new ArrayList<>();
+
+            archive.forEachBetween(segments, history.get(85).getCreatedAt(), history.get(95).getCreatedAt(), visited::add);
+
+            assertThat(visited).extracting(Message::getId)
+                    .containsExactlyElementsOf(history.subList(85, 95).stream().map(Message::getId).toList());
+            assertThat(store.reads).containsOnlyKeys(segments.get(0).getObjectKey());
+        }
+
+        @Test
+        @DisplayName("Should report the archive as unavailable when a segment cannot be fetched")
+        void shouldFailWhenSegmentMissing() {
+            store.objects.clear();
+
+            assertThatThrownBy(() -> archive.read(segments, 0, 10))
+                    .isInstanceOf(BusinessException.class);
+        }
+
+        private MessageArchiveSegment segment(List<Message> messages) throws IOException {
+            String key = MessageArchive.KEY_PREFIX + conversationId + "/" + UUID.randomUUID() + ".seg";
+            store.put(key, MessageSegment.encode(messages, 3));
+            return MessageArchiveSegment.builder()
+                    .conversationId(conversationId)
+                    .objectKey(key)
+                    .firstCreatedAt(messages.get(0).getCreatedAt())
+                    .lastCreatedAt(messages.get(messages.size() - 1).getCreatedAt())
+                    .messageCount(messages.size())
+                    .build();
+        }
+    }
+
+    private List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>(count);
+        String[] phrases = {"How was your day?", "I went hiking with my sister this morning.",
+                "That sounds lovely! Where did you go?", "Up the hill behind the old mill, the view was great."};
+        for (int i = 0; i < count; i++) {
+            Message message = message(i, phrases[i % phrases.length] + " (" + i + ")");
+            message.setRole(i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT);
+            message.setTokensUsed(10 + i % 7);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private Message message(int index, String content) {
+        Message message = Message.builder()
+                .conversationId(conversationId)
+                .role(MessageRole.USER)
+                .type(MessageType.TEXT)
+                .content(content)
+                .build();
+        message.setId(UUID.randomUUID());
+        message.setCreatedAt(START.plusSeconds(index));
+        message.setUpdatedAt(START.plusSeconds(index));
+        return message;
+    }
+
+    private static List<Message> newestFirst(List<Message> messages) {
+        return new ArrayList<>(messages).reversed();
+    }
+
+    private static final class InMemoryStore implements SegmentStore {
+
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> reads = new ConcurrentHashMap<>();
+
+        @Override
+        public void put(String key, byte[] segment) {
+            objects.put(key, segment);
+        }
+
+        @Override
+        public byte[] get(String key) throws IOException {
+            reads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            byte[] segment = objects.get(key);
+            if (segment == null) {
+                throw new IOException("No such object " + key);
+            }
+            return segment;
+        }
+
+        @Override
+        public void deleteAll(String prefix) {
+            objects.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+}
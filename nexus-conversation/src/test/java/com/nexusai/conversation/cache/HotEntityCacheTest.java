@@ -0,0 +1,188 @@
+package com.nexusai.conversation.cache;
+
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.companion.event.CompanionChangedEvent;
+import com.nexusai.core.entity.Companion;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("HotEntityCache Tests")
+class HotEntityCacheTest {
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private CompanionRepository companionRepository;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    private HotEntityCache cache;
+    private UUID userId;
+    private UUID conversationId;
+    private UUID companionId;
+
+    @BeforeEach
+    void setUp() {
+        cache = new HotEntityCache(conversationRepository, companionRepository, 1_000, Duration.ofMinutes(10));
+        userId = UUID.randomUUID();
+        conversationId = UUID.randomUUID();
+        companionId = UUID.randomUUID();
+    }
+
+    private Conversation conversation() {
+        return Conversation.builder().userId(userId).companionId(companionId).build();
+    }
+
+    private Companion companion(String systemPrompt) {
+        return Companion.builder().userId(userId).name("Mia").systemPrompt(systemPrompt).build();
+    }
+
+    @Nested
+    @DisplayName("Lookup Tests")
+    class LookupTests {
+
+        @Test
+        @DisplayName("Should load a conversation once and serve repeats from memory")
+        void shouldLoadConversationOnce() {
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(conversation()));
+
+            for (int i = 0; i < 5; i++) {
+                assertThat(cache.conversation(conversationId, userId).companionId()).isEqualTo(companionId);
+            }
+
+            verify(conversationRepository, times(1)).findByIdAndUserId(conversationId, userId);
+        }
+
+        @Test
+        @DisplayName("Should reject a cached conversation for another user")
+        void shouldRejectOtherUser() {
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(conversation()));
+            cache.conversation(conversationId, userId);
+
+            assertThatThrownBy(() -> cache.conversation(conversationId, UUID.randomUUID()))
+                    .isInstanceOf(ResourceNotFoundException.class);
+        }
+
+        @Test
+        @DisplayName("Should not cache missing companions")
+        void shouldNotCacheMissingCompanion() {
+            when(companionRepository.findById(companionId)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> cache.companion(companionId)).isInstanceOf(ResourceNotFoundException.class);
+            assertThatThrownBy(() -> cache.companion(companionId)).isInstanceOf(ResourceNotFoundException.class);
+
+            verify(companionRepository, times(2)).findById(companionId);
+        }
+    }
+
+    @Nested
+    @DisplayName("Invalidation Tests")
+    class InvalidationTests {
+
+        @Test
+        @DisplayName("Should reload a companion after a local change event and broadcast it")
+        void shouldReloadAfterChangeEvent() {
+            HotEntityInvalidator invalidator = new HotEntityInvalidator(cache, redisTemplate);
+            when(companionRepository.findById(companionId))
+                    .thenReturn(Optional.of(companion("old")), Optional.of(companion("new")));
+            assertThat(cache.companion(companionId).systemPrompt()).isEqualTo("old");
+
+            invalidator.onCompanionChanged(new CompanionChangedEvent(companionId));
+
+            assertThat(cache.companion(companionId).systemPrompt()).isEqualTo("new");
+            verify(redisTemplate).convertAndSend(eq(HotEntityInvalidator.CHANNEL), startsWith("companion:" + companionId));
+        }
+
+        @Test
+        @DisplayName("Should drop an entry on a broadcast from another node")
+        void shouldInvalidateOnRemoteMessage() {
+            HotEntityInvalidator invalidator = new HotEntityInvalidator(cache, redisTemplate);
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(conversation()));
+            cache.conversation(conversationId, userId);
+
+            String body = "conversation:" + conversationId + ":" + UUID.randomUUID();
+            invalidator.onMessage(new DefaultMessage(HotEntityInvalidator.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    body.getBytes(StandardCharsets.UTF_8)), null);
+            cache.conversation(conversationId, userId);
+
+            verify(conversationRepository, times(2)).findByIdAndUserId(conversationId, userId);
+        }
+
+        @Test
+        @DisplayName("Should not let a load overwrite an invalidation that arrives while it runs")
+        void shouldApplyInvalidationAfterInFlightLoad() throws Exception {
+            CountDownLatch loading = new CountDownLatch(1);
+            Thread invalidation = new Thread(() -> {
+                awaitQuietly(loading);
+                cache.invalidateCompanion(companionId);
+            });
+            invalidation.start();
+            when(companionRepository.findById(companionId))
+                    .thenAnswer(invocation -> {
+                        loading.countDown();
+                        Thread.sleep(100);
+                        return Optional.of(companion("old"));
+                    })
+                    .thenReturn(Optional.of(companion("new")));
+
+            assertThat(cache.companion(companionId).systemPrompt()).isEqualTo("old");
+            invalidation.join(5_000);
+
+            assertThat(cache.companion(companionId).systemPrompt()).isEqualTo("new");
+        }
+
+        @Test
+        @DisplayName("Should not keep a bulk load that raced an invalidation")
+        void shouldDropBulkLoadRacingInvalidation() {
+            Companion stale = companion("old");
+            stale.setId(companionId);
+            when(companionRepository.findAllById(Set.of(companionId))).thenAnswer(invocation -> {
+                cache.invalidateCompanion(companionId);
+                return List.of(stale);
+            });
+            when(companionRepository.findById(companionId)).thenReturn(Optional.of(companion("new")));
+
+            assertThat(cache.companions(List.of(companionId))).containsKey(companionId);
+
+            assertThat(cache.companion(companionId).systemPrompt()).isEqualTo("new");
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
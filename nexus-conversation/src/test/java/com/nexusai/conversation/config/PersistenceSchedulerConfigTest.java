@@ -0,0 +1,84 @@
+package com.nexusai.conversation.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("PersistenceSchedulerConfig Tests")
+class PersistenceSchedulerConfigTest {
+
+    private final Scheduler scheduler = PersistenceSchedulerConfig.boundedVirtual(2, 1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.dispose();
+    }
+
+    @Test
+    @DisplayName("Should run each task on its own virtual thread, at most max-concurrency at once")
+    void shouldCapConcurrency() throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(3);
+        AtomicInteger virtual = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.schedule(() -> {
+                if (Thread.currentThread().isVirtual()
+                        && Thread.currentThread().getName().startsWith(PersistenceSchedulerConfig.THREAD_PREFIX)) {
+                    virtual.incrementAndGet();
+                }
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                await(release);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+        Thread.sleep(100);
+        assertThat(running).hasValue(2);
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning).hasValue(2);
+        assertThat(virtual).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Should reject tasks beyond max-concurrency plus queue-capacity and admit again once drained")
+    void shouldRejectWhenSaturated() throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            scheduler.schedule(() -> {
+                await(release);
+                finished.countDown();
+            });
+        }
+
+        assertThatThrownBy(() -> scheduler.schedule(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        CountDownLatch admitted = new CountDownLatch(1);
+        scheduler.schedule(admitted::countDown);
+        assertThat(admitted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.nexusai.conversation.context;
+
+import com.nexusai.conversation.context.ContextCache.RenderedContext;
+import com.nexusai.core.enums.MessageRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ContextCache Tests")
+class ContextCacheTest {
+
+    @Test
+    @DisplayName("Should round-trip a rendered context through the compressed codec")
+    void shouldRoundTripRenderedContext() {
+        String text = "[Recent conversation]\n" + "User: bonjour, ça va ?\n".repeat(200);
+        RenderedContext rendered = new RenderedContext("v1", text);
+
+        byte[] encoded = ContextCache.encode(rendered);
+
+        assertThat(encoded.length).isLessThan(text.length());
+        assertThat(ContextCache.decode(encoded)).isEqualTo(rendered);
+    }
+
+    @Nested
+    @DisplayName("Version Tests")
+    class VersionTests {
+
+        private final List<ContextTurn> turns = List.of(turn(MessageRole.USER, "hello"), turn(MessageRole.ASSISTANT, "hi"));
+        private final List<UUID> recalled = List.of(UUID.randomUUID());
+
+        @Test
+        @DisplayName("Should change version when any input changes")
+        void shouldChangeVersionWhenInputChanges() {
+            String base = ContextCache.version(turns, "summary", Map.of("name", "Alex"), recalled);
+
+            assertThat(ContextCache.version(turns, "summary", Map.of("name", "Alex"), recalled)).isEqualTo(base);
+            assertThat(ContextCache.version(List.of(turns.get(0), turn(MessageRole.ASSISTANT, "hey")),
+                    "summary", Map.of("name", "Alex"), recalled)).isNotEqualTo(base);
+            assertThat(ContextCache.version(turns, "other", Map.of("name", "Alex"), recalled)).isNotEqualTo(base);
+            assertThat(ContextCache.version(turns, "summary", Map.of("name", "Sam"), recalled)).isNotEqualTo(base);
+            assertThat(ContextCache.version(turns, "summary", Map.of("name", "Alex"), List.of())).isNotEqualTo(base);
+        }
+
+        @Test
+        @DisplayName("Should version on content, not on message ids")
+        void shouldVersionOnContent() {
+            List<ContextTurn> reloaded = List.of(turn(MessageRole.USER, "hello"), turn(MessageRole.ASSISTANT, "hi"));
+
+            assertThat(ContextCache.version(reloaded, null, Map.of(), List.of()))
+                    .isEqualTo(ContextCache.version(turns, null, Map.of(), List.of()));
+        }
+
+        @Test
+        @DisplayName("Should not let field boundaries shift between inputs")
+        void shouldSeparateFields() {
+            assertThat(ContextCache.version(List.of(), null, Map.of("ab", "c"), List.of()))
+                    .isNotEqualTo(ContextCache.version(List.of(), null, Map.of("a", "bc"), List.of()));
+        }
+
+        private ContextTurn turn(MessageRole role, String content) {
+            return new ContextTurn(UUID.randomUUID(), role, content, 1, LocalDateTime.now());
+        }
+    }
+
+    @Nested
+    @ExtendWith(MockitoExtension.class)
+    @DisplayName("Memory Tests")
+    class MemoryTests {
+
+        @Mock
+        private RedisTemplate<String, String> redisTemplate;
+
+        @Mock
+        private HashOperations<String, Object, Object> hashOperations;
+
+        @Mock
+        private ValueOperations<String, String> valueOperations;
+
+        private final UUID conversationId = UUID.randomUUID();
+        private ContextCache contextCache;
+
+        @BeforeEach
+        void setUp() {
+            contextCache = new ContextCache(redisTemplate);
+            lenient().when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+            lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        }
+
+        @Test
+        @DisplayName("Should read a memory from the conversation's hash")
+        void shouldReadFromHash() {
+            when(hashOperations.get(ContextCache.memoryKey(conversationId), "name")).thenReturn("Alex");
+
+            assertThat(contextCache.readMemory(conversationId, "name")).isEqualTo("Alex");
+
+            verifyNoInteractions(valueOperations);
+        }
+
+        @Test
+        @DisplayName("Should fall back to a legacy per-key memory and move it into the hash")
+        void shouldFallBackToLegacyKey() {
+            String legacyKey = ContextCache.legacyMemoryKey(conversationId, "name");
+            when(valueOperations.get(legacyKey)).thenReturn("Alex");
+
+            assertThat(contextCache.readMemory(conversationId, "name")).isEqualTo("Alex");
+
+            verify(hashOperations).putIfAbsent(ContextCache.memoryKey(conversationId), "name", "Alex");
+            verify(redisTemplate).expire(ContextCache.memoryKey(conversationId), Duration.ofDays(30));
+            verify(redisTemplate).delete(legacyKey);
+        }
+
+        @Test
+        @DisplayName("Should return null when neither layout has the memory")
+        void shouldReturnNullWhenAbsent() {
+            assertThat(contextCache.readMemory(conversationId, "name")).isNull();
+
+            verify(redisTemplate, never()).delete(anyString());
+        }
+
+        @Test
+        @DisplayName("Should fold legacy memory keys into hashes on startup")
+        @SuppressWarnings("unchecked")
+        void shouldMigrateLegacyKeys() {
+            String legacyKey = ContextCache.legacyMemoryKey(conversationId, "favourite:colour");
+            Cursor<String> cursor = mock(Cursor.class);
+            when(cursor.hasNext()).thenReturn(true, true, false);
+            when(cursor.next()).thenReturn("conversation:context:not-a-uuid:memory:x", legacyKey);
+            when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+            when(valueOperations.get(legacyKey)).thenReturn("blue");
+
+            assertThat(contextCache.migrateLegacyMemories()).isEqualTo(1);
+
+            verify(hashOperations).putIfAbsent(ContextCache.memoryKey(conversationId), "favourite:colour", "blue");
+            verify(redisTemplate).delete(legacyKey);
+            verify(cursor).close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.nexusai.conversation.context;
+
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.enums.MessageRole;
+import com.nexusai.core.enums.MessageType;
+import com.nexusai.core.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ContextStore Tests")
+class ContextStoreTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    private UUID conversationId;
+
+    @BeforeEach
+    void setUp() {
+        conversationId = UUID.randomUUID();
+    }
+
+    private Message message(UUID conversationId, MessageRole role, String content) {
+        Message message = Message.builder()
+                .conversationId(conversationId)
+                .role(role)
+                .type(MessageType.TEXT)
+                .content(content)
+                .build();
+        message.setId(UUID.randomUUID());
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+
+    @Nested
+    @DisplayName("ContextWindow Tests")
+    class ContextWindowTests {
+
+        @Test
+        @DisplayName("Should evict oldest turn when full")
+        void shouldEvictOldestTurnWhenFull() {
+            ContextWindow window = new ContextWindow(2);
+            ContextTurn first = ContextTurn.from(message(conversationId, MessageRole.USER, "first"));
+            ContextTurn second = ContextTurn.from(message(conversationId, MessageRole.ASSISTANT, "second"));
+            ContextTurn third = ContextTurn.from(message(conversationId, MessageRole.USER, "third"));
+
+            assertThat(window.append(first)).isNull();
+            assertThat(window.append(second)).isNull();
+            assertThat(window.append(third)).isEqualTo(first);
+
+            assertThat(window.turns()).containsExactly(second, third);
+            assertThat(window.totalTokens()).isEqualTo(second.tokens() + third.tokens());
+            assertThat(window.lastMessageId()).isEqualTo(third.messageId());
+        }
+
+        @Test
+        @DisplayName("Should ignore duplicate messages")
+        void shouldIgnoreDuplicateMessages() {
+            ContextWindow window = new ContextWindow(4);
+            ContextTurn turn = ContextTurn.from(message(conversationId, MessageRole.USER, "hello"));
+
+            window.append(turn);
+            window.append(turn);
+
+            assertThat(window.size()).isEqualTo(1);
+            assertThat(window.totalTokens()).isEqualTo(turn.tokens());
+        }
+    }
+
+    @Nested
+    @DisplayName("Store Tests")
+    class StoreTests {
+
+        @Test
+        @DisplayName("Should rebuild window in chronological order on miss")
+        void shouldRebuildWindowOnMiss() {
+            ContextStore store = new ContextStore(messageRepository, 20, 1_000_000, Duration.ofHours(1), Duration.ofHours(1));
+            Message older = message(conversationId, MessageRole.USER, "older");
+            Message newer = message(conversationId, MessageRole.ASSISTANT, "newer");
+            when(messageRepository.findRecentMessages(conversationId, 20)).thenReturn(List.of(newer, older));
+
+            ContextWindow window = store.getOrLoad(conversationId);
+
+            assertThat(window.turns()).extracting(ContextTurn::content).containsExactly("older", "newer");
+        }
+
+        @Test
+        @DisplayName("Should append to resident window without querying the database")
+        void shouldAppendWithoutQuerying() {
+            ContextStore store = new ContextStore(messageRepository, 20, 1_000_000, Duration.ofHours(1), Duration.ofHours(1));
+            when(messageRepository.findRecentMessages(conversationId, 20)).thenReturn(new ArrayList<>());
+            store.getOrLoad(conversationId);
+
+            store.append(message(conversationId, MessageRole.USER, "hi"));
+            store.append(message(conversationId, MessageRole.ASSISTANT, "hello"));
+
+            assertThat(store.getOrLoad(conversationId).size()).isEqualTo(2);
+            verify(messageRepository, times(1)).findRecentMessages(any(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should not create a window when appending to an absent conversation")
+        void shouldNotCreateWindowOnAppend() {
+            ContextStore store = new ContextStore(messageRepository, 20, 1_000_000, Duration.ofHours(1), Duration.ofHours(1));
+
+            store.append(message(conversationId, MessageRole.USER, "hi"));
+
+            assertThat(store.estimatedSize()).isZero();
+            verifyNoInteractions(messageRepository);
+        }
+
+        @Test
+        @DisplayName("Should evict conversations beyond the byte budget")
+        void shouldEvictBeyondByteBudget() {
+            ContextStore store = new ContextStore(messageRepository, 20, 4_096, Duration.ofHours(1), Duration.ofHours(1));
+            when(messageRepository.findRecentMessages(any(), anyInt())).thenAnswer(invocation -> {
+                UUID id = invocation.getArgument(0);
+                return new ArrayList<>(List.of(message(id, MessageRole.USER, "x".repeat(1_000))));
+            });
+
+            for (int i = 0; i < 10; i++) {
+                store.getOrLoad(UUID.randomUUID());
+            }
+
+            assertThat(store.estimatedSize()).isLessThan(10);
+        }
+
+        @Test
+        @DisplayName("Should reload a busy window once it reaches its max age")
+        void shouldReloadBusyWindowAtMaxAge() {
+            AtomicLong nanos = new AtomicLong();
+            ContextStore store = new ContextStore(messageRepository, 20, 1_000_000, Duration.ofHours(1),
+                    Duration.ofMinutes(10), nanos::get);
+            when(messageRepository.findRecentMessages(conversationId, 20)).thenReturn(new ArrayList<>());
+            ContextWindow loaded = store.getOrLoad(conversationId);
+
+            for (int minute = 1; minute < 10; minute++) {
+                nanos.set(Duration.ofMinutes(minute).toNanos());
+                assertThat(store.getIfPresent(conversationId)).isSameAs(loaded);
+            }
+            nanos.set(Duration.ofMinutes(10).toNanos());
+
+            assertThat(store.getIfPresent(conversationId)).isNull();
+            assertThat(store.getOrLoad(conversationId)).isNotSameAs(loaded);
+            verify(messageRepository, times(2)).findRecentMessages(conversationId, 20);
+        }
+    }
+
+    @Nested
+    @DisplayName("Invalidation Broadcast Tests")
+    class InvalidationTests {
+
+        @Mock
+        private SpeculativeContexts speculativeContexts;
+
+        @Mock
+        private RedisTemplate<String, String> redisTemplate;
+
+        @Test
+        @DisplayName("Should drop the window when another node changes the conversation")
+        void shouldDropWindowOnRemoteChange() {
+            ContextStore store = new ContextStore(messageRepository, 20, 1_000_000, Duration.ofHours(1), Duration.ofHours(1));
+            when(messageRepository.findRecentMessages(conversationId, 20)).thenReturn(new ArrayList<>());
+            store.getOrLoad(conversationId);
+            ContextInvalidations invalidations = new ContextInvalidations(store, speculativeContexts, redisTemplate);
+
+            invalidations.onMessage(new DefaultMessage(ContextInvalidations.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    (conversationId + ":other-node").getBytes(StandardCharsets.UTF_8)), null);
+
+            assertThat(store.getIfPresent(conversationId)).isNull();
+            verify(speculativeContexts).invalidate(conversationId);
+        }
+
+        @Test
+        @DisplayName("Should keep the window for its own broadcast")
+        void shouldIgnoreOwnBroadcast() {
+            ContextStore store = new ContextStore(messageRepository, 20, 1_000_000, Duration.ofHours(1), Duration.ofHours(1));
+            when(messageRepository.findRecentMessages(conversationId, 20)).thenReturn(new ArrayList<>());
+            ContextWindow loaded = store.getOrLoad(conversationId);
+            ContextInvalidations invalidations = new ContextInvalidations(store, speculativeContexts, redisTemplate);
+
+            invalidations.changed(conversationId);
+            ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+            verify(redisTemplate).convertAndSend(eq(ContextInvalidations.CHANNEL), sent.capture());
+            invalidations.onMessage(new DefaultMessage(ContextInvalidations.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    sent.getValue().getBytes(StandardCharsets.UTF_8)), null);
+
+            assertThat(store.getIfPresent(conversationId)).isSameAs(loaded);
+            verifyNoInteractions(speculativeContexts);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.nexusai.conversation.context;
+
+import com.nexusai.ai.service.AIProviderService;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.enums.MessageRole;
+import com.nexusai.core.enums.MessageType;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ContextSummarizer Tests")
+class ContextSummarizerTest {
+
+    @Mock
+    private AIProviderService aiProviderService;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final Map<Duration, Runnable> deferred = new LinkedHashMap<>();
+    private ContextSummarizer summarizer;
+    private UUID conversationId;
+
+    @BeforeEach
+    void setUp() {
+        conversationId = UUID.randomUUID();
+        Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+        summarizer = new ContextSummarizer(aiProviderService, conversationRepository, messageRepository, redisTemplate,
+                scheduled::add, deferred::put, clock);
+    }
+
+    private ContextTurn turn(int chars) {
+        return new ContextTurn(UUID.randomUUID(), MessageRole.USER, "x".repeat(chars),
+                chars / 4, LocalDateTime.now());
+    }
+
+    @Test
+    @DisplayName("Should not schedule below the token threshold")
+    void shouldNotScheduleBelowThreshold() {
+        summarizer.onEvicted(conversationId, turn(400));
+
+        assertThat(scheduled).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should schedule once and debounce while a run is pending")
+    void shouldDebounceWhileRunning() {
+        summarizer.onEvicted(conversationId, turn(6_000));
+        summarizer.onEvicted(conversationId, turn(6_000));
+        summarizer.onEvicted(conversationId, turn(6_000));
+
+        assertThat(scheduled).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should store the summary in Redis and on the conversation")
+    void shouldStoreSummary() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn(null);
+        when(conversationRepository.findById(conversationId)).thenReturn(Optional.empty());
+        when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString()))
+                .thenReturn("  The user likes hiking.  ");
+
+        summarizer.onEvicted(conversationId, turn(6_000));
+        scheduled.forEach(Runnable::run);
+
+        verify(valueOperations).set(eq(ContextSummarizer.SUMMARY_KEY_PREFIX + conversationId),
+                eq("The user likes hiking."), any(Duration.class));
+        verify(conversationRepository).updateContextSummary(eq(conversationId), eq("The user likes hiking."),
+                any(LocalDateTime.class));
+        verify(aiProviderService).generateResponse(anyString(), contains("[New exchanges]"), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should keep buffered turns when the model call fails")
+    void shouldKeepTurnsOnFailure() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(conversationRepository.findById(conversationId)).thenReturn(Optional.empty());
+        when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new RuntimeException("model down"));
+
+        summarizer.onEvicted(conversationId, turn(6_000));
+        scheduled.forEach(Runnable::run);
+        scheduled.clear();
+
+        // Failure resets the debounce so the next eviction retries immediately
+        summarizer.onEvicted(conversationId, turn(40));
+
+        assertThat(scheduled).hasSize(1);
+        verify(conversationRepository, never()).updateContextSummary(any(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should run a trigger rejected by the debounce once the interval ends")
+    void shouldDeferDebouncedTrigger() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(conversationRepository.findById(conversationId)).thenReturn(Optional.empty());
+        when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString()))
+                .thenReturn("First summary.", "Second summary.");
+        summarizer.onEvicted(conversationId, turn(6_000));
+        scheduled.remove(0).run();
+
+        summarizer.onEvicted(conversationId, turn(6_000));
+        summarizer.onEvicted(conversationId, turn(6_000));
+
+        assertThat(scheduled).isEmpty();
+        assertThat(deferred).containsOnlyKeys(Duration.ofSeconds(30));
+        deferred.remove(Duration.ofSeconds(30)).run();
+        assertThat(scheduled).hasSize(1);
+        scheduled.remove(0).run();
+        verify(conversationRepository).updateContextSummary(eq(conversationId), eq("Second summary."), any());
+    }
+
+    @Test
+    @DisplayName("Should summarize turns dropped on overflow, oldest first, before the buffer")
+    void shouldSummarizeOverflowFromHistory() {
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 10, 0);
+        Message dropped = message("I adopted a dog named Rex. " + "x".repeat(6_000), start);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(conversationRepository.findById(conversationId)).thenReturn(Optional.empty());
+        when(conversationRepository.findContextSummaryThrough(conversationId))
+                .thenReturn(Optional.empty(), Optional.of(start));
+        when(messageRepository.findOldestBetween(eq(conversationId), any(), eq(start.plusMinutes(1)),
+                eq(ContextSummarizer.CATCH_UP_LIMIT))).thenReturn(List.of(dropped), List.of());
+        when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString()))
+                .thenReturn("The user has a dog.", "The user has a dog and talks a lot.");
+
+        // Five turns of 1,500 tokens against a 6,000 token buffer: the first is dropped
+        for (int minute = 0; minute < 5; minute++) {
+            summarizer.onEvicted(conversationId, new ContextTurn(UUID.randomUUID(), MessageRole.USER,
+                    "x".repeat(6_000), 1_500, start.plusMinutes(minute)));
+        }
+        scheduled.remove(0).run();
+        deferred.values().iterator().next().run();
+        scheduled.remove(0).run();
+
+        InOrder order = inOrder(aiProviderService, conversationRepository);
+        order.verify(aiProviderService).generateResponse(anyString(), contains("adopted a dog"), anyString(), anyString());
+        order.verify(conversationRepository).updateContextSummary(conversationId, "The user has a dog.", start);
+        order.verify(conversationRepository).updateContextSummary(conversationId,
+                "The user has a dog and talks a lot.", start.plusMinutes(4));
+    }
+
+    @Test
+    @DisplayName("Should summarize history that left the window before a restart once the window is loaded")
+    void shouldCatchUpFromPersistedHistory() {
+        LocalDateTime through = LocalDateTime.of(2026, 1, 1, 10, 0);
+        Message missed = message("I moved to Lyon last week. " + "x".repeat(6_000), through.plusMinutes(5));
+        ContextWindow window = ContextWindow.of(2, List.of(turnAt(through.plusMinutes(10)), turnAt(through.plusMinutes(11))));
+        when(conversationRepository.findContextSummaryThrough(conversationId)).thenReturn(Optional.of(through));
+        when(messageRepository.findBetween(conversationId, through, through.plusMinutes(10),
+                ContextSummarizer.CATCH_UP_LIMIT)).thenReturn(List.of(missed));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn("Previous summary.");
+        when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString()))
+                .thenReturn("The user moved to Lyon.");
+
+        summarizer.onWindowLoaded(conversationId, window);
+        scheduled.remove(0).run();
+        assertThat(scheduled).hasSize(1);
+        scheduled.remove(0).run();
+
+        verify(aiProviderService).generateResponse(anyString(), contains("I moved to Lyon"), anyString(), anyString());
+        verify(conversationRepository).updateContextSummary(conversationId, "The user moved to Lyon.",
+                through.plusMinutes(5));
+    }
+
+    @Test
+    @DisplayName("Should not catch up when the window holds the whole history or the buffer already reaches it")
+    void shouldSkipNeedlessCatchUp() {
+        LocalDateTime now = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+        summarizer.onWindowLoaded(conversationId, ContextWindow.of(3, List.of(turnAt(now))));
+        assertThat(scheduled).isEmpty();
+
+        summarizer.onEvicted(conversationId, turnAt(now.plusMinutes(1)));
+        summarizer.onWindowLoaded(conversationId, ContextWindow.of(1, List.of(turnAt(now.plusMinutes(1)))));
+        assertThat(scheduled).isEmpty();
+        verifyNoInteractions(messageRepository);
+    }
+
+    private ContextTurn turnAt(LocalDateTime createdAt) {
+        return new ContextTurn(UUID.randomUUID(), MessageRole.USER, "hi", 1, createdAt);
+    }
+
+    private Message message(String content, LocalDateTime createdAt) {
+        Message message = Message.builder()
+                .conversationId(conversationId)
+                .role(MessageRole.USER)
+                .type(MessageType.TEXT)
+                .content(content)
+                .build();
+        message.setId(UUID.randomUUID());
+        message.setCreatedAt(createdAt);
+        return message;
+    }
+}
@@ -0,0 +1,131 @@
+package com.nexusai.conversation.context;
+
+import com.nexusai.conversation.context.ContextCache.ContextSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("SpeculativeContexts Tests")
+class SpeculativeContextsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID conversationId = UUID.randomUUID();
+    private final ContextSnapshot snapshot = new ContextSnapshot("They like hiking", Map.of("name", "Sam"), null);
+    private SpeculativeContexts speculativeContexts;
+
+    @BeforeEach
+    void setUp() {
+        speculativeContexts = new SpeculativeContexts(meterRegistry, Duration.ofSeconds(5), 100, 1, 1);
+    }
+
+    @Test
+    @DisplayName("Should hand a prebuild to the next build only, recording its duration")
+    void shouldConsumeOnce() {
+        assertThat(speculativeContexts.claim(conversationId)).isTrue();
+        speculativeContexts.put(conversationId, snapshot, TimeUnit.MILLISECONDS.toNanos(12));
+        speculativeContexts.release(conversationId);
+
+        assertThat(speculativeContexts.take(conversationId)).isSameAs(snapshot);
+        assertThat(speculativeContexts.take(conversationId)).isNull();
+
+        assertThat(count("hit")).isEqualTo(1);
+        assertThat(count("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("nexusai.context.speculative.prebuild").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("Should drop a prebuild whose conversation changed while it ran")
+    void shouldDropPrebuildInvalidatedMidFlight() {
+        assertThat(speculativeContexts.claim(conversationId)).isTrue();
+        speculativeContexts.invalidate(conversationId);
+        speculativeContexts.put(conversationId, snapshot, TimeUnit.MILLISECONDS.toNanos(12));
+        speculativeContexts.release(conversationId);
+
+        assertThat(speculativeContexts.take(conversationId)).isNull();
+
+        assertThat(speculativeContexts.claim(conversationId)).as("next prebuild").isTrue();
+        speculativeContexts.put(conversationId, snapshot, TimeUnit.MILLISECONDS.toNanos(12));
+        speculativeContexts.release(conversationId);
+        assertThat(speculativeContexts.take(conversationId)).isSameAs(snapshot);
+    }
+
+    @Test
+    @DisplayName("Should time builds with and without a prebuild apart")
+    void shouldTimeBuildsByOutcome() {
+        speculativeContexts.recordBuild(true, TimeUnit.MILLISECONDS.toNanos(3));
+        speculativeContexts.recordBuild(false, TimeUnit.MILLISECONDS.toNanos(40));
+
+        assertThat(buildTime("true")).isEqualTo(3);
+        assertThat(buildTime("false")).isEqualTo(40);
+    }
+
+    @Test
+    @DisplayName("Should drop prebuilds once the pool and its queue are full")
+    void shouldDropWhenSaturated() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertThat(speculativeContexts.submit(conversationId, blocking)).isTrue();
+        running.await();
+        assertThat(speculativeContexts.submit(conversationId, () -> { })).as("queued").isTrue();
+        assertThat(speculativeContexts.submit(conversationId, () -> { })).as("dropped").isFalse();
+        release.countDown();
+
+        assertThat(count("dropped")).isEqualTo(1);
+        speculativeContexts.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should fetch once per burst of typing signals")
+    void shouldClaimOnce() {
+        assertThat(speculativeContexts.claim(conversationId)).isTrue();
+        assertThat(speculativeContexts.claim(conversationId)).as("while running").isFalse();
+
+        speculativeContexts.put(conversationId, snapshot, 1);
+        speculativeContexts.release(conversationId);
+        assertThat(speculativeContexts.claim(conversationId)).as("while fresh").isFalse();
+
+        speculativeContexts.invalidate(conversationId);
+        assertThat(speculativeContexts.claim(conversationId)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should count prebuilds that expire unused as wasted")
+    void shouldExpire() throws InterruptedException {
+        speculativeContexts = new SpeculativeContexts(meterRegistry, Duration.ofMillis(20), 100, 1, 1);
+        speculativeContexts.put(conversationId, snapshot, 1);
+
+        Thread.sleep(50);
+
+        assertThat(speculativeContexts.take(conversationId)).isNull();
+        assertThat(count("wasted")).isEqualTo(1);
+        assertThat(count("hit")).isZero();
+    }
+
+    private double buildTime(String prebuilt) {
+        return meterRegistry.get("nexusai.context.build").tag("prebuilt", prebuilt).timer()
+                .totalTime(TimeUnit.MILLISECONDS);
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("nexusai.context.speculative").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,221 @@
+package com.nexusai.conversation.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.archive.MessageArchive;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.entity.MessageArchiveSegment;
+import com.nexusai.core.enums.MessageRole;
+import com.nexusai.core.enums.MessageType;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConversationExporter Tests")
+class ConversationExporterTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MessageArchive messageArchive;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final UUID userId = UUID.randomUUID();
+    private final UUID conversationId = UUID.randomUUID();
+    private ConversationExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        exporter = new ConversationExporter(conversationRepository, messageRepository, messageArchive,
+                entityManager, objectMapper, transactionManager);
+    }
+
+    @Nested
+    @DisplayName("Prepare")
+    class PrepareTests {
+
+        @Test
+        @DisplayName("Should reject a conversation of another user")
+        void shouldRejectForeignConversation() {
+            when(conversationRepository.findByIdAndUserId(conversationId, userId)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> exporter.prepare(conversationId, userId, ExportFormat.NDJSON, null, null))
+                    .isInstanceOf(ResourceNotFoundException.class);
+        }
+
+        @Test
+        @DisplayName("Should reject an empty range")
+        void shouldRejectEmptyRange() {
+            givenConversation();
+
+            assertThatThrownBy(() -> exporter.prepare(conversationId, userId, ExportFormat.NDJSON, START, START))
+                    .isInstanceOf(ValidationException.class);
+        }
+
+        @Test
+        @DisplayName("Should reject an unknown format")
+        void shouldRejectUnknownFormat() {
+            assertThatThrownBy(() -> ExportFormat.of("pdf")).isInstanceOf(ValidationException.class);
+            assertThat(ExportFormat.of("Markdown")).isEqualTo(ExportFormat.MARKDOWN);
+        }
+    }
+
+    @Nested
+    @DisplayName("Export")
+    class ExportTests {
+
+        @Test
+        @DisplayName("Should write archived then hot messages as one JSON object per line")
+        void shouldExportNdjson() throws IOException {
+            givenConversation();
+            Message archived = message(0, "From the archive");
+            Message hot = message(1, "Still in the database");
+            givenArchived(archived);
+            AtomicBoolean closed = new AtomicBoolean();
+            when(messageRepository.streamForExport(eq(conversationId), any(), any()))
+                    .thenReturn(Stream.of(hot).onClose(() -> closed.set(true)));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long written = exporter.export(exporter.prepare(conversationId, userId, ExportFormat.NDJSON, null, null), out);
+
+            String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+            assertThat(written).isEqualTo(2);
+            assertThat(lines).hasSize(2);
+            JsonNode first = objectMapper.readTree(lines[0]);
+            assertThat(first.get("id").asText()).isEqualTo(archived.getId().toString());
+            assertThat(first.get("role").asText()).isEqualTo("USER");
+            assertThat(objectMapper.readTree(lines[1]).get("content").asText()).isEqualTo("Still in the database");
+            assertThat(closed).isTrue();
+            verify(entityManager).detach(hot);
+        }
+
+        @Test
+        @DisplayName("Should write a markdown transcript")
+        void shouldExportMarkdown() throws IOException {
+            givenConversation();
+            givenArchived();
+            Message answer = message(1, "Hi *there*");
+            answer.setRole(MessageRole.ASSISTANT);
+            when(messageRepository.streamForExport(eq(conversationId), any(), any())).thenReturn(Stream.of(answer));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            exporter.export(exporter.prepare(conversationId, userId, ExportFormat.MARKDOWN, null, null), out);
+
+            assertThat(out.toString(StandardCharsets.UTF_8))
+                    .startsWith("# Weekend plans\n\n")
+                    .contains("**Assistant** · 2025-03-01 09:00:01\n\nHi *there*");
+        }
+
+        @Test
+        @DisplayName("Should pass the requested range to both tiers")
+        void shouldFilterByRange() throws IOException {
+            givenConversation();
+            givenArchived();
+            LocalDateTime to = START.plusDays(1);
+            when(messageRepository.streamForExport(conversationId, ConversationExporter.BEGINNING, to))
+                    .thenReturn(Stream.empty());
+
+            exporter.export(exporter.prepare(conversationId, userId, ExportFormat.NDJSON, null, to),
+                    OutputStream.nullOutputStream());
+
+            verify(messageArchive).forEachBetween(any(), eq(ConversationExporter.BEGINNING), eq(to), any());
+        }
+
+        @Test
+        @DisplayName("Should stop reading when the client goes away")
+        void shouldStopOnClientAbort() {
+            givenConversation();
+            givenArchived();
+            AtomicBoolean closed = new AtomicBoolean();
+            String longReply = "x".repeat(20_000);
+            when(messageRepository.streamForExport(eq(conversationId), any(), any()))
+                    .thenReturn(Stream.generate(() -> message(0, longReply)).limit(1_000).onClose(() -> closed.set(true)));
+            OutputStream broken = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("Broken pipe");
+                }
+            };
+
+            ConversationExporter.ExportRequest request =
+                    exporter.prepare(conversationId, userId, ExportFormat.NDJSON, null, null);
+
+            assertThatThrownBy(() -> exporter.export(request, broken)).isInstanceOf(IOException.class);
+            assertThat(closed).isTrue();
+            verify(entityManager, never()).detach(any());
+        }
+    }
+
+    private void givenConversation() {
+        Conversation conversation = Conversation.builder().userId(userId).title("Weekend plans").build();
+        conversation.setId(conversationId);
+        when(conversationRepository.findByIdAndUserId(conversationId, userId)).thenReturn(Optional.of(conversation));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenArchived(Message... messages) {
+        List<MessageArchiveSegment> segments = List.of();
+        when(messageArchive.segments(conversationId)).thenReturn(segments);
+        doAnswer(invocation -> {
+            Consumer<Message> action = invocation.getArgument(3);
+            for (Message message : messages) {
+                action.accept(message);
+            }
+            return null;
+        }).when(messageArchive).forEachBetween(eq(segments), any(), any(), any(Consumer.class));
+    }
+
+    private Message message(int index, String content) {
+        Message message = Message.builder()
+                .conversationId(conversationId)
+                .role(MessageRole.USER)
+                .type(MessageType.TEXT)
+                .content(content)
+                .build();
+        message.setId(UUID.randomUUID());
+        message.setCreatedAt(START.plusSeconds(index));
+        return message;
+    }
+}
@@ -0,0 +1,297 @@
+package com.nexusai.conversation.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nexusai.commons.exception.BusinessException;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.dto.MessageDTO;
+import com.nexusai.conversation.dto.SendMessageRequest;
+import com.nexusai.conversation.dto.StreamChunk;
+import com.nexusai.conversation.stream.ResumableStreams;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("IdempotentSubmissions Tests")
+class IdempotentSubmissionsTest {
+
+    private static final Duration WINDOW = Duration.ofHours(24);
+    private static final Duration PENDING_TTL = Duration.ofMinutes(1);
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ResumableStreams resumableStreams;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final UUID userId = UUID.randomUUID();
+    private final UUID conversationId = UUID.randomUUID();
+    private final AtomicInteger calls = new AtomicInteger();
+    private IdempotentSubmissions submissions;
+    private String redisKey;
+
+    @BeforeEach
+    void setUp() {
+        submissions = new IdempotentSubmissions(redisTemplate, objectMapper, resumableStreams, WINDOW, PENDING_TTL);
+        redisKey = IdempotentSubmissions.KEY_PREFIX + userId + ":" + conversationId + ":retry-1";
+    }
+
+    @Nested
+    @DisplayName("Keys")
+    class KeyTests {
+
+        @Test
+        @DisplayName("Should prefer the header over the client message id")
+        void shouldPreferHeader() {
+            SendMessageRequest request = SendMessageRequest.builder().content("Hi").clientMessageId("body").build();
+
+            assertThat(IdempotentSubmissions.keyOf(" header ", request)).isEqualTo("header");
+            assertThat(IdempotentSubmissions.keyOf(null, request)).isEqualTo("body");
+            assertThat(IdempotentSubmissions.keyOf("", SendMessageRequest.builder().content("Hi").build())).isNull();
+        }
+
+        @Test
+        @DisplayName("Should reject oversized keys")
+        void shouldRejectLongKey() {
+            assertThatThrownBy(() -> IdempotentSubmissions.keyOf("k".repeat(129), null))
+                    .isInstanceOf(ValidationException.class);
+        }
+
+        @Test
+        @DisplayName("Should not touch Redis without a key")
+        void shouldPassThroughWithoutKey() {
+            submissions.send(conversationId, userId, null, this::save);
+
+            assertThat(calls).hasValue(1);
+            verifyNoInteractions(redisTemplate);
+        }
+
+        private MessageDTO save() {
+            calls.incrementAndGet();
+            return message();
+        }
+    }
+
+    @Nested
+    @DisplayName("Send")
+    class SendTests {
+
+        @BeforeEach
+        void setUp() {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        }
+
+        @Test
+        @DisplayName("Should save once and record the outcome for the window")
+        void shouldRecordOutcome() throws Exception {
+            MessageDTO saved = message();
+            when(valueOperations.setIfAbsent(redisKey, IdempotentSubmissions.PENDING, PENDING_TTL)).thenReturn(true);
+
+            MessageDTO result = submissions.send(conversationId, userId, "retry-1", () -> saved);
+
+            assertThat(result).isSameAs(saved);
+            verify(valueOperations).set(redisKey, IdempotentSubmissions.MESSAGE + objectMapper.writeValueAsString(saved),
+                    WINDOW);
+        }
+
+        @Test
+        @DisplayName("Should replay the original message to a retry")
+        void shouldReplay() throws Exception {
+            MessageDTO original = message();
+            when(valueOperations.setIfAbsent(eq(redisKey), any(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(redisKey))
+                    .thenReturn(IdempotentSubmissions.MESSAGE + objectMapper.writeValueAsString(original));
+
+            MessageDTO result = submissions.send(conversationId, userId, "retry-1", () -> {
+                throw new AssertionError("Retry must not save again");
+            });
+
+            assertThat(result).isEqualTo(original);
+        }
+
+        @Test
+        @DisplayName("Should ask a retry to wait while the first attempt runs")
+        void shouldRejectWhilePending() {
+            when(valueOperations.setIfAbsent(eq(redisKey), any(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(redisKey)).thenReturn(IdempotentSubmissions.PENDING);
+
+            assertThatThrownBy(() -> submissions.send(conversationId, userId, "retry-1", IdempotentSubmissionsTest::message))
+                    .isInstanceOf(BusinessException.class)
+                    .hasFieldOrPropertyWithValue("errorCode", "REQUEST_IN_PROGRESS");
+        }
+
+        @Test
+        @DisplayName("Should release the key when the submission fails")
+        void shouldReleaseOnFailure() {
+            when(valueOperations.setIfAbsent(redisKey, IdempotentSubmissions.PENDING, PENDING_TTL)).thenReturn(true);
+
+            assertThatThrownBy(() -> submissions.send(conversationId, userId, "retry-1", () -> {
+                throw new BusinessException("CONTENT_BLOCKED", "Blocked");
+            })).isInstanceOf(BusinessException.class);
+
+            verify(redisTemplate).delete(redisKey);
+        }
+    }
+
+    @Nested
+    @DisplayName("Stream")
+    class StreamTests {
+
+        @BeforeEach
+        void setUp() {
+            when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+            when(resumableStreams.newStreamId()).thenReturn("new-stream");
+        }
+
+        @Test
+        @DisplayName("Should open the generation under the claimed stream id")
+        void shouldOpenOnce() {
+            Flux<ServerSentEvent<String>> events = Flux.just(ServerSentEvent.builder("Hi").build());
+            when(valueOperations.setIfAbsent(redisKey, IdempotentSubmissions.STREAM + "new-stream", WINDOW))
+                    .thenReturn(true);
+            when(resumableStreams.open(eq(userId), eq(conversationId), eq("new-stream"), any())).thenReturn(events);
+
+            assertThat(submissions.stream(conversationId, userId, "retry-1", () -> Flux.just("Hi"))).isSameAs(events);
+        }
+
+        @Test
+        @DisplayName("Should attach a retry to the original stream from its first event")
+        void shouldAttachToOriginal() {
+            Flux<ServerSentEvent<String>> replay = Flux.just(ServerSentEvent.builder("Hi").id("first-stream:1").build());
+            when(valueOperations.setIfAbsent(eq(redisKey), any(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(redisKey)).thenReturn(IdempotentSubmissions.STREAM + "first-stream");
+            when(resumableStreams.resume(userId, conversationId, "first-stream:0")).thenReturn(replay);
+
+            Flux<ServerSentEvent<String>> result = submissions.stream(conversationId, userId, "retry-1", () -> {
+                throw new AssertionError("Retry must not generate again");
+            });
+
+            assertThat(result.collectList().block(Duration.ofSeconds(5)))
+                    .extracting(ServerSentEvent::id).containsExactly("first-stream:1");
+            verify(resumableStreams, never()).open(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should record the payloads of a completed generation under the key")
+        void shouldRecordOutcome() throws Exception {
+            when(valueOperations.setIfAbsent(redisKey, IdempotentSubmissions.STREAM + "new-stream", WINDOW))
+                    .thenReturn(true);
+            when(resumableStreams.open(eq(userId), eq(conversationId), eq("new-stream"), any()))
+                    .thenAnswer(invocation -> Flux.from(invocation.<Flux<?>>getArgument(3))
+                            .map(payload -> ServerSentEvent.builder(String.valueOf(payload)).build()));
+
+            submissions.stream(conversationId, userId, "retry-1", () -> Flux.just("Hel", "lo")).blockLast();
+
+            String outcome = objectMapper.writeValueAsString(
+                    new IdempotentSubmissions.StreamOutcome("new-stream", List.of("Hel", "lo")));
+            verify(valueOperations, timeout(5_000)).set(redisKey, IdempotentSubmissions.COMPLETED + outcome, WINDOW);
+        }
+
+        @Test
+        @DisplayName("Should release the key when the provider fails mid-stream")
+        void shouldReleaseKeyOnProviderError() {
+            UUID messageId = UUID.randomUUID();
+            when(valueOperations.setIfAbsent(redisKey, IdempotentSubmissions.STREAM + "new-stream", WINDOW))
+                    .thenReturn(true);
+            when(resumableStreams.open(eq(userId), eq(conversationId), eq("new-stream"), any()))
+                    .thenAnswer(invocation -> Flux.from(invocation.<Flux<?>>getArgument(3))
+                            .map(payload -> ServerSentEvent.builder(String.valueOf(payload)).build()));
+            // As MessageService.streamResponse turns a provider error into a last chunk
+            Flux<StreamChunk> generation = Flux.concat(
+                            Flux.just(StreamChunk.text(messageId, conversationId, "Hel")),
+                            Flux.<StreamChunk>error(new IllegalStateException("provider down")))
+                    .onErrorResume(e -> Flux.just(StreamChunk.error(conversationId, e.getMessage())));
+
+            submissions.stream(conversationId, userId, "retry-1", () -> generation).blockLast();
+
+            verify(redisTemplate, timeout(5_000)).delete(redisKey);
+            verify(valueOperations, never()).set(eq(redisKey), startsWith(IdempotentSubmissions.COMPLETED), any());
+        }
+
+        @Test
+        @DisplayName("Should release the key when the generation fails")
+        void shouldReleaseKeyOnFailure() {
+            when(valueOperations.setIfAbsent(redisKey, IdempotentSubmissions.STREAM + "new-stream", WINDOW))
+                    .thenReturn(true);
+            when(resumableStreams.open(eq(userId), eq(conversationId), eq("new-stream"), any()))
+                    .thenAnswer(invocation -> Flux.from(invocation.<Flux<?>>getArgument(3))
+                            .map(payload -> ServerSentEvent.builder(String.valueOf(payload)).build()));
+
+            assertThatThrownBy(() -> submissions.stream(conversationId, userId, "retry-1",
+                    () -> Flux.error(new IllegalStateException("provider down"))).blockLast())
+                    .hasMessageContaining("provider down");
+
+            verify(redisTemplate, timeout(5_000)).delete(redisKey);
+            verify(valueOperations, never()).set(eq(redisKey), startsWith(IdempotentSubmissions.COMPLETED), any());
+        }
+
+        @Test
+        @DisplayName("Should replay the recorded outcome once the stream is no longer resumable")
+        void shouldReplayRecordedOutcome() throws Exception {
+            String outcome = IdempotentSubmissions.COMPLETED + objectMapper.writeValueAsString(
+                    new IdempotentSubmissions.StreamOutcome("first-stream", List.of("Hel", "lo")));
+            Flux<ServerSentEvent<String>> replay = Flux.just(ServerSentEvent.builder("Hello").build());
+            when(valueOperations.setIfAbsent(eq(redisKey), any(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(redisKey)).thenReturn(outcome);
+            when(resumableStreams.replay("first-stream", List.of("Hel", "lo"))).thenReturn(replay);
+
+            assertThat(submissions.stream(conversationId, userId, "retry-1", () -> {
+                throw new AssertionError("Retry must not generate again");
+            })).isSameAs(replay);
+            verify(resumableStreams, never()).resume(any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should fall back to the recorded outcome when the stream expires meanwhile")
+        void shouldFallBackToRecordedOutcome() throws Exception {
+            String outcome = IdempotentSubmissions.COMPLETED + objectMapper.writeValueAsString(
+                    new IdempotentSubmissions.StreamOutcome("first-stream", List.of("Hi")));
+            when(valueOperations.setIfAbsent(eq(redisKey), any(), any(Duration.class))).thenReturn(false);
+            when(valueOperations.get(redisKey)).thenReturn(IdempotentSubmissions.STREAM + "first-stream", outcome);
+            when(resumableStreams.resume(userId, conversationId, "first-stream:0"))
+                    .thenReturn(Flux.error(new ResourceNotFoundException("Stream", "first-stream")));
+            when(resumableStreams.replay("first-stream", List.of("Hi")))
+                    .thenReturn(Flux.just(ServerSentEvent.builder("Hi").build()));
+
+            List<ServerSentEvent<String>> events = submissions.stream(conversationId, userId, "retry-1", () -> {
+                throw new AssertionError("Retry must not generate again");
+            }).collectList().block(Duration.ofSeconds(5));
+
+            assertThat(events).extracting(ServerSentEvent::data).containsExactly("Hi");
+        }
+    }
+
+    private static MessageDTO message() {
+        return MessageDTO.builder()
+                .id(UUID.randomUUID())
+                .role("USER")
+                .type("TEXT")
+                .content("Are you there?")
+                .createdAt(LocalDateTime.of(2025, 5, 1, 12, 0))
+                .build();
+    }
+}
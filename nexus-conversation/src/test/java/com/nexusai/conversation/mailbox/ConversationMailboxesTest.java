@@ -0,0 +1,135 @@
+package com.nexusai.conversation.mailbox;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("ConversationMailboxes Tests")
+class ConversationMailboxesTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID conversationId = UUID.randomUUID();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private ConversationMailboxes mailboxes;
+
+    @BeforeEach
+    void setUp() {
+        mailboxes = new ConversationMailboxes(meterRegistry, Duration.ofMinutes(2));
+    }
+
+    @Test
+    @DisplayName("Should start a generation only once the previous one of its conversation is done")
+    void shouldSerializeConversation() {
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        Sinks.Many<String> second = Sinks.many().unicast().onBackpressureBuffer();
+
+        mailboxes.enqueue(conversationId, generation("first", first)).subscribe(events::add);
+        mailboxes.enqueue(conversationId, generation("second", second)).subscribe(events::add);
+        first.tryEmitNext("a");
+        second.tryEmitNext("x");
+
+        assertThat(events).containsExactly("start first", "a");
+        assertThat(meterRegistry.get("nexusai.conversation.mailbox.depth").gauge().value()).isEqualTo(1);
+
+        first.tryEmitComplete();
+
+        assertThat(events).containsExactly("start first", "a", "start second", "x");
+        assertThat(mailboxes.depth(conversationId)).isEqualTo(1);
+        assertThat(meterRegistry.get("nexusai.conversation.mailbox.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should run different conversations in parallel")
+    void shouldNotBlockOtherConversations() {
+        Sinks.Many<String> busy = Sinks.many().unicast().onBackpressureBuffer();
+
+        mailboxes.enqueue(conversationId, generation("busy", busy)).subscribe(events::add);
+        mailboxes.enqueue(UUID.randomUUID(), Flux.just("other")).subscribe(events::add);
+
+        assertThat(events).containsExactly("start busy", "other");
+        assertThat(meterRegistry.get("nexusai.conversation.mailbox.active").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep the order when a waiting generation is cancelled")
+    void shouldKeepOrderOnCancel() {
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+
+        mailboxes.enqueue(conversationId, generation("first", first)).subscribe(events::add);
+        Disposable second = mailboxes.enqueue(conversationId,
+                Flux.<String>empty().doOnSubscribe(s -> secondStarted.set(true))).subscribe();
+        mailboxes.enqueue(conversationId, Flux.just("third")).subscribe(events::add);
+
+        second.dispose();
+        assertThat(events).containsExactly("start first");
+
+        first.tryEmitComplete();
+        assertThat(events).containsExactly("start first", "third");
+        assertThat(secondStarted).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should start the next generation after a failure and drop idle mailboxes")
+    void shouldReleaseAfterFailure() {
+        mailboxes.enqueue(conversationId, Flux.<String>error(new IllegalStateException("model down")))
+                .subscribe(events::add, error -> events.add("failed"));
+        mailboxes.enqueue(conversationId, Flux.just("next")).subscribe(events::add);
+
+        assertThat(events).containsExactly("failed", "next");
+        assertThat(mailboxes.depth(conversationId)).isZero();
+        assertThat(meterRegistry.get("nexusai.conversation.mailbox.active").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not take a place in line before the generation is subscribed")
+    void shouldQueueOnSubscription() {
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+
+        Flux<String> assembled = mailboxes.enqueue(conversationId, generation("first", first));
+        mailboxes.enqueue(conversationId, Flux.just("second")).subscribe(events::add);
+
+        assertThat(events).containsExactly("second");
+        assertThat(mailboxes.depth(conversationId)).isZero();
+
+        assembled.subscribe(events::add);
+        assertThat(mailboxes.depth(conversationId)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should cancel a generation that holds its slot past the timeout and start the next one")
+    void shouldReleaseStuckGeneration() {
+        mailboxes = new ConversationMailboxes(meterRegistry, Duration.ofMillis(200));
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+        mailboxes.enqueue(conversationId, Flux.<String>never().doOnCancel(() -> cancelled.set(true)))
+                .subscribe(events::add, errors::add);
+        mailboxes.enqueue(conversationId, Flux.just("next")).doOnNext(events::add).blockLast(Duration.ofSeconds(5));
+
+        assertThat(events).containsExactly("next");
+        assertThat(cancelled).isTrue();
+        assertThat(errors).singleElement().isInstanceOf(TimeoutException.class);
+        // Released on the timer thread once the next generation's completion has propagated
+        await().atMost(Duration.ofSeconds(5)).until(() -> mailboxes.depth(conversationId) == 0);
+        assertThat(meterRegistry.get("nexusai.conversation.mailbox.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    private Flux<String> generation(String name, Sinks.Many<String> tokens) {
+        return tokens.asFlux().doOnSubscribe(subscription -> events.add("start " + name));
+    }
+}
@@ -0,0 +1,167 @@
+package com.nexusai.conversation.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("MemoryIndex Tests")
+@Slf4j
+class MemoryIndexTest {
+
+    private static final int DIMENSIONS = 128;
+
+    @TempDir
+    Path path;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID companionId = UUID.randomUUID();
+    private final List<MemoryIndex> indexes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        indexes.forEach(MemoryIndex::shutdown);
+    }
+
+    @Test
+    @DisplayName("Should find nearly the same neighbours as an exact scan, fast")
+    void shouldMatchExactSearch() {
+        MemoryIndex index = index();
+        Random random = new Random(42);
+        List<List<String>> topics = topics(random, 200, 40);
+        // 5k keeps the suite fast; -Dmemory.benchmark.size=100000 runs it at the target scale
+        int memories = Integer.getInteger("memory.benchmark.size", 5_000);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < memories; i++) {
+            index.add(userId, companionId, UUID.randomUUID(), sentence(random, topics, 8), 1.0, now);
+        }
+
+        int queries = 200;
+        int k = 10;
+        int found = 0;
+        long[] nanos = new long[queries];
+        for (int q = 0; q < queries; q++) {
+            String query = sentence(random, topics, 4);
+            // Hashed sentences tie often: any memory as close as the k-th exact one is a hit
+            List<RecalledMemory> exact = index.exactSearch(userId, companionId, query, k);
+            float kth = exact.get(exact.size() - 1).similarity();
+            long start = System.nanoTime();
+            List<RecalledMemory> approximate = index.search(userId, companionId, query, k);
+            nanos[q] = System.nanoTime() - start;
+            found += (int) approximate.stream().filter(memory -> memory.similarity() >= kth - 1e-6f).count();
+        }
+        Arrays.sort(nanos);
+
+        double recall = found / (double) (queries * k);
+        log.info("{} memories x {} dims: recall@{} {}, p50 {} us, p99 {} us", memories, DIMENSIONS, k,
+                recall, nanos[queries / 2] / 1_000, nanos[queries * 99 / 100] / 1_000);
+        // Ranking blends in importance and recency, which are equal here
+        assertThat(recall).isGreaterThan(0.9);
+    }
+
+    @Test
+    @DisplayName("Should rank an important memory above an equally similar one")
+    void shouldBlendImportance() {
+        MemoryIndex index = index();
+        long now = System.currentTimeMillis();
+        UUID minor = UUID.randomUUID();
+        UUID major = UUID.randomUUID();
+        index.add(userId, companionId, minor, "likes green tea in the morning", 0.1, now);
+        index.add(userId, companionId, major, "likes green tea in the morning", 0.9, now);
+        index.add(userId, companionId, UUID.randomUUID(), "has a cat called Pixel", 1.0, now);
+
+        List<RecalledMemory> recalled = index.search(userId, companionId, "green tea", 2);
+
+        assertThat(recalled).extracting(RecalledMemory::id).containsExactly(major, minor);
+    }
+
+    @Test
+    @DisplayName("Should keep memories across restarts, re-linking ones missing from the graph snapshot")
+    void shouldPersistAcrossRestarts() throws Exception {
+        MemoryIndex index = index();
+        long now = System.currentTimeMillis();
+        UUID cat = UUID.randomUUID();
+        index.add(userId, companionId, cat, "has a cat called Pixel", 1.0, now);
+        index.add(userId, companionId, UUID.randomUUID(), "works as a nurse at night", 1.0, now);
+        index.shutdown();
+        indexes.remove(index);
+
+        // A crash before the next checkpoint leaves the graph snapshot behind the slots
+        Files.delete(path.resolve(userId.toString()).resolve(companionId.toString()).resolve("graph.bin"));
+
+        MemoryIndex reopened = index();
+        assertThat(reopened.exists(userId, companionId)).isTrue();
+        assertThat(reopened.size(userId, companionId)).isEqualTo(2);
+        assertThat(reopened.search(userId, companionId, "what is the cat's name", 1))
+                .singleElement()
+                .satisfies(memory -> {
+                    assertThat(memory.id()).isEqualTo(cat);
+                    assertThat(memory.content()).isEqualTo("has a cat called Pixel");
+                });
+    }
+
+    @Test
+    @DisplayName("Should not return deleted memories")
+    void shouldSkipDeletedMemories() {
+        MemoryIndex index = index();
+        UUID forgotten = UUID.randomUUID();
+        index.add(userId, companionId, forgotten, "lives in Lyon", 1.0, System.currentTimeMillis());
+        index.add(userId, companionId, UUID.randomUUID(), "plays the violin", 1.0, System.currentTimeMillis());
+
+        index.delete(userId, companionId, forgotten);
+
+        assertThat(index.search(userId, companionId, "lives in Lyon", 5))
+                .extracting(RecalledMemory::id)
+                .doesNotContain(forgotten);
+    }
+
+    private MemoryIndex index() {
+        MemoryIndex index = new MemoryIndex(new HashingMemoryEmbedder(DIMENSIONS), path,
+                16, 100, 64, 4, 0.7, 0.2, 0.1, Duration.ofDays(30), 16, Duration.ofHours(1));
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Words grouped by topic, so memories cluster the way real ones do.
+     */
+    private static List<List<String>> topics(Random random, int topics, int words) {
+        List<List<String>> vocabulary = new ArrayList<>(topics);
+        for (int t = 0; t < topics; t++) {
+            List<String> topic = new ArrayList<>(words);
+            for (int i = 0; i < words; i++) {
+                StringBuilder word = new StringBuilder();
+                int length = 3 + random.nextInt(6);
+                for (int c = 0; c < length; c++) {
+                    word.append((char) ('a' + random.nextInt(26)));
+                }
+                topic.add(word.toString());
+            }
+            vocabulary.add(topic);
+        }
+        return vocabulary;
+    }
+
+    private static String sentence(Random random, List<List<String>> topics, int words) {
+        List<String> topic = topics.get(random.nextInt(topics.size()));
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            // Mostly on topic, with the odd word from elsewhere
+            List<String> from = random.nextInt(4) == 0 ? topics.get(random.nextInt(topics.size())) : topic;
+            sentence.append(from.get(random.nextInt(from.size()))).append(' ');
+        }
+        return sentence.toString();
+    }
+}
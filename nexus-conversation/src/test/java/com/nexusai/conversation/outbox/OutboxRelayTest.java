@@ -0,0 +1,232 @@
+package com.nexusai.conversation.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nexusai.conversation.event.ConversationArchivedEvent;
+import com.nexusai.conversation.event.MessageCreatedEvent;
+import com.nexusai.conversation.outbox.OutboxRelay.OutboxRow;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.enums.MessageRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Conversation outbox Tests")
+class OutboxRelayTest {
+
+    private static final String TOPIC = "conversation-events";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final UUID conversationA = UUID.randomUUID();
+    private final UUID conversationB = UUID.randomUUID();
+
+    @Nested
+    @DisplayName("Writer")
+    class WriterTests {
+
+        private ConversationOutbox outbox;
+
+        @BeforeEach
+        void setUp() {
+            outbox = new ConversationOutbox(jdbcTemplate, objectMapper);
+        }
+
+        @Test
+        @DisplayName("Should insert a message event keyed by its conversation")
+        void shouldInsertMessageEvent() throws Exception {
+            UUID userId = UUID.randomUUID();
+            Message message = Message.builder().conversationId(conversationA).role(MessageRole.USER).content("Hi").build();
+            message.setId(UUID.randomUUID());
+
+            outbox.onMessageCreated(new MessageCreatedEvent(message, userId));
+
+            ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+            verify(jdbcTemplate).update(startsWith("INSERT INTO conversation_outbox"),
+                    eq(conversationA), eq(ConversationOutbox.MESSAGE_CREATED), payload.capture());
+            JsonNode json = objectMapper.readTree(payload.getValue());
+            assertThat(json.get("type").asText()).isEqualTo("MessageCreated");
+            assertThat(json.get("messageId").asText()).isEqualTo(message.getId().toString());
+            assertThat(json.get("userId").asText()).isEqualTo(userId.toString());
+            assertThat(json.get("content").asText()).isEqualTo("Hi");
+            assertThat(json.hasNonNull("eventId")).isTrue();
+        }
+
+        @Test
+        @DisplayName("Should insert an archive event without message fields")
+        void shouldInsertArchiveEvent() throws Exception {
+            outbox.onConversationArchived(new ConversationArchivedEvent(conversationA, UUID.randomUUID()));
+
+            ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+            verify(jdbcTemplate).update(anyString(), eq(conversationA), eq(ConversationOutbox.CONVERSATION_ARCHIVED),
+                    payload.capture());
+            assertThat(objectMapper.readTree(payload.getValue()).has("messageId")).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Relay")
+    class RelayTests {
+
+        private OutboxRelay relay;
+
+        @BeforeEach
+        void setUp() {
+            relay = new OutboxRelay(jdbcTemplate, kafkaTemplate, new SimpleMeterRegistry(),
+                    TOPIC, 3, 20, Duration.ofSeconds(5), Duration.ofHours(1));
+        }
+
+        @Test
+        @DisplayName("Should send pending rows in order, keyed by conversation, and mark them published")
+        void shouldRelayInOrder() throws Exception {
+            pending(row(1, conversationA), row(2, conversationB), row(3, conversationA));
+            List<ProducerRecord<String, String>> sent = acknowledgeAll();
+
+            assertThat(relay.relayBatch()).isEqualTo(3);
+
+            assertThat(sent).extracting(ProducerRecord::key)
+                    .containsExactly(conversationA.toString(), conversationB.toString(), conversationA.toString());
+            assertThat(sent).extracting(ProducerRecord::topic).containsOnly(TOPIC);
+            assertThat(new String(sent.get(0).headers().lastHeader(OutboxRelay.EVENT_TYPE_HEADER).value()))
+                    .isEqualTo("MessageCreated");
+            assertThat(publishedIds()).containsExactly(1L, 2L, 3L);
+        }
+
+        @Test
+        @DisplayName("Should only mark the acknowledged prefix when a send fails")
+        void shouldStopAtFirstFailure() throws Exception {
+            pending(row(1, conversationA), row(2, conversationB), row(3, conversationA));
+            when(kafkaTemplate.send(any(ProducerRecord.class)))
+                    .thenReturn(CompletableFuture.completedFuture(null))
+                    .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")))
+                    .thenReturn(CompletableFuture.completedFuture(null));
+
+            assertThat(relay.relayBatch()).isEqualTo(1);
+
+            // Row 3 was acknowledged but comes after the failure: it is sent again with row 2
+            assertThat(publishedIds()).containsExactly(1L);
+        }
+
+        @Test
+        @DisplayName("Should leave the outbox alone while another node relays")
+        void shouldSkipWhenLocked() throws Exception {
+            Connection connection = lock(false);
+
+            assertThat(relay.relay()).isZero();
+
+            verify(jdbcTemplate, never()).query(anyString(), any(RowMapper.class), any(Object[].class));
+            verifyNoInteractions(kafkaTemplate);
+            verify(connection.createStatement(), never()).executeQuery(contains("pg_advisory_unlock"));
+        }
+
+        @Test
+        @DisplayName("Should drain full batches under the lock, then release it")
+        @SuppressWarnings("unchecked")
+        void shouldDrainUnderLock() throws Exception {
+            Connection connection = lock(true);
+            when(jdbcTemplate.query(startsWith("SELECT id, aggregate_id"), any(RowMapper.class), eq(3)))
+                    .thenReturn(List.of(row(1, conversationA), row(2, conversationB), row(3, conversationA)))
+                    .thenReturn(List.of(row(4, conversationB)));
+            acknowledgeAll();
+
+            assertThat(relay.relay()).isEqualTo(4);
+
+            verify(jdbcTemplate, times(2)).query(anyString(), any(RowMapper.class), eq(3));
+            verify(connection.createStatement()).executeQuery(contains("pg_advisory_unlock"));
+        }
+
+        @Test
+        @DisplayName("Should delete published rows in chunks until none are left")
+        void shouldCompactInChunks() {
+            when(jdbcTemplate.update(startsWith("DELETE FROM conversation_outbox"), any(), eq(3))).thenReturn(3, 3, 1);
+
+            assertThat(relay.compact()).isEqualTo(7);
+            // The cutoff is computed by the database, against the clock that stamps published_at
+            verify(jdbcTemplate, times(3)).update(contains("published_at < CURRENT_TIMESTAMP - ? * INTERVAL '1 second'"),
+                    eq(3600L), eq(3));
+        }
+
+        /**
+         * Runs the relay's connection callback on a connection whose lock
+         * attempt returns {@code acquired}.
+         */
+        @SuppressWarnings("unchecked")
+        private Connection lock(boolean acquired) throws Exception {
+            Connection connection = mock(Connection.class);
+            Statement statement = mock(Statement.class);
+            ResultSet result = mock(ResultSet.class);
+            when(connection.createStatement()).thenReturn(statement);
+            when(statement.executeQuery(anyString())).thenReturn(result);
+            when(result.next()).thenReturn(true);
+            when(result.getBoolean(1)).thenReturn(acquired);
+            when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                    .thenAnswer(invocation -> invocation.<ConnectionCallback<Integer>>getArgument(0).doInConnection(connection));
+            return connection;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void pending(OutboxRow... rows) {
+            when(jdbcTemplate.query(startsWith("SELECT id, aggregate_id"), any(RowMapper.class), eq(3)))
+                    .thenReturn(List.of(rows));
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<ProducerRecord<String, String>> acknowledgeAll() {
+            List<ProducerRecord<String, String>> sent = new ArrayList<>();
+            when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+                sent.add(invocation.getArgument(0));
+                return CompletableFuture.<SendResult<String, String>>completedFuture(null);
+            });
+            return sent;
+        }
+
+        private List<Object> publishedIds() throws Exception {
+            ArgumentCaptor<PreparedStatementCreator> update = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+            verify(jdbcTemplate).update(update.capture());
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+            ArgumentCaptor<Object[]> ids = ArgumentCaptor.forClass(Object[].class);
+            update.getValue().createPreparedStatement(connection);
+            verify(connection).createArrayOf(eq("bigint"), ids.capture());
+            return List.of(ids.getValue());
+        }
+
+        private OutboxRow row(long id, UUID conversationId) {
+            return new OutboxRow(id, conversationId, ConversationOutbox.MESSAGE_CREATED, "{\"type\":\"MessageCreated\"}");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nexusai.conversation.partition;
+
+import com.nexusai.conversation.archive.MessageArchive;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessagePartitionMaintainer Tests")
+class MessagePartitionMaintainerTest {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private MessageArchive messageArchive;
+
+    private final YearMonth expiredMonth = YearMonth.now(ZoneOffset.UTC).minusMonths(13);
+    private final String expired = "messages_" + expiredMonth.format(SUFFIX);
+    private final String kept = "messages_" + YearMonth.now(ZoneOffset.UTC).format(SUFFIX);
+
+    @Test
+    @DisplayName("Should archive an expired month and detach its partition once empty")
+    void shouldArchiveThenDetach() {
+        UUID conversationId = UUID.randomUUID();
+        MessagePartitionMaintainer maintainer = new MessagePartitionMaintainer(jdbcTemplate, messageArchive, true, 3, 12);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of(expired, kept));
+        when(jdbcTemplate.queryForList("SELECT DISTINCT conversation_id FROM " + expired, UUID.class))
+                .thenReturn(List.of(conversationId));
+        when(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + expired + ")", Boolean.class)).thenReturn(false);
+
+        assertThat(maintainer.detachExpired()).containsExactly(expired);
+
+        verify(messageArchive).archive(conversationId, expiredMonth.plusMonths(1).atDay(2).atStartOfDay());
+        verify(jdbcTemplate).execute("ALTER TABLE messages DETACH PARTITION " + expired + " CONCURRENTLY");
+        verify(jdbcTemplate).execute("ALTER TABLE " + expired + " RENAME TO " + expired + "_detached");
+    }
+
+    @Test
+    @DisplayName("Should keep an expired partition that still holds unarchived messages")
+    void shouldKeepPartitionWithUnarchivedMessages() {
+        MessagePartitionMaintainer maintainer = new MessagePartitionMaintainer(jdbcTemplate, messageArchive, false, 3, 12);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of(expired, kept));
+        when(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + expired + ")", Boolean.class)).thenReturn(true);
+
+        assertThat(maintainer.detachExpired()).isEmpty();
+
+        verify(messageArchive, never()).archive(any(UUID.class), any(LocalDateTime.class));
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+}
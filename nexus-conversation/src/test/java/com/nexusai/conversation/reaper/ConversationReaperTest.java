@@ -0,0 +1,118 @@
+package com.nexusai.conversation.reaper;
+
+import com.nexusai.conversation.event.ConversationDeletedEvent;
+import com.nexusai.conversation.reaper.ConversationReaper.Cursor;
+import com.nexusai.conversation.service.ContextService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConversationReaper Tests")
+class ConversationReaperTest {
+
+    private static final int BATCH = 2;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ContextService contextService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID conversationId = UUID.randomUUID();
+    private ConversationReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        reaper = new ConversationReaper(jdbcTemplate, TransactionOperations.withoutTransaction(), contextService,
+                eventPublisher, meterRegistry, Duration.ofHours(1), BATCH, 10, 1.0, 20, Duration.ofMillis(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        reaper.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should delete messages in keyset batches, then the conversation and its context")
+    @SuppressWarnings("unchecked")
+    void shouldReapInBatches() throws Exception {
+        activeQueries(1);
+        lock(true);
+        Cursor first = new Cursor(LocalDateTime.of(2026, 3, 2, 10, 0), UUID.randomUUID(), 2);
+        Cursor second = new Cursor(LocalDateTime.of(2026, 3, 1, 9, 0), UUID.randomUUID(), 1);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(conversationId), eq(BATCH)))
+                .thenReturn(List.of(first));
+        Timestamp firstAt = Timestamp.valueOf(first.createdAt());
+        Timestamp secondAt = Timestamp.valueOf(second.createdAt());
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(conversationId), eq(firstAt), eq(firstAt),
+                eq(first.id()), eq(BATCH))).thenReturn(List.of(second));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(conversationId), eq(secondAt), eq(secondAt),
+                eq(second.id()), eq(BATCH))).thenReturn(List.of());
+
+        assertThat(reaper.reap(conversationId)).isTrue();
+
+        verify(jdbcTemplate).update("DELETE FROM conversation_context WHERE conversation_id = ?", conversationId);
+        verify(jdbcTemplate).update("DELETE FROM conversations WHERE id = ? AND status = 'DELETED'", conversationId);
+        verify(contextService).clearContext(conversationId);
+        verify(eventPublisher).publishEvent(new ConversationDeletedEvent(conversationId));
+        assertThat(meterRegistry.get("nexusai.conversation.reaper.deleted").tag("kind", "messages").counter().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should leave a conversation another node is reaping")
+    void shouldSkipLockedConversation() throws Exception {
+        activeQueries(1);
+        lock(false);
+
+        assertThat(reaper.reap(conversationId)).isFalse();
+
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verifyNoInteractions(contextService, eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Should postpone the work while the database is busy")
+    void shouldBackOffWhenBusy() throws Exception {
+        activeQueries(50);
+
+        assertThat(reaper.reap(conversationId)).isFalse();
+
+        verify(jdbcTemplate, never()).queryForObject(contains("pg_try_advisory"), eq(Boolean.class), any(Object[].class));
+        assertThat(meterRegistry.get("nexusai.conversation.reaper.throttled").counter().count()).isPositive();
+        verifyNoInteractions(contextService, eventPublisher);
+    }
+
+    private void activeQueries(int count) {
+        when(jdbcTemplate.queryForObject(contains("pg_stat_activity"), eq(Integer.class))).thenReturn(count);
+    }
+
+    private void lock(boolean acquired) {
+        when(jdbcTemplate.queryForObject(contains("pg_try_advisory"), eq(Boolean.class), eq(conversationId)))
+                .thenReturn(acquired);
+    }
+}
@@ -0,0 +1,103 @@
+package com.nexusai.conversation.search;
+
+import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.dto.MessageSearchResultDTO;
+import com.nexusai.core.repository.MessageRepository;
+import com.nexusai.core.repository.MessageSearchRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageSearchService Tests")
+class MessageSearchServiceTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @InjectMocks
+    private MessageSearchService messageSearchService;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = UUID.randomUUID();
+    }
+
+    private MessageSearchRow row(double rank, String snippet) {
+        UUID id = UUID.randomUUID();
+        UUID conversationId = UUID.randomUUID();
+        LocalDateTime createdAt = LocalDateTime.now();
+        return new MessageSearchRow() {
+            public UUID getId() { return id; }
+            public UUID getConversationId() { return conversationId; }
+            public String getRole() { return "USER"; }
+            public LocalDateTime getCreatedAt() { return createdAt; }
+            public Double getRank() { return rank; }
+            public String getSnippet() { return snippet; }
+        };
+    }
+
+    @Test
+    @DisplayName("Should escape content and mark matched terms")
+    void shouldEscapeAndHighlight() {
+        assertThat(MessageSearchService.highlight("<b>I love \u0002hiking\u0003</b>"))
+                .isEqualTo("&lt;b&gt;I love <mark>hiking</mark>&lt;/b&gt;");
+    }
+
+    @Test
+    @DisplayName("Should page with a cursor on rank and id")
+    void shouldPageWithCursor() {
+        MessageSearchRow first = row(0.9, "a");
+        MessageSearchRow second = row(0.5, "b");
+        when(messageRepository.searchForUser(eq(userId), eq("hiking"), isNull(), isNull(), anyString(), eq(2)))
+                .thenReturn(List.of(first, second));
+
+        MessageSearchResultDTO page = messageSearchService.search(userId, " hiking ", null, 1);
+
+        assertThat(page.getHits()).hasSize(1);
+        assertThat(page.isHasNext()).isTrue();
+
+        MessageSearchService.SearchCursor cursor = MessageSearchService.SearchCursor.decode(page.getNextCursor());
+        assertThat(cursor.rank()).isEqualTo(0.9);
+        assertThat(cursor.id()).isEqualTo(first.getId());
+    }
+
+    @Test
+    @DisplayName("Should reject empty queries")
+    void shouldRejectEmptyQuery() {
+        assertThatThrownBy(() -> messageSearchService.search(userId, "  ", null, 20))
+                .isInstanceOf(ValidationException.class);
+
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    @DisplayName("Should leave soft-deleted conversations out of search and index rebuilds")
+    void shouldExcludeSoftDeletedConversations() throws NoSuchMethodException {
+        // Both are PostgreSQL-specific, so the predicates are checked on the queries themselves
+        Query search = MessageRepository.class.getMethod("searchForUser", UUID.class, String.class,
+                Double.class, UUID.class, String.class, int.class).getAnnotation(Query.class);
+        Query rebuild = MessageRepository.class.getMethod("findIndexableAfter", UUID.class, int.class)
+                .getAnnotation(Query.class);
+
+        assertThat(search.value()).contains("c.status <> 'DELETED'");
+        assertThat(rebuild.value()).contains("c.status <> com.nexusai.core.enums.ConversationStatus.DELETED");
+    }
+}
@@ -0,0 +1,195 @@
+package com.nexusai.conversation.search.lucene;
+
+import com.nexusai.conversation.event.ConversationSoftDeletedEvent;
+import com.nexusai.conversation.event.MessagesArchivedEvent;
+import com.nexusai.core.repository.MessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DisplayName("LuceneMessageIndex Tests")
+class LuceneMessageIndexTest {
+
+    @TempDir
+    Path indexPath;
+
+    private LuceneMessageIndex index;
+    private final UUID userId = UUID.randomUUID();
+    private final UUID conversationId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new LuceneMessageIndex(indexPath, 4, Duration.ofHours(1), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    @Test
+    @DisplayName("Should match English and French inflections")
+    void shouldMatchStemmedTerms() {
+        UUID english = add(userId, conversationId, "We were running along the beach");
+        UUID french = add(userId, conversationId, "Nous avons mangé des pommes");
+        index.refresh();
+
+        assertThat(index.search(userId, conversationId, "run", 0, 10).messageIds()).containsExactly(english);
+        assertThat(index.search(userId, conversationId, "pomme", 0, 10).messageIds()).containsExactly(french);
+    }
+
+    @Test
+    @DisplayName("Should only return the requesting user's messages in the conversation")
+    void shouldIsolateUsersAndConversations() {
+        UUID own = add(userId, conversationId, "secret garden");
+        add(UUID.randomUUID(), conversationId, "secret garden");
+        add(userId, UUID.randomUUID(), "secret garden");
+        index.refresh();
+
+        LuceneMessageIndex.SearchPage page = index.search(userId, conversationId, "garden", 0, 10);
+
+        assertThat(page.messageIds()).containsExactly(own);
+        assertThat(page.total()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reflect edits and deletions after refresh")
+    void shouldApplyEditsAndDeletes() {
+        UUID messageId = add(userId, conversationId, "blue whale");
+        index.refresh();
+
+        index.index(userId, messageId, conversationId, "green turtle", LocalDateTime.now());
+        index.refresh();
+        assertThat(index.search(userId, conversationId, "whale", 0, 10).messageIds()).isEmpty();
+        assertThat(index.search(userId, conversationId, "turtle", 0, 10).messageIds()).containsExactly(messageId);
+
+        index.delete(userId, messageId);
+        index.refresh();
+        assertThat(index.search(userId, conversationId, "turtle", 0, 10).total()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should drop every document of a deleted conversation, with or without its owner")
+    void shouldDeleteConversation() {
+        UUID otherConversation = UUID.randomUUID();
+        add(userId, conversationId, "mountain trail");
+        UUID kept = add(userId, otherConversation, "mountain trail");
+        index.refresh();
+
+        index.deleteConversation(userId, conversationId);
+        index.refresh();
+        assertThat(index.search(userId, conversationId, "mountain", 0, 10).total()).isZero();
+        assertThat(index.search(userId, otherConversation, "mountain", 0, 10).messageIds()).containsExactly(kept);
+
+        index.deleteConversation(null, otherConversation);
+        index.refresh();
+        assertThat(index.search(userId, otherConversation, "mountain", 0, 10).total()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should hide a conversation from searches as soon as it is soft-deleted")
+    void shouldHideSoftDeletedConversation() throws InterruptedException {
+        LuceneMessageIndexer indexer = new LuceneMessageIndexer(index, mock(MessageRepository.class), 10, 10);
+        add(userId, conversationId, "hidden lake");
+        index.refresh();
+
+        indexer.onConversationSoftDeleted(new ConversationSoftDeletedEvent(conversationId, userId));
+        indexer.shutdown();
+        index.refresh();
+
+        assertThat(index.search(userId, conversationId, "lake", 0, 10).total()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should serve the old generation during a rebuild and swap in the new one, changes included")
+    void shouldSwapRebuiltGeneration() throws IOException {
+        UUID stale = add(userId, conversationId, "orange sunset");
+        index.refresh();
+
+        UUID rebuilt = UUID.randomUUID();
+        UUID meanwhile;
+        try (LuceneMessageIndex.Rebuild rebuild = index.rebuild()) {
+            rebuild.index(userId, rebuilt, conversationId, "orange sunrise", LocalDateTime.now());
+            meanwhile = add(userId, conversationId, "orange moon");
+            index.refresh();
+            assertThat(index.search(userId, conversationId, "orange", 0, 10).messageIds())
+                    .containsExactlyInAnyOrder(stale, meanwhile);
+
+            rebuild.commit();
+        }
+
+        assertThat(index.search(userId, conversationId, "orange", 0, 10).messageIds())
+                .containsExactlyInAnyOrder(rebuilt, meanwhile);
+
+        index.close();
+        index = new LuceneMessageIndex(indexPath, 4, Duration.ofHours(1), Duration.ofHours(1));
+        assertThat(index.search(userId, conversationId, "orange", 0, 10).messageIds())
+                .containsExactlyInAnyOrder(rebuilt, meanwhile);
+    }
+
+    @Test
+    @DisplayName("Should keep the current generation when a rebuild is abandoned")
+    void shouldDiscardAbandonedRebuild() throws IOException {
+        UUID kept = add(userId, conversationId, "silver river");
+        index.refresh();
+
+        try (LuceneMessageIndex.Rebuild rebuild = index.rebuild()) {
+            rebuild.index(userId, UUID.randomUUID(), conversationId, "silver stream", LocalDateTime.now());
+        }
+        index.refresh();
+
+        assertThat(index.search(userId, conversationId, "silver", 0, 10).messageIds()).containsExactly(kept);
+        try (var entries = Files.list(indexPath)) {
+            assertThat(entries.map(entry -> entry.getFileName().toString()))
+                    .noneMatch(name -> name.startsWith(LuceneMessageIndex.GENERATION_PREFIX));
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop archived messages from the index")
+    void shouldDropArchivedMessages() throws InterruptedException {
+        LuceneMessageIndexer indexer = new LuceneMessageIndexer(index, mock(MessageRepository.class), 10, 10);
+        UUID archived = add(userId, conversationId, "old harbour");
+        UUID kept = add(userId, conversationId, "new harbour");
+        index.refresh();
+
+        indexer.onMessagesArchived(new MessagesArchivedEvent(conversationId, List.of(archived)));
+        indexer.shutdown();
+        index.refresh();
+
+        assertThat(index.search(userId, conversationId, "harbour", 0, 10).messageIds()).containsExactly(kept);
+    }
+
+    @Test
+    @DisplayName("Should page through hits and report the total")
+    void shouldPageHits() {
+        for (int i = 0; i < 5; i++) {
+            add(userId, conversationId, "weather report " + i);
+        }
+        index.refresh();
+
+        LuceneMessageIndex.SearchPage page = index.search(userId, conversationId, "weather", 4, 2);
+
+        assertThat(page.messageIds()).hasSize(1);
+        assertThat(page.total()).isEqualTo(5);
+    }
+
+    private UUID add(UUID owner, UUID conversation, String content) {
+        UUID messageId = UUID.randomUUID();
+        index.index(owner, messageId, conversation, content, LocalDateTime.now());
+        return messageId;
+    }
+}
@@ -0,0 +1,178 @@
+package com.nexusai.conversation.service;
+
+import com.nexusai.conversation.memory.HashingMemoryEmbedder;
+import com.nexusai.conversation.memory.MemoryIndex;
+import com.nexusai.conversation.memory.MemoryRemovals;
+import com.nexusai.conversation.memory.RecalledMemory;
+import com.nexusai.core.entity.UserCompanionMemory;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.UserCompanionMemoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CompanionMemoryService Tests")
+class CompanionMemoryServiceTest {
+
+    @TempDir
+    Path path;
+
+    @Mock
+    private UserCompanionMemoryRepository memoryRepository;
+
+    @Mock
+    private CompanionRepository companionRepository;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    private MemoryIndex memoryIndex;
+    private MemoryRemovals memoryRemovals;
+    private CompanionMemoryService memoryService;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID companionId = UUID.randomUUID();
+    private final AtomicLong ticker = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        memoryIndex = index(path.resolve("node-a"));
+        memoryRemovals = new MemoryRemovals(memoryIndex, redisTemplate);
+        memoryService = new CompanionMemoryService(memoryRepository, companionRepository, memoryIndex,
+                memoryRemovals, mock(TransactionTemplate.class), 100, Duration.ofMinutes(1), ticker::get);
+    }
+
+    @Nested
+    @DisplayName("Reconciliation Tests")
+    class ReconciliationTests {
+
+        @Test
+        @DisplayName("Should drop index entries whose row is gone and index the missing ones")
+        void shouldReconcileOnSizeMismatch() {
+            UserCompanionMemory kept = memory("has a cat called Pixel");
+            UserCompanionMemory added = memory("works as a nurse at night");
+            UUID removed = UUID.randomUUID();
+            add(kept);
+            memoryIndex.add(userId, companionId, removed, "lives in Lyon", 1.0, System.currentTimeMillis());
+            memoryIndex.add(userId, companionId, UUID.randomUUID(), "plays the violin", 1.0, System.currentTimeMillis());
+            stubTable(kept, added);
+
+            memoryService.warm(userId, companionId);
+
+            assertThat(memoryIndex.ids(userId, companionId)).containsExactlyInAnyOrder(kept.getId(), added.getId());
+        }
+
+        @Test
+        @DisplayName("Should never recall a memory whose row is gone, even with matching sizes")
+        void shouldFilterRecalledMemoriesAgainstTable() {
+            UserCompanionMemory kept = memory("likes green tea in the morning");
+            UUID removed = UUID.randomUUID();
+            add(kept);
+            memoryIndex.add(userId, companionId, removed, "likes green tea at night", 1.0, System.currentTimeMillis());
+            when(memoryRepository.countByUserIdAndCompanionId(userId, companionId)).thenReturn(2L);
+            when(memoryRepository.findExistingIds(anyCollection())).thenReturn(List.of(kept.getId()));
+
+            List<RecalledMemory> recalled = memoryService.retrieve(userId, companionId, "green tea", 5);
+
+            assertThat(recalled).extracting(RecalledMemory::id).containsExactly(kept.getId());
+            assertThat(memoryIndex.contains(userId, companionId, removed)).isFalse();
+        }
+
+        @Test
+        @DisplayName("Should index a memory added on another node once the pair is checked again")
+        void shouldPickUpRemoteAddition() {
+            UserCompanionMemory added = memory("grows tomatoes on the balcony");
+            when(memoryRepository.countByUserIdAndCompanionId(userId, companionId)).thenReturn(0L);
+            assertThat(memoryService.retrieve(userId, companionId, "tomatoes", 5)).isEmpty();
+            stubTable(added);
+            when(memoryRepository.findExistingIds(anyCollection())).thenReturn(List.of(added.getId()));
+
+            ticker.set(Duration.ofSeconds(59).toNanos());
+            assertThat(memoryService.retrieve(userId, companionId, "tomatoes", 5)).isEmpty();
+            ticker.set(Duration.ofMinutes(1).toNanos());
+
+            assertThat(memoryService.retrieve(userId, companionId, "tomatoes", 5))
+                    .extracting(RecalledMemory::id).containsExactly(added.getId());
+        }
+    }
+
+    @Nested
+    @DisplayName("Forget Tests")
+    class ForgetTests {
+
+        @Test
+        @DisplayName("Should remove a forgotten memory from the index of every node")
+        void shouldBroadcastRemoval() {
+            UserCompanionMemory memory = memory("lives in Lyon");
+            add(memory);
+            MemoryIndex otherIndex = index(path.resolve("node-b"));
+            otherIndex.add(userId, companionId, memory.getId(), memory.getContent(), 1.0, System.currentTimeMillis());
+            MemoryRemovals otherNode = new MemoryRemovals(otherIndex, redisTemplate);
+            when(memoryRepository.findById(memory.getId())).thenReturn(Optional.of(memory));
+
+            memoryService.forget(userId, companionId, memory.getId());
+
+            ArgumentCaptor<String> broadcast = ArgumentCaptor.forClass(String.class);
+            verify(redisTemplate).convertAndSend(eq(MemoryRemovals.CHANNEL), broadcast.capture());
+            assertThat(memoryIndex.contains(userId, companionId, memory.getId())).isFalse();
+            assertThat(otherIndex.contains(userId, companionId, memory.getId())).isTrue();
+
+            otherNode.onMessage(new DefaultMessage(MemoryRemovals.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    broadcast.getValue().getBytes(StandardCharsets.UTF_8)), null);
+
+            assertThat(otherIndex.contains(userId, companionId, memory.getId())).isFalse();
+        }
+    }
+
+    private MemoryIndex index(Path directory) {
+        return new MemoryIndex(new HashingMemoryEmbedder(64), directory,
+                16, 100, 64, 4, 0.7, 0.2, 0.1, Duration.ofDays(30), 16, Duration.ofHours(1));
+    }
+
+    private UserCompanionMemory memory(String content) {
+        UserCompanionMemory memory = UserCompanionMemory.builder()
+                .userId(userId)
+                .companionId(companionId)
+                .memoryType("FACT")
+                .content(content)
+                .build();
+        memory.setId(UUID.randomUUID());
+        return memory;
+    }
+
+    private void add(UserCompanionMemory memory) {
+        memoryIndex.add(userId, companionId, memory.getId(), memory.getContent(), 1.0, System.currentTimeMillis());
+    }
+
+    private void stubTable(UserCompanionMemory... memories) {
+        when(memoryRepository.countByUserIdAndCompanionId(userId, companionId)).thenReturn((long) memories.length);
+        when(memoryRepository.findByUserIdAndCompanionIdOrderByCreatedAtAsc(eq(userId), eq(companionId), any(Pageable.class)))
+                .thenAnswer(invocation -> new SliceImpl<>(List.of(memories), invocation.getArgument(2), false));
+    }
+}
@@ -0,0 +1,109 @@
+package com.nexusai.conversation.service;
+
+import com.nexusai.conversation.archive.MessageArchive;
+import com.nexusai.conversation.cache.HotEntityCache;
+import com.nexusai.conversation.dto.ConversationDTO;
+import com.nexusai.conversation.search.MessageSearchBackend;
+import com.nexusai.core.entity.Companion;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.enums.ConversationStatus;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+/**
+ * Counts repository round trips for one page of the conversation list. Resolving
+ * each row's companion with its own findById used to cost 1 + page size queries.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConversationService query count")
+class ConversationServiceQueryCountTest {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int COMPANIONS = 5;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private CompanionRepository companionRepository;
+
+
+    @Mock
+    private MessageSearchBackend messageSearchBackend;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MessageArchive messageArchive;
+
+    @Test
+    @DisplayName("Should resolve a page's companions in one query, none once cached")
+    void shouldResolveCompanionsInOneBatch() {
+        UUID userId = UUID.randomUUID();
+        Pageable pageable = PageRequest.of(0, PAGE_SIZE);
+        List<Companion> companions = new ArrayList<>();
+        for (int i = 0; i < COMPANIONS; i++) {
+            Companion companion = Companion.builder().userId(userId).name("Companion " + i).build();
+            companion.setId(UUID.randomUUID());
+            companions.add(companion);
+        }
+        List<Conversation> conversations = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            conversations.add(Conversation.builder()
+                    .userId(userId)
+                    .companionId(companions.get(i % COMPANIONS).getId())
+                    .title("Chat " + i)
+                    .status(ConversationStatus.ACTIVE)
+                    .build());
+        }
+        when(conversationRepository.findByUserIdAndStatusOrderByLastActivityAtDesc(
+                userId, ConversationStatus.ACTIVE, pageable))
+                .thenReturn(new PageImpl<>(conversations, pageable, PAGE_SIZE));
+        when(companionRepository.findAllById(anyIterable())).thenReturn(companions);
+
+        ConversationService service = new ConversationService(conversationRepository, messageRepository,
+                companionRepository, messageSearchBackend,
+                new HotEntityCache(conversationRepository, companionRepository, 1_000, Duration.ofMinutes(10)),
+                eventPublisher, messageArchive);
+
+        Page<ConversationDTO> cold = service.getUserConversations(userId, pageable);
+        int coldQueries = queries();
+        service.getUserConversations(userId, pageable);
+        int warmQueries = queries() - coldQueries;
+
+        assertThat(cold.getContent()).hasSize(PAGE_SIZE)
+                .allSatisfy(dto -> assertThat(dto.getCompanionName()).startsWith("Companion "));
+        assertThat(coldQueries).isEqualTo(2);
+        assertThat(warmQueries).isEqualTo(1);
+        verify(companionRepository, never()).findById(any());
+    }
+
+    private int queries() {
+        return mockingDetails(conversationRepository).getInvocations().size()
+                + mockingDetails(companionRepository).getInvocations().size();
+    }
+}
@@ -2,12 +2,20 @@ package com.nexusai.conversation.service;
 
 import com.nexusai.commons.exception.ResourceNotFoundException;
 import com.nexusai.commons.exception.ValidationException;
+import com.nexusai.conversation.archive.MessageArchive;
+import com.nexusai.conversation.cache.HotEntityCache;
 import com.nexusai.conversation.dto.ConversationDTO;
 import com.nexusai.conversation.dto.CreateConversationRequest;
+import com.nexusai.conversation.dto.MessageCursor;
 import com.nexusai.conversation.dto.MessageDTO;
+import com.nexusai.conversation.dto.MessageSliceDTO;
+import com.nexusai.conversation.event.ConversationChangedEvent;
+import com.nexusai.conversation.event.ConversationSoftDeletedEvent;
+import com.nexusai.conversation.search.MessageSearchBackend;
 import com.nexusai.core.entity.Companion;
 import com.nexusai.core.entity.Conversation;
 import com.nexusai.core.entity.Message;
+import com.nexusai.core.entity.MessageArchiveSegment;
 import com.nexusai.core.enums.ConversationStatus;
 import com.nexusai.core.enums.MessageRole;
 import com.nexusai.core.enums.MessageType;
@@ -20,18 +28,20 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.*;
@@ -52,10 +62,16 @@ class ConversationServiceTest {
     @Mock
     private CompanionRepository companionRepository;
 
+
+    @Mock
+    private MessageSearchBackend messageSearchBackend;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
-    private ContextService contextService;
+    private MessageArchive messageArchive;
 
-    @InjectMocks
     private ConversationService conversationService;
 
     private UUID userId;
@@ -76,6 +92,7 @@ class ConversationServiceTest {
                 .name("Test Companion")
                 .avatarUrl("https://example.com/avatar.png")
                 .build();
+        testCompanion.setId(companionId);
 
         testConversation = Conversation.builder()
                // .id(conversationId)
@@ -87,6 +104,11 @@ class ConversationServiceTest {
                 .totalTokens(500L)
                 .lastActivityAt(LocalDateTime.now())
                 .build();
+
+        HotEntityCache hotEntityCache = new HotEntityCache(conversationRepository, companionRepository,
+                100, Duration.ofMinutes(10));
+        conversationService = new ConversationService(conversationRepository, messageRepository, companionRepository,
+                messageSearchBackend, hotEntityCache, eventPublisher, messageArchive);
     }
 
     @Nested
@@ -167,7 +189,7 @@ class ConversationServiceTest {
 
             when(conversationRepository.findByUserIdAndStatusOrderByLastActivityAtDesc(userId, ConversationStatus.ACTIVE, pageable))
                     .thenReturn(conversationPage);
-            when(companionRepository.findById(companionId)).thenReturn(Optional.of(testCompanion));
+            when(companionRepository.findAllById(Set.of(companionId))).thenReturn(List.of(testCompanion));
 
             Page<ConversationDTO> result = conversationService.getUserConversations(userId, pageable);
 
@@ -200,7 +222,7 @@ class ConversationServiceTest {
         void shouldReturnConversationWhenFound() {
             when(conversationRepository.findByIdAndUserId(conversationId, userId))
                     .thenReturn(Optional.of(testConversation));
-            when(companionRepository.findById(companionId)).thenReturn(Optional.of(testCompanion));
+            when(companionRepository.findAllById(Set.of(companionId))).thenReturn(List.of(testCompanion));
 
             ConversationDTO result = conversationService.getConversation(conversationId, userId);
 
@@ -259,6 +281,90 @@ class ConversationServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("MessageHistory Tests")
+    class MessageHistoryTests {
+
+        private Message message(LocalDateTime createdAt) {
+            Message message = Message.builder()
+                    .conversationId(conversationId)
+                    .role(MessageRole.USER)
+                    .type(MessageType.TEXT)
+                    .content("m")
+                    .build();
+            message.setId(UUID.randomUUID());
+            message.setCreatedAt(createdAt);
+            return message;
+        }
+
+        @Test
+        @DisplayName("Should return a cursor when older messages exist")
+        void shouldReturnCursorWhenMoreExist() {
+            LocalDateTime now = LocalDateTime.of(2026, 5, 1, 12, 0, 0, 123_456_000);
+            List<Message> rows = List.of(message(now), message(now.minusSeconds(1)), message(now.minusSeconds(2)));
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(testConversation));
+            when(messageRepository.findLatest(conversationId, 3)).thenReturn(rows);
+
+            MessageSliceDTO result = conversationService.getMessagesBefore(conversationId, userId, null, 2);
+
+            assertThat(result.getContent()).hasSize(2);
+            assertThat(result.isHasNext()).isTrue();
+            MessageCursor cursor = MessageCursor.decode(result.getNextCursor());
+            assertThat(cursor.createdAt()).isEqualTo(rows.get(1).getCreatedAt());
+            assertThat(cursor.id()).isEqualTo(rows.get(1).getId());
+        }
+
+        @Test
+        @DisplayName("Should seek from the cursor without a next cursor on the last page")
+        void shouldSeekFromCursor() {
+            MessageCursor cursor = new MessageCursor(LocalDateTime.of(2026, 5, 1, 12, 0), UUID.randomUUID());
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(testConversation));
+            when(messageRepository.findBefore(conversationId, cursor.createdAt(), cursor.id(), 51))
+                    .thenReturn(List.of(message(cursor.createdAt().minusMinutes(1))));
+
+            MessageSliceDTO result = conversationService.getMessagesBefore(conversationId, userId, cursor.encode(), 50);
+
+            assertThat(result.getContent()).hasSize(1);
+            assertThat(result.isHasNext()).isFalse();
+            assertThat(result.getNextCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("Should continue a page into archived messages")
+        void shouldFallBackToArchive() {
+            LocalDateTime now = LocalDateTime.of(2026, 5, 1, 12, 0);
+            Pageable pageable = PageRequest.of(1, 3);
+            Message hot = message(now);
+            List<Message> archived = List.of(message(now.minusDays(100)), message(now.minusDays(101)));
+            List<MessageArchiveSegment> segments = List.of(MessageArchiveSegment.builder()
+                    .conversationId(conversationId).objectKey("k").messageCount(10).build());
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(testConversation));
+            when(messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable))
+                    .thenReturn(new PageImpl<>(List.of(hot), pageable, 4));
+            when(messageArchive.segments(conversationId)).thenReturn(segments);
+            when(messageArchive.read(segments, 0, 2)).thenReturn(archived);
+
+            Page<MessageDTO> result = conversationService.getMessagesPaginated(conversationId, userId, pageable);
+
+            assertThat(result.getContent()).extracting(MessageDTO::getId)
+                    .containsExactly(hot.getId(), archived.get(0).getId(), archived.get(1).getId());
+            assertThat(result.getTotalElements()).isEqualTo(14);
+        }
+
+        @Test
+        @DisplayName("Should reject a malformed cursor")
+        void shouldRejectMalformedCursor() {
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(testConversation));
+
+            assertThatThrownBy(() -> conversationService.getMessagesBefore(conversationId, userId, "not-a-cursor", 50))
+                    .isInstanceOf(ValidationException.class);
+        }
+    }
+
     @Nested
     @DisplayName("ArchiveConversation Tests")
     class ArchiveConversationTests {
@@ -295,15 +401,19 @@ class ConversationServiceTest {
     class DeleteConversationTests {
 
         @Test
-        @DisplayName("Should delete conversation and clear context")
-        void shouldDeleteConversationAndClearContext() {
+        @DisplayName("Should soft-delete conversation and leave the cleanup to the reaper")
+        void shouldSoftDeleteConversation() {
             when(conversationRepository.findByIdAndUserId(conversationId, userId))
                     .thenReturn(Optional.of(testConversation));
 
             conversationService.deleteConversation(conversationId, userId);
 
-            verify(conversationRepository).delete(testConversation);
-            verify(contextService).clearContext(conversationId);
+            ArgumentCaptor<Conversation> captor = ArgumentCaptor.forClass(Conversation.class);
+            verify(conversationRepository).save(captor.capture());
+            assertThat(captor.getValue().getStatus()).isEqualTo(ConversationStatus.DELETED);
+            verify(conversationRepository, never()).delete(any());
+            verify(eventPublisher).publishEvent(new ConversationChangedEvent(conversationId));
+            verify(eventPublisher).publishEvent(new ConversationSoftDeletedEvent(conversationId, userId));
         }
 
         @Test
@@ -315,8 +425,7 @@ class ConversationServiceTest {
             assertThatThrownBy(() -> conversationService.deleteConversation(conversationId, userId))
                     .isInstanceOf(ResourceNotFoundException.class);
 
-            verify(conversationRepository, never()).delete(any());
-            verify(contextService, never()).clearContext(any());
+            verify(conversationRepository, never()).save(any());
         }
     }
 
@@ -330,7 +439,7 @@ class ConversationServiceTest {
             when(conversationRepository.findByIdAndUserId(conversationId, userId))
                     .thenReturn(Optional.of(testConversation));
             when(conversationRepository.save(any(Conversation.class))).thenAnswer(invocation -> invocation.getArgument(0));
-            when(companionRepository.findById(companionId)).thenReturn(Optional.of(testCompanion));
+            when(companionRepository.findAllById(Set.of(companionId))).thenReturn(List.of(testCompanion));
 
             ConversationDTO result = conversationService.updateTitle(conversationId, userId, "New Title");
 
@@ -372,7 +481,7 @@ class ConversationServiceTest {
             when(conversationRepository.findByIdAndUserId(conversationId, userId))
                     .thenReturn(Optional.of(testConversation));
             when(conversationRepository.save(any(Conversation.class))).thenAnswer(invocation -> invocation.getArgument(0));
-            when(companionRepository.findById(companionId)).thenReturn(Optional.of(testCompanion));
+            when(companionRepository.findAllById(Set.of(companionId))).thenReturn(List.of(testCompanion));
 
             conversationService.updateTitle(conversationId, userId, "  Trimmed Title  ");
 
@@ -401,7 +510,7 @@ class ConversationServiceTest {
 
             when(conversationRepository.findByIdAndUserId(conversationId, userId))
                     .thenReturn(Optional.of(testConversation));
-            when(messageRepository.searchInConversation(conversationId, "hello", pageable))
+            when(messageSearchBackend.searchInConversation(userId, conversationId, "hello", pageable))
                     .thenReturn(messagePage);
 
             Page<MessageDTO> result = conversationService.searchMessages(conversationId, userId, "hello", pageable);
@@ -418,12 +527,36 @@ class ConversationServiceTest {
 
             when(conversationRepository.findByIdAndUserId(conversationId, userId))
                     .thenReturn(Optional.of(testConversation));
-            when(messageRepository.searchInConversation(conversationId, "nonexistent", pageable))
+            when(messageSearchBackend.searchInConversation(userId, conversationId, "nonexistent", pageable))
                     .thenReturn(emptyPage);
 
             Page<MessageDTO> result = conversationService.searchMessages(conversationId, userId, "nonexistent", pageable);
 
             assertThat(result).isEmpty();
         }
+
+        @Test
+        @DisplayName("Should continue with archived matches once the backend's hits run out")
+        void shouldSearchArchivedMessages() {
+            Pageable pageable = PageRequest.of(0, 3);
+            Message hot = Message.builder().conversationId(conversationId).role(MessageRole.USER)
+                    .type(MessageType.TEXT).content("hello again").build();
+            Message archived = Message.builder().conversationId(conversationId).role(MessageRole.USER)
+                    .type(MessageType.TEXT).content("hello from last year").build();
+            List<MessageArchiveSegment> segments = List.of(MessageArchiveSegment.builder().messageCount(10).build());
+
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(testConversation));
+            when(messageSearchBackend.searchInConversation(userId, conversationId, "hello", pageable))
+                    .thenReturn(new PageImpl<>(List.of(hot), pageable, 1));
+            when(messageArchive.segments(conversationId)).thenReturn(segments);
+            when(messageArchive.search(eq(segments), eq("hello"), anyInt())).thenReturn(List.of(archived));
+
+            Page<MessageDTO> result = conversationService.searchMessages(conversationId, userId, "hello", pageable);
+
+            assertThat(result.getContent()).extracting(MessageDTO::getContent)
+                    .containsExactly("hello again", "hello from last year");
+            assertThat(result.getTotalElements()).isEqualTo(2);
+        }
     }
 }
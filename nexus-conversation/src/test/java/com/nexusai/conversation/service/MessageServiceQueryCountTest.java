@@ -0,0 +1,116 @@
+package com.nexusai.conversation.service;
+
+import com.nexusai.ai.service.AIProviderService;
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.conversation.cache.HotEntityCache;
+import com.nexusai.conversation.mailbox.ConversationMailboxes;
+import com.nexusai.conversation.stats.ConversationCounters;
+import com.nexusai.conversation.tracing.PipelineTracing;
+import com.nexusai.core.entity.Companion;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import com.nexusai.core.repository.UserRepository;
+import com.nexusai.moderation.service.ContentFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionOperations;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Counts repository calls per generated reply: once the hot-entity cache is warm
+ * only the message insert reaches a repository, counter updates being batched by
+ * {@link ConversationCounters}. The SQL those calls issue, before and after, is
+ * measured against PostgreSQL by {@code MessageQueryCountTest} in nexus-web.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageService query count")
+@Slf4j
+class MessageServiceQueryCountTest {
+
+    private static final int TURNS = 50;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private CompanionRepository companionRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AIProviderService aiProviderService;
+
+    @Mock
+    private ContentFilterService contentFilterService;
+
+    @Mock
+    private ContextService contextService;
+
+    @Mock
+    private ConversationCounters conversationCounters;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("Should make one repository call per warm turn")
+    void shouldMakeOneRepositoryCallPerWarmTurn() {
+        UUID userId = UUID.randomUUID();
+        UUID conversationId = UUID.randomUUID();
+        UUID companionId = UUID.randomUUID();
+        Conversation conversation = Conversation.builder().userId(userId).companionId(companionId).build();
+        when(conversationRepository.findByIdAndUserId(conversationId, userId)).thenReturn(Optional.of(conversation));
+        when(companionRepository.findById(companionId)).thenReturn(Optional.of(
+                Companion.builder().userId(userId).name("Mia").systemPrompt("prompt").build()));
+        when(contextService.buildContext(ConversationSnapshot.from(conversationId, conversation))).thenReturn("context");
+        when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString())).thenReturn("reply");
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        MessageService service = new MessageService(messageRepository, conversationRepository, userRepository,
+                new HotEntityCache(conversationRepository, companionRepository, 1_000, Duration.ofMinutes(10)),
+                aiProviderService, contentFilterService, contextService, conversationCounters, eventPublisher,
+                TransactionOperations.withoutTransaction(), Schedulers.immediate(),
+                new ConversationMailboxes(new SimpleMeterRegistry(), Duration.ofMinutes(2)),
+                new PipelineTracing(ObservationRegistry.NOOP));
+
+        service.generateResponse(conversationId, userId);
+        int coldQueries = queries();
+        for (int i = 1; i < TURNS; i++) {
+            service.generateResponse(conversationId, userId);
+        }
+        double warmPerTurn = (queries() - coldQueries) / (double) (TURNS - 1);
+
+        log.info("Repository calls per turn: cold={}, warm={}", coldQueries, warmPerTurn);
+        assertThat(coldQueries).isEqualTo(3);
+        assertThat(warmPerTurn).isEqualTo(1.0);
+    }
+
+    private int queries() {
+        return mockingDetails(messageRepository).getInvocations().size()
+                + mockingDetails(conversationRepository).getInvocations().size()
+                + mockingDetails(companionRepository).getInvocations().size();
+    }
+}
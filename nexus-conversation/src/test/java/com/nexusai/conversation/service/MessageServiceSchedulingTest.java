@@ -0,0 +1,217 @@
+package com.nexusai.conversation.service;
+
+import com.nexusai.ai.service.AIProviderService;
+import com.nexusai.ai.service.TokenMeter;
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.conversation.cache.HotEntityCache;
+import com.nexusai.conversation.config.PersistenceSchedulerConfig;
+import com.nexusai.conversation.dto.SendMessageRequest;
+import com.nexusai.conversation.dto.StreamChunk;
+import com.nexusai.conversation.mailbox.ConversationMailboxes;
+import com.nexusai.conversation.stats.ConversationCounters;
+import com.nexusai.conversation.tracing.PipelineTracing;
+import com.nexusai.core.entity.Companion;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import com.nexusai.core.repository.UserRepository;
+import com.nexusai.moderation.service.ContentFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionOperations;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the streaming methods the way Reactor Netty does: subscribed on, and fed
+ * by, a single non-blocking event-loop thread. Every repository call fails if it
+ * lands on that thread; BlockHound, installed for the whole suite by
+ * {@link com.nexusai.conversation.BlockHoundInstaller}, additionally catches
+ * any real blocking call made there.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageService scheduling")
+@Slf4j
+class MessageServiceSchedulingTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private CompanionRepository companionRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AIProviderService aiProviderService;
+
+    @Mock
+    private ContentFilterService contentFilterService;
+
+    @Mock
+    private ContextService contextService;
+
+    @Mock
+    private ConversationCounters conversationCounters;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID conversationId = UUID.randomUUID();
+    private final UUID companionId = UUID.randomUUID();
+    private final Conversation conversation = Conversation.builder().userId(userId).companionId(companionId).build();
+    private final ConversationSnapshot snapshot = ConversationSnapshot.from(conversationId, conversation);
+    private final Set<String> blockingThreads = ConcurrentHashMap.newKeySet();
+
+    private Scheduler eventLoop;
+    private Scheduler persistence;
+    private MessageService messageService;
+
+    @BeforeEach
+    void setUp() {
+        eventLoop = Schedulers.newParallel("event-loop", 1);
+        persistence = PersistenceSchedulerConfig.boundedVirtual(4, 1_000);
+        messageService = new MessageService(messageRepository, conversationRepository, userRepository,
+                new HotEntityCache(conversationRepository, companionRepository, 1_000, Duration.ofMinutes(10)),
+                aiProviderService, contentFilterService, contextService, conversationCounters, eventPublisher,
+                TransactionOperations.withoutTransaction(), persistence, new ConversationMailboxes(new SimpleMeterRegistry(), Duration.ofMinutes(2)),
+                new PipelineTracing(ObservationRegistry.NOOP));
+
+        when(conversationRepository.findByIdAndUserId(conversationId, userId)).thenAnswer(blocking(0, invocation ->
+                Optional.of(conversation)));
+        when(companionRepository.findById(companionId)).thenAnswer(blocking(0, invocation ->
+                Optional.of(Companion.builder().userId(userId).name("Mia").systemPrompt("prompt")
+                        .modelProvider("ollama").modelName("llama3").build())));
+        when(aiProviderService.streamResponse(anyString(), anyString(), anyString(), anyString(), any(TokenMeter.class)))
+                .thenAnswer(invocation -> Flux.just("Hel", "lo").publishOn(eventLoop));
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventLoop.dispose();
+        persistence.dispose();
+    }
+
+    @Test
+    @DisplayName("Should keep streamResponse persistence off the event loop")
+    void shouldKeepStreamResponseOffEventLoop() {
+        when(contextService.buildContext(snapshot)).thenAnswer(blocking(0, invocation -> "context"));
+        when(messageRepository.save(any(Message.class))).thenAnswer(blocking(0, invocation -> invocation.getArgument(0)));
+
+        List<StreamChunk> chunks = messageService.streamResponse(conversationId, userId)
+                .subscribeOn(eventLoop)
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(chunks).extracting(StreamChunk::getError).containsOnlyNulls();
+        assertThat(chunks.get(chunks.size() - 1).getIsComplete()).isTrue();
+        verify(messageRepository).save(any(Message.class));
+        assertThat(blockingThreads).isNotEmpty().allMatch(name -> name.startsWith(PersistenceSchedulerConfig.THREAD_PREFIX));
+    }
+
+    @Test
+    @DisplayName("Should keep streamMessage persistence off the event loop")
+    void shouldKeepStreamMessageOffEventLoop() {
+        when(contentFilterService.isContentSafe(anyString())).thenReturn(true);
+        when(contextService.buildContext(snapshot)).thenAnswer(blocking(0, invocation -> "context"));
+        when(messageRepository.save(any(Message.class))).thenAnswer(blocking(0, invocation -> invocation.getArgument(0)));
+        SendMessageRequest request = new SendMessageRequest();
+        request.setContent("Hi");
+
+        List<String> chunks = messageService.streamMessage(conversationId, userId, request)
+                .subscribeOn(eventLoop)
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(chunks).containsExactly("Hel", "lo");
+        // The user message, then the streamed reply
+        verify(messageRepository, times(2)).save(any(Message.class));
+        assertThat(blockingThreads).isNotEmpty().allMatch(name -> name.startsWith(PersistenceSchedulerConfig.THREAD_PREFIX));
+    }
+
+    @Test
+    @DisplayName("Should keep the event loop responsive while the database is slow")
+    void shouldIsolateEventLoopFromSlowDatabase() {
+        int streams = 24;
+        long queryMillis = 100;
+        when(contextService.buildContext(snapshot)).thenAnswer(blocking(queryMillis, invocation -> "context"));
+        when(messageRepository.save(any(Message.class))).thenAnswer(blocking(queryMillis, invocation -> invocation.getArgument(0)));
+
+        // Another stream's work on the same loop: how late do its ticks run?
+        AtomicLong lastTick = new AtomicLong(System.nanoTime());
+        AtomicLong maxGap = new AtomicLong();
+        Disposable heartbeat = Flux.interval(Duration.ofMillis(5), eventLoop)
+                .subscribe(tick -> {
+                    long now = System.nanoTime();
+                    maxGap.accumulateAndGet(now - lastTick.getAndSet(now), Math::max);
+                });
+
+        long start = System.nanoTime();
+        List<List<StreamChunk>> results = Flux.range(0, streams)
+                .flatMap(i -> messageService.streamResponse(conversationId, userId)
+                        .subscribeOn(eventLoop)
+                        .collectList())
+                .collectList()
+                .block(TIMEOUT);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        heartbeat.dispose();
+
+        long maxGapMillis = maxGap.get() / 1_000_000;
+        log.info("{} streams against a {} ms database in {} ms; longest event-loop stall {} ms",
+                streams, queryMillis, elapsedMillis, maxGapMillis);
+        assertThat(results).hasSize(streams)
+                .allSatisfy(chunks -> assertThat(chunks.get(chunks.size() - 1).getIsComplete()).isTrue());
+        // Blocking on the loop would stall it for at least one query per stream
+        assertThat(maxGapMillis).isLessThan(queryMillis / 2);
+    }
+
+    /**
+     * A repository call taking {@code millis}, failing like BlockHound when made on a non-blocking thread.
+     */
+    private <T> Answer<T> blocking(long millis, Answer<T> result) {
+        return invocation -> {
+            if (Schedulers.isInNonBlockingThread()) {
+                throw new IllegalStateException("Blocking call on " + Thread.currentThread().getName());
+            }
+            blockingThreads.add(Thread.currentThread().getName());
+            if (millis > 0) {
+                Thread.sleep(millis);
+            }
+            return result.answer(invocation);
+        };
+    }
+}
@@ -1,10 +1,20 @@
 package com.nexusai.conversation.service;
 
+import com.nexusai.ai.dto.TokenUsage;
 import com.nexusai.ai.service.AIProviderService;
+import com.nexusai.ai.service.TokenMeter;
 import com.nexusai.commons.exception.BusinessException;
 import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.conversation.cache.HotEntityCache;
 import com.nexusai.conversation.dto.MessageDTO;
 import com.nexusai.conversation.dto.SendMessageRequest;
+import com.nexusai.conversation.dto.StreamChunk;
+import com.nexusai.conversation.mailbox.ConversationMailboxes;
+import com.nexusai.conversation.stats.ConversationCounters;
+import com.nexusai.conversation.tracing.InMemoryObservationHandler;
+import com.nexusai.conversation.tracing.PipelineTrace;
+import com.nexusai.conversation.tracing.PipelineTracing;
 import com.nexusai.core.entity.Companion;
 import com.nexusai.core.entity.Conversation;
 import com.nexusai.core.entity.Message;
@@ -14,22 +24,29 @@ import com.nexusai.core.enums.MessageType;
 import com.nexusai.core.repository.CompanionRepository;
 import com.nexusai.core.repository.ConversationRepository;
 import com.nexusai.core.repository.MessageRepository;
+import com.nexusai.core.repository.UserRepository;
 import com.nexusai.moderation.service.ContentFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -49,6 +66,9 @@ class MessageServiceTest {
     @Mock
     private CompanionRepository companionRepository;
 
+    @Mock
+    private UserRepository userRepository;
+
     @Mock
     private AIProviderService aiProviderService;
 
@@ -58,9 +78,16 @@ class MessageServiceTest {
     @Mock
     private ContextService contextService;
 
-    @InjectMocks
+    @Mock
+    private ConversationCounters conversationCounters;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private MessageService messageService;
 
+    private final InMemoryObservationHandler observations = new InMemoryObservationHandler();
+
     private UUID userId;
     private UUID companionId;
     private UUID conversationId;
@@ -76,6 +103,14 @@ class MessageServiceTest {
         conversationId = UUID.randomUUID();
         messageId = UUID.randomUUID();
 
+        HotEntityCache hotEntityCache = new HotEntityCache(conversationRepository, companionRepository,
+                1_000, Duration.ofMinutes(10));
+        messageService = new MessageService(messageRepository, conversationRepository, userRepository, hotEntityCache,
+                aiProviderService, contentFilterService, contextService, conversationCounters, eventPublisher,
+                TransactionOperations.withoutTransaction(), Schedulers.immediate(),
+                new ConversationMailboxes(new SimpleMeterRegistry(), Duration.ofMinutes(2)),
+                new PipelineTracing(InMemoryObservationHandler.registry(observations)));
+
         testCompanion = Companion.builder()
                 //.id(companionId)
                 .userId(userId)
@@ -133,7 +168,7 @@ class MessageServiceTest {
             assertThat(result.getRole()).isEqualTo("USER");
             assertThat(result.getType()).isEqualTo("TEXT");
 
-            verify(conversationRepository).incrementMessageCount(eq(conversationId), any(LocalDateTime.class));
+            verify(conversationCounters).recordMessage(any(ConversationSnapshot.class), eq(0L));
         }
 
         @Test
@@ -225,9 +260,7 @@ class MessageServiceTest {
                     .thenReturn(Optional.of(testConversation));
             when(companionRepository.findById(companionId))
                     .thenReturn(Optional.of(testCompanion));
-            when(messageRepository.findRecentMessages(conversationId, 20))
-                    .thenReturn(List.of(testMessage));
-            when(contextService.buildContext(eq(conversationId), anyList()))
+            when(contextService.buildContext(ConversationSnapshot.from(conversationId, testConversation)))
                     .thenReturn("Context text");
             when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString()))
                     .thenReturn("AI response text");
@@ -237,7 +270,6 @@ class MessageServiceTest {
                 saved.setId(UUID.randomUUID());
                 return saved;
             });
-            when(conversationRepository.save(any(Conversation.class))).thenReturn(testConversation);
 
             MessageDTO result = messageService.generateResponse(conversationId, userId);
 
@@ -287,19 +319,178 @@ class MessageServiceTest {
                     .thenReturn(Optional.of(testConversation));
             when(companionRepository.findById(companionId))
                     .thenReturn(Optional.of(testCompanion));
-            when(messageRepository.findRecentMessages(conversationId, 20))
-                    .thenReturn(Collections.emptyList());
-            when(contextService.buildContext(eq(conversationId), anyList()))
+            when(contextService.buildContext(ConversationSnapshot.from(conversationId, testConversation)))
                     .thenReturn("Context");
             when(aiProviderService.generateResponse(anyString(), anyString(), anyString(), anyString()))
                     .thenReturn("Response");
-            when(aiProviderService.estimateTokens(anyString())).thenReturn(100);
+            when(aiProviderService.estimateTokens("Response")).thenReturn(100);
+            when(aiProviderService.estimateTokens("You are a helpful assistant.")).thenReturn(7);
+            when(aiProviderService.estimateTokens("Context")).thenReturn(2);
             when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
-            when(conversationRepository.save(any(Conversation.class))).thenReturn(testConversation);
 
             messageService.generateResponse(conversationId, userId);
 
-            verify(conversationRepository).save(any(Conversation.class));
+            verify(conversationCounters).recordMessage(any(ConversationSnapshot.class), eq(100L));
+            // The prompt is billed along with the reply
+            verify(userRepository).chargeTokens(userId, 109);
+        }
+    }
+
+    @Nested
+    @DisplayName("StreamResponse Tests")
+    class StreamResponseTests {
+
+        @BeforeEach
+        void setUp() {
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(testConversation));
+            when(companionRepository.findById(companionId))
+                    .thenReturn(Optional.of(testCompanion));
+            when(contextService.buildContext(any(ConversationSnapshot.class))).thenReturn("Context");
+            when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        }
+
+        @Test
+        @DisplayName("Should record provider-reported usage once")
+        void shouldRecordReportedUsage() {
+            streamChunks(new TokenUsage(40, 7), "Hello", " there, world");
+
+            List<StreamChunk> chunks = messageService.streamResponse(conversationId, userId).collectList().block();
+
+            assertThat(chunks.get(chunks.size() - 1).getTokensUsed()).isEqualTo(7);
+            ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+            verify(messageRepository).save(captor.capture());
+            assertThat(captor.getValue().getContent()).isEqualTo("Hello there, world");
+            assertThat(captor.getValue().getTokensUsed()).isEqualTo(7);
+            verify(conversationCounters).recordMessage(any(ConversationSnapshot.class), eq(7L));
+            // Reported prompt and completion tokens are both billed
+            verify(userRepository).chargeTokens(userId, 47);
+            verify(aiProviderService, never()).estimateTokens(anyString());
+        }
+
+        @Test
+        @DisplayName("Should fall back to the per-chunk estimate without provider usage")
+        void shouldEstimateWithoutReportedUsage() {
+            streamChunks(null, "Hello", " there, world");
+
+            List<StreamChunk> chunks = messageService.streamResponse(conversationId, userId).collectList().block();
+
+            // 18 characters
+            assertThat(chunks.get(chunks.size() - 1).getTokensUsed()).isEqualTo(5);
+            verify(conversationCounters).recordMessage(any(ConversationSnapshot.class), eq(5L));
+            verify(userRepository).chargeTokens(userId, 5);
+            verify(aiProviderService, never()).estimateTokens(anyString());
+        }
+
+        private void streamChunks(TokenUsage usage, String... chunks) {
+            when(aiProviderService.streamResponse(anyString(), anyString(), anyString(), anyString(), any(TokenMeter.class)))
+                    .thenAnswer(invocation -> {
+                        TokenMeter meter = invocation.getArgument(4);
+                        return Flux.just(chunks)
+                                .doOnNext(meter::count)
+                                .doOnComplete(() -> meter.report(usage));
+                    });
+        }
+    }
+
+    @Nested
+    @DisplayName("StreamMessage Tracing Tests")
+    class StreamMessageTracingTests {
+
+        @BeforeEach
+        void setUp() {
+            when(conversationRepository.findByIdAndUserId(conversationId, userId))
+                    .thenReturn(Optional.of(testConversation));
+        }
+
+        @Test
+        @DisplayName("Should trace every stage of a streamed message under one root")
+        void shouldTraceStreamMessagePipeline() {
+            when(contentFilterService.isContentSafe(anyString())).thenReturn(true);
+            when(companionRepository.findById(companionId)).thenReturn(Optional.of(testCompanion));
+            when(contextService.buildContext(any(ConversationSnapshot.class))).thenReturn("Context");
+            when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+            AtomicReference<Object> providerParent = new AtomicReference<>();
+            when(aiProviderService.streamResponse(anyString(), anyString(), anyString(), anyString(), any(TokenMeter.class)))
+                    .thenReturn(Flux.deferContextual(context -> {
+                        providerParent.set(context.getOrDefault("micrometer.observation", null));
+                        return Flux.just("Hello", " there");
+                    }));
+            SendMessageRequest request = SendMessageRequest.builder().content("Hi").type("TEXT").build();
+
+            List<String> chunks = messageService.streamMessage(conversationId, userId, request).collectList().block();
+
+            assertThat(chunks).containsExactly("Hello", " there");
+            assertThat(observations.finished())
+                    .extracting(InMemoryObservationHandler.Finished::name)
+                    .containsExactlyInAnyOrder(PipelineTrace.ROOT,
+                            PipelineTrace.ROOT + ".queue",
+                            PipelineTrace.ROOT + ".moderation",
+                            PipelineTrace.ROOT + ".persistence",
+                            PipelineTrace.ROOT + ".context",
+                            PipelineTrace.ROOT + ".provider",
+                            PipelineTrace.ROOT + ".save");
+            assertThat(observations.finished())
+                    .filteredOn(observation -> !observation.name().equals(PipelineTrace.ROOT))
+                    .extracting(InMemoryObservationHandler.Finished::parent)
+                    .containsOnly(PipelineTrace.ROOT);
+            assertThat(observations.get(PipelineTrace.ROOT + ".provider").events()).containsExactly("first-token");
+            // The provider's WebClient starts its HTTP observation under this one
+            assertThat(providerParent.get()).isInstanceOf(Observation.class);
+            assertThat(((Observation) providerParent.get()).getContextView().getName())
+                    .isEqualTo(PipelineTrace.ROOT + ".provider");
+        }
+
+        @Test
+        @DisplayName("Should record a blocked message on the trace")
+        void shouldRecordModerationFailure() {
+            when(contentFilterService.isContentSafe(anyString())).thenReturn(false);
+            SendMessageRequest request = SendMessageRequest.builder().content("Bad").type("TEXT").build();
+
+            assertThatThrownBy(() -> messageService.streamMessage(conversationId, userId, request).blockLast())
+                    .isInstanceOf(BusinessException.class);
+
+            assertThat(observations.get(PipelineTrace.ROOT + ".moderation").error())
+                    .isInstanceOf(BusinessException.class);
+            assertThat(observations.get(PipelineTrace.ROOT).error()).isInstanceOf(BusinessException.class);
+            verify(messageRepository, never()).save(any(Message.class));
+        }
+
+        @Test
+        @DisplayName("Should record a failed save on the trace while the reply still streams")
+        void shouldRecordSaveFailure() {
+            when(contentFilterService.isContentSafe(anyString())).thenReturn(true);
+            when(companionRepository.findById(companionId)).thenReturn(Optional.of(testCompanion));
+            when(contextService.buildContext(any(ConversationSnapshot.class))).thenReturn("Context");
+            when(messageRepository.save(any(Message.class)))
+                    .thenAnswer(invocation -> invocation.getArgument(0))
+                    .thenThrow(new IllegalStateException("database down"));
+            when(aiProviderService.streamResponse(anyString(), anyString(), anyString(), anyString(), any(TokenMeter.class)))
+                    .thenReturn(Flux.just("Hello", " there"));
+            SendMessageRequest request = SendMessageRequest.builder().content("Hi").type("TEXT").build();
+
+            List<String> chunks = messageService.streamMessage(conversationId, userId, request).collectList().block();
+
+            assertThat(chunks).containsExactly("Hello", " there");
+            assertThat(observations.get(PipelineTrace.ROOT + ".save").error()).isInstanceOf(IllegalStateException.class);
+            assertThat(observations.get(PipelineTrace.ROOT).error()).isInstanceOf(IllegalStateException.class);
+        }
+
+        @Test
+        @DisplayName("Should record a provider failure on the trace of a streamed response")
+        void shouldRecordStreamResponseFailure() {
+            when(companionRepository.findById(companionId)).thenReturn(Optional.of(testCompanion));
+            when(contextService.buildContext(any(ConversationSnapshot.class))).thenReturn("Context");
+            when(aiProviderService.streamResponse(anyString(), anyString(), anyString(), anyString(), any(TokenMeter.class)))
+                    .thenReturn(Flux.error(new IllegalStateException("provider down")));
+
+            List<StreamChunk> chunks = messageService.streamResponse(conversationId, userId).collectList().block();
+
+            // The client gets an error chunk, and the trace still shows the failure
+            assertThat(chunks).hasSize(1);
+            assertThat(observations.get(PipelineTrace.ROOT + ".provider").error()).isInstanceOf(IllegalStateException.class);
+            assertThat(observations.get(PipelineTrace.ROOT).error()).isInstanceOf(IllegalStateException.class);
+            verify(messageRepository, never()).save(any(Message.class));
         }
     }
 
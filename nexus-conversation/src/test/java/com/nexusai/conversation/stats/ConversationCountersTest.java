@@ -0,0 +1,216 @@
+package com.nexusai.conversation.stats;
+
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.core.enums.ConversationStatus;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConversationCounters Tests")
+class ConversationCountersTest {
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private CompanionRepository companionRepository;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ConversationCounters counters;
+    private ConversationSnapshot conversation;
+
+    @BeforeEach
+    void setUp() {
+        counters = new ConversationCounters(conversationRepository, companionRepository, redisTemplate,
+                new TransactionTemplate(transactionManager), Duration.ofMinutes(1));
+        conversation = new ConversationSnapshot(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                ConversationStatus.ACTIVE);
+    }
+
+    @Test
+    @DisplayName("Should coalesce messages into one update per row")
+    void shouldCoalesceMessages() {
+        counters.recordMessage(conversation, 10);
+        counters.recordMessage(conversation, 20);
+        counters.recordMessage(conversation, 30);
+
+        counters.flush();
+        counters.flush();
+
+        verify(conversationRepository, times(1))
+                .applyCounterDeltas(eq(conversation.id()), eq(3), eq(60L), any(LocalDateTime.class));
+        verify(companionRepository, times(1)).applyUsageDeltas(conversation.companionId(), 3L, 60L);
+    }
+
+    @Test
+    @DisplayName("Should update rows in id order")
+    void shouldFlushInIdOrder() {
+        List<ConversationSnapshot> recorded = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ConversationSnapshot snapshot = new ConversationSnapshot(UUID.randomUUID(), UUID.randomUUID(),
+                    UUID.randomUUID(), ConversationStatus.ACTIVE);
+            counters.recordMessage(snapshot, 10);
+            recorded.add(snapshot);
+        }
+
+        counters.flush();
+
+        ArgumentCaptor<UUID> conversationIds = ArgumentCaptor.forClass(UUID.class);
+        verify(conversationRepository, times(20)).applyCounterDeltas(conversationIds.capture(), eq(1), eq(10L), any());
+        assertThat(conversationIds.getAllValues()).isSorted()
+                .containsExactlyInAnyOrderElementsOf(recorded.stream().map(ConversationSnapshot::id).toList());
+        ArgumentCaptor<UUID> companionIds = ArgumentCaptor.forClass(UUID.class);
+        verify(companionRepository, times(20)).applyUsageDeltas(companionIds.capture(), eq(1L), eq(10L));
+        assertThat(companionIds.getAllValues()).isSorted();
+    }
+
+    @Test
+    @DisplayName("Should keep deltas for the next cycle when the flush fails")
+    void shouldRetryAfterFailedFlush() {
+        when(conversationRepository.applyCounterDeltas(any(), anyInt(), anyLong(), any()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(1);
+
+        counters.recordMessage(conversation, 10);
+        counters.flush();
+        counters.flush();
+
+        verify(conversationRepository, times(2))
+                .applyCounterDeltas(eq(conversation.id()), eq(1), eq(10L), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Should not lose increments under concurrent writers")
+    void shouldNotLoseConcurrentIncrements() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    counters.recordMessage(conversation, 2);
+                    if (i % 100 == 0) {
+                        counters.flush();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.SECONDS);
+        counters.flush();
+
+        verify(companionRepository, atLeastOnce()).applyUsageDeltas(eq(conversation.companionId()), anyLong(), anyLong());
+        long messages = mockingDetails(companionRepository).getInvocations().stream()
+                .mapToLong(invocation -> invocation.<Long>getArgument(1))
+                .sum();
+        assertThat(messages).isEqualTo(8_000L);
+    }
+
+    @Test
+    @DisplayName("Should replay the journal of a node whose lease expired, skipping malformed entries")
+    void shouldReplayOrphanedJournal() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(ConversationCounters.JOURNALS_KEY)).thenReturn(Set.of("gone"));
+        when(redisTemplate.execute(any(RedisScript.class),
+                argThat((List<String> keys) -> keys.get(0).equals(ConversationCounters.JOURNAL_KEY_PREFIX + "gone")
+                        && keys.get(1).equals(ConversationCounters.LEASE_KEY_PREFIX + "gone")),
+                eq("gone")))
+                .thenReturn(List.of(
+                        "c:" + conversation.id() + ":m", "4",
+                        "c:" + conversation.id() + ":t", "120",
+                        "c:not-a-uuid:m", "3",
+                        "p:" + conversation.companionId() + ":m", "99999999999999999999"));
+
+        counters.recover();
+
+        verify(conversationRepository).applyCounterDeltas(eq(conversation.id()), eq(4), eq(120L), any());
+        verify(conversationRepository, times(1)).applyCounterDeltas(any(), anyInt(), anyLong(), any());
+        verifyNoInteractions(companionRepository);
+    }
+
+    @Test
+    @DisplayName("Should leave the journal of a live node alone")
+    void shouldNotClaimLiveJournal() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(ConversationCounters.JOURNALS_KEY)).thenReturn(Set.of("alive"));
+        // The claim script finds the lease and returns nothing
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), eq("alive"))).thenReturn(List.of());
+
+        counters.reclaim();
+
+        verifyNoInteractions(conversationRepository);
+    }
+
+    @Test
+    @DisplayName("Should only count messages once their transaction commits")
+    void shouldCountOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            counters.recordMessage(conversation, 10);
+            counters.flush();
+            verifyNoInteractions(conversationRepository);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        counters.flush();
+
+        verify(conversationRepository).applyCounterDeltas(eq(conversation.id()), eq(1), eq(10L), any());
+    }
+
+    @Test
+    @DisplayName("Should not count messages of a rolled back transaction")
+    void shouldNotCountOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            counters.recordMessage(conversation, 10);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        counters.flush();
+
+        verifyNoInteractions(conversationRepository);
+    }
+}
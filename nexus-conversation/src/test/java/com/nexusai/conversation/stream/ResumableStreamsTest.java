@@ -0,0 +1,178 @@
+package com.nexusai.conversation.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.commons.exception.ValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ResumableStreams Tests")
+class ResumableStreamsTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UUID userId = UUID.randomUUID();
+    private final UUID conversationId = UUID.randomUUID();
+    private ResumableStreams streams;
+
+    @BeforeEach
+    void setUp() {
+        streams = new ResumableStreams(redisTemplate, objectMapper, 512, Duration.ofMinutes(2),
+                Duration.ofMinutes(5), 32, Duration.ofMillis(10), Duration.ofMillis(10));
+    }
+
+    @Test
+    @DisplayName("Should replay only missed events after a disconnect, without restarting the generation")
+    void shouldResumeAfterDisconnect() {
+        Sinks.Many<String> tokens = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger generations = new AtomicInteger();
+
+        List<ServerSentEvent<String>> beforeDrop = streams.open(userId, conversationId,
+                        tokens.asFlux().doOnSubscribe(subscription -> generations.incrementAndGet()))
+                .take(2)
+                .doOnSubscribe(subscription -> {
+                    tokens.tryEmitNext("Hel");
+                    tokens.tryEmitNext("lo");
+                })
+                .collectList()
+                .block(TIMEOUT);
+
+        // Generated while the client was away
+        tokens.tryEmitNext(" wor");
+        tokens.tryEmitNext("ld");
+        tokens.tryEmitComplete();
+
+        List<ServerSentEvent<String>> resumed = streams.resume(userId, conversationId, beforeDrop.get(1).id())
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(beforeDrop).extracting(ServerSentEvent::data).containsExactly("Hel", "lo");
+        assertThat(resumed).extracting(ServerSentEvent::data).containsExactly(" wor", "ld", "");
+        assertThat(resumed).extracting(ServerSentEvent::event)
+                .containsExactly(null, null, StreamEvent.DONE);
+        assertThat(generations).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should keep generating when spilling to Redis fails")
+    void shouldNotTieGenerationToSpill() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new IllegalStateException("Redis is down"));
+
+        List<ServerSentEvent<String>> events = streams.open(userId, conversationId, Flux.just("a", "b"))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(events).extracting(ServerSentEvent::data).containsExactly("a", "b", "");
+        verify(redisTemplate, timeout(TIMEOUT.toMillis())).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @DisplayName("Should replay recorded payloads with their original ids")
+    void shouldReplayRecordedPayloads() {
+        List<ServerSentEvent<String>> events = streams.replay("s1", List.of("Hel", "lo"))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(events).extracting(ServerSentEvent::data).containsExactly("Hel", "lo", "");
+        assertThat(events).extracting(ServerSentEvent::id).containsExactly("s1:1", "s1:2", "s1:3");
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly(null, null, StreamEvent.DONE);
+    }
+
+    @Test
+    @DisplayName("Should not let another user resume a stream")
+    void shouldRejectOtherUser() {
+        when(redisTemplate.hasKey(anyString())).thenReturn(false);
+        List<ServerSentEvent<String>> events = streams.open(userId, conversationId, Flux.just("a"))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThatThrownBy(() -> streams.resume(UUID.randomUUID(), conversationId, events.get(0).id())
+                .blockLast(TIMEOUT))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should not resume a stream through another conversation")
+    void shouldRejectOtherConversation() {
+        when(redisTemplate.hasKey(anyString())).thenReturn(false);
+        List<ServerSentEvent<String>> events = streams.open(userId, conversationId, Flux.just("a"))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThatThrownBy(() -> streams.resume(userId, UUID.randomUUID(), events.get(0).id())
+                .blockLast(TIMEOUT))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed Last-Event-ID")
+    void shouldRejectMalformedId() {
+        assertThatThrownBy(() -> streams.resume(userId, conversationId, "not-an-id"))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    @DisplayName("Should follow a stream running on another node from its spill")
+    void shouldFollowRemoteStream() throws Exception {
+        String streamId = UUID.randomUUID().toString();
+        String key = ResumableStreams.spillKey(userId, conversationId, streamId);
+        // Event 3 was lost by a failed spill
+        List<StreamEvent> spilled = List.of(
+                new StreamEvent(1, StreamEvent.CHUNK, "a"),
+                new StreamEvent(2, StreamEvent.CHUNK, "b"),
+                new StreamEvent(4, StreamEvent.CHUNK, "d"),
+                new StreamEvent(5, StreamEvent.DONE, ""));
+        AtomicInteger visible = new AtomicInteger(3);
+        when(redisTemplate.hasKey(key)).thenReturn(true);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        // The last event only shows up on a later poll, as if still being generated
+        when(zSetOperations.rangeByScore(eq(key), anyDouble(), eq(Double.POSITIVE_INFINITY))).thenAnswer(invocation -> {
+            double min = invocation.getArgument(1);
+            int end = visible.getAndSet(4);
+            LinkedHashSet<String> values = new LinkedHashSet<>();
+            for (StreamEvent event : spilled.subList(0, end)) {
+                if (event.seq() >= min) {
+                    values.add(objectMapper.writeValueAsString(event));
+                }
+            }
+            return values;
+        });
+
+        List<ServerSentEvent<String>> events = streams.resume(userId, conversationId, streamId + ":1")
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(events).extracting(ServerSentEvent::data).containsExactly("b", "d", "");
+        assertThat(events).extracting(ServerSentEvent::id)
+                .containsExactly(streamId + ":2", streamId + ":4", streamId + ":5");
+    }
+}
@@ -0,0 +1,60 @@
+package com.nexusai.conversation.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps stopped observations in memory, as an exporter would receive the spans.
+ */
+public class InMemoryObservationHandler implements ObservationHandler<Observation.Context> {
+
+    private final Map<Observation.Context, List<String>> events = new ConcurrentHashMap<>();
+    private final List<Finished> finished = new CopyOnWriteArrayList<>();
+
+    public static ObservationRegistry registry(InMemoryObservationHandler handler) {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(handler);
+        return registry;
+    }
+
+    @Override
+    public void onEvent(Observation.Event event, Observation.Context context) {
+        events.computeIfAbsent(context, key -> new CopyOnWriteArrayList<>()).add(event.getName());
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        String parent = Optional.ofNullable(context.getParentObservation())
+                .map(observation -> observation.getContextView().getName())
+                .orElse(null);
+        List<String> recorded = events.remove(context);
+        finished.add(new Finished(context.getName(), parent,
+                recorded != null ? List.copyOf(recorded) : List.of(), context.getError()));
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    public List<Finished> finished() {
+        return new ArrayList<>(finished);
+    }
+
+    public Finished get(String name) {
+        return finished.stream()
+                .filter(observation -> observation.name().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No observation " + name + " in " + finished));
+    }
+
+    public record Finished(String name, String parent, List<String> events, Throwable error) {}
+}
@@ -0,0 +1,216 @@
+package com.nexusai.conversation.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.nexusai.commons.exception.ResourceNotFoundException;
+import com.nexusai.conversation.cache.ConversationSnapshot;
+import com.nexusai.conversation.cache.HotEntityCache;
+import com.nexusai.conversation.context.SpeculativeContexts;
+import com.nexusai.conversation.dto.StreamChunk;
+import com.nexusai.conversation.service.MessageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ChatWebSocketHandler Tests")
+class ChatWebSocketHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MessageService messageService = mock(MessageService.class);
+    private final HotEntityCache hotEntityCache = mock(HotEntityCache.class);
+    private final SessionRegistry sessionRegistry = new SessionRegistry(256, SlowConsumerPolicy.DROP);
+    private final List<Disposable> connections = new ArrayList<>();
+
+    private ClusterFanout clusterFanout;
+    private SpeculativeContexts speculativeContexts;
+    private ChatWebSocketHandler handler;
+    private final UUID userId = UUID.randomUUID();
+    private final UUID conversationId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        clusterFanout = new ClusterFanout(sessionRegistry, mock(FanoutTransport.class), objectMapper,
+                new SimpleMeterRegistry(), 64, 64, Duration.ofHours(1));
+        speculativeContexts = new SpeculativeContexts(new SimpleMeterRegistry(), Duration.ofSeconds(5), 100, 1, 10);
+        handler = new ChatWebSocketHandler(messageService, hotEntityCache, objectMapper, sessionRegistry,
+                clusterFanout, Schedulers.immediate(), speculativeContexts);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connections.forEach(Disposable::dispose);
+        clusterFanout.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should prebuild on a typing signal without answering or failing when it fails")
+    void shouldPrebuildOnTyping() {
+        doThrow(new IllegalStateException("Redis is down")).when(messageService).anticipateMessage(conversationId, userId);
+        Client client = connect();
+
+        client.send("typing");
+
+        verify(messageService, timeout(5_000)).anticipateMessage(conversationId, userId);
+        assertThat(client.outbound).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should deliver another device's stream to a session that only subscribed")
+    void shouldStreamToPassiveSubscriber() {
+        when(hotEntityCache.conversation(conversationId, userId)).thenReturn(mock(ConversationSnapshot.class));
+        UUID messageId = UUID.randomUUID();
+        when(messageService.streamResponse(conversationId, userId)).thenReturn(Flux.just(
+                StreamChunk.text(messageId, conversationId, "Hel"),
+                StreamChunk.text(messageId, conversationId, "lo")));
+        Client watcher = connect();
+        Client sender = connect();
+
+        watcher.send("subscribe");
+        sender.send("stream_response");
+
+        assertThat(watcher.received()).anySatisfy(frame -> {
+            assertThat(frame.get("type").asText()).isEqualTo("ack");
+            assertThat(frame.get("action").asText()).isEqualTo("subscribed");
+        });
+        assertThat(watcher.received())
+                .filteredOn(frame -> frame.get("type").asText().equals("stream_chunk"))
+                .extracting(frame -> frame.get("data").get("content").asText())
+                .containsExactly("Hel", "lo");
+    }
+
+    @Test
+    @DisplayName("Should refuse to subscribe to a conversation the user does not own")
+    void shouldRejectForeignConversation() {
+        when(hotEntityCache.conversation(conversationId, userId))
+                .thenThrow(new ResourceNotFoundException("Conversation", conversationId.toString()));
+        Client watcher = connect();
+
+        watcher.send("subscribe");
+
+        assertThat(watcher.received()).singleElement()
+                .satisfies(frame -> assertThat(frame.get("type").asText()).isEqualTo("error"));
+        assertThat(sessionRegistry.subscriberCount(conversationId)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should act as the authenticated user, whatever user id the request carries")
+    void shouldUseAuthenticatedUser() {
+        UUID forged = UUID.randomUUID();
+        when(messageService.streamResponse(conversationId, userId)).thenReturn(Flux.empty());
+        Client client = connect();
+
+        client.send("stream_response", forged);
+
+        verify(messageService).streamResponse(conversationId, userId);
+        verify(messageService, never()).streamResponse(conversationId, forged);
+    }
+
+    @Test
+    @DisplayName("Should read client frames in the negotiated CBOR subprotocol")
+    void shouldDecodeCborRequests() throws Exception {
+        when(messageService.streamResponse(conversationId, userId)).thenReturn(Flux.empty());
+        Client client = new Client(Mono.just(() -> userId.toString()), FrameCodec.CBOR_SUBPROTOCOL);
+        connections.add(handler.handle(client.socket).subscribe());
+
+        byte[] frame = new CBORMapper().writeValueAsBytes(Map.of(
+                "type", "stream_response", "conversationId", conversationId.toString()));
+        client.inbound.tryEmitNext(new WebSocketMessage(WebSocketMessage.Type.BINARY,
+                DefaultDataBufferFactory.sharedInstance.wrap(frame)));
+
+        verify(messageService, timeout(5_000)).streamResponse(conversationId, userId);
+    }
+
+    @Test
+    @DisplayName("Should close a session without an authenticated user")
+    void shouldCloseUnauthenticatedSession() {
+        Client client = new Client(Mono.empty());
+        when(client.socket.close(any())).thenReturn(Mono.empty());
+
+        handler.handle(client.socket).block();
+
+        verify(client.socket).close(CloseStatus.POLICY_VIOLATION);
+        assertThat(sessionRegistry.sessionCount()).isZero();
+    }
+
+    private Client connect() {
+        Client client = new Client(Mono.just(() -> userId.toString()));
+        connections.add(handler.handle(client.socket).subscribe());
+        return client;
+    }
+
+    private final class Client {
+
+        private final Sinks.Many<WebSocketMessage> inbound = Sinks.many().unicast().onBackpressureBuffer();
+        private final List<String> outbound = new CopyOnWriteArrayList<>();
+        private final WebSocketSession socket = mock(WebSocketSession.class);
+
+        Client(Mono<Principal> principal) {
+            this(principal, null);
+        }
+
+        Client(Mono<Principal> principal, String subProtocol) {
+            when(socket.getId()).thenReturn(UUID.randomUUID().toString());
+            when(socket.getHandshakeInfo()).thenReturn(
+                    new HandshakeInfo(URI.create("ws://localhost/ws/chat"), new HttpHeaders(), principal, subProtocol));
+            when(socket.bufferFactory()).thenReturn(DefaultDataBufferFactory.sharedInstance);
+            when(socket.receive()).thenReturn(inbound.asFlux());
+            when(socket.send(any())).thenAnswer(invocation -> Flux.<WebSocketMessage>from(invocation.getArgument(0))
+                    .doOnNext(message -> outbound.add(message.getPayloadAsText()))
+                    .then());
+        }
+
+        void send(String type) {
+            send(type, userId);
+        }
+
+        void send(String type, UUID claimedUserId) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(Map.of(
+                        "type", type, "conversationId", conversationId.toString(), "userId", claimedUserId.toString()));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            inbound.tryEmitNext(new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                    DefaultDataBufferFactory.sharedInstance.wrap(json.getBytes(StandardCharsets.UTF_8))));
+        }
+
+        List<JsonNode> received() {
+            return outbound.stream().map(text -> {
+                try {
+                    return objectMapper.readTree(text);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).toList();
+        }
+    }
+}
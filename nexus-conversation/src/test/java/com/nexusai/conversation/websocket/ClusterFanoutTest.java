@@ -0,0 +1,173 @@
+package com.nexusai.conversation.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexusai.conversation.dto.StreamChunk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ClusterFanout Tests")
+class ClusterFanoutTest {
+
+    private final Broker broker = new Broker();
+    private final List<Node> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(node -> node.fanout.shutdown());
+    }
+
+    @Test
+    @DisplayName("Should deliver a stream to a subscriber on another node, in order")
+    void shouldDeliverAcrossNodes() {
+        Node nodeA = node();
+        Node nodeB = node();
+        UUID conversationId = UUID.randomUUID();
+        ChatSession local = nodeA.connect(conversationId);
+        ChatSession remote = nodeB.connect(conversationId);
+
+        UUID messageId = UUID.randomUUID();
+        for (int i = 0; i < 5; i++) {
+            nodeA.fanout.publish(conversationId, StreamChunk.text(messageId, conversationId, "chunk-" + i));
+        }
+        nodeA.fanout.flush();
+
+        List<String> expected = List.of("chunk-0", "chunk-1", "chunk-2", "chunk-3", "chunk-4");
+        assertThat(drain(remote)).containsExactlyElementsOf(expected);
+        // The publishing node delivers locally once and ignores its own broadcast
+        assertThat(drain(local)).containsExactlyElementsOf(expected);
+        assertThat(nodeB.meters.timer("nexusai.websocket.fanout.latency").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should only subscribe to shards with local sessions")
+    void shouldSubscribeOnDemand() {
+        Node node = node();
+        UUID conversationId = UUID.randomUUID();
+
+        assertThat(broker.subscriptionCount()).isZero();
+        ChatSession session = node.connect(conversationId);
+        assertThat(broker.subscriptionCount()).isEqualTo(1);
+
+        node.registry.unregister(session);
+        assertThat(broker.subscriptionCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should coalesce many frames into few publishes without losing any")
+    void shouldCoalescePublishes() {
+        Node publisher = node();
+        Node receiver = node();
+        int conversations = 100;
+        int framesPerConversation = 100;
+        List<UUID> ids = new ArrayList<>();
+        List<ChatSession> sessions = new ArrayList<>();
+        for (int c = 0; c < conversations; c++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            sessions.add(receiver.connect(id));
+        }
+
+        UUID messageId = UUID.randomUUID();
+        for (int i = 0; i < framesPerConversation; i++) {
+            for (UUID id : ids) {
+                publisher.fanout.publish(id, StreamChunk.text(messageId, id, "frame-" + i));
+            }
+        }
+        publisher.fanout.flush();
+
+        int frames = conversations * framesPerConversation;
+        // Full batches of 64, plus at most one partial batch per shard
+        assertThat(broker.published.get()).isLessThanOrEqualTo(frames / 64 + 64);
+        assertThat(receiver.meters.counter("nexusai.websocket.fanout.frames.received").count()).isEqualTo(frames);
+        for (ChatSession session : sessions) {
+            assertThat(drain(session)).hasSize(framesPerConversation).startsWith("frame-0").endsWith("frame-99");
+        }
+    }
+
+    private Node node() {
+        Node node = new Node(broker);
+        nodes.add(node);
+        return node;
+    }
+
+    private static List<String> drain(ChatSession session) {
+        session.close();
+        return session.outbound()
+                .map(frame -> ((OutboundFrame.Chunk) frame).chunk().getContent())
+                .collectList()
+                .block();
+    }
+
+    /**
+     * Stand-in for the Redis server: synchronous pub/sub shared by every node.
+     */
+    private static final class Broker {
+
+        private final Map<String, Map<Transport, Consumer<byte[]>>> channels = new ConcurrentHashMap<>();
+        private final AtomicInteger published = new AtomicInteger();
+
+        int subscriptionCount() {
+            return channels.values().stream().mapToInt(Map::size).sum();
+        }
+
+        private final class Transport implements FanoutTransport {
+
+            @Override
+            public void publish(String channel, byte[] payload) {
+                published.incrementAndGet();
+                channels.getOrDefault(channel, Map.of()).values().forEach(handler -> handler.accept(payload));
+            }
+
+            @Override
+            public void subscribe(String channel, Consumer<byte[]> handler) {
+                channels.computeIfAbsent(channel, key -> new ConcurrentHashMap<>()).put(this, handler);
+            }
+
+            @Override
+            public void unsubscribe(String channel) {
+                channels.computeIfPresent(channel, (key, handlers) -> {
+                    handlers.remove(this);
+                    return handlers.isEmpty() ? null : handlers;
+                });
+            }
+        }
+    }
+
+    private static final class Node {
+
+        private final SessionRegistry registry = new SessionRegistry(20_000, SlowConsumerPolicy.DROP);
+        private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        private final ClusterFanout fanout;
+        private final UUID userId = UUID.randomUUID();
+        private int sessions;
+
+        Node(Broker broker) {
+            this.fanout = new ClusterFanout(registry, broker.new Transport(), new ObjectMapper(), meters,
+                    64, 64, Duration.ofHours(1));
+        }
+
+        ChatSession connect(UUID conversationId) {
+            WebSocketSession socket = mock(WebSocketSession.class);
+            when(socket.getId()).thenReturn("session-" + sessions++);
+            ChatSession session = registry.register(socket);
+            registry.bindUser(session, userId);
+            registry.subscribe(session, conversationId);
+            return session;
+        }
+    }
+}
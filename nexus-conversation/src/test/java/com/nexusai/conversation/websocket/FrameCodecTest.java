@@ -0,0 +1,119 @@
+package com.nexusai.conversation.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.nexusai.conversation.dto.StreamChunk;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("FrameCodec Tests")
+@Slf4j
+class FrameCodecTest {
+
+    private static final int TOKENS = 20_000;
+
+    private final DataBufferFactory buffers = DefaultDataBufferFactory.sharedInstance;
+    private final CBORMapper cborMapper = new CBORMapper();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UUID conversationId = UUID.randomUUID();
+    private final UUID messageId = UUID.randomUUID();
+
+    @Test
+    @DisplayName("Should send the stream ids once, then deltas only")
+    void shouldOpenStreamOnceThenSendDeltas() throws IOException {
+        CborFrameCodec codec = new CborFrameCodec(cborMapper);
+
+        JsonNode open = decode(codec.encode(chunk("Hel"), buffers));
+        JsonNode delta = decode(codec.encode(chunk("lo"), buffers));
+        JsonNode complete = decode(codec.encode(new OutboundFrame.Chunk(
+                StreamChunk.complete(messageId, conversationId, 42)), buffers));
+        JsonNode reopened = decode(codec.encode(chunk("again"), buffers));
+
+        assertThat(open.get(0).asInt()).isEqualTo(CborFrameCodec.OPEN);
+        assertThat(uuid(open.get(2))).isEqualTo(conversationId);
+        assertThat(uuid(open.get(3))).isEqualTo(messageId);
+        assertThat(open.get(4).asText()).isEqualTo("Hel");
+        assertThat(delta).hasSize(3);
+        assertThat(delta.get(0).asInt()).isEqualTo(CborFrameCodec.DELTA);
+        assertThat(delta.get(1).asInt()).isEqualTo(open.get(1).asInt());
+        assertThat(delta.get(2).asText()).isEqualTo("lo");
+        assertThat(complete.get(0).asInt()).isEqualTo(CborFrameCodec.COMPLETE);
+        assertThat(complete.get(2).asInt()).isEqualTo(42);
+        assertThat(reopened.get(0).asInt()).isEqualTo(CborFrameCodec.OPEN);
+    }
+
+    @Test
+    @DisplayName("Should encode control frames as maps in both protocols")
+    void shouldEncodeControlFrames() throws IOException {
+        OutboundFrame ack = new OutboundFrame.Control(Map.of("type", "ack", "action", "message_sent"));
+
+        JsonNode cbor = decode(new CborFrameCodec(cborMapper).encode(ack, buffers));
+        WebSocketMessage json = new JsonFrameCodec(objectMapper).encode(ack, buffers);
+
+        assertThat(cbor.get("type").asText()).isEqualTo("ack");
+        assertThat(json.getType()).isEqualTo(WebSocketMessage.Type.TEXT);
+        assertThat(objectMapper.readTree(json.getPayloadAsText()).get("action").asText()).isEqualTo("message_sent");
+    }
+
+    @Test
+    @DisplayName("Should cut bytes per token against the JSON protocol")
+    void shouldBenchmarkBytesAndTimePerToken() {
+        Result json = run(new JsonFrameCodec(objectMapper));
+        Result cbor = run(new CborFrameCodec(cborMapper));
+
+        log.info("Per token: JSON {} bytes / {} ns, CBOR {} bytes / {} ns",
+                json.bytesPerToken(), json.nanosPerToken(), cbor.bytesPerToken(), cbor.nanosPerToken());
+        assertThat(cbor.bytesPerToken()).isLessThan(json.bytesPerToken() / 5);
+    }
+
+    private Result run(FrameCodec codec) {
+        // Warm up, then measure a full response
+        for (int i = 0; i < TOKENS; i++) {
+            release(codec.encode(new OutboundFrame.Chunk(StreamChunk.text(UUID.randomUUID(), conversationId, " tok")), buffers));
+        }
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < TOKENS; i++) {
+            WebSocketMessage message = codec.encode(chunk(" tok"), buffers);
+            bytes += message.getPayload().readableByteCount();
+            release(message);
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(bytes / (double) TOKENS, elapsed / (double) TOKENS);
+    }
+
+    private OutboundFrame chunk(String content) {
+        return new OutboundFrame.Chunk(StreamChunk.text(messageId, conversationId, content));
+    }
+
+    private JsonNode decode(WebSocketMessage message) throws IOException {
+        DataBuffer payload = message.getPayload();
+        byte[] bytes = new byte[payload.readableByteCount()];
+        payload.read(bytes);
+        return cborMapper.readTree(bytes);
+    }
+
+    private static UUID uuid(JsonNode node) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(node.binaryValue());
+        return new UUID(bytes.getLong(), bytes.getLong());
+    }
+
+    private static void release(WebSocketMessage message) {
+        message.release();
+    }
+
+    private record Result(double bytesPerToken, double nanosPerToken) {}
+}
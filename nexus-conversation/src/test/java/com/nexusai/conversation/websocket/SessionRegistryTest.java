@@ -0,0 +1,132 @@
+package com.nexusai.conversation.websocket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SessionRegistry Tests")
+class SessionRegistryTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID conversationId = UUID.randomUUID();
+
+    @Nested
+    @DisplayName("Fan-out")
+    class FanOutTests {
+
+        private final SessionRegistry registry = new SessionRegistry(16, SlowConsumerPolicy.CLOSE);
+
+        @Test
+        @DisplayName("Should deliver only to subscribers of the conversation")
+        void shouldDeliverOnlyToSubscribers() {
+            ChatSession subscriber = connect(registry, "s1");
+            ChatSession otherConversation = connect(registry, "s2");
+            ChatSession otherUser = connect(registry, "s3");
+            registry.bindUser(subscriber, userId);
+            registry.subscribe(subscriber, conversationId);
+            registry.bindUser(otherConversation, userId);
+            registry.subscribe(otherConversation, UUID.randomUUID());
+            registry.bindUser(otherUser, UUID.randomUUID());
+
+            int delivered = registry.sendToConversation(conversationId, frame(0));
+
+            assertThat(delivered).isEqualTo(1);
+            registry.unregister(subscriber);
+            assertThat(subscriber.outbound().collectList().block()).containsExactly(frame(0));
+        }
+
+        @Test
+        @DisplayName("Should drop index buckets when the last session disconnects")
+        void shouldCleanUpOnDisconnect() {
+            ChatSession session = connect(registry, "s1");
+            registry.bindUser(session, userId);
+            registry.subscribe(session, conversationId);
+
+            registry.unregister(session);
+
+            assertThat(registry.sessionCount()).isZero();
+            assertThat(registry.subscriberCount(conversationId)).isZero();
+            assertThat(registry.sendToConversation(conversationId, frame(0))).isZero();
+            assertThat(registry.sendToUser(userId, frame(0))).isZero();
+        }
+
+        @Test
+        @DisplayName("Should refuse to rebind a session to another user")
+        void shouldRefuseRebinding() {
+            ChatSession session = connect(registry, "s1");
+
+            assertThat(registry.bindUser(session, userId)).isTrue();
+            assertThat(registry.bindUser(session, UUID.randomUUID())).isFalse();
+            assertThat(session.userId()).isEqualTo(userId);
+        }
+    }
+
+    @Nested
+    @DisplayName("Slow consumers")
+    class SlowConsumerTests {
+
+        @Test
+        @DisplayName("Should drop frames beyond the buffer and keep the session open")
+        void shouldDropWhenBufferFull() {
+            SessionRegistry registry = new SessionRegistry(4, SlowConsumerPolicy.DROP);
+            WebSocketSession socket = socket("s1");
+            ChatSession session = registry.register(socket);
+            registry.bindUser(session, userId);
+            registry.subscribe(session, conversationId);
+
+            for (int i = 0; i < 10; i++) {
+                registry.sendToConversation(conversationId, frame(i));
+            }
+
+            assertThat(session.droppedFrames()).isEqualTo(6);
+            assertThat(session.isClosed()).isFalse();
+            verify(socket, never()).close(any());
+        }
+
+        @Test
+        @DisplayName("Should close the session when the buffer fills")
+        void shouldCloseWhenBufferFull() {
+            SessionRegistry registry = new SessionRegistry(4, SlowConsumerPolicy.CLOSE);
+            WebSocketSession socket = socket("s1");
+            when(socket.close(CloseStatus.SERVICE_OVERLOAD)).thenReturn(Mono.empty());
+            ChatSession session = registry.register(socket);
+            registry.bindUser(session, userId);
+            registry.subscribe(session, conversationId);
+
+            for (int i = 0; i < 10; i++) {
+                registry.sendToConversation(conversationId, frame(i));
+            }
+
+            assertThat(session.isClosed()).isTrue();
+            assertThat(session.droppedFrames()).isEqualTo(1);
+            verify(socket).close(CloseStatus.SERVICE_OVERLOAD);
+            assertThat(session.outbound().collectList().block()).hasSize(4);
+        }
+    }
+
+    private static OutboundFrame frame(int sequence) {
+        return new OutboundFrame.Control(Map.of("type", "test", "sequence", sequence));
+    }
+
+    private static ChatSession connect(SessionRegistry registry, String id) {
+        return registry.register(socket(id));
+    }
+
+    private static WebSocketSession socket(String id) {
+        WebSocketSession socket = mock(WebSocketSession.class);
+        when(socket.getId()).thenReturn(id);
+        return socket;
+    }
+}
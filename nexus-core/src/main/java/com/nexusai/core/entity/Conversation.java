@@ -51,6 +51,12 @@ public class Conversation extends BaseEntity {
     @Column(name = "context_summary", columnDefinition = "text")
     private String contextSummary;
 
+    /**
+     * Creation time of the newest message folded into {@link #contextSummary}.
+     */
+    @Column(name = "context_summary_through")
+    private LocalDateTime contextSummaryThrough;
+
     @Column(name = "metadata", columnDefinition = "jsonb")
     private String metadata;
 
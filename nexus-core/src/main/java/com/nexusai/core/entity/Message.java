@@ -4,23 +4,50 @@ import com.nexusai.core.enums.MessageRole;
 import com.nexusai.core.enums.MessageType;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.PartitionKey;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 /**
  * Message entity representing a single message in a conversation.
+ *
+ * The table is range-partitioned by month on {@code created_at} (V8) and its
+ * primary key is {@code (id, created_at)}. {@code createdAt} is therefore the
+ * {@link PartitionKey}: Hibernate adds it to the {@code WHERE} clause of every
+ * update and delete of a loaded message, so those touch a single partition
+ * instead of probing all of them. That annotation cannot be put on an
+ * inherited attribute, which is why the columns of {@link BaseEntity} are
+ * declared here rather than inherited.
  */
 @Entity
 @Table(name = "messages", indexes = {
-    @Index(name = "idx_messages_conversation", columnList = "conversation_id"),
-    @Index(name = "idx_messages_created", columnList = "created_at")
+    @Index(name = "idx_messages_conversation_created", columnList = "conversation_id, created_at DESC, id DESC")
 })
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Message extends BaseEntity {
+@EntityListeners(AuditingEntityListener.class)
+public class Message {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id", updatable = false, nullable = false)
+    private UUID id;
+
+    @PartitionKey
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
 
     @Column(name = "conversation_id", nullable = false)
     private UUID conversationId;
@@ -56,6 +83,19 @@ public class Message extends BaseEntity {
     @Column(name = "parent_message_id")
     private UUID parentMessageId;
 
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
     /**
      * Checks if this is a user message.
      */
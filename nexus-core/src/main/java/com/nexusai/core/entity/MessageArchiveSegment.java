@@ -0,0 +1,41 @@
+package com.nexusai.core.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Tombstone of a range of messages moved out of {@code messages} into a
+ * compressed segment object in cold storage.
+ */
+@Entity
+@Table(name = "message_archive_segments", indexes = {
+    @Index(name = "idx_message_archive_segments_conversation", columnList = "conversation_id, last_created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageArchiveSegment extends BaseEntity {
+
+    @Column(name = "conversation_id", nullable = false)
+    private UUID conversationId;
+
+    @Column(name = "object_key", nullable = false, unique = true, length = 500)
+    private String objectKey;
+
+    @Column(name = "first_created_at", nullable = false)
+    private LocalDateTime firstCreatedAt;
+
+    @Column(name = "last_created_at", nullable = false)
+    private LocalDateTime lastCreatedAt;
+
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount;
+
+    @Column(name = "compressed_bytes", nullable = false)
+    private Long compressedBytes;
+}
@@ -0,0 +1,51 @@
+package com.nexusai.core.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A long-term fact a companion remembers about its user.
+ *
+ * The {@code embedding} column is not mapped: vectors are held by the
+ * conversation module's memory index, which re-embeds {@code content} when it
+ * has to rebuild.
+ */
+@Entity
+@Table(name = "user_companion_memory", indexes = {
+    @Index(name = "idx_memory_user_companion", columnList = "user_id, companion_id"),
+    @Index(name = "idx_memory_type", columnList = "memory_type")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserCompanionMemory extends BaseEntity {
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "companion_id", nullable = false)
+    private UUID companionId;
+
+    @Column(name = "memory_type", nullable = false, length = 50)
+    private String memoryType;
+
+    @Column(name = "content", columnDefinition = "text", nullable = false)
+    private String content;
+
+    @Column(name = "importance", precision = 3, scale = 2)
+    @Builder.Default
+    private BigDecimal importance = BigDecimal.ONE;
+
+    @Column(name = "access_count")
+    @Builder.Default
+    private Integer accessCount = 0;
+
+    @Column(name = "last_accessed_at")
+    private LocalDateTime lastAccessedAt;
+}
@@ -5,6 +5,7 @@ import com.nexusai.core.enums.CompanionStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -29,4 +30,11 @@ public interface CompanionRepository extends JpaRepository<Companion, UUID> {
            "AND (LOWER(c.name) LIKE LOWER(CONCAT('%', :query, '%')) " +
            "OR LOWER(c.description) LIKE LOWER(CONCAT('%', :query, '%')))")
     Page<Companion> searchPublicCompanions(@Param("query") String query, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Companion c SET c.totalMessages = c.totalMessages + :messages, " +
+           "c.totalTokensUsed = c.totalTokensUsed + :tokens WHERE c.id = :companionId")
+    int applyUsageDeltas(@Param("companionId") UUID companionId,
+                         @Param("messages") long messages,
+                         @Param("tokens") long tokens);
 }
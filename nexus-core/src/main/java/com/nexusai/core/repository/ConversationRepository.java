@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -24,18 +25,62 @@ public interface ConversationRepository extends JpaRepository<Conversation, UUID
     List<Conversation> findByUserIdAndCompanionIdAndStatus(
             UUID userId, UUID companionId, ConversationStatus status);
 
-    Optional<Conversation> findByIdAndUserId(UUID id, UUID userId);
+    /**
+     * The conversation if it belongs to the user and has not been deleted: a
+     * soft-deleted conversation is gone for its owner before it is reaped.
+     */
+    @Query("SELECT c FROM Conversation c WHERE c.id = :id AND c.userId = :userId AND c.status <> 'DELETED'")
+    Optional<Conversation> findByIdAndUserId(@Param("id") UUID id, @Param("userId") UUID userId);
 
     @Query("SELECT c FROM Conversation c WHERE c.userId = :userId " +
            "AND c.status = 'ACTIVE' ORDER BY c.lastActivityAt DESC")
     List<Conversation> findRecentConversations(@Param("userId") UUID userId, Pageable pageable);
 
+    @Transactional
     @Modifying
     @Query("UPDATE Conversation c SET c.lastActivityAt = :activityTime, " +
            "c.messageCount = c.messageCount + 1 WHERE c.id = :conversationId")
     void incrementMessageCount(@Param("conversationId") UUID conversationId,
                                @Param("activityTime") LocalDateTime activityTime);
 
+    @Modifying
+    @Query("UPDATE Conversation c SET c.messageCount = c.messageCount + :messages, " +
+           "c.totalTokens = c.totalTokens + :tokens, " +
+           "c.lastActivityAt = CASE WHEN c.lastActivityAt IS NULL OR c.lastActivityAt < :activityTime " +
+           "THEN :activityTime ELSE c.lastActivityAt END " +
+           "WHERE c.id = :conversationId")
+    int applyCounterDeltas(@Param("conversationId") UUID conversationId,
+                           @Param("messages") int messages,
+                           @Param("tokens") long tokens,
+                           @Param("activityTime") LocalDateTime activityTime);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Conversation c SET c.contextSummary = :summary, c.contextSummaryThrough = :through " +
+           "WHERE c.id = :conversationId")
+    int updateContextSummary(@Param("conversationId") UUID conversationId,
+                             @Param("summary") String summary,
+                             @Param("through") LocalDateTime through);
+
+    /**
+     * Creation time of the newest message folded into the context summary, if any.
+     */
+    @Query("SELECT c.contextSummaryThrough FROM Conversation c WHERE c.id = :conversationId")
+    Optional<LocalDateTime> findContextSummaryThrough(@Param("conversationId") UUID conversationId);
+
     @Query("SELECT COUNT(c) FROM Conversation c WHERE c.userId = :userId AND c.status = 'ACTIVE'")
     long countActiveByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Conversations, archived or idle since {@code idleSince}, that still hold
+     * messages older than {@code before} in hot storage; least recently active first.
+     * Deleted conversations are left to the reaper.
+     */
+    @Query("SELECT c.id FROM Conversation c WHERE (c.status = 'ARCHIVED' OR " +
+           "(c.status = 'ACTIVE' AND c.lastActivityAt < :idleSince)) " +
+           "AND EXISTS (SELECT 1 FROM Message m WHERE m.conversationId = c.id AND m.createdAt < :before) " +
+           "ORDER BY c.lastActivityAt ASC LIMIT :limit")
+    List<UUID> findArchivable(@Param("idleSince") LocalDateTime idleSince,
+                              @Param("before") LocalDateTime before,
+                              @Param("limit") int limit);
 }
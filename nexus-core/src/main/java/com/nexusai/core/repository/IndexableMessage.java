@@ -0,0 +1,10 @@
+package com.nexusai.core.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A message with the owner of its conversation, as needed to (re)build a search index.
+ */
+public record IndexableMessage(UUID id, UUID conversationId, UUID userId, String content,
+                               LocalDateTime createdAt) {}
@@ -0,0 +1,27 @@
+package com.nexusai.core.repository;
+
+import com.nexusai.core.entity.MessageArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MessageArchiveSegmentRepository extends JpaRepository<MessageArchiveSegment, UUID> {
+
+    /**
+     * Segments of a conversation, newest range first.
+     */
+    List<MessageArchiveSegment> findByConversationIdOrderByLastCreatedAtDescCreatedAtDesc(UUID conversationId);
+
+    /**
+     * Takes the archival lock of a conversation until the end of the current
+     * transaction, or returns {@code false} if another node holds it.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(hashtextextended(CAST(:conversationId AS text), 7041))",
+           nativeQuery = true)
+    boolean tryLockForArchival(@Param("conversationId") UUID conversationId);
+}
@@ -2,15 +2,21 @@ package com.nexusai.core.repository;
 
 import com.nexusai.core.entity.Message;
 import com.nexusai.core.enums.MessageRole;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, UUID> {
@@ -22,6 +28,26 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
     List<Message> findRecentMessages(@Param("conversationId") UUID conversationId,
                                      @Param("limit") int limit);
 
+    /**
+     * Newest messages of a conversation, ordered for keyset pagination.
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId " +
+           "ORDER BY m.createdAt DESC, m.id DESC LIMIT :limit")
+    List<Message> findLatest(@Param("conversationId") UUID conversationId,
+                             @Param("limit") int limit);
+
+    /**
+     * Messages strictly older than the {@code (createdAt, id)} cursor. Seeks on
+     * idx_messages_conversation_created instead of skipping an OFFSET.
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC LIMIT :limit")
+    List<Message> findBefore(@Param("conversationId") UUID conversationId,
+                             @Param("createdAt") LocalDateTime createdAt,
+                             @Param("id") UUID id,
+                             @Param("limit") int limit);
+
     @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId " +
            "AND m.role = :role ORDER BY m.createdAt DESC")
     List<Message> findByConversationIdAndRole(@Param("conversationId") UUID conversationId,
@@ -34,10 +60,127 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversationId = :conversationId")
     long countByConversationId(@Param("conversationId") UUID conversationId);
 
-    @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId " +
-           "AND LOWER(m.content) LIKE LOWER(CONCAT('%', :query, '%')) " +
-           "ORDER BY m.createdAt DESC")
+    /**
+     * Substring search within one conversation, served by idx_messages_content_trgm.
+     */
+    @Query(value = "SELECT * FROM messages m WHERE m.conversation_id = :conversationId " +
+                   "AND m.content ILIKE CONCAT('%', :query, '%') " +
+                   "ORDER BY m.created_at DESC",
+           countQuery = "SELECT COUNT(*) FROM messages m WHERE m.conversation_id = :conversationId " +
+                        "AND m.content ILIKE CONCAT('%', :query, '%')",
+           nativeQuery = true)
     Page<Message> searchInConversation(@Param("conversationId") UUID conversationId,
                                        @Param("query") String query,
                                        Pageable pageable);
+
+    /**
+     * Ranked full-text search across all of a user's conversations, matched on the
+     * English and French stems in messages.search_vector. Soft-deleted conversations
+     * are left out. Keyset-paginated on
+     * {@code (rank, id)}: pass the last hit's values as {@code afterRank}/{@code afterId},
+     * or nulls for the first page. Snippets are only computed for the returned rows.
+     */
+    @Query(value = "WITH q AS (SELECT websearch_to_tsquery('english', :query) || " +
+                   "websearch_to_tsquery('french', :query) AS query) " +
+                   "SELECT p.id AS id, p.conversation_id AS conversationId, p.role AS role, " +
+                   "p.created_at AS createdAt, p.rank AS rank, " +
+                   "ts_headline('english', p.content, q.query, :headlineOptions) AS snippet " +
+                   "FROM (SELECT h.* FROM (" +
+                   "    SELECT m.id, m.conversation_id, m.role, m.content, m.created_at, " +
+                   "    CAST(ts_rank_cd(m.search_vector, q.query) AS float8) AS rank " +
+                   "    FROM messages m JOIN conversations c ON c.id = m.conversation_id CROSS JOIN q " +
+                   "    WHERE c.user_id = :userId AND c.status <> 'DELETED' AND m.search_vector @@ q.query) h " +
+                   "  WHERE CAST(:afterRank AS float8) IS NULL OR h.rank < :afterRank " +
+                   "     OR (h.rank = :afterRank AND h.id < CAST(:afterId AS uuid)) " +
+                   "  ORDER BY h.rank DESC, h.id DESC LIMIT :limit) p CROSS JOIN q " +
+                   "ORDER BY p.rank DESC, p.id DESC",
+           nativeQuery = true)
+    List<MessageSearchRow> searchForUser(@Param("userId") UUID userId,
+                                         @Param("query") String query,
+                                         @Param("afterRank") Double afterRank,
+                                         @Param("afterId") UUID afterId,
+                                         @Param("headlineOptions") String headlineOptions,
+                                         @Param("limit") int limit);
+
+    /**
+     * Batch of messages with their owners in id order, for index rebuilds.
+     * Messages of soft-deleted conversations are left out.
+     */
+    @Query("SELECT new com.nexusai.core.repository.IndexableMessage(m.id, m.conversationId, c.userId, " +
+           "m.content, m.createdAt) FROM Message m JOIN Conversation c ON c.id = m.conversationId " +
+           "WHERE m.id > :afterId AND c.status <> com.nexusai.core.enums.ConversationStatus.DELETED " +
+           "ORDER BY m.id LIMIT :limit")
+    List<IndexableMessage> findIndexableAfter(@Param("afterId") UUID afterId, @Param("limit") int limit);
+
+    /**
+     * Oldest messages of a conversation created before a cutoff, for archival.
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId AND m.createdAt < :before " +
+           "ORDER BY m.createdAt ASC, m.id ASC LIMIT :limit")
+    List<Message> findOldestBefore(@Param("conversationId") UUID conversationId,
+                                   @Param("before") LocalDateTime before,
+                                   @Param("limit") int limit);
+
+    /**
+     * Messages of a conversation created strictly between two instants, newest first.
+     * Used to catch up summarization on history that left the context window
+     * while no node held it.
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId " +
+           "AND m.createdAt > :after AND m.createdAt < :before " +
+           "ORDER BY m.createdAt DESC, m.id DESC LIMIT :limit")
+    List<Message> findBetween(@Param("conversationId") UUID conversationId,
+                              @Param("after") LocalDateTime after,
+                              @Param("before") LocalDateTime before,
+                              @Param("limit") int limit);
+
+    /**
+     * Messages of a conversation created strictly between two instants, oldest first.
+     * Used to summarize, in order, history dropped from a full summarization buffer.
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId " +
+           "AND m.createdAt > :after AND m.createdAt < :before " +
+           "ORDER BY m.createdAt ASC, m.id ASC LIMIT :limit")
+    List<Message> findOldestBetween(@Param("conversationId") UUID conversationId,
+                                    @Param("after") LocalDateTime after,
+                                    @Param("before") LocalDateTime before,
+                                    @Param("limit") int limit);
+
+    /**
+     * Deletes archived messages. The {@code [from, to]} bounds on the partition
+     * key keep the delete to the partitions of the archived range.
+     */
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.conversationId = :conversationId " +
+           "AND m.createdAt >= :from AND m.createdAt <= :to AND m.id IN :ids")
+    int deleteArchived(@Param("conversationId") UUID conversationId,
+                       @Param("from") LocalDateTime from,
+                       @Param("to") LocalDateTime to,
+                       @Param("ids") List<UUID> ids);
+
+    /**
+     * Messages of a conversation created in {@code [from, to)}, oldest first,
+     * read through a server-side cursor. Must be consumed, and closed, inside
+     * a transaction; detach the rows as they are consumed to keep memory flat.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT m FROM Message m WHERE m.conversationId = :conversationId " +
+           "AND m.createdAt >= :from AND m.createdAt < :to ORDER BY m.createdAt ASC, m.id ASC")
+    Stream<Message> streamForExport(@Param("conversationId") UUID conversationId,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to);
+
+    /**
+     * Creation time of the oldest message with attachments or reactions, which
+     * archival leaves in place along with everything after it.
+     */
+    @Query(value = "SELECT CAST(MIN(m.created_at) AS timestamp) FROM messages m WHERE m.conversation_id = :conversationId " +
+                   "AND (EXISTS (SELECT 1 FROM message_attachments a WHERE a.message_id = m.id) " +
+                   "OR EXISTS (SELECT 1 FROM message_reactions r WHERE r.message_id = m.id))",
+           nativeQuery = true)
+    LocalDateTime findOldestPinnedAt(@Param("conversationId") UUID conversationId);
 }
@@ -0,0 +1,22 @@
+package com.nexusai.core.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Projection of one full-text search hit.
+ */
+public interface MessageSearchRow {
+
+    UUID getId();
+
+    UUID getConversationId();
+
+    String getRole();
+
+    LocalDateTime getCreatedAt();
+
+    Double getRank();
+
+    String getSnippet();
+}
@@ -0,0 +1,33 @@
+package com.nexusai.core.repository;
+
+import com.nexusai.core.entity.UserCompanionMemory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UserCompanionMemoryRepository extends JpaRepository<UserCompanionMemory, UUID> {
+
+    Slice<UserCompanionMemory> findByUserIdAndCompanionIdOrderByCreatedAtAsc(UUID userId, UUID companionId,
+                                                                            Pageable pageable);
+
+    long countByUserIdAndCompanionId(UUID userId, UUID companionId);
+
+    @Query("SELECT m.id FROM UserCompanionMemory m WHERE m.id IN :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query("UPDATE UserCompanionMemory m SET m.accessCount = COALESCE(m.accessCount, 0) + :times, " +
+           "m.lastAccessedAt = :accessedAt WHERE m.id IN :ids")
+    int recordAccess(@Param("ids") Collection<UUID> ids, @Param("times") int times,
+                     @Param("accessedAt") LocalDateTime accessedAt);
+}
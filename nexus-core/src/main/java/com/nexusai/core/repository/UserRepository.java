@@ -45,6 +45,15 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     @Query("UPDATE User u SET u.tokensRemaining = u.tokensRemaining + :amount WHERE u.id = :userId")
     void addTokens(@Param("userId") UUID userId, @Param("amount") int amount);
 
+    /**
+     * Charges tokens already spent: unlike {@link #consumeTokens} it never fails
+     * and floors the balance at zero. VIP+ balances are left alone, as in {@link User#consumeTokens}.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.tokensRemaining = CASE WHEN u.tokensRemaining > :amount THEN u.tokensRemaining - :amount ELSE 0 END " +
+           "WHERE u.id = :userId AND u.subscriptionType <> com.nexusai.core.enums.SubscriptionType.VIP_PLUS")
+    int chargeTokens(@Param("userId") UUID userId, @Param("amount") int amount);
+
     Optional<User> findByStripeCustomerId(String stripeCustomerId);
 
     Optional<User> findByStripeSubscriptionId(String stripeSubscriptionId);
@@ -0,0 +1,10 @@
+-- ══════════════════════════════════════════════════════════════
+-- NexusAI - Conversation Soft Delete Migration
+-- Version: V10
+-- Description: Lookup of soft-deleted conversations awaiting the reaper
+-- ══════════════════════════════════════════════════════════════
+
+-- Deleting a conversation only sets its status to DELETED; the reaper then
+-- removes its rows in batches, oldest deletion first. This index stays as
+-- small as the reaper's backlog.
+CREATE INDEX idx_conversations_deleted ON conversations(updated_at) WHERE status = 'DELETED';
@@ -0,0 +1,11 @@
+-- ══════════════════════════════════════════════════════════════
+-- NexusAI - Context Summary Watermark Migration
+-- Version: V11
+-- Description: Durable record of how far the context summary reaches
+-- ══════════════════════════════════════════════════════════════
+
+-- Creation time of the newest message folded into context_summary. When a
+-- context window is loaded, messages between this and the window's oldest
+-- turn left the window without being summarized (on a node that went away,
+-- or while no node held the window) and are summarized then.
+ALTER TABLE conversations ADD COLUMN context_summary_through TIMESTAMP WITH TIME ZONE;
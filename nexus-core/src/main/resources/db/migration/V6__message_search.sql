@@ -0,0 +1,21 @@
+-- ══════════════════════════════════════════════════════════════
+-- NexusAI - Message Search Migration
+-- Version: V6
+-- Description: Full-text and trigram indexes for message search
+-- ══════════════════════════════════════════════════════════════
+
+-- Companions are used in English and French; index the content under both
+-- configurations so stemming works whichever language a message is in.
+-- Note: adding a STORED generated column rewrites the table.
+ALTER TABLE messages
+    ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (
+        to_tsvector('english'::regconfig, coalesce(content, '')) ||
+        to_tsvector('french'::regconfig, coalesce(content, ''))
+    ) STORED;
+
+-- Ranked word search (websearch_to_tsquery / @@)
+CREATE INDEX idx_messages_search_vector ON messages USING GIN (search_vector);
+
+-- Substring search within a conversation (ILIKE '%...%'), pg_trgm is enabled in V1
+CREATE INDEX idx_messages_content_trgm ON messages USING GIN (content gin_trgm_ops);
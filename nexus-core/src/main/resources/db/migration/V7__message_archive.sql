@@ -0,0 +1,26 @@
+-- ══════════════════════════════════════════════════════════════
+-- NexusAI - Message Archive Migration
+-- Version: V7
+-- Description: Tombstones of message ranges moved to cold storage
+-- ══════════════════════════════════════════════════════════════
+
+-- One row per compressed segment object; the archived messages are deleted
+-- from `messages` in the same transaction that inserts the row.
+CREATE TABLE message_archive_segments (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    conversation_id UUID NOT NULL REFERENCES conversations(id) ON DELETE CASCADE,
+    object_key VARCHAR(500) NOT NULL UNIQUE,
+    first_created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    message_count INTEGER NOT NULL,
+    compressed_bytes BIGINT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_message_archive_segments_conversation
+    ON message_archive_segments(conversation_id, last_created_at DESC);
+
+-- A reply may outlive its parent in hot storage once the parent is archived;
+-- the id stays meaningful, it just no longer resolves to a `messages` row.
+ALTER TABLE messages DROP CONSTRAINT IF EXISTS messages_parent_message_id_fkey;
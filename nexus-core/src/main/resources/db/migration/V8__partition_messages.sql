@@ -0,0 +1,112 @@
+-- ══════════════════════════════════════════════════════════════
+-- NexusAI - Messages Partitioning Migration
+-- Version: V8
+-- Description: Monthly range partitions of messages on created_at
+-- ══════════════════════════════════════════════════════════════
+
+-- Note: copies every row into the new table; on a large installation run it
+-- in a maintenance window.
+
+-- Monthly partitions, named messages_YYYY_MM after their UTC month. There is
+-- no DEFAULT partition: it would rule out ordered scans of the partitions and
+-- DETACH ... CONCURRENTLY. Months are created ahead of time by
+-- ensure_message_partitions(), which the application calls periodically.
+CREATE OR REPLACE FUNCTION create_message_partition(month DATE) RETURNS TEXT AS $$
+DECLARE
+    first_day DATE := date_trunc('month', month)::date;
+    partition_name TEXT := 'messages_' || to_char(first_day, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF messages FOR VALUES FROM (%L) TO (%L)',
+                       partition_name,
+                       first_day::timestamp AT TIME ZONE 'UTC',
+                       (first_day + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC');
+    END IF;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Creates the partitions of the current month and the next months_ahead ones.
+-- Returns how many were missing. Serialized, so concurrent callers are safe.
+CREATE OR REPLACE FUNCTION ensure_message_partitions(months_ahead INTEGER) RETURNS INTEGER AS $$
+DECLARE
+    current_month DATE := date_trunc('month', now() AT TIME ZONE 'UTC')::date;
+    month DATE;
+    created INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('ensure_message_partitions'));
+    FOR i IN 0..months_ahead LOOP
+        month := (current_month + make_interval(months => i))::date;
+        IF to_regclass('messages_' || to_char(month, 'YYYY_MM')) IS NULL THEN
+            PERFORM create_message_partition(month);
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- A foreign key to a partitioned table must cover its partition key, so the
+-- children of a message are now deleted by a trigger instead.
+ALTER TABLE message_attachments DROP CONSTRAINT IF EXISTS message_attachments_message_id_fkey;
+ALTER TABLE message_reactions DROP CONSTRAINT IF EXISTS message_reactions_message_id_fkey;
+
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+ALTER INDEX messages_pkey RENAME TO messages_unpartitioned_pkey;
+DROP INDEX IF EXISTS idx_messages_conversation;
+DROP INDEX IF EXISTS idx_messages_created;
+DROP INDEX IF EXISTS idx_messages_role;
+DROP INDEX IF EXISTS idx_messages_conversation_created;
+DROP INDEX IF EXISTS idx_messages_search_vector;
+DROP INDEX IF EXISTS idx_messages_content_trgm;
+
+CREATE TABLE messages (
+    LIKE messages_unpartitioned INCLUDING DEFAULTS INCLUDING GENERATED INCLUDING CONSTRAINTS
+) PARTITION BY RANGE (created_at);
+
+ALTER TABLE messages ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE messages ADD CONSTRAINT messages_pkey PRIMARY KEY (id, created_at);
+ALTER TABLE messages ADD CONSTRAINT messages_conversation_id_fkey
+    FOREIGN KEY (conversation_id) REFERENCES conversations(id) ON DELETE CASCADE;
+
+-- Indexes are created on every partition. idx_messages_conversation, _created
+-- and _role are gone: the first is a prefix of the composite index, the
+-- partition bounds stand in for the second and the third was never selective.
+CREATE INDEX idx_messages_conversation_created ON messages(conversation_id, created_at DESC, id DESC);
+CREATE INDEX idx_messages_search_vector ON messages USING GIN (search_vector);
+CREATE INDEX idx_messages_content_trgm ON messages USING GIN (content gin_trgm_ops);
+
+UPDATE messages_unpartitioned SET created_at = COALESCE(updated_at, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+
+SELECT create_message_partition(m.month)
+FROM (SELECT DISTINCT date_trunc('month', created_at AT TIME ZONE 'UTC')::date AS month
+      FROM messages_unpartitioned) m;
+SELECT ensure_message_partitions(3);
+
+-- Copy everything but generated columns, which the new table computes itself
+DO $$
+DECLARE
+    columns TEXT;
+BEGIN
+    SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) INTO columns
+    FROM pg_attribute
+    WHERE attrelid = 'messages_unpartitioned'::regclass
+      AND attnum > 0 AND NOT attisdropped AND attgenerated = '';
+    EXECUTE format('INSERT INTO messages (%s) SELECT %s FROM messages_unpartitioned', columns, columns);
+END $$;
+
+DROP TABLE messages_unpartitioned;
+
+CREATE OR REPLACE FUNCTION delete_message_children() RETURNS TRIGGER AS $$
+BEGIN
+    DELETE FROM message_attachments WHERE message_id = OLD.id;
+    DELETE FROM message_reactions WHERE message_id = OLD.id;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_messages_delete_children
+    AFTER DELETE ON messages
+    FOR EACH ROW EXECUTE FUNCTION delete_message_children();
+
+ANALYZE messages;
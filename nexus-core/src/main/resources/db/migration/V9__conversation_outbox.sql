@@ -0,0 +1,21 @@
+-- ══════════════════════════════════════════════════════════════
+-- NexusAI - Conversation Outbox Migration
+-- Version: V9
+-- Description: Transactional outbox of conversation domain events
+-- ══════════════════════════════════════════════════════════════
+
+-- Rows are inserted in the transaction that changes the conversation and
+-- relayed to Kafka in id order, keyed by aggregate_id. Relayed rows keep their
+-- published_at until compaction deletes them.
+CREATE TABLE conversation_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    aggregate_id UUID NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    payload JSONB NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    published_at TIMESTAMP
+);
+
+-- The relay only ever scans what is left to publish
+CREATE INDEX idx_conversation_outbox_pending ON conversation_outbox(id) WHERE published_at IS NULL;
+CREATE INDEX idx_conversation_outbox_published ON conversation_outbox(published_at) WHERE published_at IS NOT NULL;
@@ -0,0 +1,344 @@
+package com.nexusai;
+
+import com.nexusai.conversation.partition.MessagePartitionMaintainer;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs the V8 partitioning migration over a populated V7 schema, compares
+ * insert throughput before and after, and checks that the history queries,
+ * the entity updates and deletes and the archival delete of
+ * {@code MessageRepository} only touch the partitions they need, and that
+ * retention only detaches emptied partitions. Skipped when Docker is not
+ * available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DisplayName("Messages partitioning (V8)")
+@Slf4j
+class MessagePartitioningTest {
+
+    private static final int MONTHS = 6;
+    private static final int ROWS_PER_MONTH = 5_000;
+    private static final int BENCHMARK_ROWS = 20_000;
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private static UUID conversationId;
+    private static long rowsBefore;
+    private static double insertsPerSecondBefore;
+
+    @BeforeAll
+    static void migrateToUnpartitioned() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        }
+        flyway("7").migrate();
+        try (Connection connection = connect()) {
+            conversationId = createConversation(connection);
+            YearMonth current = YearMonth.now(ZoneOffset.UTC);
+            for (int month = MONTHS - 1; month >= 0; month--) {
+                insertMessages(connection, current.minusMonths(month), ROWS_PER_MONTH);
+            }
+            insertsPerSecondBefore = benchmarkInserts(connection);
+            rowsBefore = count(connection);
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Should move every row into monthly partitions without slowing inserts down")
+    void shouldPartitionAndKeepInsertThroughput() throws SQLException {
+        flyway(null).migrate();
+
+        try (Connection connection = connect()) {
+            assertThat(count(connection)).isEqualTo(rowsBefore);
+            assertThat(partitions(connection)).hasSizeGreaterThanOrEqualTo(MONTHS + 3);
+
+            double insertsPerSecondAfter = benchmarkInserts(connection);
+            log.info("Batch inserts: {} rows/s unpartitioned, {} rows/s partitioned",
+                    Math.round(insertsPerSecondBefore), Math.round(insertsPerSecondAfter));
+            // Routing to a partition is cheap, and each partition's indexes are smaller
+            assertThat(insertsPerSecondAfter).isGreaterThan(insertsPerSecondBefore * 0.5);
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Should prune partitions newer than the cursor when paging back")
+    void shouldPruneFindBefore() throws SQLException {
+        YearMonth cursorMonth = YearMonth.now(ZoneOffset.UTC).minusMonths(3);
+        Timestamp cursor = Timestamp.from(cursorMonth.atDay(15).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        String plan = explainGeneric("""
+                SELECT * FROM messages m WHERE m.conversation_id = $1
+                AND (m.created_at < $2 OR (m.created_at = $2 AND m.id < $3))
+                ORDER BY m.created_at DESC, m.id DESC LIMIT $4
+                """, "uuid, timestamptz, uuid, int",
+                "'" + conversationId + "', '" + cursor.toInstant() + "', '" + new UUID(-1, -1) + "', 50");
+
+        assertNotScanned(plan, cursorMonth.plusMonths(1), YearMonth.now(ZoneOffset.UTC).plusMonths(3));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Should prune partitions newer than the archival cutoff")
+    void shouldPruneFindOldestBefore() throws SQLException {
+        YearMonth cutoffMonth = YearMonth.now(ZoneOffset.UTC).minusMonths(4);
+        Timestamp cutoff = Timestamp.from(cutoffMonth.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        String plan = explainGeneric("""
+                SELECT * FROM messages m WHERE m.conversation_id = $1 AND m.created_at < $2
+                ORDER BY m.created_at ASC, m.id ASC LIMIT $3
+                """, "uuid, timestamptz, int", "'" + conversationId + "', '" + cutoff.toInstant() + "', 100");
+
+        assertNotScanned(plan, cutoffMonth, YearMonth.now(ZoneOffset.UTC).plusMonths(3));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Should stop at the newest partition when reading the latest page")
+    void shouldStopEarlyForFindLatest() throws SQLException {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+
+        String plan = explainGeneric("""
+                SELECT * FROM messages m WHERE m.conversation_id = $1
+                ORDER BY m.created_at DESC, m.id DESC LIMIT $2
+                """, "uuid, int", "'" + conversationId + "', 50");
+
+        // Ordered Append: the older months are never executed
+        assertNotScanned(plan, current.minusMonths(MONTHS - 1), current.minusMonths(1));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Should update and delete a loaded message in its own partition only")
+    void shouldPruneEntityUpdateAndDelete() throws SQLException {
+        YearMonth month = YearMonth.now(ZoneOffset.UTC).minusMonths(2);
+        Object[] message = messageIn(month);
+        String arguments = "'" + message[0] + "', '" + ((Timestamp) message[1]).toInstant() + "'";
+
+        // Hibernate adds the @PartitionKey created_at to the WHERE clause
+        String update = explainGeneric("UPDATE messages SET content = 'edited' WHERE id = $1 AND created_at = $2",
+                "uuid, timestamptz", arguments);
+        String delete = explainGeneric("DELETE FROM messages WHERE id = $1 AND created_at = $2",
+                "uuid, timestamptz", arguments);
+
+        for (String plan : List.of(update, delete)) {
+            assertNotScanned(plan, month.plusMonths(1), YearMonth.now(ZoneOffset.UTC).plusMonths(3));
+            assertNotScanned(plan, month.minusMonths(MONTHS), month.minusMonths(1));
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Should keep the archival delete within the archived range")
+    void shouldPruneArchivalDelete() throws SQLException {
+        YearMonth month = YearMonth.now(ZoneOffset.UTC).minusMonths(MONTHS - 1);
+        Timestamp from = Timestamp.from(month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        Timestamp to = Timestamp.from(month.atDay(10).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        String plan = explainGeneric("""
+                DELETE FROM messages m WHERE m.conversation_id = $1
+                AND m.created_at >= $2 AND m.created_at <= $3 AND m.id IN ($4, $5)
+                """, "uuid, timestamptz, timestamptz, uuid, uuid",
+                "'" + conversationId + "', '" + from.toInstant() + "', '" + to.toInstant() + "', '"
+                        + UUID.randomUUID() + "', '" + UUID.randomUUID() + "'");
+
+        assertNotScanned(plan, month.plusMonths(1), YearMonth.now(ZoneOffset.UTC).plusMonths(3));
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Should only detach an expired partition once its messages are gone")
+    void shouldDetachOnlyEmptiedPartitions() throws SQLException {
+        YearMonth oldest = YearMonth.now(ZoneOffset.UTC).minusMonths(MONTHS - 1);
+        String partition = "messages_" + oldest.format(PARTITION_SUFFIX);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        MessagePartitionMaintainer maintainer =
+                new MessagePartitionMaintainer(new JdbcTemplate(dataSource), null, false, 3, MONTHS - 2);
+
+        assertThat(maintainer.detachExpired()).isEmpty();
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM " + partition);
+            assertThat(maintainer.detachExpired()).containsExactly(partition);
+            assertThat(partitions(connection)).doesNotContain(partition);
+        }
+    }
+
+    /**
+     * EXPLAIN ANALYZE of the generic plan, in a transaction rolled back so that
+     * explained updates and deletes leave the data alone.
+     */
+    private static String explainGeneric(String sql, String types, String arguments) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            // Hibernate binds parameters, so what matters is the generic plan
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            statement.execute("PREPARE history(" + types + ") AS " + sql);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = statement.executeQuery(
+                    "EXPLAIN (ANALYZE, COSTS OFF, TIMING OFF) EXECUTE history(" + arguments + ")")) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            } finally {
+                connection.rollback();
+            }
+            log.info("Plan:\n{}", plan);
+            return plan.toString();
+        }
+    }
+
+    /**
+     * Id and creation time of a message of the month.
+     */
+    private static Object[] messageIn(YearMonth month) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement query = connection.prepareStatement(
+                     "SELECT id, created_at FROM messages WHERE created_at >= ? AND created_at < ? LIMIT 1")) {
+            query.setTimestamp(1, Timestamp.from(month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+            query.setTimestamp(2, Timestamp.from(month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+            try (ResultSet rows = query.executeQuery()) {
+                rows.next();
+                return new Object[] {rows.getObject(1, UUID.class), rows.getTimestamp(2)};
+            }
+        }
+    }
+
+    /**
+     * Every partition from {@code from} to {@code to} is either absent from the
+     * plan or never executed.
+     */
+    private static void assertNotScanned(String plan, YearMonth from, YearMonth to) {
+        List<String> lines = plan.lines().toList();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            String partition = "messages_" + month.format(PARTITION_SUFFIX);
+            assertThat(lines)
+                    .filteredOn(line -> line.contains(" on " + partition + " ") || line.endsWith(" on " + partition))
+                    .as("scans of %s", partition)
+                    .allSatisfy(line -> assertThat(line).contains("never executed"));
+        }
+    }
+
+    private static double benchmarkInserts(Connection connection) throws SQLException {
+        long start = System.nanoTime();
+        insertMessages(connection, YearMonth.now(ZoneOffset.UTC), BENCHMARK_ROWS);
+        return BENCHMARK_ROWS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void insertMessages(Connection connection, YearMonth month, int rows) throws SQLException {
+        Instant first = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        long span = ChronoUnit.SECONDS.between(first, month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC));
+        if (month.equals(YearMonth.now(ZoneOffset.UTC))) {
+            span = Math.max(1, ChronoUnit.SECONDS.between(first, Instant.now()));
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO messages (conversation_id, role, content, tokens_used, created_at) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                insert.setObject(1, conversationId);
+                insert.setString(2, i % 2 == 0 ? "user" : "assistant");
+                insert.setString(3, "Message " + i + " of " + month + ", about hiking, tea and the weather.");
+                insert.setInt(4, 10 + i % 7);
+                insert.setTimestamp(5, Timestamp.from(first.plusSeconds(span * i / rows)));
+                insert.addBatch();
+                if (i % 1_000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static UUID createConversation(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO users (id, username, email, password_hash)
+                    VALUES ('00000000-0000-0000-0000-000000000001', 'partitions', 'partitions@example.com', 'x')
+                    """);
+            statement.execute("""
+                    INSERT INTO companions (id, user_id, name)
+                    VALUES ('00000000-0000-0000-0000-000000000002', '00000000-0000-0000-0000-000000000001', 'Ada')
+                    """);
+            statement.execute("""
+                    INSERT INTO conversations (id, user_id, companion_id)
+                    VALUES ('00000000-0000-0000-0000-000000000003', '00000000-0000-0000-0000-000000000001',
+                            '00000000-0000-0000-0000-000000000002')
+                    """);
+        }
+        return UUID.fromString("00000000-0000-0000-0000-000000000003");
+    }
+
+    private static long count(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM messages")) {
+            rows.next();
+            return rows.getLong(1);
+        }
+    }
+
+    private static List<String> partitions(Connection connection) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT inhrelid::regclass::text FROM pg_inherits WHERE inhparent = 'messages'::regclass")) {
+            while (rows.next()) {
+                names.add(rows.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private static Flyway flyway(String target) {
+        var configuration = Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration");
+        if (target != null) {
+            configuration.target(target);
+        }
+        return configuration.load();
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
@@ -0,0 +1,231 @@
+package com.nexusai;
+
+import com.nexusai.ai.service.AIProviderService;
+import com.nexusai.ai.service.TokenMeter;
+import com.nexusai.conversation.cache.HotEntityCache;
+import com.nexusai.conversation.mailbox.ConversationMailboxes;
+import com.nexusai.conversation.service.ContextService;
+import com.nexusai.conversation.service.MessageService;
+import com.nexusai.conversation.stats.ConversationCounters;
+import com.nexusai.conversation.tracing.PipelineTracing;
+import com.nexusai.core.entity.Companion;
+import com.nexusai.core.entity.Conversation;
+import com.nexusai.core.entity.Message;
+import com.nexusai.core.entity.User;
+import com.nexusai.core.enums.MessageRole;
+import com.nexusai.core.enums.MessageType;
+import com.nexusai.core.repository.CompanionRepository;
+import com.nexusai.core.repository.ConversationRepository;
+import com.nexusai.core.repository.MessageRepository;
+import com.nexusai.core.repository.UserRepository;
+import com.nexusai.moderation.service.ContentFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Counts the SQL statements Hibernate prepares per generated reply against a
+ * migrated PostgreSQL schema. "Before" replays the repository calls the turn
+ * made before the hot-entity cache and the batched counters, with the same
+ * transaction boundaries; "after" drives {@link MessageService} itself and
+ * includes the amortised counter flush. Context reads are served from Redis
+ * in both and are left out. Skipped when Docker is not available.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.flyway.init-sqls=CREATE EXTENSION IF NOT EXISTS vector"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("Message pipeline SQL statements per turn")
+@Slf4j
+class MessageQueryCountTest {
+
+    private static final int TURNS = 50;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private CompanionRepository companionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final AIProviderService aiProviderService = mock(AIProviderService.class);
+    private final ContextService contextService = mock(ContextService.class);
+
+    private Statistics statistics;
+    private TransactionTemplate transactionTemplate;
+    private ConversationCounters counters;
+    private UUID userId;
+    private UUID conversationId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        String name = "query-count-" + UUID.randomUUID().toString().substring(0, 8);
+        userId = userRepository.save(User.builder()
+                .username(name).email(name + "@example.com").passwordHash("hash").build()).getId();
+        UUID companionId = companionRepository.save(Companion.builder()
+                .userId(userId).name("Mia").systemPrompt("You are Mia.").build()).getId();
+        conversationId = conversationRepository.save(Conversation.builder()
+                .userId(userId).companionId(companionId).title("Query count").build()).getId();
+
+        when(contextService.buildContext(any())).thenReturn("context");
+        when(aiProviderService.generateResponse(anyString(), anyString(), any(), any())).thenReturn("reply");
+        when(aiProviderService.streamResponse(anyString(), anyString(), any(), any(), any(TokenMeter.class)))
+                .thenReturn(Flux.just("re", "ply"));
+    }
+
+    @Test
+    @DisplayName("Should cut generateResponse statements per warm turn")
+    void shouldCutGenerateResponseStatements() {
+        double before = perTurn(this::generateResponseBefore);
+
+        MessageService service = messageService();
+        service.generateResponse(conversationId, userId);
+        double after = perTurn(() -> transactionTemplate.executeWithoutResult(
+                status -> service.generateResponse(conversationId, userId)));
+
+        log.info("generateResponse SQL statements per turn: before={}, after warm={}", before, after);
+        // Conversation and companion lookups, message insert, conversation update
+        assertThat(before).isEqualTo(4.0);
+        // Message insert and token charge, plus the counter flush spread over the turns
+        assertThat(after).isCloseTo(2.0, within(0.1));
+    }
+
+    @Test
+    @DisplayName("Should cut streamResponse statements per warm turn")
+    void shouldCutStreamResponseStatements() {
+        double before = perTurn(this::streamResponseBefore);
+
+        MessageService service = messageService();
+        service.streamResponse(conversationId, userId).blockLast();
+        double after = perTurn(() -> service.streamResponse(conversationId, userId).blockLast());
+
+        log.info("streamResponse SQL statements per turn: before={}, after warm={}", before, after);
+        // Lookups, message insert, then findById and a merge (select and update) outside a transaction
+        assertThat(before).isEqualTo(6.0);
+        assertThat(after).isCloseTo(2.0, within(0.1));
+    }
+
+    private double perTurn(Runnable turn) {
+        statistics.clear();
+        for (int i = 0; i < TURNS; i++) {
+            turn.run();
+        }
+        if (counters != null) {
+            counters.flush();
+        }
+        return statistics.getPrepareStatementCount() / (double) TURNS;
+    }
+
+    /**
+     * generateResponse before the hot-entity cache: one transaction, the
+     * entities looked up on every turn and the conversation updated in place.
+     */
+    private void generateResponseBefore() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId).orElseThrow();
+            Companion companion = companionRepository.findById(conversation.getCompanionId()).orElseThrow();
+            String response = aiProviderService.generateResponse(companion.getSystemPrompt(), "context",
+                    companion.getModelProvider(), companion.getModelName());
+            messageRepository.save(reply(response));
+            conversation.incrementMessages();
+            conversation.addTokens(10);
+            conversationRepository.save(conversation);
+        });
+    }
+
+    /**
+     * streamResponse before the hot-entity cache: no surrounding transaction,
+     * and saveStreamedMessage reloaded the conversation to merge its counters.
+     */
+    private void streamResponseBefore() {
+        Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId).orElseThrow();
+        companionRepository.findById(conversation.getCompanionId()).orElseThrow();
+        messageRepository.save(reply("reply"));
+        Conversation reloaded = conversationRepository.findById(conversationId).orElseThrow();
+        reloaded.incrementMessages();
+        reloaded.addTokens(10);
+        conversationRepository.save(reloaded);
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageService messageService() {
+        counters = new ConversationCounters(conversationRepository, companionRepository,
+                mock(RedisTemplate.class), transactionTemplate, Duration.ofMinutes(1));
+        return new MessageService(messageRepository, conversationRepository, userRepository,
+                new HotEntityCache(conversationRepository, companionRepository, 1_000, Duration.ofMinutes(10)),
+                aiProviderService, mock(ContentFilterService.class), contextService, counters,
+                mock(ApplicationEventPublisher.class), transactionTemplate, Schedulers.immediate(),
+                new ConversationMailboxes(new SimpleMeterRegistry(), Duration.ofMinutes(2)),
+                new PipelineTracing(ObservationRegistry.NOOP));
+    }
+
+    private Message reply(String content) {
+        return Message.builder()
+                .conversationId(conversationId)
+                .role(MessageRole.ASSISTANT)
+                .type(MessageType.TEXT)
+                .content(content)
+                .tokensUsed(10)
+                .build();
+    }
+}